@@ -0,0 +1,18 @@
+package com.ctrip.framework.apollo.adminservice;
+
+import com.ctrip.framework.apollo.biz.message.ReleaseMessageCompactor;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class AdminServiceAutoConfiguration {
+
+  /**
+   * 仅在 Admin Service 中压缩 ReleaseMessage 表，Config Service 节点数量多，无需重复执行
+   */
+  @Bean
+  public ReleaseMessageCompactor releaseMessageCompactor() {
+    return new ReleaseMessageCompactor();
+  }
+}
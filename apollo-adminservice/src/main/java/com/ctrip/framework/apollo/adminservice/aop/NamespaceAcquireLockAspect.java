@@ -66,6 +66,13 @@ public class NamespaceAcquireLockAspect {
     acquireLock(appId, clusterName, namespaceName, changeSet.getDataChangeLastModifiedBy());
   }
 
+  //import items
+  @Before("@annotation(PreAcquireNamespaceLock) && args(appId, clusterName, namespaceName, operator, ..)")
+  public void requireLockAdvice(String appId, String clusterName, String namespaceName, String operator) {
+    // 尝试锁定
+    acquireLock(appId, clusterName, namespaceName, operator);
+  }
+
   //delete item
   @Before("@annotation(PreAcquireNamespaceLock) && args(itemId, operator, ..)")
   public void requireLockAdvice(long itemId, String operator) {
@@ -10,6 +10,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
@@ -23,9 +24,19 @@ public class CommitController {
 
   @RequestMapping(value = "/apps/{appId}/clusters/{clusterName}/namespaces/{namespaceName}/commit", method = RequestMethod.GET)
   public List<CommitDTO> find(@PathVariable String appId, @PathVariable String clusterName,
-                              @PathVariable String namespaceName, Pageable pageable){
-
-    List<Commit> commits = commitService.find(appId, clusterName, namespaceName, pageable);
+                              @PathVariable String namespaceName,
+                              @RequestParam(value = "beforeId", required = false) Long beforeId,
+                              Pageable pageable){
+
+    List<Commit> commits;
+    // 传入 beforeId 时按 id 翻页
+    //keyset pagination when beforeId is given
+    if (beforeId != null) {
+      commits = commitService.find(appId, clusterName, namespaceName, beforeId > 0 ? beforeId : Long.MAX_VALUE,
+          pageable.getPageSize());
+    } else {
+      commits = commitService.find(appId, clusterName, namespaceName, pageable);
+    }
     return BeanUtils.batchTransform(CommitDTO.class, commits);
   }
 
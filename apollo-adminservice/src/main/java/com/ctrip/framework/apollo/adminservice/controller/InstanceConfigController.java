@@ -10,6 +10,7 @@ import com.google.common.collect.Sets;
 import com.ctrip.framework.apollo.biz.entity.Instance;
 import com.ctrip.framework.apollo.biz.entity.InstanceConfig;
 import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.entity.ReleaseHeader;
 import com.ctrip.framework.apollo.biz.service.InstanceService;
 import com.ctrip.framework.apollo.biz.service.ReleaseService;
 import com.ctrip.framework.apollo.common.dto.InstanceConfigDTO;
@@ -31,6 +32,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -51,21 +53,38 @@ public class InstanceConfigController {
 
   @RequestMapping(value = "/by-release", method = RequestMethod.GET)
   public PageDTO<InstanceDTO> getByRelease(@RequestParam("releaseId") long releaseId,
+                                           @RequestParam(value = "afterInstanceId", required = false)
+                                               Long afterInstanceId,
                                            Pageable pageable) {
     Release release = releaseService.findOne(releaseId);
     if (release == null) {
       throw new NotFoundException(String.format("release not found for %s", releaseId));
     }
+
+    // 传入 afterInstanceId 时按 instanceId 翻页，不统计总数
+    //keyset pagination when afterInstanceId is given, whose total is not counted since counting costs a full scan
+    if (afterInstanceId != null) {
+      List<InstanceConfig> instanceConfigs = instanceService.findActiveInstanceConfigsByReleaseKey(
+          release.getReleaseKey(), afterInstanceId, pageable.getPageSize());
+      return new PageDTO<>(transformInstanceConfigs2InstanceDTOs(instanceConfigs),
+          PageRequest.of(0, pageable.getPageSize()), -1);
+    }
+
     Page<InstanceConfig> instanceConfigsPage = instanceService.findActiveInstanceConfigsByReleaseKey
         (release.getReleaseKey(), pageable);
 
+    return new PageDTO<>(transformInstanceConfigs2InstanceDTOs(instanceConfigsPage.getContent()), pageable,
+        instanceConfigsPage.getTotalElements());
+  }
+
+  private List<InstanceDTO> transformInstanceConfigs2InstanceDTOs(List<InstanceConfig> instanceConfigs) {
     List<InstanceDTO> instanceDTOs = Collections.emptyList();
 
-    if (instanceConfigsPage.hasContent()) {
+    if (!instanceConfigs.isEmpty()) {
       Multimap<Long, InstanceConfig> instanceConfigMap = HashMultimap.create();
       Set<String> otherReleaseKeys = Sets.newHashSet();
 
-      for (InstanceConfig instanceConfig : instanceConfigsPage.getContent()) {
+      for (InstanceConfig instanceConfig : instanceConfigs) {
         instanceConfigMap.put(instanceConfig.getInstanceId(), instanceConfig);
         otherReleaseKeys.add(instanceConfig.getReleaseKey());
       }
@@ -76,6 +95,7 @@ public class InstanceConfigController {
 
       if (!CollectionUtils.isEmpty(instances)) {
         instanceDTOs = BeanUtils.batchTransform(InstanceDTO.class, instances);
+        instanceDTOs.sort(Comparator.comparingLong(InstanceDTO::getId));
       }
 
       for (InstanceDTO instanceDTO : instanceDTOs) {
@@ -93,7 +113,7 @@ public class InstanceConfigController {
       }
     }
 
-    return new PageDTO<>(instanceDTOs, pageable, instanceConfigsPage.getTotalElements());
+    return instanceDTOs;
   }
 
   @RequestMapping(value = "/by-namespace-and-releases-not-in", method = RequestMethod.GET)
@@ -104,13 +124,13 @@ public class InstanceConfigController {
     Set<Long> releaseIdSet = RELEASES_SPLITTER.splitToList(releaseIds).stream().map(Long::parseLong)
         .collect(Collectors.toSet());
 
-    List<Release> releases = releaseService.findByReleaseIds(releaseIdSet);
+    List<ReleaseHeader> releases = releaseService.findReleaseHeadersByIds(releaseIdSet);
 
     if (CollectionUtils.isEmpty(releases)) {
       throw new NotFoundException(String.format("releases not found for %s", releaseIds));
     }
 
-    Set<String> releaseKeys = releases.stream().map(Release::getReleaseKey).collect(Collectors
+    Set<String> releaseKeys = releases.stream().map(ReleaseHeader::getReleaseKey).collect(Collectors
         .toSet());
 
     List<InstanceConfig> instanceConfigs = instanceService
@@ -133,12 +153,11 @@ public class InstanceConfigController {
 
     List<InstanceDTO> instanceDTOs = BeanUtils.batchTransform(InstanceDTO.class, instances);
 
-    List<Release> otherReleases = releaseService.findByReleaseKeys(otherReleaseKeys);
+    //without configurations to save space
+    List<ReleaseHeader> otherReleases = releaseService.findReleaseHeadersByReleaseKeys(otherReleaseKeys);
     Map<String, ReleaseDTO> releaseMap = Maps.newHashMap();
 
-    for (Release release : otherReleases) {
-      //unset configurations to save space
-      release.setConfigurations(null);
+    for (ReleaseHeader release : otherReleases) {
       ReleaseDTO releaseDTO = BeanUtils.transfrom(ReleaseDTO.class, release);
       releaseMap.put(release.getReleaseKey(), releaseDTO);
     }
@@ -164,7 +183,23 @@ public class InstanceConfigController {
       @RequestParam("appId") String appId, @RequestParam("clusterName") String clusterName,
       @RequestParam("namespaceName") String namespaceName,
       @RequestParam(value = "instanceAppId", required = false) String instanceAppId,
+      @RequestParam(value = "afterInstanceId", required = false) Long afterInstanceId,
       Pageable pageable) {
+    // 传入 afterInstanceId 时按 instanceId 翻页，不统计总数
+    //keyset pagination when afterInstanceId is given, whose total is not counted since counting costs a full scan
+    if (afterInstanceId != null) {
+      List<Instance> instances;
+      if (Strings.isNullOrEmpty(instanceAppId)) {
+        instances = instanceService.findInstancesByNamespace(appId, clusterName, namespaceName, afterInstanceId,
+            pageable.getPageSize());
+      } else {
+        instances = instanceService.findInstancesByNamespaceAndInstanceAppId(instanceAppId, appId, clusterName,
+            namespaceName, afterInstanceId, pageable.getPageSize());
+      }
+      return new PageDTO<>(BeanUtils.batchTransform(InstanceDTO.class, instances),
+          PageRequest.of(0, pageable.getPageSize()), -1);
+    }
+
     Page<Instance> instances;
     if (Strings.isNullOrEmpty(instanceAppId)) {
       instances = instanceService.findInstancesByNamespace(appId, clusterName,
@@ -0,0 +1,94 @@
+package com.ctrip.framework.apollo.adminservice.controller;
+
+import com.ctrip.framework.apollo.adminservice.aop.PreAcquireNamespaceLock;
+import com.ctrip.framework.apollo.adminservice.util.PropertiesEntryReader;
+import com.ctrip.framework.apollo.adminservice.util.YamlEntryReader;
+import com.ctrip.framework.apollo.biz.entity.Namespace;
+import com.ctrip.framework.apollo.biz.service.ItemImportService;
+import com.ctrip.framework.apollo.biz.service.NamespaceService;
+import com.ctrip.framework.apollo.common.dto.ItemImportProgressDTO;
+import com.ctrip.framework.apollo.common.exception.BadRequestException;
+import com.ctrip.framework.apollo.common.exception.NotFoundException;
+import com.ctrip.framework.apollo.core.enums.ConfigFileFormat;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 导入 properties 或 yaml 文件中的配置，properties 流式读取，请求体需以 text/plain 等非表单类型发送
+ *
+ * Import the items of a properties or yaml file, the former is read in a streaming way. The body should be posted as
+ * text/plain or any other non-form content type, so that it is not consumed as form parameters.
+ */
+@RestController
+public class ItemImportController {
+
+  @Autowired
+  private ItemImportService itemImportService;
+  @Autowired
+  private NamespaceService namespaceService;
+
+  @PreAcquireNamespaceLock
+  @RequestMapping(path = "/apps/{appId}/clusters/{clusterName}/namespaces/{namespaceName}/items/import", method = RequestMethod.POST)
+  public ItemImportProgressDTO importItems(@PathVariable("appId") String appId,
+                                           @PathVariable("clusterName") String clusterName,
+                                           @PathVariable("namespaceName") String namespaceName,
+                                           @RequestParam("operator") String operator,
+                                           @RequestParam(value = "format", defaultValue = "properties") String format,
+                                           InputStream body) throws IOException {
+    Namespace namespace = namespaceService.findOne(appId, clusterName, namespaceName);
+    if (namespace == null) {
+      throw new NotFoundException(String.format("namespace not found for %s %s %s", appId, clusterName,
+          namespaceName));
+    }
+    // 非 properties 格式的 Namespace 只有一个 content Item，无需流式导入
+    //the namespaces of other formats keep the whole file in one item
+    String extension = namespaceName.substring(namespaceName.lastIndexOf('.') + 1).toLowerCase();
+    if (ConfigFileFormat.isValidFormat(extension) && ConfigFileFormat.fromString(extension) != ConfigFileFormat.Properties) {
+      throw new BadRequestException("Items could only be imported to namespaces of properties format");
+    }
+
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+      return itemImportService.importItems(namespace, createEntryReader(format, reader), operator);
+    }
+  }
+
+  @RequestMapping(path = "/apps/{appId}/clusters/{clusterName}/namespaces/{namespaceName}/items/import", method = RequestMethod.GET)
+  public ItemImportProgressDTO findProgress(@PathVariable("appId") String appId,
+                                            @PathVariable("clusterName") String clusterName,
+                                            @PathVariable("namespaceName") String namespaceName) {
+    ItemImportProgressDTO progress = itemImportService.findProgress(appId, clusterName, namespaceName);
+    if (progress == null) {
+      throw new NotFoundException(String.format("no item import found for %s %s %s", appId, clusterName,
+          namespaceName));
+    }
+    return progress;
+  }
+
+  private Iterator<Map.Entry<String, String>> createEntryReader(String format, BufferedReader reader) {
+    if (!ConfigFileFormat.isValidFormat(format)) {
+      throw new BadRequestException("Invalid import format: " + format);
+    }
+    switch (ConfigFileFormat.fromString(format)) {
+      case Properties:
+        return new PropertiesEntryReader(reader);
+      case YML:
+      case YAML:
+        return new YamlEntryReader(reader);
+      default:
+        throw new BadRequestException("Items could only be imported from properties or yaml");
+    }
+  }
+}
@@ -81,7 +81,14 @@ public class ReleaseController {
   public List<ReleaseDTO> findActiveReleases(@PathVariable("appId") String appId,
                                              @PathVariable("clusterName") String clusterName,
                                              @PathVariable("namespaceName") String namespaceName,
+                                             @RequestParam(value = "withConfigurations", defaultValue = "true")
+                                                 boolean withConfigurations,
                                              Pageable page) {
+    // 只需要元数据时，不加载 configurations
+    if (!withConfigurations) {
+      return BeanUtils.batchTransform(ReleaseDTO.class,
+                                      releaseService.findActiveReleaseHeaders(appId, clusterName, namespaceName, page));
+    }
     List<Release> releases = releaseService.findActiveReleases(appId, clusterName, namespaceName, page);
     return BeanUtils.batchTransform(ReleaseDTO.class, releases);
   }
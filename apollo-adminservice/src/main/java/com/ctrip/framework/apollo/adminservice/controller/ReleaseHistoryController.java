@@ -11,6 +11,7 @@ import com.ctrip.framework.apollo.common.utils.BeanUtils;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -41,8 +42,17 @@ public class ReleaseHistoryController {
   public PageDTO<ReleaseHistoryDTO> findReleaseHistoriesByNamespace(
       @PathVariable String appId, @PathVariable String clusterName,
       @PathVariable String namespaceName,
+      @RequestParam(value = "beforeId", required = false) Long beforeId,
       Pageable pageable) {
 
+    // 传入 beforeId 时按 id 翻页，不统计总数
+    //keyset pagination when beforeId is given, whose total is not counted since counting costs a full scan
+    if (beforeId != null) {
+      List<ReleaseHistory> releaseHistories = releaseHistoryService.findReleaseHistoriesByNamespace(appId,
+          clusterName, namespaceName, beforeId > 0 ? beforeId : Long.MAX_VALUE, pageable.getPageSize());
+      return transform2PageDTO(releaseHistories, PageRequest.of(0, pageable.getPageSize()), -1);
+    }
+
     Page<ReleaseHistory> result = releaseHistoryService.findReleaseHistoriesByNamespace(appId, clusterName,
                                                                                         namespaceName, pageable);
     return transform2PageDTO(result, pageable);
@@ -73,17 +83,21 @@ public class ReleaseHistoryController {
   }
 
   private PageDTO<ReleaseHistoryDTO> transform2PageDTO(Page<ReleaseHistory> releaseHistoriesPage, Pageable pageable){
-    if (!releaseHistoriesPage.hasContent()) {
+    return transform2PageDTO(releaseHistoriesPage.getContent(), pageable, releaseHistoriesPage.getTotalElements());
+  }
+
+  private PageDTO<ReleaseHistoryDTO> transform2PageDTO(List<ReleaseHistory> releaseHistories, Pageable pageable,
+                                                       long total) {
+    if (releaseHistories.isEmpty()) {
       return null;
     }
 
-    List<ReleaseHistory> releaseHistories = releaseHistoriesPage.getContent();
     List<ReleaseHistoryDTO> releaseHistoryDTOs = new ArrayList<>(releaseHistories.size());
     for (ReleaseHistory releaseHistory : releaseHistories) {
       releaseHistoryDTOs.add(transformReleaseHistory2DTO(releaseHistory));
     }
 
-    return new PageDTO<>(releaseHistoryDTOs, pageable, releaseHistoriesPage.getTotalElements());
+    return new PageDTO<>(releaseHistoryDTOs, pageable, total);
   }
 
   private ReleaseHistoryDTO transformReleaseHistory2DTO(ReleaseHistory releaseHistory) {
@@ -0,0 +1,91 @@
+package com.ctrip.framework.apollo.adminservice.util;
+
+import com.google.common.collect.Maps;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+
+/**
+ * 逐行读取 properties 格式的输入，每次只在内存中保留一个逻辑行
+ *
+ * Read the key and value pairs of properties content line by line, with only one logical line held in memory. Each
+ * logical line, including its continuation lines, is parsed by {@link Properties#load(java.io.Reader)}, so the escapes
+ * are handled the same way. Comments and blank lines are skipped.
+ */
+public class PropertiesEntryReader implements Iterator<Map.Entry<String, String>> {
+  private final BufferedReader reader;
+  private Map.Entry<String, String> next;
+
+  public PropertiesEntryReader(BufferedReader reader) {
+    this.reader = reader;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (next == null) {
+      try {
+        next = readNext();
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }
+    return next != null;
+  }
+
+  @Override
+  public Map.Entry<String, String> next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    Map.Entry<String, String> entry = next;
+    next = null;
+    return entry;
+  }
+
+  private Map.Entry<String, String> readNext() throws IOException {
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (isBlankOrComment(line)) {
+        continue;
+      }
+      StringBuilder logicalLine = new StringBuilder(line);
+      while (isContinued(line) && (line = reader.readLine()) != null) {
+        logicalLine.append('\n').append(line);
+      }
+      Properties properties = new Properties();
+      properties.load(new StringReader(logicalLine.toString()));
+      for (String key : properties.stringPropertyNames()) {
+        return Maps.immutableEntry(key, properties.getProperty(key));
+      }
+    }
+    return null;
+  }
+
+  private boolean isBlankOrComment(String line) {
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c == ' ' || c == '\t' || c == '\f') {
+        continue;
+      }
+      return c == '#' || c == '!';
+    }
+    return true;
+  }
+
+  /**
+   * a line is continued if it ends with an odd number of backslashes
+   */
+  private boolean isContinued(String line) {
+    int backslashes = 0;
+    for (int i = line.length() - 1; i >= 0 && line.charAt(i) == '\\'; i--) {
+      backslashes++;
+    }
+    return backslashes % 2 == 1;
+  }
+}
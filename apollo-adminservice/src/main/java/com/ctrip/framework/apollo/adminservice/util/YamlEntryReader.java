@@ -0,0 +1,70 @@
+package com.ctrip.framework.apollo.adminservice.util;
+
+import com.ctrip.framework.apollo.common.exception.BadRequestException;
+import com.ctrip.framework.apollo.common.utils.FlattenUtils;
+
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.representer.Representer;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.io.Reader;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 读取 yaml 内容，嵌套的 key 按 spring boot 的方式展开，例如 a.b[0]=c
+ *
+ * Read yaml content of a map, whose nested keys are flattened by {@link FlattenUtils} the same way as spring boot does,
+ * e.g. a.b[0]=c. Only nulls and merge keys are resolved, so the other scalars are kept as written, e.g. 1.10 is not
+ * read as 1.1.
+ */
+public class YamlEntryReader implements Iterator<Map.Entry<String, String>> {
+  private final Iterator<Map.Entry<String, String>> entries;
+
+  public YamlEntryReader(Reader reader) {
+    this.entries = FlattenUtils.flatten(load(reader)).entrySet().iterator();
+  }
+
+  @Override
+  public boolean hasNext() {
+    return entries.hasNext();
+  }
+
+  @Override
+  public Map.Entry<String, String> next() {
+    return entries.next();
+  }
+
+  private static Map<?, ?> load(Reader reader) {
+    Object tree;
+    try {
+      //snake yaml is not thread safe
+      tree = new Yaml(new SafeConstructor(), new Representer(), new DumperOptions(), new ScalarAsWrittenResolver())
+          .load(reader);
+    } catch (YAMLException ex) {
+      throw new BadRequestException("Invalid yaml content: " + ex.getMessage());
+    }
+    if (tree == null) {
+      //empty document
+      return Collections.emptyMap();
+    }
+    if (!(tree instanceof Map)) {
+      throw new BadRequestException("Only yaml content of a map could be imported");
+    }
+    return (Map<?, ?>) tree;
+  }
+
+  private static class ScalarAsWrittenResolver extends Resolver {
+    @Override
+    protected void addImplicitResolvers() {
+      addImplicitResolver(Tag.NULL, NULL, "~nN\0");
+      addImplicitResolver(Tag.NULL, EMPTY, null);
+      addImplicitResolver(Tag.MERGE, MERGE, "<");
+    }
+  }
+}
@@ -7,6 +7,7 @@ import com.google.common.collect.Sets;
 import com.ctrip.framework.apollo.biz.entity.Instance;
 import com.ctrip.framework.apollo.biz.entity.InstanceConfig;
 import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.entity.ReleaseHeader;
 import com.ctrip.framework.apollo.biz.service.InstanceService;
 import com.ctrip.framework.apollo.biz.service.ReleaseService;
 import com.ctrip.framework.apollo.common.dto.InstanceDTO;
@@ -33,6 +34,8 @@ import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -101,7 +104,7 @@ public class InstanceConfigControllerTest {
     when(instanceService.findInstancesByIds(instanceIds))
         .thenReturn(instances);
 
-    PageDTO<InstanceDTO> result = instanceConfigController.getByRelease(someReleaseId, pageable);
+    PageDTO<InstanceDTO> result = instanceConfigController.getByRelease(someReleaseId, null, pageable);
 
     assertEquals(2, result.getContent().size());
     InstanceDTO someInstanceDto = null;
@@ -131,7 +134,7 @@ public class InstanceConfigControllerTest {
 
     when(releaseService.findOne(someReleaseIdNotExists)).thenReturn(null);
 
-    instanceConfigController.getByRelease(someReleaseIdNotExists, pageable);
+    instanceConfigController.getByRelease(someReleaseIdNotExists, null, pageable);
   }
 
   @Test
@@ -146,14 +149,12 @@ public class InstanceConfigControllerTest {
     Date someReleaseDeliveryTime = new Date();
     Date anotherReleaseDeliveryTime = new Date();
 
-    Release someRelease = mock(Release.class);
-    Release anotherRelease = mock(Release.class);
     String someReleaseKey = "someReleaseKey";
     String anotherReleaseKey = "anotherReleaseKey";
-    when(someRelease.getReleaseKey()).thenReturn(someReleaseKey);
-    when(anotherRelease.getReleaseKey()).thenReturn(anotherReleaseKey);
+    ReleaseHeader someRelease = assembleReleaseHeader(someReleaseKey);
+    ReleaseHeader anotherRelease = assembleReleaseHeader(anotherReleaseKey);
 
-    when(releaseService.findByReleaseIds(Sets.newHashSet(someReleaseId, anotherReleaseId)))
+    when(releaseService.findReleaseHeadersByIds(Sets.newHashSet(someReleaseId, anotherReleaseId)))
         .thenReturn(Lists.newArrayList(someRelease, anotherRelease));
 
     long someInstanceId = 1;
@@ -187,11 +188,9 @@ public class InstanceConfigControllerTest {
     when(instanceService.findInstancesByIds(Sets.newHashSet(someInstanceId, anotherInstanceId)))
         .thenReturn(Lists.newArrayList(someInstance, anotherInstance));
 
-    Release someInstanceConfigRelease = new Release();
-    someInstanceConfigRelease.setReleaseKey(someInstanceConfigReleaseKey);
-    Release anotherInstanceConfigRelease = new Release();
-    anotherInstanceConfigRelease.setReleaseKey(anotherInstanceConfigReleaseKey);
-    when(releaseService.findByReleaseKeys(Sets.newHashSet(someInstanceConfigReleaseKey,
+    ReleaseHeader someInstanceConfigRelease = assembleReleaseHeader(someInstanceConfigReleaseKey);
+    ReleaseHeader anotherInstanceConfigRelease = assembleReleaseHeader(anotherInstanceConfigReleaseKey);
+    when(releaseService.findReleaseHeadersByReleaseKeys(Sets.newHashSet(someInstanceConfigReleaseKey,
         anotherInstanceConfigReleaseKey))).thenReturn(Lists.newArrayList(someInstanceConfigRelease,
         anotherInstanceConfigRelease));
 
@@ -244,7 +243,7 @@ public class InstanceConfigControllerTest {
         pageable)).thenReturn(instances);
 
     PageDTO<InstanceDTO> result = instanceConfigController.getInstancesByNamespace(someAppId,
-        someClusterName, someNamespaceName, null, pageable);
+        someClusterName, someNamespaceName, null, null, pageable);
 
     assertEquals(2, result.getContent().size());
     InstanceDTO someInstanceDto = null;
@@ -262,6 +261,34 @@ public class InstanceConfigControllerTest {
     verifyInstance(anotherInstance, anotherInstanceDto);
   }
 
+  @Test
+  public void testGetInstancesByNamespaceWithKeyset() throws Exception {
+    String someAppId = "someAppId";
+    String someClusterName = "someClusterName";
+    String someNamespaceName = "someNamespaceName";
+    String someIp = "someIp";
+    long someInstanceId = 1;
+    long anotherInstanceId = 2;
+
+    Instance someInstance = assembleInstance(someInstanceId, someAppId, someClusterName,
+        someNamespaceName, someIp);
+    Instance anotherInstance = assembleInstance(anotherInstanceId, someAppId, someClusterName,
+        someNamespaceName, someIp);
+
+    when(instanceService.findInstancesByNamespace(someAppId, someClusterName, someNamespaceName, 0,
+        pageable.getPageSize())).thenReturn(Lists.newArrayList(someInstance, anotherInstance));
+
+    PageDTO<InstanceDTO> result = instanceConfigController.getInstancesByNamespace(someAppId,
+        someClusterName, someNamespaceName, null, 0L, pageable);
+
+    assertEquals(2, result.getContent().size());
+    assertEquals(-1, result.getTotal());
+    verifyInstance(someInstance, result.getContent().get(0));
+    verifyInstance(anotherInstance, result.getContent().get(1));
+    verify(instanceService, never()).findInstancesByNamespace(someAppId, someClusterName, someNamespaceName,
+        pageable);
+  }
+
   @Test
   public void testGetInstancesByNamespaceAndInstanceAppId() throws Exception {
     String someInstanceAppId = "someInstanceAppId";
@@ -283,7 +310,7 @@ public class InstanceConfigControllerTest {
         someClusterName, someNamespaceName, pageable)).thenReturn(instances);
 
     PageDTO<InstanceDTO> result = instanceConfigController.getInstancesByNamespace(someAppId,
-        someClusterName, someNamespaceName, someInstanceAppId, pageable);
+        someClusterName, someNamespaceName, someInstanceAppId, null, pageable);
 
     assertEquals(2, result.getContent().size());
     InstanceDTO someInstanceDto = null;
@@ -341,6 +368,10 @@ public class InstanceConfigControllerTest {
     return instance;
   }
 
+  private ReleaseHeader assembleReleaseHeader(String releaseKey) {
+    return new ReleaseHeader(0, releaseKey, null, null, null, null, null, false, null, null, null, null);
+  }
+
   private InstanceConfig assembleInstanceConfig(long instanceId, String configAppId, String
       configNamespaceName, String releaseKey, Date releaseDeliveryTime) {
     InstanceConfig instanceConfig = new InstanceConfig();
@@ -0,0 +1,115 @@
+package com.ctrip.framework.apollo.adminservice.util;
+
+import com.google.common.collect.Maps;
+
+import com.ctrip.framework.apollo.common.exception.BadRequestException;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class YamlEntryReaderTest {
+
+  @Test
+  public void testReadNestedYaml() throws Exception {
+    String yaml = "server:\n"
+        + "  port: 8080\n"
+        + "  hosts:\n"
+        + "    - host1\n"
+        + "    - name: host2\n"
+        + "      weight: 2\n"
+        + "empty:\n"
+        + "emptyMap: {}\n"
+        + "emptyList: []\n"
+        + "multiline: |\n"
+        + "  line1\n"
+        + "  line2\n";
+
+    Map<String, String> entries = readAll(new YamlEntryReader(new StringReader(yaml)));
+
+    assertEquals(8, entries.size());
+    assertEquals("8080", entries.get("server.port"));
+    assertEquals("host1", entries.get("server.hosts[0]"));
+    assertEquals("host2", entries.get("server.hosts[1].name"));
+    assertEquals("2", entries.get("server.hosts[1].weight"));
+    assertEquals("", entries.get("empty"));
+    assertEquals("", entries.get("emptyMap"));
+    assertEquals("", entries.get("emptyList"));
+    assertEquals("line1\nline2\n", entries.get("multiline"));
+  }
+
+  @Test
+  public void testReadEmptyYaml() throws Exception {
+    assertTrue(readAll(new YamlEntryReader(new StringReader(""))).isEmpty());
+  }
+
+  @Test
+  public void testReadScalarsAsWritten() throws Exception {
+    String yaml = "version: 1.10\n"
+        + "enabled: yes\n"
+        + "date: 2018-10-01\n"
+        + "a: &anchor value\n"
+        + "b: *anchor\n";
+
+    Map<String, String> entries = readAll(new YamlEntryReader(new StringReader(yaml)));
+
+    assertEquals("1.10", entries.get("version"));
+    assertEquals("yes", entries.get("enabled"));
+    assertEquals("2018-10-01", entries.get("date"));
+    assertEquals("value", entries.get("b"));
+  }
+
+  @Test(expected = BadRequestException.class)
+  public void testReadInvalidYaml() throws Exception {
+    readAll(new YamlEntryReader(new StringReader("a: [b\n")));
+  }
+
+  @Test(expected = BadRequestException.class)
+  public void testReadYamlWithExponentiallyExpandedAliases() throws Exception {
+    StringBuilder yaml = new StringBuilder("a0: &a0 [lol, lol, lol, lol, lol, lol, lol, lol, lol, lol]\n");
+    for (int i = 1; i < 10; i++) {
+      yaml.append(String.format("a%d: &a%d [*a%d, *a%d, *a%d, *a%d, *a%d, *a%d, *a%d, *a%d, *a%d, *a%d]\n", i, i,
+          i - 1, i - 1, i - 1, i - 1, i - 1, i - 1, i - 1, i - 1, i - 1, i - 1));
+    }
+
+    readAll(new YamlEntryReader(new StringReader(yaml.toString())));
+  }
+
+  @Test(expected = BadRequestException.class)
+  public void testReadYamlWithSelfReferencingAnchor() throws Exception {
+    String yaml = "a: &a\n"
+        + "  b: *a\n";
+
+    readAll(new YamlEntryReader(new StringReader(yaml)));
+  }
+
+  @Test
+  public void testReadProperties() throws Exception {
+    String properties = "# comment\n"
+        + "a=1\n"
+        + "\n"
+        + "b = multi \\\n"
+        + "    line\n"
+        + "c:\\u4e2d\\\\\n"
+        + "a=2\n";
+
+    Map<String, String> entries = readAll(new PropertiesEntryReader(new BufferedReader(new StringReader(properties))));
+
+    assertEquals(3, entries.size());
+    assertEquals("2", entries.get("a"));
+    assertEquals("multi line", entries.get("b"));
+    assertEquals("\u4e2d\\", entries.get("c"));
+  }
+
+  private Map<String, String> readAll(Iterator<Map.Entry<String, String>> reader) {
+    Map<String, String> entries = Maps.newLinkedHashMap();
+    reader.forEachRemaining(entry -> entries.put(entry.getKey(), entry.getValue()));
+    return entries;
+  }
+}
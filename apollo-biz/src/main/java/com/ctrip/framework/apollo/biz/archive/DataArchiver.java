@@ -0,0 +1,254 @@
+package com.ctrip.framework.apollo.biz.archive;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.RateLimiter;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.Audit;
+import com.ctrip.framework.apollo.biz.entity.Commit;
+import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.entity.ReleaseHeader;
+import com.ctrip.framework.apollo.biz.entity.ReleaseHistory;
+import com.ctrip.framework.apollo.biz.metrics.ApolloMetrics;
+import com.ctrip.framework.apollo.biz.repository.AuditRepository;
+import com.ctrip.framework.apollo.biz.repository.CommitRepository;
+import com.ctrip.framework.apollo.biz.repository.ReleaseHistoryRepository;
+import com.ctrip.framework.apollo.biz.repository.ReleaseRepository;
+import com.ctrip.framework.apollo.biz.service.ArchiveService;
+import com.ctrip.framework.apollo.common.entity.BaseEntity;
+import com.ctrip.framework.apollo.core.ConfigConsts;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.ctrip.framework.apollo.tracer.spi.Transaction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import io.micrometer.core.instrument.Counter;
+
+/**
+ * 后台把超过保留期的 Audit、Commit、ReleaseHistory 及 Release 记录移到归档表
+ *
+ * Move the Audit, Commit, ReleaseHistory and Release rows older than the retention window of apollo.archive.retention-days
+ * to the Archive table in the background. Each table is walked by id from a cursor kept across the passes, and a pass
+ * ends at the first row within the retention window. Releases are scanned as headers, and only the archivable ones are
+ * loaded in full. A release is only archived if it is neither one of the latest active releases of its namespace nor
+ * the base of a live delta, and the cursors are reset once a day so that the releases kept before are checked again.
+ * Soft deleted rows are never archived.
+ */
+@Component
+public class DataArchiver {
+  private static final Logger logger = LoggerFactory.getLogger(DataArchiver.class);
+  private static final Joiner STRING_JOINER = Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR);
+  private static final long FULL_SCAN_INTERVAL_IN_MILLI = TimeUnit.DAYS.toMillis(1);
+
+  @Autowired
+  private BizConfig bizConfig;
+  @Autowired
+  private ArchiveService archiveService;
+  @Autowired
+  private AuditRepository auditRepository;
+  @Autowired
+  private CommitRepository commitRepository;
+  @Autowired
+  private ReleaseHistoryRepository releaseHistoryRepository;
+  @Autowired
+  private ReleaseRepository releaseRepository;
+
+  private final ScheduledExecutorService executorService;
+  private final Counter archivedCounter;
+  /**
+   * 各表已扫描的最后一条过期记录的 id，只在归档线程中访问
+   *
+   * the id of the last expired row scanned of each entity, only accessed by the archiving thread
+   */
+  private final Map<String, Long> cursors;
+  private long nextFullScanTime;
+  private RateLimiter rateLimiter;
+
+  public DataArchiver() {
+    executorService = ApolloMetrics.monitorScheduledExecutor(new ScheduledThreadPoolExecutor(1,
+        ApolloThreadFactory.create("DataArchiver", true)), "DataArchiver");
+    archivedCounter = ApolloMetrics.counter("archive.archived");
+    cursors = Maps.newHashMap();
+  }
+
+  @PostConstruct
+  private void initialize() {
+    int interval = bizConfig.archiveIntervalInSecond();
+    executorService.scheduleWithFixedDelay(() -> {
+      try {
+        archive();
+      } catch (Throwable ex) {
+        logger.error("Archiving failed", ex);
+        Tracer.logError(ex);
+      }
+    }, interval, interval, TimeUnit.SECONDS);
+  }
+
+  @PreDestroy
+  private void stop() {
+    executorService.shutdownNow();
+  }
+
+  /**
+   * @return the number of rows archived
+   */
+  long archive() {
+    // 每天从头扫描一次，重新检查之前保留的 Release
+    //rescan from the beginning once a day, so that the releases kept before are checked again
+    long now = System.currentTimeMillis();
+    if (now >= nextFullScanTime) {
+      cursors.clear();
+      nextFullScanTime = now + FULL_SCAN_INTERVAL_IN_MILLI;
+    }
+    return archive(Audit.class, auditRepository::findByIdGreaterThanOrderByIdAsc)
+        + archive(Commit.class, commitRepository::findByIdGreaterThanOrderByIdAsc)
+        + archive(ReleaseHistory.class, releaseHistoryRepository::findByIdGreaterThanOrderByIdAsc)
+        + archive(Release.class, releaseRepository::findReleaseHeadersByIdGreaterThan, ReleaseHeader::getId,
+        ReleaseHeader::getDataChangeCreatedTime, this::findArchivableReleases);
+  }
+
+  private <T extends BaseEntity> long archive(Class<T> entityClass, BiFunction<Long, Pageable, List<T>> scanner) {
+    return archive(entityClass, scanner, BaseEntity::getId, BaseEntity::getDataChangeCreatedTime, rows -> rows);
+  }
+
+  /**
+   * @param scanner the rows with ids greater than the cursor, ordered by id
+   * @param loader  the entities to archive of the expired rows scanned
+   */
+  private <R> long archive(Class<? extends BaseEntity> entityClass, BiFunction<Long, Pageable, List<R>> scanner,
+                           ToLongFunction<R> idGetter, Function<R, Date> createdTimeGetter,
+                           Function<List<R>, List<? extends BaseEntity>> loader) {
+    String entityName = entityClass.getSimpleName();
+    int retentionDays = bizConfig.archiveRetentionInDays(entityName);
+    if (retentionDays <= 0) {
+      return 0;
+    }
+    Date expireTime = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays));
+    Transaction transaction = Tracer.newTransaction("Apollo.DataArchiver", entityName);
+    long start = System.currentTimeMillis();
+    long cursor = cursors.getOrDefault(entityName, 0L);
+    long scanned = 0;
+    long archived = 0;
+    try {
+      boolean completed = false;
+      while (!completed && !Thread.currentThread().isInterrupted()) {
+        List<R> rows = scanner.apply(cursor, PageRequest.of(0, bizConfig.archiveBatch()));
+        // id 随创建时间递增，遇到保留期内的记录即结束本轮
+        //ids grow with the creation time, so the pass ends at the first row within the retention window
+        List<R> expired = Lists.newArrayListWithCapacity(rows.size());
+        for (R row : rows) {
+          if (!createdTimeGetter.apply(row).before(expireTime)) {
+            completed = true;
+            break;
+          }
+          expired.add(row);
+        }
+        if (expired.isEmpty()) {
+          break;
+        }
+        scanned += expired.size();
+
+        List<? extends BaseEntity> archivable = loader.apply(expired);
+        if (!archivable.isEmpty()) {
+          rateLimiter().acquire(archivable.size());
+          int count = archiveService.archive(archivable);
+          if (count == 0) {
+            // 另一个实例正在归档，下一轮重新扫描这一批
+            //another instance is archiving, the batch is scanned again in the next pass
+            break;
+          }
+          archived += count;
+          archivedCounter.increment(count);
+        }
+        cursor = idGetter.applyAsLong(expired.get(expired.size() - 1));
+      }
+      cursors.put(entityName, cursor);
+      long elapsed = Math.max(System.currentTimeMillis() - start, 1);
+      transaction.addData("scanned", scanned);
+      transaction.addData("archived", archived);
+      transaction.addData("rowsPerSecond", archived * 1000 / elapsed);
+      transaction.setStatus(Transaction.SUCCESS);
+      if (archived > 0) {
+        logger.info("Archived {} of {} expired {} rows in {} ms", archived, scanned, entityName, elapsed);
+      }
+      return archived;
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      throw ex;
+    } finally {
+      transaction.complete();
+    }
+  }
+
+  /**
+   * 保留每个 namespace 最近的若干个有效发布以便回滚，以及仍被增量引用的基准发布
+   *
+   * Keep the latest active releases of each namespace so that they could still be rolled back to, and the bases of the
+   * live deltas so that the deltas could still be resolved
+   *
+   * @return the archivable releases loaded in full
+   */
+  List<Release> findArchivableReleases(List<ReleaseHeader> releases) {
+    int keep = bizConfig.archiveReleaseKeepPerNamespace();
+    Map<String, Long> keptSinceIds = Maps.newHashMap();
+    Set<Long> archivableIds = Sets.newHashSet();
+    for (ReleaseHeader release : releases) {
+      long keptSinceId = keptSinceIds.computeIfAbsent(
+          STRING_JOINER.join(release.getAppId(), release.getClusterName(), release.getNamespaceName()), key -> {
+            List<ReleaseHeader> latestReleases = releaseRepository.findActiveReleaseHeaders(release.getAppId(),
+                release.getClusterName(), release.getNamespaceName(), PageRequest.of(0, keep));
+            return latestReleases.size() < keep ? 0L : latestReleases.get(latestReleases.size() - 1).getId();
+          });
+      if (release.getId() < keptSinceId) {
+        archivableIds.add(release.getId());
+      }
+    }
+    // 增量与基准在同一批中归档时以全量保存，不再需要基准；被保留的基准所依赖的基准也需保留
+    //the deltas archived along with their bases are stored in full, while a kept base keeps its own base as well
+    while (!archivableIds.isEmpty()) {
+      Set<Long> baseReleaseIds = releaseRepository.findDeltaBaseReleaseIds(archivableIds, archivableIds);
+      if (baseReleaseIds.isEmpty()) {
+        break;
+      }
+      archivableIds.removeAll(baseReleaseIds);
+    }
+    if (archivableIds.isEmpty()) {
+      return Collections.emptyList();
+    }
+    return releaseRepository.findByIdIn(archivableIds);
+  }
+
+  private RateLimiter rateLimiter() {
+    int rowsPerSecond = bizConfig.archiveRowsPerSecond();
+    if (rateLimiter == null) {
+      rateLimiter = RateLimiter.create(rowsPerSecond);
+    } else if (rateLimiter.getRate() != rowsPerSecond) {
+      rateLimiter.setRate(rowsPerSecond);
+    }
+    return rateLimiter;
+  }
+}
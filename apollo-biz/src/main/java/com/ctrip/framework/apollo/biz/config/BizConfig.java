@@ -136,10 +136,187 @@ public class BizConfig extends RefreshableConfig {
     return checkInt(interval, 10, Integer.MAX_VALUE, DEFAULT_RELEASE_MESSAGE_NOTIFICATION_BATCH_INTERVAL_IN_MILLI);
   }
 
+  /**
+   * a notification is sent at once, and the following ones of the same key within the interval are collapsed into
+   * one sent when the interval ends, 0 means disabled
+   */
+  public int releaseMessageNotificationDebounceIntervalInMilli() {
+    int interval = getIntProperty("apollo.release-message.notification.debounce.interval", 0);
+    return checkInt(interval, 0, Integer.MAX_VALUE, 0);
+  }
+
+  /**
+   * max long polling requests parked on one config service instance, 0 means unlimited
+   */
+  public int longPollingMaxParkedRequests() {
+    int max = getIntProperty("apollo.long-polling.max-parked-requests", 0);
+    return checkInt(max, 0, Integer.MAX_VALUE, 0);
+  }
+
+  /**
+   * how long to keep serving after marking the instance down in eureka when shutting down, so that the meta services
+   * and the clients see it before the parked long polling requests are completed. -1 means deriving it from the
+   * eureka settings, which is one registry fetch interval plus the response cache interval of eureka server.
+   */
+  public int longPollingDeregisterDelayInMilli() {
+    int delay = getIntProperty("apollo.long-polling.deregister.delay", -1);
+    return checkInt(delay, -1, 300000, -1);
+  }
+
+  /**
+   * the window to spread the completion of parked long polling requests over when shutting down
+   */
+  public int longPollingDrainWindowInMilli() {
+    int window = getIntProperty("apollo.long-polling.drain.window", 5000);
+    return checkInt(window, 0, 60000, 5000);
+  }
+
+  /**
+   * max config queries per second for one app on one config service instance, 0 means unlimited
+   */
+  public int configQueryRateLimitPerAppId() {
+    int qps = getIntProperty("apollo.config-query.rate-limit.app-id.qps", 0);
+    return checkInt(qps, 0, Integer.MAX_VALUE, 0);
+  }
+
+  /**
+   * max config queries per second for one client ip on one config service instance, 0 means unlimited
+   */
+  public int configQueryRateLimitPerIp() {
+    int qps = getIntProperty("apollo.config-query.rate-limit.ip.qps", 0);
+    return checkInt(qps, 0, Integer.MAX_VALUE, 0);
+  }
+
   public boolean isConfigServiceCacheEnabled() {
     return getBooleanProperty("config-service.cache.enabled", false);
   }
 
+  /**
+   * how many config service instances are preferred by the clients of an app, 0 means all of them
+   */
+  public int configServiceAffinityReplicas() {
+    int replicas = getIntProperty("config-service.affinity.replicas", 0);
+    return checkInt(replicas, 0, Integer.MAX_VALUE, 0);
+  }
+
+  /**
+   * the preferred instances of an app are widened to at least 1 / factor of all the config service instances, so
+   * that an app puts at most factor times its fair share of load on one instance, 0 means not widened
+   */
+  public int configServiceAffinityMaxLoadFactor() {
+    int factor = getIntProperty("config-service.affinity.max-load-factor", 4);
+    return checkInt(factor, 0, Integer.MAX_VALUE, 4);
+  }
+
+  /**
+   * the target latency from publishing a release to the clients applying it
+   */
+  public int releasePropagationSloInMilli() {
+    int slo = getIntProperty("apollo.release-propagation.slo", 5000);
+    return checkInt(slo, 1, Integer.MAX_VALUE, 5000);
+  }
+
+  /**
+   * the interval between two passes of compacting the superseded release messages
+   */
+  public int releaseMessageCompactionIntervalInSecond() {
+    int interval = getIntProperty("apollo.release-message.compaction.interval", 60);
+    return checkInt(interval, 1, Integer.MAX_VALUE, 60);
+  }
+
+  /**
+   * how many release messages are scanned in one compaction batch
+   */
+  public int releaseMessageCompactionBatch() {
+    int batch = getIntProperty("apollo.release-message.compaction.batch", 1000);
+    return checkInt(batch, 1, 10000, 1000);
+  }
+
+  /**
+   * max release messages deleted per second by the compaction on one instance
+   */
+  public int releaseMessageCompactionRowsPerSecond() {
+    int rows = getIntProperty("apollo.release-message.compaction.rows-per-second", 1000);
+    return checkInt(rows, 1, Integer.MAX_VALUE, 1000);
+  }
+
+  /**
+   * the release configurations not shorter than it are stored compressed, 0 means disabled. Only enable it after all
+   * the config services and admin services are able to decode the compressed releases.
+   */
+  public int releaseConfigurationsCompressionMinSize() {
+    int minSize = getIntProperty("apollo.release.configurations.compression.min-size", 0);
+    return checkInt(minSize, 0, Integer.MAX_VALUE, 0);
+  }
+
+  /**
+   * releases are stored as deltas against the previous one with a full checkpoint every so many releases, 0 or 1
+   * means every release is stored in full. Only enable it after all the config services and admin services are able
+   * to resolve the deltas.
+   */
+  public int releaseDeltaCheckpointInterval() {
+    int interval = getIntProperty("apollo.release.delta.checkpoint-interval", 0);
+    return checkInt(interval, 0, 1000, 0);
+  }
+
+  /**
+   * a master release is built from the previous release plus the keys changed by at most so many commits since it,
+   * otherwise from all the items of the namespace. 0, the default, means always building from the items, since the
+   * changes are found by the times written by the clocks of the admin services.
+   */
+  public int releaseIncrementalBuildMaxCommits() {
+    int maxCommits = getIntProperty("apollo.release.incremental-build.max-commits", 0);
+    return checkInt(maxCommits, 0, 10000, 0);
+  }
+
+  /**
+   * rows of the entity created more than so many days ago are moved to the Archive table, 0 means never. The default
+   * of all the entities is apollo.archive.retention-days, which is overridden by
+   * apollo.archive.retention-days.{entityName}, e.g. apollo.archive.retention-days.Release
+   */
+  public int archiveRetentionInDays(String entityName) {
+    int defaultDays = getIntProperty("apollo.archive.retention-days", 0);
+    int days = getIntProperty("apollo.archive.retention-days." + entityName, defaultDays);
+    return checkInt(days, 0, Integer.MAX_VALUE, 0);
+  }
+
+  public int archiveIntervalInSecond() {
+    int interval = getIntProperty("apollo.archive.interval", 3600);
+    return checkInt(interval, 1, Integer.MAX_VALUE, 3600);
+  }
+
+  /**
+   * how many rows are scanned in one archive batch
+   */
+  public int archiveBatch() {
+    int batch = getIntProperty("apollo.archive.batch", 500);
+    return checkInt(batch, 1, 5000, 500);
+  }
+
+  /**
+   * max rows archived per second on one instance
+   */
+  public int archiveRowsPerSecond() {
+    int rows = getIntProperty("apollo.archive.rows-per-second", 500);
+    return checkInt(rows, 1, Integer.MAX_VALUE, 500);
+  }
+
+  /**
+   * the latest active releases of a namespace are never archived, so that they could still be rolled back to
+   */
+  public int archiveReleaseKeepPerNamespace() {
+    int keep = getIntProperty("apollo.archive.release.keep-per-namespace", 10);
+    return checkInt(keep, 2, Integer.MAX_VALUE, 10);
+  }
+
+  /**
+   * how many items are diffed and applied in one transaction of a bulk import
+   */
+  public int itemImportBatch() {
+    int batch = getIntProperty("apollo.item-import.batch", 500);
+    return checkInt(batch, 1, 5000, 500);
+  }
+
   int checkInt(int value, int min, int max, int defaultValue) {
     if (value >= min && value <= max) {
       return value;
@@ -0,0 +1,93 @@
+package com.ctrip.framework.apollo.biz.datasource;
+
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.Maps;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+/**
+ * 配置了 apollo.datasource.replica.urls 时，把 ConfigDB 的数据源包装为 {@link ReplicaRoutingDataSource}
+ *
+ * Wrap the ConfigDB data source with a {@link ReplicaRoutingDataSource} when apollo.datasource.replica.urls is
+ * configured. The replicas share the pool settings and credentials of the primary unless
+ * apollo.datasource.replica.username and apollo.datasource.replica.password are configured. These are read from the
+ * environment rather than ServerConfig, which is itself loaded through the data source.
+ */
+@Configuration
+@ConditionalOnProperty(ReplicaDataSourceConfiguration.REPLICA_URLS)
+public class ReplicaDataSourceConfiguration {
+  static final String REPLICA_URLS = "apollo.datasource.replica.urls";
+  private static final String REPLICA_USERNAME = "apollo.datasource.replica.username";
+  private static final String REPLICA_PASSWORD = "apollo.datasource.replica.password";
+  private static final String REPLICA_MAX_LAG = "apollo.datasource.replica.max-lag";
+  private static final String REPLICA_LAG_CHECK_INTERVAL = "apollo.datasource.replica.lag-check-interval";
+  private static final long DEFAULT_REPLICA_LAG_CHECK_INTERVAL_IN_MILLI = 1000;
+  private static final Splitter URL_SPLITTER = Splitter.on(',').omitEmptyStrings().trimResults();
+
+  @Bean
+  public static BeanPostProcessor replicaRoutingDataSourcePostProcessor(Environment environment) {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource) || bean instanceof ReplicaRoutingDataSource) {
+          return bean;
+        }
+        return createRoutingDataSource((DataSource) bean, environment);
+      }
+    };
+  }
+
+  private static ReplicaRoutingDataSource createRoutingDataSource(DataSource primary, Environment environment) {
+    List<String> urls = URL_SPLITTER.splitToList(environment.getProperty(REPLICA_URLS, ""));
+    Map<String, DataSource> replicas = Maps.newLinkedHashMap();
+    for (int i = 0; i < urls.size(); i++) {
+      String name = "replica-" + i;
+      replicas.put(name, createReplica(primary, name, urls.get(i), environment));
+    }
+    ReplicaRoutingDataSource routingDataSource = new ReplicaRoutingDataSource(primary, replicas,
+        environment.getProperty(REPLICA_MAX_LAG, Long.class, 0L));
+    routingDataSource.start(environment.getProperty(REPLICA_LAG_CHECK_INTERVAL, Long.class,
+        DEFAULT_REPLICA_LAG_CHECK_INTERVAL_IN_MILLI));
+    return routingDataSource;
+  }
+
+  private static DataSource createReplica(DataSource primary, String name, String url, Environment environment) {
+    String username = environment.getProperty(REPLICA_USERNAME);
+    String password = environment.getProperty(REPLICA_PASSWORD);
+    if (!(primary instanceof HikariDataSource)) {
+      return DataSourceBuilder.create().url(url).username(username).password(password).build();
+    }
+    HikariDataSource hikariPrimary = (HikariDataSource) primary;
+    HikariConfig config = new HikariConfig();
+    config.setPoolName(name);
+    config.setJdbcUrl(url);
+    config.setReadOnly(true);
+    if (hikariPrimary.getDriverClassName() != null) {
+      config.setDriverClassName(hikariPrimary.getDriverClassName());
+    }
+    config.setUsername(Strings.isNullOrEmpty(username) ? hikariPrimary.getUsername() : username);
+    config.setPassword(Strings.isNullOrEmpty(password) ? hikariPrimary.getPassword() : password);
+    config.setConnectionInitSql(hikariPrimary.getConnectionInitSql());
+    config.setMaximumPoolSize(hikariPrimary.getMaximumPoolSize());
+    config.setMinimumIdle(hikariPrimary.getMinimumIdle());
+    config.setConnectionTimeout(hikariPrimary.getConnectionTimeout());
+    config.setIdleTimeout(hikariPrimary.getIdleTimeout());
+    config.setMaxLifetime(hikariPrimary.getMaxLifetime());
+    config.setDataSourceProperties(hikariPrimary.getDataSourceProperties());
+    return new HikariDataSource(config);
+  }
+}
@@ -0,0 +1,78 @@
+package com.ctrip.framework.apollo.biz.datasource;
+
+import com.google.common.collect.Maps;
+
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 标记可以由从库承担的只读查询，未标记的查询及事务内的查询始终走主库
+ *
+ * Mark the read-only queries that could be served by the replicas of {@link ReplicaRoutingDataSource}. Queries not
+ * marked, and those within a transaction, always go to the primary. The marked reads don't use the entity manager
+ * bound to the request, so each of them is routed on its own. It does nothing if no replica is configured.
+ */
+public final class ReplicaReads {
+  private static final ThreadLocal<Long> REQUIRED_MESSAGE_ID = new ThreadLocal<>();
+
+  private ReplicaReads() {
+  }
+
+  /**
+   * Read from a replica whose lag behind the primary is within apollo.datasource.replica.max-lag
+   */
+  public static <T> T read(Supplier<T> reader) {
+    return read(0, reader);
+  }
+
+  /**
+   * Read from a replica which has applied the release message, so the release it announces is not stale
+   *
+   * @param requiredMessageId the id of the release message, the lag bound applies if it is not positive
+   */
+  public static <T> T read(long requiredMessageId, Supplier<T> reader) {
+    // 事务中的连接已经绑定到主库
+    //the connection of a transaction is already bound to the primary
+    if (TransactionSynchronizationManager.isActualTransactionActive()) {
+      return reader.get();
+    }
+    Long previous = REQUIRED_MESSAGE_ID.get();
+    // 请求绑定的 EntityManager 会一直持有首次获取的连接，标记的查询需使用各自的 EntityManager
+    //the entity manager bound to a request by OpenEntityManagerInView holds the first connection it gets until the
+    //request ends, so it is unbound for the marked read, whose queries get their own entity managers and connections
+    Map<Object, Object> entityManagerHolders = previous == null ? unbindEntityManagers() : Collections.emptyMap();
+    REQUIRED_MESSAGE_ID.set(previous == null ? requiredMessageId : Math.max(previous, requiredMessageId));
+    try {
+      return reader.get();
+    } finally {
+      if (previous == null) {
+        REQUIRED_MESSAGE_ID.remove();
+      } else {
+        REQUIRED_MESSAGE_ID.set(previous);
+      }
+      entityManagerHolders.forEach(TransactionSynchronizationManager::bindResource);
+    }
+  }
+
+  private static Map<Object, Object> unbindEntityManagers() {
+    Map<Object, Object> entityManagerHolders = Maps.newHashMap();
+    TransactionSynchronizationManager.getResourceMap().forEach((key, value) -> {
+      if (value instanceof EntityManagerHolder) {
+        entityManagerHolders.put(key, value);
+      }
+    });
+    entityManagerHolders.keySet().forEach(TransactionSynchronizationManager::unbindResource);
+    return entityManagerHolders;
+  }
+
+  /**
+   * @return the release message id required by the current read, null if it should go to the primary
+   */
+  static Long requiredMessageId() {
+    return REQUIRED_MESSAGE_ID.get();
+  }
+}
@@ -0,0 +1,165 @@
+package com.ctrip.framework.apollo.biz.datasource;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import com.ctrip.framework.apollo.biz.metrics.ApolloMetrics;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
+import com.ctrip.framework.apollo.tracer.Tracer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import io.micrometer.core.instrument.Counter;
+
+/**
+ * 把 {@link ReplicaReads} 标记的只读查询路由到从库，从库未同步到所需的 ReleaseMessage 时回退到主库
+ *
+ * Route the reads marked by {@link ReplicaReads} to the replicas in turn, and everything else to the primary. The
+ * largest ReleaseMessage id of the primary and each replica is checked periodically. As the release is committed before
+ * its message is sent, a replica which has applied the message has applied the release as well, so a read falls back
+ * to the primary when no replica has applied the message it requires yet.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+  private static final Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+  static final String PRIMARY = "primary";
+  private static final String MAX_MESSAGE_ID_SQL = "select max(`Id`) from `ReleaseMessage`";
+
+  private final DataSource primary;
+  private final List<Replica> replicas;
+  private final long maxLag;
+  private final AtomicInteger nextReplica;
+  private final ScheduledExecutorService executorService;
+  private final Counter replicaReads;
+  private final Counter primaryFallbacks;
+  private volatile long primaryMessageId;
+
+  /**
+   * @param replicas the replicas keyed by name
+   * @param maxLag   the number of release messages a replica could lag behind the primary for the reads not requiring
+   *                 a specific message
+   */
+  public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, long maxLag) {
+    this.primary = primary;
+    this.replicas = Lists.newArrayList();
+    this.maxLag = maxLag;
+    this.nextReplica = new AtomicInteger();
+    Map<Object, Object> targetDataSources = Maps.newHashMap();
+    targetDataSources.put(PRIMARY, primary);
+    replicas.forEach((name, dataSource) -> {
+      Replica replica = new Replica(name, dataSource);
+      this.replicas.add(replica);
+      targetDataSources.put(name, dataSource);
+      ApolloMetrics.gauge("datasource.replica.lag", replica, r -> Math.max(0, primaryMessageId - r.appliedMessageId),
+          "replica", name);
+    });
+    setTargetDataSources(targetDataSources);
+    setDefaultTargetDataSource(primary);
+    setLenientFallback(false);
+    afterPropertiesSet();
+
+    executorService = Executors.newSingleThreadScheduledExecutor(ApolloThreadFactory
+        .create("ReplicaRoutingDataSource", true));
+    replicaReads = ApolloMetrics.counter("datasource.reads", "target", "replica");
+    primaryFallbacks = ApolloMetrics.counter("datasource.reads", "target", "primary");
+  }
+
+  public void start(long lagCheckIntervalInMilli) {
+    checkLag();
+    executorService.scheduleWithFixedDelay(this::checkLag, lagCheckIntervalInMilli, lagCheckIntervalInMilli,
+        TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    Long requiredMessageId = ReplicaReads.requiredMessageId();
+    if (requiredMessageId == null) {
+      return PRIMARY;
+    }
+    long minAppliedMessageId = requiredMessageId > 0 ? requiredMessageId : primaryMessageId - maxLag;
+    for (int i = 0; i < replicas.size(); i++) {
+      Replica replica = replicas.get(Math.floorMod(nextReplica.getAndIncrement(), replicas.size()));
+      if (replica.healthy && replica.appliedMessageId >= minAppliedMessageId) {
+        replicaReads.increment();
+        return replica.name;
+      }
+    }
+    primaryFallbacks.increment();
+    return PRIMARY;
+  }
+
+  /**
+   * 先查主库再查从库，从库的进度只会比检查时更新
+   *
+   * The primary is checked before the replicas, and a replica could only be ahead of what is checked
+   */
+  void checkLag() {
+    try {
+      primaryMessageId = loadLargestMessageId(primary);
+    } catch (Throwable ex) {
+      logger.warn("Failed to load the largest release message id of the primary", ex);
+      Tracer.logError(ex);
+      return;
+    }
+    for (Replica replica : replicas) {
+      try {
+        replica.appliedMessageId = loadLargestMessageId(replica.dataSource);
+        replica.healthy = true;
+      } catch (Throwable ex) {
+        if (replica.healthy) {
+          logger.warn("Failed to load the largest release message id of {}, stop reading from it", replica.name, ex);
+          Tracer.logError(ex);
+        }
+        replica.healthy = false;
+      }
+    }
+  }
+
+  private long loadLargestMessageId(DataSource dataSource) {
+    Long messageId = new JdbcTemplate(dataSource).queryForObject(MAX_MESSAGE_ID_SQL, Long.class);
+    return messageId == null ? 0 : messageId;
+  }
+
+  @Override
+  public void close() throws Exception {
+    executorService.shutdownNow();
+    for (Replica replica : replicas) {
+      closeQuietly(replica.dataSource);
+    }
+    closeQuietly(primary);
+  }
+
+  private void closeQuietly(DataSource dataSource) {
+    if (!(dataSource instanceof AutoCloseable)) {
+      return;
+    }
+    try {
+      ((AutoCloseable) dataSource).close();
+    } catch (Throwable ex) {
+      logger.warn("Failed to close the data source", ex);
+    }
+  }
+
+  private static class Replica {
+    private final String name;
+    private final DataSource dataSource;
+    private volatile long appliedMessageId;
+    private volatile boolean healthy;
+
+    private Replica(String name, DataSource dataSource) {
+      this.name = name;
+      this.dataSource = dataSource;
+    }
+  }
+}
@@ -0,0 +1,153 @@
+package com.ctrip.framework.apollo.biz.entity;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.PrePersist;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+/**
+ * 归档的 Audit、Commit、ReleaseHistory 及 Release 记录
+ *
+ * A row moved out of the Audit, Commit, ReleaseHistory or Release table, whose content is the json of the entity
+ * encoded by ReleaseConfigurationsCodec. The entity id is kept, so the archived rows could be paged by id together
+ * with the live ones.
+ */
+@Entity
+@Table(name = "Archive", uniqueConstraints = @UniqueConstraint(columnNames = {"EntityName", "EntityId"}))
+public class Archive {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @Column(name = "Id")
+  private long id;
+
+  @Column(name = "EntityName", nullable = false)
+  private String entityName;
+
+  @Column(name = "EntityId", nullable = false)
+  private long entityId;
+
+  @Column(name = "AppId")
+  private String appId;
+
+  @Column(name = "ClusterName")
+  private String clusterName;
+
+  @Column(name = "NamespaceName")
+  private String namespaceName;
+
+  @Column(name = "Content", nullable = false)
+  @Lob
+  private String content;
+
+  @Column(name = "DataChange_CreatedBy")
+  private String dataChangeCreatedBy;
+
+  @Column(name = "DataChange_CreatedTime")
+  private Date dataChangeCreatedTime;
+
+  @Column(name = "DataChange_ArchivedTime")
+  private Date dataChangeArchivedTime;
+
+  @PrePersist
+  protected void prePersist() {
+    if (this.dataChangeArchivedTime == null) {
+      dataChangeArchivedTime = new Date();
+    }
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  public void setId(long id) {
+    this.id = id;
+  }
+
+  public String getEntityName() {
+    return entityName;
+  }
+
+  public void setEntityName(String entityName) {
+    this.entityName = entityName;
+  }
+
+  public long getEntityId() {
+    return entityId;
+  }
+
+  public void setEntityId(long entityId) {
+    this.entityId = entityId;
+  }
+
+  public String getAppId() {
+    return appId;
+  }
+
+  public void setAppId(String appId) {
+    this.appId = appId;
+  }
+
+  public String getClusterName() {
+    return clusterName;
+  }
+
+  public void setClusterName(String clusterName) {
+    this.clusterName = clusterName;
+  }
+
+  public String getNamespaceName() {
+    return namespaceName;
+  }
+
+  public void setNamespaceName(String namespaceName) {
+    this.namespaceName = namespaceName;
+  }
+
+  public String getContent() {
+    return content;
+  }
+
+  public void setContent(String content) {
+    this.content = content;
+  }
+
+  public String getDataChangeCreatedBy() {
+    return dataChangeCreatedBy;
+  }
+
+  public void setDataChangeCreatedBy(String dataChangeCreatedBy) {
+    this.dataChangeCreatedBy = dataChangeCreatedBy;
+  }
+
+  public Date getDataChangeCreatedTime() {
+    return dataChangeCreatedTime;
+  }
+
+  public void setDataChangeCreatedTime(Date dataChangeCreatedTime) {
+    this.dataChangeCreatedTime = dataChangeCreatedTime;
+  }
+
+  public Date getDataChangeArchivedTime() {
+    return dataChangeArchivedTime;
+  }
+
+  public void setDataChangeArchivedTime(Date dataChangeArchivedTime) {
+    this.dataChangeArchivedTime = dataChangeArchivedTime;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this).omitNullValues().add("id", id).add("entityName", entityName)
+        .add("entityId", entityId).add("appId", appId).add("clusterName", clusterName)
+        .add("namespaceName", namespaceName).add("dataChangeCreatedTime", dataChangeCreatedTime).toString();
+  }
+}
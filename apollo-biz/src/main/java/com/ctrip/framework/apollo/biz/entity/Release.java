@@ -1,5 +1,6 @@
 package com.ctrip.framework.apollo.biz.entity;
 
+import com.ctrip.framework.apollo.biz.utils.ReleaseConfigurationsCodec;
 import com.ctrip.framework.apollo.common.entity.BaseEntity;
 
 import org.hibernate.annotations.SQLDelete;
@@ -9,6 +10,7 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Lob;
 import javax.persistence.Table;
+import javax.persistence.Transient;
 
 /**
  * @author Jason Song(song_s@ctrip.com)
@@ -37,6 +39,22 @@ public class Release extends BaseEntity {
   @Lob
   private String configurations;
 
+  /**
+   * 解码后的 configurations，随 Release 一起缓存
+   *
+   * the decoded configurations, decoded lazily and cached along with the release
+   */
+  @Transient
+  private volatile String decodedConfigurations;
+
+  /**
+   * 增量发布的基准 Release，全量发布为 0
+   *
+   * the id of the base release if the configurations are stored as a delta, 0 otherwise
+   */
+  @Column(name = "DeltaBaseReleaseId", nullable = false)
+  private long deltaBaseReleaseId;
+
   @Column(name = "Comment", nullable = false)
   private String comment;
 
@@ -60,7 +78,12 @@ public class Release extends BaseEntity {
   }
 
   public String getConfigurations() {
-    return configurations;
+    String decoded = decodedConfigurations;
+    if (decoded == null && configurations != null) {
+      decoded = ReleaseConfigurationsCodec.decode(configurations);
+      decodedConfigurations = decoded;
+    }
+    return decoded;
   }
 
   public String getNamespaceName() {
@@ -89,6 +112,42 @@ public class Release extends BaseEntity {
 
   public void setConfigurations(String configurations) {
     this.configurations = configurations;
+    this.decodedConfigurations = null;
+  }
+
+  /**
+   * Compress the stored configurations if they are not shorter than minSize, the getter still returns the json
+   */
+  public void compressConfigurations(int minSize) {
+    storeConfigurations(ReleaseConfigurationsCodec.encode(getConfigurations(), minSize));
+  }
+
+  /**
+   * Replace the stored form of the configurations, the getter still returns the current json
+   */
+  public void storeConfigurations(String stored) {
+    String decoded = getConfigurations();
+    this.configurations = stored;
+    this.decodedConfigurations = decoded;
+  }
+
+  /**
+   * Set the configurations reconstructed from the delta, the stored form is untouched
+   */
+  public void resolveConfigurations(String resolved) {
+    this.decodedConfigurations = resolved;
+  }
+
+  public String getStoredConfigurations() {
+    return configurations;
+  }
+
+  public long getDeltaBaseReleaseId() {
+    return deltaBaseReleaseId;
+  }
+
+  public void setDeltaBaseReleaseId(long deltaBaseReleaseId) {
+    this.deltaBaseReleaseId = deltaBaseReleaseId;
   }
 
   public void setNamespaceName(String namespaceName) {
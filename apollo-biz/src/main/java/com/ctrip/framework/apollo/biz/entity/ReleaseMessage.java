@@ -59,6 +59,17 @@ public class ReleaseMessage {
     this.message = message;
   }
 
+  /**
+   * The message is never updated once sent, so this is also the publish time
+   */
+  public Date getDataChangeLastModifiedTime() {
+    return dataChangeLastModifiedTime;
+  }
+
+  public void setDataChangeLastModifiedTime(Date dataChangeLastModifiedTime) {
+    this.dataChangeLastModifiedTime = dataChangeLastModifiedTime;
+  }
+
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(this)
@@ -14,6 +14,7 @@ import com.ctrip.framework.apollo.biz.entity.GrayReleaseRule;
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
 import com.ctrip.framework.apollo.biz.message.ReleaseMessageListener;
 import com.ctrip.framework.apollo.biz.message.Topics;
+import com.ctrip.framework.apollo.biz.metrics.ApolloMetrics;
 import com.ctrip.framework.apollo.biz.repository.GrayReleaseRuleRepository;
 import com.ctrip.framework.apollo.common.constants.NamespaceBranchStatus;
 import com.ctrip.framework.apollo.common.dto.GrayReleaseRuleItemDTO;
@@ -31,8 +32,8 @@ import org.springframework.util.CollectionUtils;
 
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -63,8 +64,8 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
     loadVersion = new AtomicLong();
     grayReleaseRuleCache = Multimaps.synchronizedSetMultimap(HashMultimap.create());
     reversedGrayReleaseRuleCache = Multimaps.synchronizedSetMultimap(HashMultimap.create());
-    executorService = Executors.newScheduledThreadPool(1, ApolloThreadFactory
-        .create("GrayReleaseRulesHolder", true));
+    executorService = ApolloMetrics.monitorScheduledExecutor(new ScheduledThreadPoolExecutor(1,
+        ApolloThreadFactory.create("GrayReleaseRulesHolder", true)), "GrayReleaseRulesHolder");
   }
 
   @Override
@@ -0,0 +1,164 @@
+package com.ctrip.framework.apollo.biz.message;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.metrics.ApolloMetrics;
+import com.ctrip.framework.apollo.biz.repository.ReleaseMessageRepository;
+import com.ctrip.framework.apollo.biz.service.ReleaseMessageService;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.ctrip.framework.apollo.tracer.spi.Transaction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import io.micrometer.core.instrument.Counter;
+
+/**
+ * 后台压缩 ReleaseMessage 表，每条消息内容只保留 id 最大的一条记录
+ *
+ * Compact the ReleaseMessage table in the background, only the latest row of each message is kept. The cursor only
+ * moves forward: each pass walks the messages sent since the previous pass in ranged batches, and deletes the older
+ * rows of the same contents. The deletion is rate limited so that the database and the ReleaseMessageScanner's id
+ * range queries are not disturbed.
+ *
+ * Only run by the admin services, see AdminServiceAutoConfiguration. The cursor is kept in memory, so the first pass
+ * after a restart walks the whole table once.
+ */
+public class ReleaseMessageCompactor {
+  private static final Logger logger = LoggerFactory.getLogger(ReleaseMessageCompactor.class);
+
+  @Autowired
+  private BizConfig bizConfig;
+  @Autowired
+  private ReleaseMessageRepository releaseMessageRepository;
+  @Autowired
+  private ReleaseMessageService releaseMessageService;
+
+  private final ScheduledExecutorService executorService;
+  private final Counter compactedCounter;
+  /**
+   * 已压缩到的 ReleaseMessage 的 id，中断后从此处继续
+   */
+  private volatile long cursor;
+  private RateLimiter rateLimiter;
+
+  public ReleaseMessageCompactor() {
+    executorService = ApolloMetrics.monitorScheduledExecutor(new ScheduledThreadPoolExecutor(1,
+        ApolloThreadFactory.create("ReleaseMessageCompactor", true)), "ReleaseMessageCompactor");
+    compactedCounter = ApolloMetrics.counter("release.message.compacted");
+    ApolloMetrics.gauge("release.message.compactor.cursor", this, compactor -> compactor.cursor);
+  }
+
+  @PostConstruct
+  private void initialize() {
+    int interval = bizConfig.releaseMessageCompactionIntervalInSecond();
+    executorService.scheduleWithFixedDelay(() -> {
+      try {
+        compact();
+      } catch (Throwable ex) {
+        logger.error("Compacting release messages failed", ex);
+        Tracer.logError(ex);
+      }
+    }, interval, interval, TimeUnit.SECONDS);
+  }
+
+  @PreDestroy
+  private void stop() {
+    executorService.shutdownNow();
+  }
+
+  /**
+   * 压缩一轮，范围是从 cursor 到本轮开始时最大的 id，即上一轮之后发送的消息
+   *
+   * @return the number of release messages deleted
+   */
+  long compact() {
+    ReleaseMessage latest = releaseMessageRepository.findTopByOrderByIdDesc();
+    if (latest == null) {
+      return 0;
+    }
+    long upperBound = latest.getId();
+    Transaction transaction = Tracer.newTransaction("Apollo.ReleaseMessageCompactor", "compact");
+    long start = System.currentTimeMillis();
+    long scanned = 0;
+    long deleted = 0;
+    try {
+      while (cursor < upperBound && !Thread.currentThread().isInterrupted()) {
+        List<ReleaseMessage> messages = releaseMessageRepository.findByIdGreaterThanAndIdLessThanEqualOrderByIdAsc(
+            cursor, upperBound, PageRequest.of(0, bizConfig.releaseMessageCompactionBatch()));
+        if (messages.isEmpty()) {
+          cursor = upperBound;
+          break;
+        }
+        deleted += compactBatch(messages);
+        scanned += messages.size();
+        cursor = messages.get(messages.size() - 1).getId();
+      }
+      long elapsed = Math.max(System.currentTimeMillis() - start, 1);
+      long rowsPerSecond = deleted * 1000 / elapsed;
+      transaction.addData("scanned", scanned);
+      transaction.addData("deleted", deleted);
+      transaction.addData("rowsPerSecond", rowsPerSecond);
+      transaction.setStatus(Transaction.SUCCESS);
+      if (deleted > 0) {
+        logger.info("Compacted {} of {} release messages in {} ms, {} rows/s", deleted, scanned, elapsed,
+            rowsPerSecond);
+      }
+      return deleted;
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      throw ex;
+    } finally {
+      transaction.complete();
+    }
+  }
+
+  private int compactBatch(List<ReleaseMessage> messages) {
+    Map<String, Long> latestIds = messages.stream()
+        .collect(Collectors.toMap(ReleaseMessage::getMessage, ReleaseMessage::getId, Math::max));
+    long maxId = messages.get(messages.size() - 1).getId();
+
+    // 删除被本批次中同内容的新消息覆盖的老消息，包括之前批次中的
+    //the old messages superseded by a newer one of the same content in this batch, including the earlier ones
+    List<Long> toDelete = releaseMessageRepository.findByMessageInAndIdLessThan(latestIds.keySet(), maxId).stream()
+        .filter(message -> {
+          Long latestId = latestIds.get(message.getMessage());
+          return latestId != null && message.getId() < latestId;
+        })
+        .map(ReleaseMessage::getId)
+        .collect(Collectors.toList());
+    if (toDelete.isEmpty()) {
+      return 0;
+    }
+
+    rateLimiter().acquire(toDelete.size());
+    int deleted = releaseMessageService.batchDelete(toDelete);
+    compactedCounter.increment(deleted);
+    return deleted;
+  }
+
+  private RateLimiter rateLimiter() {
+    int rowsPerSecond = bizConfig.releaseMessageCompactionRowsPerSecond();
+    if (rateLimiter == null) {
+      rateLimiter = RateLimiter.create(rowsPerSecond);
+    } else if (rateLimiter.getRate() != rowsPerSecond) {
+      rateLimiter.setRate(rowsPerSecond);
+    }
+    return rateLimiter;
+  }
+}
@@ -1,8 +1,8 @@
 package com.ctrip.framework.apollo.biz.message;
 
 import java.util.List;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
@@ -12,22 +12,32 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.util.CollectionUtils;
 
 import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.datasource.ReplicaReads;
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.message.ReleasePropagationTracker.Hop;
+import com.ctrip.framework.apollo.biz.metrics.ApolloMetrics;
 import com.ctrip.framework.apollo.biz.repository.ReleaseMessageRepository;
 import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.tracer.Tracer;
 import com.ctrip.framework.apollo.tracer.spi.Transaction;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.Lists;
 
+import io.micrometer.core.instrument.Timer;
+
 /**
  * @author Jason Song(song_s@ctrip.com)
  */
 public class ReleaseMessageScanner implements InitializingBean {
   private static final Logger logger = LoggerFactory.getLogger(ReleaseMessageScanner.class);
+  private static final long LAG_EXPIRE_IN_SECONDS = 60;
   @Autowired
   private BizConfig bizConfig;
   @Autowired
   private ReleaseMessageRepository releaseMessageRepository;
+  @Autowired
+  private ReleasePropagationTracker releasePropagationTracker;
   /**
    *   从 DB 中扫描 ReleaseMessage 表的频率，单位毫秒
    */
@@ -43,14 +53,23 @@ public class ReleaseMessageScanner implements InitializingBean {
   /**
    *   最后扫描到的 ReleaseMessage 的id
    */
-  private long maxIdScanned;
+  private volatile long maxIdScanned;
+  private final Timer scanTimer;
+  /**
+   * 落后的条数，缓存一段时间，避免每次抓取指标都查询 DB
+   */
+  private final Supplier<Double> lag;
 
   public ReleaseMessageScanner() {
     // 创建监听器数组
     listeners = Lists.newCopyOnWriteArrayList();
     // 创建 ScheduledExecutorService 对象
-    executorService = Executors.newScheduledThreadPool(1, ApolloThreadFactory
-        .create("ReleaseMessageScanner", true));
+    executorService = ApolloMetrics.monitorScheduledExecutor(new ScheduledThreadPoolExecutor(1,
+        ApolloThreadFactory.create("ReleaseMessageScanner", true)), "ReleaseMessageScanner");
+    scanTimer = ApolloMetrics.timer("release.message.scan");
+    ApolloMetrics.gauge("release.message.scanner.max.id.scanned", this, scanner -> scanner.maxIdScanned);
+    lag = Suppliers.memoizeWithExpiration(this::loadLag, LAG_EXPIRE_IN_SECONDS, TimeUnit.SECONDS);
+    ApolloMetrics.gauge("release.message.scanner.lag", this, scanner -> scanner.lag.get());
   }
 
   @Override
@@ -64,7 +83,7 @@ public class ReleaseMessageScanner implements InitializingBean {
       Transaction transaction = Tracer.newTransaction("Apollo.ReleaseMessageScanner", "scanMessage");
       try {
         // 从 DB 中，扫描 ReleaseMessage 列表
-        scanMessages();
+        scanTimer.record(this::scanMessages);
         transaction.setStatus(Transaction.SUCCESS);
       } catch (Throwable ex) {
         transaction.setStatus(ex);
@@ -104,8 +123,10 @@ public class ReleaseMessageScanner implements InitializingBean {
   private boolean scanAndSendMessages() {
     // 获得大于 maxIdScanned 的 500 条 ReleaseMessage 记录，按照 id 升序
     //current batch is 500
-    List<ReleaseMessage> releaseMessages =
-        releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(maxIdScanned);
+    // 从库提交顺序与主库一致，扫描到的 ReleaseMessage 对应的 Release 在该从库上也已可见
+    //replicas apply in the commit order of the primary, so the releases of the messages scanned are visible as well
+    List<ReleaseMessage> releaseMessages = ReplicaReads.read(() ->
+        releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(maxIdScanned));
     if (CollectionUtils.isEmpty(releaseMessages)) {
       return false;
     }
@@ -127,12 +148,28 @@ public class ReleaseMessageScanner implements InitializingBean {
     return releaseMessage == null ? 0 : releaseMessage.getId();
   }
 
+  /**
+   * 落后于最新 ReleaseMessage 的条数
+   *
+   * @return the number of messages not scanned yet, loaded at most once per {@link #LAG_EXPIRE_IN_SECONDS} when the
+   * metrics are scraped
+   */
+  private double loadLag() {
+    try {
+      return Math.max(0, loadLargestMessageId() - maxIdScanned);
+    } catch (Throwable ex) {
+      logger.warn("Failed to load the largest release message id", ex);
+      return Double.NaN;
+    }
+  }
+
   /**
    * Notify listeners with messages loaded
    * @param messages
    */
   private void fireMessageScanned(List<ReleaseMessage> messages) {
     for (ReleaseMessage message : messages) {
+      releasePropagationTracker.record(Hop.SCANNED, message.getDataChangeLastModifiedTime());
       for (ReleaseMessageListener listener : listeners) {
         try {
           // 触发监听器
@@ -0,0 +1,38 @@
+package com.ctrip.framework.apollo.biz.message;
+
+import com.google.common.collect.Maps;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.message.ReleasePropagationTracker.Hop;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Expose the release propagation latency histograms of this instance at /releasepropagation
+ */
+@Component
+@Endpoint(id = "releasepropagation")
+public class ReleasePropagationEndpoint {
+
+  @Autowired
+  private ReleasePropagationTracker releasePropagationTracker;
+
+  @Autowired
+  private BizConfig bizConfig;
+
+  @ReadOperation
+  public Map<String, Object> releasePropagation() {
+    int slo = bizConfig.releasePropagationSloInMilli();
+    Map<String, Object> result = Maps.newLinkedHashMap();
+    result.put("sloInMilli", slo);
+    for (Hop hop : Hop.values()) {
+      result.put(hop.getName(), releasePropagationTracker.getHistogram(hop).snapshot(slo));
+    }
+    return result;
+  }
+}
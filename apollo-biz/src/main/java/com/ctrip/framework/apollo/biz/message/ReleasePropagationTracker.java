@@ -0,0 +1,74 @@
+package com.ctrip.framework.apollo.biz.message;
+
+import com.google.common.collect.Maps;
+
+import com.ctrip.framework.apollo.biz.utils.LatencyHistogram;
+import com.ctrip.framework.apollo.tracer.Tracer;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * 发布到客户端生效的全链路延迟统计
+ *
+ * Track how long a release takes to reach the clients. Each hop measures the latency from the publish time, which is
+ * stamped on the release message, so the hops could be compared directly:
+ *
+ * <ol>
+ *   <li>{@link Hop#COMMITTED}: the release message is committed, by admin service</li>
+ *   <li>{@link Hop#SCANNED}: the release message is scanned, by config service</li>
+ *   <li>{@link Hop#NOTIFIED}: all the parked long polls watching the message are notified, by config service</li>
+ *   <li>{@link Hop#DELIVERED}: a client fetches the new release, by config service</li>
+ *   <li>{@link Hop#APPLIED}: a client applies the new release, reported by the client</li>
+ * </ol>
+ *
+ * The hops except {@link Hop#COMMITTED} compare the clocks of different machines, so they are only as accurate as
+ * the clock synchronization.
+ */
+@Component
+public class ReleasePropagationTracker {
+  private final Map<Hop, LatencyHistogram> histograms;
+
+  public ReleasePropagationTracker() {
+    histograms = Maps.newEnumMap(Hop.class);
+    for (Hop hop : Hop.values()) {
+      histograms.put(hop, new LatencyHistogram());
+    }
+  }
+
+  /**
+   * @param publishTime the publish time, ignored if null
+   */
+  public void record(Hop hop, Date publishTime) {
+    if (publishTime == null) {
+      return;
+    }
+    record(hop, publishTime.getTime(), System.currentTimeMillis());
+  }
+
+  public void record(Hop hop, long publishTime, long reachTime) {
+    long latency = Math.max(0, reachTime - publishTime);
+    histograms.get(hop).record(latency);
+    Tracer.logEvent("Apollo.ReleasePropagation." + hop.getName(), LatencyHistogram.bucketName(latency));
+  }
+
+  public LatencyHistogram getHistogram(Hop hop) {
+    return histograms.get(hop);
+  }
+
+  public enum Hop {
+    COMMITTED("Committed"), SCANNED("Scanned"), NOTIFIED("Notified"), DELIVERED("Delivered"), APPLIED("Applied");
+
+    private final String name;
+
+    Hop(String name) {
+      this.name = name;
+    }
+
+    public String getName() {
+      return name;
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package com.ctrip.framework.apollo.biz.metrics;
+
+import com.google.common.cache.Cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 维度化的指标，基于 Micrometer，不依赖 CAT
+ *
+ * Dimensional metrics of apollo, independent of the {@link com.ctrip.framework.apollo.tracer.Tracer}. They are
+ * built on micrometer, which ships with spring boot actuator. The meters are registered to the global registry,
+ * which spring boot bridges to its own registries, so the components could be instrumented without being wired.
+ *
+ * The meters are scraped at /prometheus, served by the prometheus registry of spring boot.
+ */
+public final class ApolloMetrics {
+  private static final String PREFIX = "apollo.";
+
+  private ApolloMetrics() {
+  }
+
+  /**
+   * Monitor the pool size, active threads, queued and completed tasks of the executor, as well as the execution and
+   * idle time of the tasks submitted to the returned one
+   *
+   * @return the executor to submit the tasks to
+   */
+  public static ExecutorService monitorExecutor(ThreadPoolExecutor executor, String name) {
+    return ExecutorServiceMetrics.monitor(registry(), executor, name);
+  }
+
+  /**
+   * Monitor the pool size, active threads, queued and completed tasks of the scheduled executor
+   */
+  public static ScheduledExecutorService monitorScheduledExecutor(ScheduledThreadPoolExecutor executor, String name) {
+    new ExecutorServiceMetrics(executor, name, Tags.empty()).bindTo(registry());
+    return executor;
+  }
+
+  /**
+   * Monitor the size, hits, misses and evictions of the cache, which should be built with
+   * {@link com.google.common.cache.CacheBuilder#recordStats()}
+   */
+  public static <C extends Cache<?, ?>> C monitorCache(C cache, String name) {
+    return GuavaCacheMetrics.monitor(registry(), cache, name);
+  }
+
+  public static <T extends Collection<?>> T monitorQueue(T queue, String name) {
+    return registry().gaugeCollectionSize(PREFIX + "queue.size", Tags.of("queue", name), queue);
+  }
+
+  public static <T extends Map<?, ?>> T monitorMap(T map, String name) {
+    return registry().gaugeMapSize(PREFIX + "map.size", Tags.of("map", name), map);
+  }
+
+  /**
+   * @param state the object to compute the gauge from, which is only weakly referenced
+   * @param tags  the tag keys and values in pairs
+   */
+  public static <T> void gauge(String name, T state, ToDoubleFunction<T> valueFunction, String... tags) {
+    registry().gauge(PREFIX + name, Tags.of(tags), state, valueFunction);
+  }
+
+  /**
+   * @param tags the tag keys and values in pairs
+   */
+  public static Timer timer(String name, String... tags) {
+    return registry().timer(PREFIX + name, tags);
+  }
+
+  /**
+   * @param tags the tag keys and values in pairs
+   */
+  public static Counter counter(String name, String... tags) {
+    return registry().counter(PREFIX + name, tags);
+  }
+
+  private static MeterRegistry registry() {
+    return Metrics.globalRegistry;
+  }
+}
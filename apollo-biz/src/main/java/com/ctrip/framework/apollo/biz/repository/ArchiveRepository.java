@@ -0,0 +1,29 @@
+package com.ctrip.framework.apollo.biz.repository;
+
+import com.ctrip.framework.apollo.biz.entity.Archive;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ArchiveRepository extends PagingAndSortingRepository<Archive, Long> {
+
+  List<Archive> findByEntityNameAndAppIdAndClusterNameAndNamespaceNameAndEntityIdLessThanOrderByEntityIdDesc(
+      String entityName, String appId, String clusterName, String namespaceName, long entityId, Pageable pageable);
+
+  List<Archive> findByEntityNameAndEntityIdIn(String entityName, Collection<Long> entityIds);
+
+  long countByEntityNameAndAppIdAndClusterNameAndNamespaceName(String entityName, String appId, String clusterName,
+                                                               String namespaceName);
+
+  @Query(value = "select * from `Archive` where `EntityName` = :entityName and `AppId` = :appId and `ClusterName` = "
+      + ":clusterName and `NamespaceName` = :namespaceName order by `EntityId` desc limit :limit offset :offset",
+      nativeQuery = true)
+  List<Archive> findByNamespace(@Param("entityName") String entityName, @Param("appId") String appId,
+                                @Param("clusterName") String clusterName, @Param("namespaceName") String namespaceName,
+                                @Param("offset") long offset, @Param("limit") int limit);
+}
@@ -2,10 +2,13 @@ package com.ctrip.framework.apollo.biz.repository;
 
 import com.ctrip.framework.apollo.biz.entity.Audit;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface AuditRepository extends PagingAndSortingRepository<Audit, Long> {
@@ -16,4 +19,10 @@ public interface AuditRepository extends PagingAndSortingRepository<Audit, Long>
   @Query("SELECT a from Audit a WHERE a.dataChangeCreatedBy = :owner AND a.entityName =:entity AND a.opName = :op")
   List<Audit> findAudits(@Param("owner") String owner, @Param("entity") String entity,
       @Param("op") String op);
+
+  List<Audit> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
+  @Modifying
+  @Query("delete from Audit where id in :ids")
+  int batchDelete(@Param("ids") Collection<Long> ids);
 }
@@ -6,7 +6,10 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 public interface CommitRepository extends PagingAndSortingRepository<Commit, Long> {
@@ -14,8 +17,22 @@ public interface CommitRepository extends PagingAndSortingRepository<Commit, Lon
   List<Commit> findByAppIdAndClusterNameAndNamespaceNameOrderByIdDesc(String appId, String clusterName,
                                                                       String namespaceName, Pageable pageable);
 
+  List<Commit> findByAppIdAndClusterNameAndNamespaceNameAndIdLessThanOrderByIdDesc(String appId, String clusterName,
+                                                                                   String namespaceName, long id,
+                                                                                   Pageable pageable);
+
   @Modifying
   @Query("update Commit set isdeleted=1,DataChange_LastModifiedBy = ?4 where appId=?1 and clusterName=?2 and namespaceName = ?3")
   int batchDelete(String appId, String clusterName, String namespaceName, String operator);
 
+  List<Commit> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
+  List<Commit> findByAppIdAndClusterNameAndNamespaceNameAndDataChangeCreatedTimeGreaterThanEqualOrderByIdAsc(
+      String appId, String clusterName, String namespaceName, Date createdTime, Pageable pageable);
+
+  long countByAppIdAndClusterNameAndNamespaceName(String appId, String clusterName, String namespaceName);
+
+  @Modifying
+  @Query("delete from Commit where id in :ids")
+  int batchDelete(@Param("ids") Collection<Long> ids);
 }
@@ -24,6 +24,18 @@ public interface InstanceConfigRepository extends PagingAndSortingRepository<Ins
   Page<InstanceConfig> findByConfigAppIdAndConfigClusterNameAndConfigNamespaceNameAndDataChangeLastModifiedTimeAfter(
       String appId, String clusterName, String namespaceName, Date validDate, Pageable pageable);
 
+  /**
+   * Served by IX_ReleaseKey_InstanceId
+   */
+  List<InstanceConfig> findByReleaseKeyAndDataChangeLastModifiedTimeAfterAndInstanceIdGreaterThanOrderByInstanceIdAsc(
+      String releaseKey, Date validDate, long instanceId, Pageable pageable);
+
+  /**
+   * Served by IX_Namespace_InstanceId
+   */
+  List<InstanceConfig> findByConfigAppIdAndConfigClusterNameAndConfigNamespaceNameAndDataChangeLastModifiedTimeAfterAndInstanceIdGreaterThanOrderByInstanceIdAsc(
+      String appId, String clusterName, String namespaceName, Date validDate, long instanceId, Pageable pageable);
+
   List<InstanceConfig> findByConfigAppIdAndConfigClusterNameAndConfigNamespaceNameAndDataChangeLastModifiedTimeAfterAndReleaseKeyNotIn(
       String appId, String clusterName, String namespaceName, Date validDate, Set<String> releaseKey);
 
@@ -45,4 +57,18 @@ public interface InstanceConfigRepository extends PagingAndSortingRepository<Ins
       @Param("instanceAppId") String instanceAppId, @Param("configAppId") String configAppId,
       @Param("clusterName") String clusterName, @Param("namespaceName") String namespaceName,
       @Param("validDate") Date validDate, Pageable pageable);
+
+  /**
+   * Seeks on IX_Namespace_InstanceId, then joins the instances by primary key
+   */
+  @Query(
+      value = "select b.Id from `InstanceConfig` a inner join `Instance` b on b.Id =" +
+          " a.`InstanceId` where a.`ConfigAppId` = :configAppId and a.`ConfigClusterName` = " +
+          ":clusterName and a.`ConfigNamespaceName` = :namespaceName and a.`DataChange_LastTime` " +
+          "> :validDate and b.`AppId` = :instanceAppId and a.`InstanceId` > :instanceId order by a.`InstanceId`",
+      nativeQuery = true)
+  List<Object> findInstanceIdsByNamespaceAndInstanceAppIdAndInstanceIdGreaterThan(
+      @Param("instanceAppId") String instanceAppId, @Param("configAppId") String configAppId,
+      @Param("clusterName") String clusterName, @Param("namespaceName") String namespaceName,
+      @Param("validDate") Date validDate, @Param("instanceId") long instanceId, Pageable pageable);
 }
@@ -5,7 +5,9 @@ import com.ctrip.framework.apollo.biz.entity.Item;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -13,6 +15,8 @@ public interface ItemRepository extends PagingAndSortingRepository<Item, Long> {
 
   Item findByNamespaceIdAndKey(Long namespaceId, String key);
 
+  List<Item> findByNamespaceIdAndKeyIn(Long namespaceId, Collection<String> keys);
+
   List<Item> findByNamespaceIdOrderByLineNumAsc(Long namespaceId);
 
   List<Item> findByNamespaceId(Long namespaceId);
@@ -21,8 +25,23 @@ public interface ItemRepository extends PagingAndSortingRepository<Item, Long> {
 
   Item findFirst1ByNamespaceIdOrderByLineNumDesc(Long namespaceId);
 
+  /**
+   * the keys of the items modified since the time, including the deleted ones
+   */
+  @Query(value = "select distinct i.Key from Item i where i.NamespaceId = :namespaceId "
+      + "and i.DataChange_LastTime >= :since", nativeQuery = true)
+  List<String> findKeysModifiedSince(@Param("namespaceId") long namespaceId, @Param("since") Date since);
+
+  @Query("select count(distinct item.key) from Item item where item.namespaceId = :namespaceId and item.key <> ''")
+  long countDistinctKeysByNamespaceId(@Param("namespaceId") long namespaceId);
+
   @Modifying
   @Query("update Item set isdeleted=1,DataChange_LastModifiedBy = ?2 where namespaceId = ?1")
   int deleteByNamespaceId(long namespaceId, String operator);
 
+  @Modifying
+  @Query("update Item set isDeleted = 1, dataChangeLastModifiedBy = :operator, dataChangeLastModifiedTime = :time "
+      + "where id in :ids")
+  int batchDelete(@Param("ids") Collection<Long> ids, @Param("operator") String operator, @Param("time") Date time);
+
 }
@@ -7,6 +7,10 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
 
 /**
  * @author Jason Song(song_s@ctrip.com)
@@ -15,6 +19,9 @@ public interface ReleaseHistoryRepository extends PagingAndSortingRepository<Rel
   Page<ReleaseHistory> findByAppIdAndClusterNameAndNamespaceNameOrderByIdDesc(String appId, String
       clusterName, String namespaceName, Pageable pageable);
 
+  List<ReleaseHistory> findByAppIdAndClusterNameAndNamespaceNameAndIdLessThanOrderByIdDesc(String appId,
+      String clusterName, String namespaceName, long id, Pageable pageable);
+
   Page<ReleaseHistory> findByReleaseIdAndOperationOrderByIdDesc(long releaseId, int operation, Pageable pageable);
 
   Page<ReleaseHistory> findByPreviousReleaseIdAndOperationOrderByIdDesc(long previousReleaseId, int operation, Pageable pageable);
@@ -23,4 +30,9 @@ public interface ReleaseHistoryRepository extends PagingAndSortingRepository<Rel
   @Query("update ReleaseHistory set isdeleted=1,DataChange_LastModifiedBy = ?4 where appId=?1 and clusterName=?2 and namespaceName = ?3")
   int batchDelete(String appId, String clusterName, String namespaceName, String operator);
 
+  List<ReleaseHistory> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
+  @Modifying
+  @Query("delete from ReleaseHistory where id in :ids")
+  int batchDelete(@Param("ids") Collection<Long> ids);
 }
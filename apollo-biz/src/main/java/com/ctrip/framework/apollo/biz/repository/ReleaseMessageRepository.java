@@ -2,6 +2,8 @@ package com.ctrip.framework.apollo.biz.repository;
 
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.repository.query.Param;
@@ -19,8 +21,14 @@ public interface ReleaseMessageRepository extends PagingAndSortingRepository<Rel
 
   ReleaseMessage findTopByMessageInOrderByIdDesc(Collection<String> messages);
 
-  List<ReleaseMessage> findFirst100ByMessageAndIdLessThanOrderByIdAsc(String message, Long id);
+  List<ReleaseMessage> findByIdGreaterThanAndIdLessThanEqualOrderByIdAsc(Long fromId, Long toId, Pageable pageable);
+
+  List<ReleaseMessage> findByMessageInAndIdLessThan(Collection<String> messages, Long id);
 
   @Query("select message, max(id) as id from ReleaseMessage where message in :messages group by message")
   List<Object[]> findLatestReleaseMessagesGroupByMessages(@Param("messages") Collection<String> messages);
+
+  @Modifying
+  @Query("delete from ReleaseMessage where id in :ids")
+  int batchDelete(@Param("ids") Collection<Long> ids);
 }
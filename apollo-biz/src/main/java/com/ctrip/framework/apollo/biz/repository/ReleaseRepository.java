@@ -1,6 +1,7 @@
 package com.ctrip.framework.apollo.biz.repository;
 
 import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.entity.ReleaseHeader;
 
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Modifying;
@@ -8,6 +9,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -15,6 +17,12 @@ import java.util.Set;
  * @author Jason Song(song_s@ctrip.com)
  */
 public interface ReleaseRepository extends PagingAndSortingRepository<Release, Long> {
+  /**
+   * 只查询元数据，不加载 configurations
+   */
+  String SELECT_HEADER = "select new com.ctrip.framework.apollo.biz.entity.ReleaseHeader(r.id, r.releaseKey, r.name, "
+      + "r.appId, r.clusterName, r.namespaceName, r.comment, r.isAbandoned, r.dataChangeCreatedBy, "
+      + "r.dataChangeCreatedTime, r.dataChangeLastModifiedBy, r.dataChangeLastModifiedTime) from Release r ";
 
   Release findFirstByAppIdAndClusterNameAndNamespaceNameAndIsAbandonedFalseOrderByIdDesc(@Param("appId") String appId, @Param("clusterName") String clusterName,
                                                                                          @Param("namespaceName") String namespaceName);
@@ -29,10 +37,38 @@ public interface ReleaseRepository extends PagingAndSortingRepository<Release, L
 
   List<Release> findByIdIn(Set<Long> releaseIds);
 
+  @Query(SELECT_HEADER + "where r.appId = :appId and r.clusterName = :clusterName and r.namespaceName = :namespaceName "
+      + "and r.isAbandoned = false order by r.id desc")
+  List<ReleaseHeader> findActiveReleaseHeaders(@Param("appId") String appId, @Param("clusterName") String clusterName,
+                                               @Param("namespaceName") String namespaceName, Pageable page);
+
+  @Query(SELECT_HEADER + "where r.id > :id order by r.id")
+  List<ReleaseHeader> findReleaseHeadersByIdGreaterThan(@Param("id") long id, Pageable page);
+
+  @Query(SELECT_HEADER + "where r.id in :ids")
+  List<ReleaseHeader> findReleaseHeadersByIds(@Param("ids") Set<Long> releaseIds);
+
+  @Query(SELECT_HEADER + "where r.releaseKey in :releaseKeys")
+  List<ReleaseHeader> findReleaseHeadersByReleaseKeys(@Param("releaseKeys") Set<String> releaseKeys);
+
   @Modifying
   @Query("update Release set isdeleted=1,DataChange_LastModifiedBy = ?4 where appId=?1 and clusterName=?2 and namespaceName = ?3")
   int batchDelete(String appId, String clusterName, String namespaceName, String operator);
 
   // For release history conversion program, need to delete after conversion it done
   List<Release> findByAppIdAndClusterNameAndNamespaceNameOrderByIdAsc(String appId, String clusterName, String namespaceName);
+
+  long countByAppIdAndClusterNameAndNamespaceName(String appId, String clusterName, String namespaceName);
+
+  /**
+   * @return the ids of the base releases among baseReleaseIds, which are used by the deltas other than excludedIds
+   */
+  @Query("select distinct r.deltaBaseReleaseId from Release r where r.deltaBaseReleaseId in :baseReleaseIds "
+      + "and r.id not in :excludedIds")
+  Set<Long> findDeltaBaseReleaseIds(@Param("baseReleaseIds") Collection<Long> baseReleaseIds,
+                                    @Param("excludedIds") Collection<Long> excludedIds);
+
+  @Modifying
+  @Query("delete from Release where id in :ids")
+  int batchDelete(@Param("ids") Collection<Long> ids);
 }
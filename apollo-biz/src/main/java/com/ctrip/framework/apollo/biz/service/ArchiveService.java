@@ -0,0 +1,215 @@
+package com.ctrip.framework.apollo.biz.service;
+
+import com.google.common.collect.Lists;
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.FieldAttributes;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializer;
+
+import com.ctrip.framework.apollo.biz.entity.Archive;
+import com.ctrip.framework.apollo.biz.entity.Audit;
+import com.ctrip.framework.apollo.biz.entity.Commit;
+import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.entity.ReleaseHistory;
+import com.ctrip.framework.apollo.biz.repository.ArchiveRepository;
+import com.ctrip.framework.apollo.biz.repository.AuditRepository;
+import com.ctrip.framework.apollo.biz.repository.CommitRepository;
+import com.ctrip.framework.apollo.biz.repository.ReleaseHistoryRepository;
+import com.ctrip.framework.apollo.biz.repository.ReleaseRepository;
+import com.ctrip.framework.apollo.biz.utils.ReleaseConfigurationsCodec;
+import com.ctrip.framework.apollo.common.entity.BaseEntity;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+import javax.persistence.Transient;
+
+/**
+ * 归档表的读写，分页查询在线数据不足一页时由归档数据补齐
+ *
+ * Move the Audit, Commit, ReleaseHistory and Release rows to the Archive table, and read them back. The archived rows
+ * of a namespace are always older than the live ones, so a page is filled up with the archived rows when the live
+ * ones run out.
+ */
+@Service
+public class ArchiveService {
+  private static final int CONTENT_COMPRESSION_MIN_SIZE = 512;
+  private static final Gson GSON = new GsonBuilder()
+      .registerTypeAdapter(Date.class, (JsonSerializer<Date>) (date, type, context) -> new JsonPrimitive(date.getTime()))
+      .registerTypeAdapter(Date.class, (JsonDeserializer<Date>) (json, type, context) -> new Date(json.getAsLong()))
+      .setExclusionStrategies(new ExclusionStrategy() {
+        @Override
+        public boolean shouldSkipField(FieldAttributes field) {
+          return field.getAnnotation(Transient.class) != null;
+        }
+
+        @Override
+        public boolean shouldSkipClass(Class<?> clazz) {
+          return false;
+        }
+      })
+      .create();
+
+  @Autowired
+  private ArchiveRepository archiveRepository;
+  @Autowired
+  private AuditRepository auditRepository;
+  @Autowired
+  private CommitRepository commitRepository;
+  @Autowired
+  private ReleaseHistoryRepository releaseHistoryRepository;
+  @Autowired
+  private ReleaseRepository releaseRepository;
+  @Autowired
+  private ReleaseDeltaService releaseDeltaService;
+
+  /**
+   * Move the rows of the same entity to the Archive table
+   *
+   * @return the number of rows archived, 0 if some of them are being archived by another instance
+   */
+  @Transactional
+  public int archive(List<? extends BaseEntity> entities) {
+    if (entities.isEmpty()) {
+      return 0;
+    }
+    Class<?> entityClass = entities.get(0).getClass();
+    List<Long> ids = entities.stream().map(BaseEntity::getId).collect(Collectors.toList());
+    // 增量可能与其基准 Release 在同一批中归档，需在删除前解析
+    //a delta might be archived along with its base release, so it is resolved before the deletion
+    List<Archive> archives = entities.stream().map(this::toArchive).collect(Collectors.toList());
+
+    // 先删除再写入，删除的行数不符说明另一个实例正在归档这些记录，交给它处理
+    //delete first, a different count means the rows are being archived by another instance, which is left to it
+    int deleted = delete(entityClass, ids);
+    if (deleted != ids.size()) {
+      TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+      return 0;
+    }
+    archiveRepository.saveAll(archives);
+    return deleted;
+  }
+
+  /**
+   * Fill up a keyset page of the live rows of a namespace, ordered by id desc, with the archived ones
+   */
+  public <T extends BaseEntity> List<T> fillPage(Class<T> entityClass, String appId, String clusterName,
+                                                 String namespaceName, List<T> live, long beforeId, int size) {
+    if (live.size() >= size) {
+      return live;
+    }
+    long archiveBeforeId = live.isEmpty() ? beforeId : live.get(live.size() - 1).getId();
+    List<Archive> archives = archiveRepository
+        .findByEntityNameAndAppIdAndClusterNameAndNamespaceNameAndEntityIdLessThanOrderByEntityIdDesc(
+            entityClass.getSimpleName(), appId, clusterName, namespaceName, archiveBeforeId,
+            PageRequest.of(0, size - live.size()));
+    return concat(live, transform(entityClass, archives));
+  }
+
+  /**
+   * Fill up an offset page of the live rows of a namespace, ordered by id desc, with the archived ones
+   *
+   * @param liveCount the number of the live rows, only queried if the page is beyond the live rows
+   */
+  public <T extends BaseEntity> List<T> fillPage(Class<T> entityClass, String appId, String clusterName,
+                                                 String namespaceName, List<T> live, Pageable pageable,
+                                                 LongSupplier liveCount) {
+    if (live.size() >= pageable.getPageSize()) {
+      return live;
+    }
+    long liveTotal = live.isEmpty() ? liveCount.getAsLong() : pageable.getOffset() + live.size();
+    long archiveOffset = Math.max(0, pageable.getOffset() - liveTotal);
+    List<Archive> archives = archiveRepository.findByNamespace(entityClass.getSimpleName(), appId, clusterName,
+        namespaceName, archiveOffset, pageable.getPageSize() - live.size());
+    return concat(live, transform(entityClass, archives));
+  }
+
+  public long countByNamespace(Class<? extends BaseEntity> entityClass, String appId, String clusterName,
+                               String namespaceName) {
+    return archiveRepository.countByEntityNameAndAppIdAndClusterNameAndNamespaceName(entityClass.getSimpleName(),
+        appId, clusterName, namespaceName);
+  }
+
+  public <T extends BaseEntity> List<T> findByIds(Class<T> entityClass, Collection<Long> ids) {
+    if (ids.isEmpty()) {
+      return Collections.emptyList();
+    }
+    return transform(entityClass, archiveRepository.findByEntityNameAndEntityIdIn(entityClass.getSimpleName(), ids));
+  }
+
+  private int delete(Class<?> entityClass, List<Long> ids) {
+    if (entityClass == Audit.class) {
+      return auditRepository.batchDelete(ids);
+    }
+    if (entityClass == Commit.class) {
+      return commitRepository.batchDelete(ids);
+    }
+    if (entityClass == ReleaseHistory.class) {
+      return releaseHistoryRepository.batchDelete(ids);
+    }
+    if (entityClass == Release.class) {
+      return releaseRepository.batchDelete(ids);
+    }
+    throw new IllegalArgumentException(String.format("Archiving %s is not supported", entityClass.getName()));
+  }
+
+  private Archive toArchive(BaseEntity entity) {
+    JsonObject json = GSON.toJsonTree(entity).getAsJsonObject();
+    if (entity instanceof Release) {
+      // 以全量保存，增量的基准 Release 之后也可能被归档
+      //stored in full, since the base of a delta might be archived later as well
+      Release release = (Release) entity;
+      releaseDeltaService.resolve(release);
+      json.addProperty("configurations", release.getConfigurations());
+      json.addProperty("deltaBaseReleaseId", 0);
+    }
+
+    Archive archive = new Archive();
+    archive.setEntityName(entity.getClass().getSimpleName());
+    archive.setEntityId(entity.getId());
+    archive.setAppId(getString(json, "appId"));
+    archive.setClusterName(getString(json, "clusterName"));
+    archive.setNamespaceName(getString(json, "namespaceName"));
+    archive.setContent(ReleaseConfigurationsCodec.encode(GSON.toJson(json), CONTENT_COMPRESSION_MIN_SIZE));
+    archive.setDataChangeCreatedBy(entity.getDataChangeCreatedBy());
+    archive.setDataChangeCreatedTime(entity.getDataChangeCreatedTime());
+    return archive;
+  }
+
+  private <T> List<T> transform(Class<T> entityClass, List<Archive> archives) {
+    return archives.stream()
+        .map(archive -> GSON.fromJson(ReleaseConfigurationsCodec.decode(archive.getContent()), entityClass))
+        .collect(Collectors.toList());
+  }
+
+  private <T> List<T> concat(List<T> live, List<T> archived) {
+    if (archived.isEmpty()) {
+      return live;
+    }
+    List<T> page = Lists.newArrayListWithCapacity(live.size() + archived.size());
+    page.addAll(live);
+    page.addAll(archived);
+    return page;
+  }
+
+  private String getString(JsonObject json, String property) {
+    JsonElement element = json.get(property);
+    return element == null || element.isJsonNull() ? null : element.getAsString();
+  }
+}
@@ -1,19 +1,30 @@
 package com.ctrip.framework.apollo.biz.service;
 
+import com.google.common.collect.Lists;
+
 import com.ctrip.framework.apollo.biz.entity.Audit;
 import com.ctrip.framework.apollo.biz.repository.AuditRepository;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.List;
 
 @Service
 public class AuditService {
+  private static final int BATCH_SIZE = 1000;
+  private static final String INSERT_AUDIT_SQL = "insert into `Audit` (`EntityName`, `EntityId`, `OpName`, `Comment`, "
+      + "`IsDeleted`, `DataChange_CreatedBy`, `DataChange_CreatedTime`, `DataChange_LastTime`) "
+      + "values (?, ?, ?, ?, 0, ?, ?, ?)";
 
   @Autowired
   private AuditRepository auditRepository;
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
 
   List<Audit> findByOwner(String owner) {
     return auditRepository.findByOwner(owner);
@@ -37,4 +48,25 @@ public class AuditService {
   void audit(Audit audit){
     auditRepository.save(audit);
   }
+
+  /**
+   * 以 JDBC 批量写入 Audit
+   *
+   * Insert the audits with JDBC batches
+   */
+  @Transactional
+  void audit(List<Audit> audits) {
+    Timestamp now = new Timestamp(System.currentTimeMillis());
+    for (List<Audit> batch : Lists.partition(audits, BATCH_SIZE)) {
+      jdbcTemplate.batchUpdate(INSERT_AUDIT_SQL, batch, batch.size(), (statement, audit) -> {
+        statement.setString(1, audit.getEntityName());
+        statement.setObject(2, audit.getEntityId(), Types.BIGINT);
+        statement.setString(3, audit.getOpName());
+        statement.setString(4, audit.getComment());
+        statement.setString(5, audit.getDataChangeCreatedBy());
+        statement.setTimestamp(6, now);
+        statement.setTimestamp(7, now);
+      });
+    }
+  }
 }
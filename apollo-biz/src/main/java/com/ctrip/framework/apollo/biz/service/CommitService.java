@@ -4,10 +4,12 @@ import com.ctrip.framework.apollo.biz.entity.Commit;
 import com.ctrip.framework.apollo.biz.repository.CommitRepository;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Date;
 import java.util.List;
 
 @Service
@@ -15,6 +17,8 @@ public class CommitService {
 
   @Autowired
   private CommitRepository commitRepository;
+  @Autowired
+  private ArchiveService archiveService;
 
   @Transactional
   public Commit save(Commit commit){
@@ -23,7 +27,30 @@ public class CommitService {
   }
 
   public List<Commit> find(String appId, String clusterName, String namespaceName, Pageable page){
-    return commitRepository.findByAppIdAndClusterNameAndNamespaceNameOrderByIdDesc(appId, clusterName, namespaceName, page);
+    List<Commit> commits = commitRepository.findByAppIdAndClusterNameAndNamespaceNameOrderByIdDesc(appId, clusterName,
+        namespaceName, page);
+    return archiveService.fillPage(Commit.class, appId, clusterName, namespaceName, commits, page,
+        () -> commitRepository.countByAppIdAndClusterNameAndNamespaceName(appId, clusterName, namespaceName));
+  }
+
+  /**
+   * Keyset pagination, which seeks by id instead of skipping the previous pages
+   *
+   * @param beforeId the id of the last commit in the previous page, Long.MAX_VALUE for the first page
+   */
+  public List<Commit> find(String appId, String clusterName, String namespaceName, long beforeId, int size) {
+    List<Commit> commits = commitRepository.findByAppIdAndClusterNameAndNamespaceNameAndIdLessThanOrderByIdDesc(appId,
+        clusterName, namespaceName, beforeId, PageRequest.of(0, size));
+    return archiveService.fillPage(Commit.class, appId, clusterName, namespaceName, commits, beforeId, size);
+  }
+
+  /**
+   * The commits created since the time, which are not archived yet if the time is within the retention window
+   */
+  public List<Commit> findSince(String appId, String clusterName, String namespaceName, Date createdTime,
+                                int size) {
+    return commitRepository.findByAppIdAndClusterNameAndNamespaceNameAndDataChangeCreatedTimeGreaterThanEqualOrderByIdAsc(
+        appId, clusterName, namespaceName, createdTime, PageRequest.of(0, size));
   }
 
   @Transactional
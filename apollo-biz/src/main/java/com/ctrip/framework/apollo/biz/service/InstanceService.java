@@ -11,6 +11,7 @@ import com.ctrip.framework.apollo.biz.repository.InstanceRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -19,6 +20,7 @@ import org.springframework.util.CollectionUtils;
 import java.math.BigInteger;
 import java.util.Calendar;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
@@ -96,30 +98,85 @@ public class InstanceService {
 
     List<Instance> instances = Collections.emptyList();
     if (instanceIdResult.hasContent()) {
-      Set<Long> instanceIds = instanceIdResult.getContent().stream().map((Object o) -> {
-        if (o == null) {
-          return null;
-        }
+      Set<Long> instanceIds = toInstanceIds(instanceIdResult.getContent());
+      instances = findInstancesByIds(instanceIds);
+    }
 
-        if (o instanceof Integer) {
-          return ((Integer)o).longValue();
-        }
+    return new PageImpl<>(instances, pageable, instanceIdResult.getTotalElements());
+  }
 
-        if (o instanceof Long) {
-          return (Long) o;
-        }
+  /**
+   * 按 instanceId 翻页，不随页数变慢
+   *
+   * Keyset pagination ordered by instance id, which is unique in the instance configs of a release key
+   *
+   * @param afterInstanceId the id of the last instance in the previous page, 0 for the first page
+   */
+  public List<InstanceConfig> findActiveInstanceConfigsByReleaseKey(String releaseKey, long afterInstanceId,
+                                                                    int size) {
+    return instanceConfigRepository
+        .findByReleaseKeyAndDataChangeLastModifiedTimeAfterAndInstanceIdGreaterThanOrderByInstanceIdAsc(releaseKey,
+            getValidInstanceConfigDate(), afterInstanceId, PageRequest.of(0, size));
+  }
 
-        //for h2 test
-        if (o instanceof BigInteger) {
-          return ((BigInteger) o).longValue();
-        }
+  /**
+   * Keyset pagination ordered by instance id, which is unique in the instance configs of a namespace
+   *
+   * @param afterInstanceId the id of the last instance in the previous page, 0 for the first page
+   */
+  public List<Instance> findInstancesByNamespace(String appId, String clusterName, String namespaceName,
+                                                 long afterInstanceId, int size) {
+    List<InstanceConfig> instanceConfigs = instanceConfigRepository
+        .findByConfigAppIdAndConfigClusterNameAndConfigNamespaceNameAndDataChangeLastModifiedTimeAfterAndInstanceIdGreaterThanOrderByInstanceIdAsc(
+            appId, clusterName, namespaceName, getValidInstanceConfigDate(), afterInstanceId, PageRequest.of(0, size));
+
+    return findInstancesOrderById(instanceConfigs.stream().map(InstanceConfig::getInstanceId)
+        .collect(Collectors.toSet()));
+  }
 
-        return null;
-      }).filter((Long value) -> value != null).collect(Collectors.toSet());
-      instances = findInstancesByIds(instanceIds);
+  /**
+   * @param afterInstanceId the id of the last instance in the previous page, 0 for the first page
+   */
+  public List<Instance> findInstancesByNamespaceAndInstanceAppId(String instanceAppId, String appId,
+                                                                 String clusterName, String namespaceName,
+                                                                 long afterInstanceId, int size) {
+    List<Object> instanceIdResult = instanceConfigRepository
+        .findInstanceIdsByNamespaceAndInstanceAppIdAndInstanceIdGreaterThan(instanceAppId, appId, clusterName,
+            namespaceName, getValidInstanceConfigDate(), afterInstanceId, PageRequest.of(0, size));
+
+    return findInstancesOrderById(toInstanceIds(instanceIdResult));
+  }
+
+  private List<Instance> findInstancesOrderById(Set<Long> instanceIds) {
+    if (instanceIds.isEmpty()) {
+      return Collections.emptyList();
     }
+    List<Instance> instances = findInstancesByIds(instanceIds);
+    instances.sort(Comparator.comparingLong(Instance::getId));
+    return instances;
+  }
 
-    return new PageImpl<>(instances, pageable, instanceIdResult.getTotalElements());
+  private Set<Long> toInstanceIds(List<?> instanceIdResult) {
+    return instanceIdResult.stream().map((Object o) -> {
+      if (o == null) {
+        return null;
+      }
+
+      if (o instanceof Integer) {
+        return ((Integer)o).longValue();
+      }
+
+      if (o instanceof Long) {
+        return (Long) o;
+      }
+
+      //for h2 test
+      if (o instanceof BigInteger) {
+        return ((BigInteger) o).longValue();
+      }
+
+      return null;
+    }).filter((Long value) -> value != null).collect(Collectors.toSet());
   }
 
   public List<InstanceConfig> findInstanceConfigsByNamespaceWithReleaseKeysNotIn(String appId,
@@ -0,0 +1,179 @@
+package com.ctrip.framework.apollo.biz.service;
+
+import com.google.common.base.Joiner;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.Item;
+import com.ctrip.framework.apollo.biz.entity.Namespace;
+import com.ctrip.framework.apollo.biz.metrics.ApolloMetrics;
+import com.ctrip.framework.apollo.common.dto.ItemChangeSets;
+import com.ctrip.framework.apollo.common.dto.ItemDTO;
+import com.ctrip.framework.apollo.common.dto.ItemImportProgressDTO;
+import com.ctrip.framework.apollo.common.utils.BeanUtils;
+import com.ctrip.framework.apollo.core.ConfigConsts;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.ctrip.framework.apollo.tracer.spi.Transaction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流式导入 Item，每批解析的 Item 与库中的 Item 比较后，在独立事务中批量写入
+ *
+ * Import the items as they are parsed. Each batch of apollo.item-import.batch items is diffed against the items of the
+ * namespace and applied in its own transaction, so neither the payload nor the namespace is held in memory, and the
+ * batches applied are kept even if a later one fails. Existing keys are updated, new keys are created, and keys not
+ * imported are left as they are.
+ */
+@Service
+public class ItemImportService {
+  private static final Logger logger = LoggerFactory.getLogger(ItemImportService.class);
+  private static final Joiner STRING_JOINER = Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR);
+  private static final long PROGRESS_RETENTION_IN_HOURS = 24;
+  private static final long MAX_PROGRESS_SIZE = 1000;
+
+  @Autowired
+  private BizConfig bizConfig;
+  @Autowired
+  private ItemService itemService;
+  @Autowired
+  private ItemSetService itemSetService;
+
+  //store appId+clusterName+namespaceName -> the latest import progress on this instance
+  private final Cache<String, ItemImportProgressDTO> progresses;
+
+  public ItemImportService() {
+    progresses = CacheBuilder.newBuilder()
+        .expireAfterWrite(PROGRESS_RETENTION_IN_HOURS, TimeUnit.HOURS)
+        .maximumSize(MAX_PROGRESS_SIZE)
+        .recordStats()
+        .build();
+    ApolloMetrics.monitorCache(progresses, "ItemImportService.progresses");
+  }
+
+  /**
+   * @param entries the keys and values parsed, the latter of the same key wins
+   * @return the progress when all the items are imported
+   */
+  public ItemImportProgressDTO importItems(Namespace namespace, Iterator<Map.Entry<String, String>> entries,
+                                           String operator) {
+    String progressKey = assembleProgressKey(namespace.getAppId(), namespace.getClusterName(),
+        namespace.getNamespaceName());
+    ItemImportProgressDTO progress = new ItemImportProgressDTO();
+    progress.setAppId(namespace.getAppId());
+    progress.setClusterName(namespace.getClusterName());
+    progress.setNamespaceName(namespace.getNamespaceName());
+    progress.setOperator(operator);
+    progress.setStatus(ItemImportProgressDTO.Status.RUNNING);
+    progress.setStartTime(new Date());
+    publish(progressKey, progress);
+
+    Transaction transaction = Tracer.newTransaction("Apollo.ItemImport", progressKey);
+    try {
+      int batchSize = bizConfig.itemImportBatch();
+      Map<String, String> batch = Maps.newLinkedHashMapWithExpectedSize(batchSize);
+      while (entries.hasNext()) {
+        Map.Entry<String, String> entry = entries.next();
+        batch.put(entry.getKey(), entry.getValue());
+        progress.setParsed(progress.getParsed() + 1);
+        if (batch.size() >= batchSize) {
+          applyBatch(namespace, batch, operator, progress);
+          publish(progressKey, progress);
+          batch.clear();
+        }
+      }
+      if (!batch.isEmpty()) {
+        applyBatch(namespace, batch, operator, progress);
+      }
+      progress.setStatus(ItemImportProgressDTO.Status.COMPLETED);
+      publish(progressKey, progress);
+
+      transaction.addData("parsed", progress.getParsed());
+      transaction.addData("created", progress.getCreated());
+      transaction.addData("updated", progress.getUpdated());
+      transaction.setStatus(Transaction.SUCCESS);
+      logger.info("Imported {} items to {} by {}, created: {}, updated: {}, unchanged: {}", progress.getParsed(),
+          progressKey, operator, progress.getCreated(), progress.getUpdated(), progress.getUnchanged());
+      return progress;
+    } catch (Throwable ex) {
+      progress.setStatus(ItemImportProgressDTO.Status.FAILED);
+      progress.setMessage(ex.getMessage());
+      publish(progressKey, progress);
+      transaction.setStatus(ex);
+      throw ex;
+    } finally {
+      transaction.complete();
+    }
+  }
+
+  public ItemImportProgressDTO findProgress(String appId, String clusterName, String namespaceName) {
+    return progresses.getIfPresent(assembleProgressKey(appId, clusterName, namespaceName));
+  }
+
+  private void applyBatch(Namespace namespace, Map<String, String> batch, String operator,
+                          ItemImportProgressDTO progress) {
+    Map<String, Item> existingItems = Maps.newHashMapWithExpectedSize(batch.size());
+    for (Item item : itemService.findByKeys(namespace.getId(), batch.keySet())) {
+      // 库的排序规则可能不区分大小写，只取 key 完全相同的 Item
+      //the collation of the database might be case insensitive, so only the items of exactly the same key are taken
+      if (batch.containsKey(item.getKey())) {
+        existingItems.putIfAbsent(item.getKey(), item);
+      }
+    }
+
+    ItemChangeSets changeSets = new ItemChangeSets();
+    changeSets.setDataChangeLastModifiedBy(operator);
+    int unchanged = 0;
+    for (Map.Entry<String, String> entry : batch.entrySet()) {
+      Item existingItem = existingItems.get(entry.getKey());
+      if (existingItem == null) {
+        ItemDTO item = new ItemDTO();
+        item.setNamespaceId(namespace.getId());
+        item.setKey(entry.getKey());
+        item.setValue(entry.getValue());
+        changeSets.addCreateItem(item);
+      } else if (Objects.equals(existingItem.getValue(), entry.getValue())) {
+        unchanged++;
+      } else {
+        ItemDTO item = BeanUtils.transfrom(ItemDTO.class, existingItem);
+        item.setValue(entry.getValue());
+        changeSets.addUpdateItem(item);
+      }
+    }
+
+    if (!changeSets.isEmpty()) {
+      itemSetService.updateSet(namespace, changeSets);
+    }
+    // 批次提交后才计数
+    //counted only after the batch is committed
+    progress.setCreated(progress.getCreated() + changeSets.getCreateItems().size());
+    progress.setUpdated(progress.getUpdated() + changeSets.getUpdateItems().size());
+    progress.setUnchanged(progress.getUnchanged() + unchanged);
+    progress.setBatches(progress.getBatches() + 1);
+    logger.debug("Imported batch {} to {}, {} items parsed", progress.getBatches(), namespace.getNamespaceName(),
+        progress.getParsed());
+  }
+
+  /**
+   * publish a copy, since the progress is still being updated by the importing thread
+   */
+  private void publish(String progressKey, ItemImportProgressDTO progress) {
+    progress.setLastUpdateTime(new Date());
+    progresses.put(progressKey, BeanUtils.transfrom(ItemImportProgressDTO.class, progress));
+  }
+
+  private String assembleProgressKey(String appId, String clusterName, String namespaceName) {
+    return STRING_JOINER.join(appId, clusterName, namespaceName);
+  }
+}
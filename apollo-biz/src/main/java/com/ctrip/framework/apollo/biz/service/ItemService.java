@@ -1,6 +1,10 @@
 package com.ctrip.framework.apollo.biz.service;
 
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
 import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.biz.entity.Audit;
 import com.ctrip.framework.apollo.biz.entity.Item;
@@ -12,16 +16,33 @@ import com.ctrip.framework.apollo.common.utils.BeanUtils;
 import com.ctrip.framework.apollo.core.utils.StringUtils;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 
 @Service
 public class ItemService {
+  private static final int BATCH_SIZE = 1000;
+  private static final String INSERT_ITEM_SQL = "insert into `Item` (`NamespaceId`, `key`, `value`, `comment`, "
+      + "`LineNum`, `IsDeleted`, `DataChange_CreatedBy`, `DataChange_CreatedTime`, `DataChange_LastModifiedBy`, "
+      + "`DataChange_LastTime`) values (?, ?, ?, ?, ?, 0, ?, ?, ?, ?)";
+  private static final String UPDATE_ITEM_SQL = "update `Item` set `value` = ?, `comment` = ?, `LineNum` = ?, "
+      + "`DataChange_LastModifiedBy` = ?, `DataChange_LastTime` = ? where `Id` = ?";
 
   @Autowired
   private ItemRepository itemRepository;
@@ -35,6 +56,12 @@ public class ItemService {
   @Autowired
   private BizConfig bizConfig;
 
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
 
   @Transactional
   public Item delete(long id, String operator) {
@@ -57,6 +84,37 @@ public class ItemService {
 
   }
 
+  /**
+   * 批量删除 Item，每批一条 SQL，返回删除前的 Item
+   *
+   * Delete the items with one statement per batch
+   *
+   * @return the items before deleted
+   */
+  @Transactional
+  public List<Item> batchDelete(Collection<Long> ids, String operator) {
+    List<Item> items = findByIds(ids);
+    if (items.size() != ids.size()) {
+      Set<Long> missingIds = Sets.newHashSet(ids);
+      missingIds.removeAll(items.stream().map(Item::getId).collect(Collectors.toSet()));
+      throw new IllegalArgumentException("item not exist. ID:" + missingIds);
+    }
+    Date now = new Date();
+    for (List<Long> batch : Lists.partition(Lists.newArrayList(ids), BATCH_SIZE)) {
+      itemRepository.batchDelete(batch, operator, now);
+    }
+
+    List<Audit> audits = Lists.newArrayListWithCapacity(items.size());
+    for (Item item : items) {
+      item.setDeleted(true);
+      item.setDataChangeLastModifiedBy(operator);
+      item.setDataChangeLastModifiedTime(now);
+      audits.add(assembleAudit(item.getId(), Audit.OP.DELETE, operator));
+    }
+    auditService.audit(audits);
+    return items;
+  }
+
   public Item findOne(String appId, String clusterName, String namespaceName, String key) {
     Namespace namespace = namespaceService.findOne(appId, clusterName, namespaceName);
     if (namespace == null) {
@@ -67,6 +125,34 @@ public class ItemService {
     return item;
   }
 
+  public List<Item> findByKeys(long namespaceId, Collection<String> keys) {
+    if (keys.isEmpty()) {
+      return Collections.emptyList();
+    }
+    if (keys.size() <= BATCH_SIZE) {
+      return itemRepository.findByNamespaceIdAndKeyIn(namespaceId, keys);
+    }
+    List<Item> items = Lists.newArrayListWithCapacity(keys.size());
+    for (List<String> batch : Lists.partition(Lists.newArrayList(keys), BATCH_SIZE)) {
+      items.addAll(itemRepository.findByNamespaceIdAndKeyIn(namespaceId, batch));
+    }
+    return items;
+  }
+
+  /**
+   * the number of distinct non-empty keys, which is the size of the configurations to publish
+   */
+  public long countKeys(long namespaceId) {
+    return itemRepository.countDistinctKeysByNamespaceId(namespaceId);
+  }
+
+  /**
+   * the keys of the items created, updated or deleted since the time
+   */
+  public List<String> findKeysModifiedSince(long namespaceId, Date since) {
+    return itemRepository.findKeysModifiedSince(namespaceId, since);
+  }
+
   public Item findLastOne(String appId, String clusterName, String namespaceName) {
     Namespace namespace = namespaceService.findOne(appId, clusterName, namespaceName);
     if (namespace == null) {
@@ -85,6 +171,20 @@ public class ItemService {
     return item;
   }
 
+  /**
+   * 查询的 Item 与持久化上下文分离，修改后需通过 {@link #batchUpdate(List)} 保存
+   *
+   * The items found are detached from the persistence context, so changes are only saved by {@link #batchUpdate(List)}
+   */
+  public List<Item> findByIds(Collection<Long> ids) {
+    List<Item> items = Lists.newArrayListWithCapacity(ids.size());
+    for (List<Long> batch : Lists.partition(Lists.newArrayList(ids), BATCH_SIZE)) {
+      itemRepository.findAllById(batch).forEach(items::add);
+    }
+    items.forEach(entityManager::detach);
+    return items;
+  }
+
   public List<Item> findItemsWithoutOrdered(Long namespaceId) {
     List<Item> items = itemRepository.findByNamespaceId(namespaceId);
     if (items == null) {
@@ -149,6 +249,116 @@ public class ItemService {
     return item;
   }
 
+  /**
+   * 以 JDBC 批量写入 Item 及其 Audit，MySQL 需在连接串中开启 rewriteBatchedStatements 才会合并为多值 INSERT
+   *
+   * Insert the items and their audits with JDBC batches, the ids generated are set back to the items. For MySQL, the
+   * batches are only rewritten to multi-row inserts with rewriteBatchedStatements=true in the jdbc url.
+   */
+  @Transactional
+  public List<Item> batchSave(List<Item> items) {
+    if (items.isEmpty()) {
+      return items;
+    }
+    Map<Long, Integer> lastLineNums = Maps.newHashMap();
+    Date now = new Date();
+    for (Item item : items) {
+      checkItemKeyLength(item.getKey());
+      checkItemValueLength(item.getNamespaceId(), item.getValue());
+      // 未指定 `lineNum` 的 Item 依次排在 Namespace 最后
+      //the items without lineNum are appended to the namespace in turn
+      int lastLineNum = lastLineNums.computeIfAbsent(item.getNamespaceId(), namespaceId -> {
+        Item lastItem = findLastOne(namespaceId);
+        return lastItem == null || lastItem.getLineNum() == null ? 0 : lastItem.getLineNum();
+      });
+      if (item.getLineNum() == null || item.getLineNum() == 0) {
+        item.setLineNum(lastLineNum + 1);
+      }
+      lastLineNums.put(item.getNamespaceId(), Math.max(lastLineNum, item.getLineNum()));
+      item.setDataChangeCreatedTime(now);
+      item.setDataChangeLastModifiedTime(now);
+    }
+
+    for (List<Item> batch : Lists.partition(items, BATCH_SIZE)) {
+      insert(batch);
+    }
+
+    auditService.audit(items.stream()
+        .map(item -> assembleAudit(item.getId(), Audit.OP.INSERT, item.getDataChangeCreatedBy()))
+        .collect(Collectors.toList()));
+    return items;
+  }
+
+  private void insert(List<Item> items) {
+    jdbcTemplate.execute(connection -> connection.prepareStatement(INSERT_ITEM_SQL, Statement.RETURN_GENERATED_KEYS),
+        (PreparedStatement statement) -> {
+          for (Item item : items) {
+            statement.setLong(1, item.getNamespaceId());
+            statement.setString(2, item.getKey());
+            statement.setString(3, item.getValue());
+            statement.setString(4, item.getComment());
+            statement.setInt(5, item.getLineNum());
+            statement.setString(6, item.getDataChangeCreatedBy());
+            statement.setTimestamp(7, new Timestamp(item.getDataChangeCreatedTime().getTime()));
+            statement.setString(8, item.getDataChangeLastModifiedBy());
+            statement.setTimestamp(9, new Timestamp(item.getDataChangeLastModifiedTime().getTime()));
+            statement.addBatch();
+          }
+          statement.executeBatch();
+          try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+            for (Item item : items) {
+              if (!generatedKeys.next()) {
+                throw new IllegalStateException("Failed to get the generated ids of the items");
+              }
+              item.setId(generatedKeys.getLong(1));
+            }
+          }
+          return null;
+        });
+  }
+
+  /**
+   * 以 JDBC 批量更新 Item 的 value、comment 及 lineNum
+   *
+   * Update the value, comment and lineNum of the items with JDBC batches
+   */
+  @Transactional
+  public List<Item> batchUpdate(List<Item> items) {
+    if (items.isEmpty()) {
+      return items;
+    }
+    Date now = new Date();
+    for (Item item : items) {
+      checkItemValueLength(item.getNamespaceId(), item.getValue());
+      item.setDataChangeLastModifiedTime(now);
+    }
+    Timestamp lastModifiedTime = new Timestamp(now.getTime());
+    for (List<Item> batch : Lists.partition(items, BATCH_SIZE)) {
+      jdbcTemplate.batchUpdate(UPDATE_ITEM_SQL, batch, batch.size(), (statement, item) -> {
+        statement.setString(1, item.getValue());
+        statement.setString(2, item.getComment());
+        statement.setInt(3, item.getLineNum());
+        statement.setString(4, item.getDataChangeLastModifiedBy());
+        statement.setTimestamp(5, lastModifiedTime);
+        statement.setLong(6, item.getId());
+      });
+    }
+
+    auditService.audit(items.stream()
+        .map(item -> assembleAudit(item.getId(), Audit.OP.UPDATE, item.getDataChangeLastModifiedBy()))
+        .collect(Collectors.toList()));
+    return items;
+  }
+
+  private Audit assembleAudit(long itemId, Audit.OP op, String operator) {
+    Audit audit = new Audit();
+    audit.setEntityName(Item.class.getSimpleName());
+    audit.setEntityId(itemId);
+    audit.setOpName(op.name());
+    audit.setDataChangeCreatedBy(operator);
+    return audit;
+  }
+
   @Transactional
   public Item update(Item item) {
     checkItemValueLength(item.getNamespaceId(), item.getValue());
@@ -1,5 +1,8 @@
 package com.ctrip.framework.apollo.biz.service;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
 import com.ctrip.framework.apollo.biz.entity.Audit;
 import com.ctrip.framework.apollo.biz.entity.Commit;
 import com.ctrip.framework.apollo.biz.entity.Item;
@@ -15,7 +18,18 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
 
+/**
+ * 一次修改的 Item 以 JDBC 批量写入，各表每批一次往返，缩短持有 Namespace 锁的事务
+ *
+ * The items of a change set are written in JDBC batches, with one round trip per table and batch, to keep the
+ * transaction holding the namespace lock short
+ */
 @Service
 public class ItemSetService {
 
@@ -39,14 +53,18 @@ public class ItemSetService {
     String operator = changeSet.getDataChangeLastModifiedBy();
     ConfigChangeContentBuilder configChangeContentBuilder = new ConfigChangeContentBuilder();
 
-    // 保存 createItems
+    // 批量保存 createItems
     if (!CollectionUtils.isEmpty(changeSet.getCreateItems())) {
+      List<Item> entities = Lists.newArrayListWithCapacity(changeSet.getCreateItems().size());
       for (ItemDTO item : changeSet.getCreateItems()) {
         Item entity = BeanUtils.transfrom(Item.class, item);
+        entity.setId(0);//protection
         entity.setDataChangeCreatedBy(operator);
         entity.setDataChangeLastModifiedBy(operator);
-        // 保存 Item
-        Item createdItem = itemService.save(entity);
+        entities.add(entity);
+      }
+      // 批量保存 Item
+      for (Item createdItem : itemService.batchSave(entities)) {
         // 添加到 ConfigChangeContentBuilder 中
         configChangeContentBuilder.createItem(createdItem);
       }
@@ -54,37 +72,43 @@ public class ItemSetService {
       auditService.audit("ItemSet", null, Audit.OP.INSERT, operator);
     }
 
-    // 更新 updateItems
+    // 批量更新 updateItems
     if (!CollectionUtils.isEmpty(changeSet.getUpdateItems())) {
+      Map<Long, Item> managedItems = Maps.uniqueIndex(itemService.findByIds(changeSet.getUpdateItems().stream()
+          .map(ItemDTO::getId).collect(Collectors.toSet())), Item::getId);
+      List<Item> beforeUpdateItems = Lists.newArrayListWithCapacity(changeSet.getUpdateItems().size());
+      List<Item> toUpdateItems = Lists.newArrayListWithCapacity(changeSet.getUpdateItems().size());
       for (ItemDTO item : changeSet.getUpdateItems()) {
         Item entity = BeanUtils.transfrom(Item.class, item);
 
-        Item managedItem = itemService.findOne(entity.getId());
+        Item managedItem = managedItems.get(entity.getId());
         if (managedItem == null) {
           throw new NotFoundException(String.format("item not found.(key=%s)", entity.getKey()));
         }
-        Item beforeUpdateItem = BeanUtils.transfrom(Item.class, managedItem);
+        beforeUpdateItems.add(BeanUtils.transfrom(Item.class, managedItem));
 
         //protect. only value,comment,lastModifiedBy,lineNum can be modified
         managedItem.setValue(entity.getValue());
         managedItem.setComment(entity.getComment());
         managedItem.setLineNum(entity.getLineNum());
         managedItem.setDataChangeLastModifiedBy(operator);
+        toUpdateItems.add(managedItem);
+      }
 
-        // 更新 Item
-        Item updatedItem = itemService.update(managedItem);
+      // 批量更新 Item
+      List<Item> updatedItems = itemService.batchUpdate(toUpdateItems);
+      for (int i = 0; i < updatedItems.size(); i++) {
         // 添加到 ConfigChangeContentBuilder 中
-        configChangeContentBuilder.updateItem(beforeUpdateItem, updatedItem);
-
+        configChangeContentBuilder.updateItem(beforeUpdateItems.get(i), updatedItems.get(i));
       }
       auditService.audit("ItemSet", null, Audit.OP.UPDATE, operator);
     }
 
-    // 删除 deleteItems
+    // 批量删除 deleteItems
     if (!CollectionUtils.isEmpty(changeSet.getDeleteItems())) {
-      for (ItemDTO item : changeSet.getDeleteItems()) {
-        // 删除 Item
-        Item deletedItem = itemService.delete(item.getId(), operator);
+      List<Item> deletedItems = itemService.batchDelete(changeSet.getDeleteItems().stream().map(ItemDTO::getId)
+          .collect(Collectors.toCollection(LinkedHashSet::new)), operator);
+      for (Item deletedItem : deletedItems) {
         // 添加到 ConfigChangeContentBuilder 中
         configChangeContentBuilder.deleteItem(deletedItem);
       }
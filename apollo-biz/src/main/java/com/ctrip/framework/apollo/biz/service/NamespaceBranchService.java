@@ -6,7 +6,7 @@ import com.ctrip.framework.apollo.biz.entity.Audit;
 import com.ctrip.framework.apollo.biz.entity.Cluster;
 import com.ctrip.framework.apollo.biz.entity.GrayReleaseRule;
 import com.ctrip.framework.apollo.biz.entity.Namespace;
-import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.entity.ReleaseHeader;
 import com.ctrip.framework.apollo.biz.repository.GrayReleaseRuleRepository;
 import com.ctrip.framework.apollo.common.constants.NamespaceBranchStatus;
 import com.ctrip.framework.apollo.common.constants.ReleaseOperation;
@@ -81,7 +81,7 @@ public class NamespaceBranchService {
     GrayReleaseRule oldRules = grayReleaseRuleRepository
         .findTopByAppIdAndClusterNameAndNamespaceNameAndBranchNameOrderByIdDesc(appId, clusterName, namespaceName, branchName);
 
-    Release latestBranchRelease = releaseService.findLatestActiveRelease(appId, branchName, namespaceName);
+    ReleaseHeader latestBranchRelease = releaseService.findLatestActiveReleaseHeader(appId, branchName, namespaceName);
 
     long latestBranchReleaseId = latestBranchRelease != null ? latestBranchRelease.getId() : 0;
 
@@ -144,7 +144,7 @@ public class NamespaceBranchService {
       return;
     }
 
-    Release latestBranchRelease = releaseService.findLatestActiveRelease(appId, branchName, namespaceName);
+    ReleaseHeader latestBranchRelease = releaseService.findLatestActiveReleaseHeader(appId, branchName, namespaceName);
 
     long latestBranchReleaseId = latestBranchRelease != null ? latestBranchRelease.getId() : 0;
 
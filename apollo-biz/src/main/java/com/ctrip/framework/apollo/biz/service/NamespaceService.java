@@ -8,6 +8,7 @@ import com.ctrip.framework.apollo.biz.entity.Cluster;
 import com.ctrip.framework.apollo.biz.entity.Item;
 import com.ctrip.framework.apollo.biz.entity.Namespace;
 import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.entity.ReleaseHeader;
 import com.ctrip.framework.apollo.biz.message.MessageSender;
 import com.ctrip.framework.apollo.biz.message.Topics;
 import com.ctrip.framework.apollo.biz.repository.NamespaceRepository;
@@ -98,7 +99,7 @@ public class NamespaceService {
 
     //custom cluster's namespace exist and has published.
     //return custom cluster's namespace
-    Release latestActiveRelease = releaseService.findLatestActiveRelease(namespace);
+    ReleaseHeader latestActiveRelease = releaseService.findLatestActiveReleaseHeader(namespace);
     if (latestActiveRelease != null) {
       return namespace;
     }
@@ -115,7 +116,7 @@ public class NamespaceService {
     //custom cluster's namespace exist but never published.
     //and default cluster's namespace exist and has published.
     //return default cluster's namespace
-    Release defaultNamespaceLatestActiveRelease = releaseService.findLatestActiveRelease(defaultNamespace);
+    ReleaseHeader defaultNamespaceLatestActiveRelease = releaseService.findLatestActiveReleaseHeader(defaultNamespace);
     if (defaultNamespaceLatestActiveRelease != null) {
       return defaultNamespace;
     }
@@ -380,7 +381,7 @@ public class NamespaceService {
 
   private boolean isNamespaceNotPublished(Namespace namespace) {
 
-    Release latestRelease = releaseService.findLatestActiveRelease(namespace);
+    ReleaseHeader latestRelease = releaseService.findLatestActiveReleaseHeader(namespace);
     long namespaceId = namespace.getId();
 
     if (latestRelease == null) {
@@ -395,7 +396,13 @@ public class NamespaceService {
       return false;
     }
 
-    Map<String, String> publishedConfiguration = gson.fromJson(latestRelease.getConfigurations(), GsonType.CONFIG);
+    // 发布后有修改时，才加载 configurations 比较
+    //load the configurations only if there are items modified after the last publish
+    Release release = releaseService.findOne(latestRelease.getId());
+    if (release == null) {
+      return true;
+    }
+    Map<String, String> publishedConfiguration = gson.fromJson(release.getConfigurations(), GsonType.CONFIG);
     for (Item item : itemsModifiedAfterLastPublish) {
       if (!Objects.equals(item.getValue(), publishedConfiguration.get(item.getKey()))) {
         return true;
@@ -0,0 +1,131 @@
+package com.ctrip.framework.apollo.biz.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.metrics.ApolloMetrics;
+import com.ctrip.framework.apollo.biz.repository.ReleaseRepository;
+import com.ctrip.framework.apollo.biz.utils.ReleaseConfigurationsCodec;
+import com.ctrip.framework.apollo.tracer.Tracer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 以增量形式保存 Release 的配置，每隔若干次发布保存一次全量
+ *
+ * Store the configurations of a release as the changes against the previous active release, with a full checkpoint
+ * every apollo.release.delta.checkpoint-interval releases. The reconstructed configurations are cached by release id,
+ * so resolving a delta usually costs one cache lookup of its base.
+ */
+@Service
+public class ReleaseDeltaService {
+  private static final long MAX_CACHED_CONFIGURATIONS_LENGTH = 50 * 1024 * 1024;
+
+  @Autowired
+  private BizConfig bizConfig;
+  @Autowired
+  private ReleaseRepository releaseRepository;
+
+  private final Cache<Long, String> configurationsCache;
+
+  public ReleaseDeltaService() {
+    configurationsCache = CacheBuilder.newBuilder()
+        .maximumWeight(MAX_CACHED_CONFIGURATIONS_LENGTH)
+        .weigher((Long releaseId, String configurations) -> configurations.length())
+        .expireAfterAccess(1, TimeUnit.HOURS)
+        .recordStats()
+        .build();
+    ApolloMetrics.monitorCache(configurationsCache, "ReleaseDeltaService.configurations");
+  }
+
+  /**
+   * Decide the stored form of a new release, which is a delta against the previous active release of the namespace
+   * if enabled and the chain is shorter than the checkpoint interval, otherwise the full configurations
+   */
+  public void encode(Release release) {
+    int minSize = bizConfig.releaseConfigurationsCompressionMinSize();
+    int checkpointInterval = bizConfig.releaseDeltaCheckpointInterval();
+    if (checkpointInterval > 1) {
+      Release previousRelease = releaseRepository
+          .findFirstByAppIdAndClusterNameAndNamespaceNameAndIsAbandonedFalseOrderByIdDesc(release.getAppId(),
+              release.getClusterName(), release.getNamespaceName());
+      if (previousRelease != null) {
+        int depth = ReleaseConfigurationsCodec.getDeltaDepth(previousRelease.getStoredConfigurations()) + 1;
+        if (depth < checkpointInterval) {
+          resolve(previousRelease);
+          String delta = ReleaseConfigurationsCodec.encodeDelta(previousRelease.getId(), depth,
+              ReleaseConfigurationsCodec.toMap(previousRelease.getConfigurations()),
+              ReleaseConfigurationsCodec.toMap(release.getConfigurations()), minSize);
+          // 增量不比全量小时，保存全量
+          //store the full configurations if the delta doesn't pay off
+          if (delta.length() < release.getConfigurations().length()) {
+            release.storeConfigurations(delta);
+            release.setDeltaBaseReleaseId(previousRelease.getId());
+            return;
+          }
+        }
+      }
+    }
+    release.setDeltaBaseReleaseId(0);
+    release.compressConfigurations(minSize);
+  }
+
+  /**
+   * Reconstruct the configurations of the release if it is stored as a delta
+   */
+  public void resolve(Release release) {
+    if (release == null || !ReleaseConfigurationsCodec.isDelta(release.getStoredConfigurations())) {
+      return;
+    }
+    release.resolveConfigurations(reconstruct(release.getId(), release.getStoredConfigurations()));
+  }
+
+  public void resolve(Iterable<Release> releases) {
+    if (releases == null) {
+      return;
+    }
+    for (Release release : releases) {
+      resolve(release);
+    }
+  }
+
+  private String reconstruct(long releaseId, String stored) {
+    try {
+      return configurationsCache.get(releaseId, () -> {
+        Tracer.logEvent("Apollo.ReleaseDelta.Reconstruct", String.valueOf(releaseId));
+        String base = findFullConfigurations(ReleaseConfigurationsCodec.getDeltaBaseId(stored));
+        return ReleaseConfigurationsCodec.toJson(
+            ReleaseConfigurationsCodec.decodeDelta(stored, ReleaseConfigurationsCodec.toMap(base)));
+      });
+    } catch (ExecutionException | UncheckedExecutionException ex) {
+      throw new IllegalStateException(String.format("Reconstruct configurations of release %d failed", releaseId),
+          ex.getCause());
+    }
+  }
+
+  private String findFullConfigurations(long releaseId) {
+    String configurations = configurationsCache.getIfPresent(releaseId);
+    if (configurations != null) {
+      return configurations;
+    }
+    // 基准 Release 可能已被回滚，但不会被删除
+    //the base release might be abandoned by rollback, but is never removed while a delta depends on it
+    Release release = releaseRepository.findById(releaseId).orElse(null);
+    if (release == null) {
+      throw new IllegalStateException(String.format("Base release %d not found", releaseId));
+    }
+    if (ReleaseConfigurationsCodec.isDelta(release.getStoredConfigurations())) {
+      return reconstruct(releaseId, release.getStoredConfigurations());
+    }
+    configurations = release.getConfigurations();
+    configurationsCache.put(releaseId, configurations);
+    return configurations;
+  }
+}
@@ -8,11 +8,14 @@ import com.ctrip.framework.apollo.biz.repository.ReleaseHistoryRepository;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -26,13 +29,37 @@ public class ReleaseHistoryService {
   private ReleaseHistoryRepository releaseHistoryRepository;
   @Autowired
   private AuditService auditService;
+  @Autowired
+  private ArchiveService archiveService;
 
 
   public Page<ReleaseHistory> findReleaseHistoriesByNamespace(String appId, String clusterName,
                                                               String namespaceName, Pageable
                                                                   pageable) {
-    return releaseHistoryRepository.findByAppIdAndClusterNameAndNamespaceNameOrderByIdDesc(appId, clusterName,
-                                                                                           namespaceName, pageable);
+    Page<ReleaseHistory> releaseHistories = releaseHistoryRepository
+        .findByAppIdAndClusterNameAndNamespaceNameOrderByIdDesc(appId, clusterName, namespaceName, pageable);
+    // 在线记录不足一页时由归档记录补齐
+    //fall through to the archived release histories
+    List<ReleaseHistory> content = archiveService.fillPage(ReleaseHistory.class, appId, clusterName, namespaceName,
+        releaseHistories.getContent(), pageable, releaseHistories::getTotalElements);
+    return new PageImpl<>(content, pageable, releaseHistories.getTotalElements()
+        + archiveService.countByNamespace(ReleaseHistory.class, appId, clusterName, namespaceName));
+  }
+
+  /**
+   * 按 id 翻页，不随页数变慢
+   *
+   * Keyset pagination, which seeks by id instead of skipping the previous pages
+   *
+   * @param beforeId the id of the last release history in the previous page, Long.MAX_VALUE for the first page
+   */
+  public List<ReleaseHistory> findReleaseHistoriesByNamespace(String appId, String clusterName, String namespaceName,
+                                                              long beforeId, int size) {
+    List<ReleaseHistory> releaseHistories = releaseHistoryRepository
+        .findByAppIdAndClusterNameAndNamespaceNameAndIdLessThanOrderByIdDesc(appId, clusterName, namespaceName,
+            beforeId, PageRequest.of(0, size));
+    return archiveService.fillPage(ReleaseHistory.class, appId, clusterName, namespaceName, releaseHistories,
+        beforeId, size);
   }
 
   public Page<ReleaseHistory> findByReleaseIdAndOperation(long releaseId, int operation, Pageable page) {
@@ -8,6 +8,7 @@ import com.ctrip.framework.apollo.tracer.Tracer;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 
 import java.util.Collection;
@@ -47,4 +48,12 @@ public class ReleaseMessageService {
     }
     return releaseMessages;
   }
+
+  @Transactional
+  public int batchDelete(Collection<Long> ids) {
+    if (CollectionUtils.isEmpty(ids)) {
+      return 0;
+    }
+    return releaseMessageRepository.batchDelete(ids);
+  }
 }
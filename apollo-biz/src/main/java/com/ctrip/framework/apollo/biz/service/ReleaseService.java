@@ -2,15 +2,20 @@ package com.ctrip.framework.apollo.biz.service;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.gson.Gson;
 
+import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.biz.entity.Audit;
+import com.ctrip.framework.apollo.biz.entity.Commit;
 import com.ctrip.framework.apollo.biz.entity.GrayReleaseRule;
 import com.ctrip.framework.apollo.biz.entity.Item;
 import com.ctrip.framework.apollo.biz.entity.Namespace;
 import com.ctrip.framework.apollo.biz.entity.NamespaceLock;
 import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.entity.ReleaseHeader;
 import com.ctrip.framework.apollo.biz.repository.ReleaseRepository;
+import com.ctrip.framework.apollo.biz.utils.ConfigChangeContentBuilder;
 import com.ctrip.framework.apollo.biz.utils.ReleaseKeyGenerator;
 import com.ctrip.framework.apollo.common.constants.GsonType;
 import com.ctrip.framework.apollo.common.constants.ReleaseOperation;
@@ -20,7 +25,9 @@ import com.ctrip.framework.apollo.common.exception.BadRequestException;
 import com.ctrip.framework.apollo.common.exception.NotFoundException;
 import com.ctrip.framework.apollo.common.utils.GrayReleaseRuleItemTransformer;
 import com.ctrip.framework.apollo.core.utils.StringUtils;
+import com.ctrip.framework.apollo.tracer.Tracer;
 
+import org.apache.commons.lang.time.DateUtils;
 import org.apache.commons.lang.time.FastDateFormat;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
@@ -44,11 +51,16 @@ import java.util.Set;
 public class ReleaseService {
 
   private static final FastDateFormat TIMESTAMP_FORMAT = FastDateFormat.getInstance("yyyyMMddHHmmss");
+  private static final int CHANGE_LOOKBACK_IN_SECONDS = 60;
   private Gson gson = new Gson();
 
+  @Autowired
+  private BizConfig bizConfig;
   @Autowired
   private ReleaseRepository releaseRepository;
   @Autowired
+  private ReleaseDeltaService releaseDeltaService;
+  @Autowired
   private ItemService itemService;
   @Autowired
   private AuditService auditService;
@@ -62,26 +74,48 @@ public class ReleaseService {
   private ReleaseHistoryService releaseHistoryService;
   @Autowired
   private ItemSetService itemSetService;
+  @Autowired
+  private ArchiveService archiveService;
+  @Autowired
+  private CommitService commitService;
 
   public Release findOne(long releaseId) {
-    return releaseRepository.findById(releaseId).orElse(null);
+    Release release = releaseRepository.findById(releaseId).orElse(null);
+    if (release == null) {
+      // 已归档的 Release 从归档表读取
+      //the archived release is read from the archive
+      List<Release> archived = archiveService.findByIds(Release.class, Collections.singleton(releaseId));
+      return archived.isEmpty() ? null : archived.get(0);
+    }
+    releaseDeltaService.resolve(release);
+    return release;
   }
 
 
   public Release findActiveOne(long releaseId) {
-    return releaseRepository.findByIdAndIsAbandonedFalse(releaseId);
+    Release release = releaseRepository.findByIdAndIsAbandonedFalse(releaseId);
+    releaseDeltaService.resolve(release);
+    return release;
   }
 
   public List<Release> findByReleaseIds(Set<Long> releaseIds) {
     Iterable<Release> releases = releaseRepository.findAllById(releaseIds);
-    if (releases == null) {
-      return Collections.emptyList();
+    List<Release> result = releases == null ? Lists.newArrayList() : Lists.newArrayList(releases);
+    releaseDeltaService.resolve(result);
+    // 已归档的 Release 从归档表读取
+    //the archived releases are read from the archive
+    if (result.size() < releaseIds.size()) {
+      Set<Long> archivedIds = Sets.newHashSet(releaseIds);
+      result.forEach(release -> archivedIds.remove(release.getId()));
+      result.addAll(archiveService.findByIds(Release.class, archivedIds));
     }
-    return Lists.newArrayList(releases);
+    return result;
   }
 
   public List<Release> findByReleaseKeys(Set<String> releaseKeys) {
-    return releaseRepository.findByReleaseKeyIn(releaseKeys);
+    List<Release> releases = releaseRepository.findByReleaseKeyIn(releaseKeys);
+    releaseDeltaService.resolve(releases);
+    return releases;
   }
 
   public Release findLatestActiveRelease(Namespace namespace) {
@@ -91,9 +125,10 @@ public class ReleaseService {
   }
 
   public Release findLatestActiveRelease(String appId, String clusterName, String namespaceName) {
-    return releaseRepository.findFirstByAppIdAndClusterNameAndNamespaceNameAndIsAbandonedFalseOrderByIdDesc(appId,
-                                                                                                            clusterName,
-                                                                                                            namespaceName);
+    Release release = releaseRepository.findFirstByAppIdAndClusterNameAndNamespaceNameAndIsAbandonedFalseOrderByIdDesc(
+        appId, clusterName, namespaceName);
+    releaseDeltaService.resolve(release);
+    return release;
   }
 
   public List<Release> findAllReleases(String appId, String clusterName, String namespaceName, Pageable page) {
@@ -104,7 +139,9 @@ public class ReleaseService {
     if (releases == null) {
       return Collections.emptyList();
     }
-    return releases;
+    releaseDeltaService.resolve(releases);
+    return archiveService.fillPage(Release.class, appId, clusterName, namespaceName, releases, page,
+        () -> releaseRepository.countByAppIdAndClusterNameAndNamespaceName(appId, clusterName, namespaceName));
   }
 
   public List<Release> findActiveReleases(String appId, String clusterName, String namespaceName, Pageable page) {
@@ -116,9 +153,46 @@ public class ReleaseService {
     if (releases == null) {
       return Collections.emptyList();
     }
+    releaseDeltaService.resolve(releases);
     return releases;
   }
 
+  /**
+   * 只查询元数据，不加载 configurations
+   */
+  public ReleaseHeader findLatestActiveReleaseHeader(Namespace namespace) {
+    return findLatestActiveReleaseHeader(namespace.getAppId(), namespace.getClusterName(),
+                                         namespace.getNamespaceName());
+  }
+
+  public ReleaseHeader findLatestActiveReleaseHeader(String appId, String clusterName, String namespaceName) {
+    List<ReleaseHeader> headers = findActiveReleaseHeaders(appId, clusterName, namespaceName, PageRequest.of(0, 1));
+    return headers.isEmpty() ? null : headers.get(0);
+  }
+
+  public List<ReleaseHeader> findActiveReleaseHeaders(String appId, String clusterName, String namespaceName,
+                                                      Pageable page) {
+    List<ReleaseHeader> headers = releaseRepository.findActiveReleaseHeaders(appId, clusterName, namespaceName, page);
+    if (headers == null) {
+      return Collections.emptyList();
+    }
+    return headers;
+  }
+
+  public List<ReleaseHeader> findReleaseHeadersByIds(Set<Long> releaseIds) {
+    if (CollectionUtils.isEmpty(releaseIds)) {
+      return Collections.emptyList();
+    }
+    return releaseRepository.findReleaseHeadersByIds(releaseIds);
+  }
+
+  public List<ReleaseHeader> findReleaseHeadersByReleaseKeys(Set<String> releaseKeys) {
+    if (CollectionUtils.isEmpty(releaseKeys)) {
+      return Collections.emptyList();
+    }
+    return releaseRepository.findReleaseHeadersByReleaseKeys(releaseKeys);
+  }
+
   @Transactional
   public Release mergeBranchChangeSetsAndRelease(Namespace namespace, String branchName, String releaseName,
                                                  String releaseComment, boolean isEmergencyPublish,
@@ -128,11 +202,11 @@ public class ReleaseService {
 
     itemSetService.updateSet(namespace, changeSets);
 
-    Release branchRelease = findLatestActiveRelease(namespace.getAppId(), branchName, namespace
+    ReleaseHeader branchRelease = findLatestActiveReleaseHeader(namespace.getAppId(), branchName, namespace
         .getNamespaceName());
     long branchReleaseId = branchRelease == null ? 0 : branchRelease.getId();
 
-    Map<String, String> operateNamespaceItems = getNamespaceItems(namespace);
+    Map<String, String> operateNamespaceItems = getNamespaceItems(namespace, findLatestActiveRelease(namespace));
 
     Map<String, Object> operationContext = Maps.newHashMap();
     operationContext.put(ReleaseOperationContext.SOURCE_BRANCH, branchName);
@@ -152,16 +226,13 @@ public class ReleaseService {
     // 校验锁定
     checkLock(namespace, isEmergencyPublish, operator);
 
-    // 获得 Namespace 的普通配置 Map
-    Map<String, String> operateNamespaceItems = getNamespaceItems(namespace);
-
     // 获得父 Namespace
     Namespace parentNamespace = namespaceService.findParentNamespace(namespace);
 
     // todo 若有父 Namespace
     //branch release
     if (parentNamespace != null) {
-      return publishBranchNamespace(parentNamespace, namespace, operateNamespaceItems,
+      return publishBranchNamespace(parentNamespace, namespace, getNamespaceItems(namespace),
                                     releaseName, releaseComment, operator, isEmergencyPublish);
     }
 
@@ -169,10 +240,10 @@ public class ReleaseService {
     Namespace childNamespace = namespaceService.findChildNamespace(namespace);
 
     // 获取上一次并且有效的 Release 对象
-    Release previousRelease = null;
-    if (childNamespace != null) {
-      previousRelease = findLatestActiveRelease(namespace);
-    }
+    Release previousRelease = findLatestActiveRelease(namespace);
+
+    // 基于上一次 Release 获得 Namespace 的普通配置 Map
+    Map<String, String> operateNamespaceItems = getNamespaceItems(namespace, previousRelease);
 
     // 创建 operationContext
     //master release
@@ -286,7 +357,7 @@ public class ReleaseService {
                                 Map<String, String> configurations, String operator,
                                 int releaseOperation, Map<String, Object> operationContext) {
     // 获取最后有效的 Release 对象
-    Release lastActiveRelease = findLatestActiveRelease(namespace);
+    ReleaseHeader lastActiveRelease = findLatestActiveReleaseHeader(namespace);
     long previousReleaseId = lastActiveRelease == null ? 0 : lastActiveRelease.getId();
     // 创建 Release 对象并保存
     Release release = createRelease(namespace, releaseName, releaseComment,
@@ -305,9 +376,9 @@ public class ReleaseService {
                                 String releaseName, String releaseComment,
                                 Map<String, String> configurations, long baseReleaseId,
                                 String operator, int releaseOperation, boolean isEmergencyPublish) {
-    Release previousRelease = findLatestActiveRelease(childNamespace.getAppId(),
-                                                      childNamespace.getClusterName(),
-                                                      childNamespace.getNamespaceName());
+    ReleaseHeader previousRelease = findLatestActiveReleaseHeader(childNamespace.getAppId(),
+                                                                  childNamespace.getClusterName(),
+                                                                  childNamespace.getNamespaceName());
     long previousReleaseId = previousRelease == null ? 0 : previousRelease.getId();
 
     Map<String, Object> releaseOperationContext = Maps.newHashMap();
@@ -369,6 +440,59 @@ public class ReleaseService {
     return configurations;
   }
 
+  /**
+   * 基于上一次 Release 及其后的 Commit 增量获得 Namespace 的普通配置 Map，无法增量时读取全部 Item
+   *
+   * Build the configurations of a master namespace from its previous release, re-reading only the items of the keys
+   * changed by the commits since then, or of the items modified since then, deleted ones included, which covers the
+   * changes made without commits. The changes are looked up a little before the release was created, as an item
+   * change committed concurrently with the release might carry an earlier time, and re-reading the current items of
+   * the keys is the same no matter how many times it is done. Fall back to all the items when there are too many
+   * commits, when the commits might have been archived, or when the result doesn't have as many keys as the items.
+   * Since the times are written by the clocks of the admin services, it is only enabled by
+   * apollo.release.incremental-build.max-commits.
+   */
+  private Map<String, String> getNamespaceItems(Namespace namespace, Release previousRelease) {
+    int maxCommits = bizConfig.releaseIncrementalBuildMaxCommits();
+    if (maxCommits <= 0 || previousRelease == null || previousRelease.getDataChangeCreatedTime() == null) {
+      return getNamespaceItems(namespace);
+    }
+    Date since = DateUtils.addSeconds(previousRelease.getDataChangeCreatedTime(), -CHANGE_LOOKBACK_IN_SECONDS);
+    int commitRetentionInDays = bizConfig.archiveRetentionInDays(Commit.class.getSimpleName());
+    if (commitRetentionInDays > 0 && since.before(DateUtils.addDays(new Date(), 1 - commitRetentionInDays))) {
+      return getNamespaceItems(namespace);
+    }
+    List<Commit> commits = commitService.findSince(namespace.getAppId(), namespace.getClusterName(),
+        namespace.getNamespaceName(), since, maxCommits + 1);
+    if (commits.size() > maxCommits) {
+      return getNamespaceItems(namespace);
+    }
+
+    Set<String> changedKeys = Sets.newHashSet();
+    for (Commit commit : commits) {
+      changedKeys.addAll(ConfigChangeContentBuilder.parseChangedKeys(commit.getChangeSets()));
+    }
+    changedKeys.addAll(itemService.findKeysModifiedSince(namespace.getId(), since));
+    changedKeys.removeIf(StringUtils::isEmpty);
+    Map<String, String> configurations = new HashMap<>(gson.fromJson(previousRelease.getConfigurations(),
+        GsonType.CONFIG));
+    configurations.keySet().removeAll(changedKeys);
+    for (Item item : itemService.findByKeys(namespace.getId(), changedKeys)) {
+      // 库的排序规则可能不区分大小写，只取 key 完全相同的 Item
+      //the collation of the database might be case insensitive, so only the items of exactly the same key are taken
+      if (changedKeys.contains(item.getKey())) {
+        configurations.put(item.getKey(), item.getValue());
+      }
+    }
+
+    if (configurations.size() != itemService.countKeys(namespace.getId())) {
+      Tracer.logEvent("Apollo.Release.IncrementalBuildMismatch", String.format("%s+%s+%s", namespace.getAppId(),
+          namespace.getClusterName(), namespace.getNamespaceName()));
+      return getNamespaceItems(namespace);
+    }
+    return configurations;
+  }
+
   private Map<String, String> getNamespaceReleaseConfiguration(Namespace namespace) {
     Release release = findLatestActiveRelease(namespace);
     Map<String, String> configuration = new HashMap<>();
@@ -391,6 +515,8 @@ public class ReleaseService {
     release.setClusterName(namespace.getClusterName());
     release.setNamespaceName(namespace.getNamespaceName());
     release.setConfigurations(gson.toJson(configurations));
+    // 全量或增量保存
+    releaseDeltaService.encode(release);
     // 保存 Release 到数据库
     release = releaseRepository.save(release);
 
@@ -405,7 +531,10 @@ public class ReleaseService {
 
   @Transactional
   public Release rollback(long releaseId, String operator) {
-    Release release = findOne(releaseId);
+    // 归档的 Release 不能回滚，只查在线数据
+    //an archived release is never rolled back, so only the live ones are looked up
+    Release release = releaseRepository.findById(releaseId).orElse(null);
+    releaseDeltaService.resolve(release);
     if (release == null) {
       throw new NotFoundException("release not found");
     }
@@ -418,7 +547,7 @@ public class ReleaseService {
     String namespaceName = release.getNamespaceName();
 
     PageRequest page = PageRequest.of(0, 2);
-    List<Release> twoLatestActiveReleases = findActiveReleases(appId, clusterName, namespaceName, page);
+    List<ReleaseHeader> twoLatestActiveReleases = findActiveReleaseHeaders(appId, clusterName, namespaceName, page);
     if (twoLatestActiveReleases == null || twoLatestActiveReleases.size() < 2) {
       throw new BadRequestException(String.format(
           "Can't rollback namespace(appId=%s, clusterName=%s, namespaceName=%s) because there is only one active release",
@@ -443,15 +572,17 @@ public class ReleaseService {
   }
 
   private void rollbackChildNamespace(String appId, String clusterName, String namespaceName,
-                                      List<Release> parentNamespaceTwoLatestActiveRelease, String operator) {
+                                      List<ReleaseHeader> parentNamespaceTwoLatestActiveRelease, String operator) {
     Namespace parentNamespace = namespaceService.findOne(appId, clusterName, namespaceName);
     Namespace childNamespace = namespaceService.findChildNamespace(appId, clusterName, namespaceName);
     if (parentNamespace == null || childNamespace == null) {
       return;
     }
 
-    Release abandonedRelease = parentNamespaceTwoLatestActiveRelease.get(0);
-    Release parentNamespaceNewLatestRelease = parentNamespaceTwoLatestActiveRelease.get(1);
+    // 有子 Namespace 时才加载 configurations
+    //load the configurations only if there is a child namespace
+    Release abandonedRelease = findOne(parentNamespaceTwoLatestActiveRelease.get(0).getId());
+    Release parentNamespaceNewLatestRelease = findOne(parentNamespaceTwoLatestActiveRelease.get(1).getId());
 
     Map<String, String> parentNamespaceAbandonedConfiguration = gson.fromJson(abandonedRelease.getConfigurations(),
                                                                               GsonType.CONFIG);
@@ -7,8 +7,10 @@ import com.ctrip.framework.apollo.biz.entity.Item;
 import com.ctrip.framework.apollo.core.utils.StringUtils;
 
 import java.util.Date;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 import org.springframework.beans.BeanUtils;
 
 
@@ -65,6 +67,28 @@ public class ConfigChangeContentBuilder {
     return gson.toJson(this);
   }
 
+  /**
+   * the non-empty keys created, updated or deleted by the change content built
+   */
+  public static Set<String> parseChangedKeys(String configChangeContent) {
+    ConfigChangeContentBuilder changeContent = gson.fromJson(configChangeContent, ConfigChangeContentBuilder.class);
+    Set<String> keys = new HashSet<>();
+    if (changeContent == null) {
+      return keys;
+    }
+    if (changeContent.createItems != null) {
+      changeContent.createItems.forEach(item -> keys.add(item.getKey()));
+    }
+    if (changeContent.updateItems != null) {
+      changeContent.updateItems.forEach(itemPair -> keys.add(itemPair.newItem.getKey()));
+    }
+    if (changeContent.deleteItems != null) {
+      changeContent.deleteItems.forEach(item -> keys.add(item.getKey()));
+    }
+    keys.removeIf(StringUtils::isEmpty);
+    return keys;
+  }
+
   static class ItemPair {
 
     Item oldItem;
@@ -0,0 +1,120 @@
+package com.ctrip.framework.apollo.biz.utils;
+
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 固定分桶的延迟直方图，无锁，适合高频记录
+ *
+ * A lock free latency histogram with fixed buckets, percentiles are approximated by the bucket upper bounds.
+ */
+public class LatencyHistogram {
+  /**
+   * upper bounds of the buckets in milliseconds, the last bucket holds everything above
+   */
+  private static final long[] BUCKET_UPPER_BOUNDS =
+      {50, 100, 250, 500, 1000, 2000, 5000, 10000, 30000, 60000, 300000};
+
+  private final AtomicLongArray bucketCounts = new AtomicLongArray(BUCKET_UPPER_BOUNDS.length + 1);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  public void record(long latencyInMilli) {
+    long latency = Math.max(0, latencyInMilli);
+    bucketCounts.incrementAndGet(bucketIndex(latency));
+    count.increment();
+    sum.add(latency);
+    max.accumulateAndGet(latency, Math::max);
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * @param percentile between 0 and 100
+   * @return the upper bound of the bucket where the percentile falls in, or the max latency for the last bucket
+   */
+  public long getPercentile(double percentile) {
+    long total = getCount();
+    if (total == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(total * percentile / 100);
+    long seen = 0;
+    for (int i = 0; i < BUCKET_UPPER_BOUNDS.length; i++) {
+      seen += bucketCounts.get(i);
+      if (seen >= rank) {
+        return Math.min(BUCKET_UPPER_BOUNDS[i], getMax());
+      }
+    }
+    return getMax();
+  }
+
+  /**
+   * @return the ratio of latencies no more than the threshold, the threshold is rounded down to a bucket bound
+   */
+  public double getRatioWithin(long thresholdInMilli) {
+    long total = getCount();
+    if (total == 0) {
+      return 1;
+    }
+    long within = 0;
+    for (int i = 0; i < BUCKET_UPPER_BOUNDS.length && BUCKET_UPPER_BOUNDS[i] <= thresholdInMilli; i++) {
+      within += bucketCounts.get(i);
+    }
+    return (double) within / total;
+  }
+
+  /**
+   * @return the name of the bucket where the latency falls in, e.g. "<=500ms"
+   */
+  public static String bucketName(long latencyInMilli) {
+    int index = bucketIndex(Math.max(0, latencyInMilli));
+    if (index == BUCKET_UPPER_BOUNDS.length) {
+      return ">" + BUCKET_UPPER_BOUNDS[BUCKET_UPPER_BOUNDS.length - 1] + "ms";
+    }
+    return "<=" + BUCKET_UPPER_BOUNDS[index] + "ms";
+  }
+
+  public Map<String, Object> snapshot(long sloInMilli) {
+    long total = getCount();
+    Map<String, Object> snapshot = Maps.newLinkedHashMap();
+    snapshot.put("count", total);
+    snapshot.put("mean", total == 0 ? 0 : sum.sum() / total);
+    snapshot.put("p50", getPercentile(50));
+    snapshot.put("p90", getPercentile(90));
+    snapshot.put("p99", getPercentile(99));
+    snapshot.put("max", getMax());
+    snapshot.put("withinSlo", getRatioWithin(sloInMilli));
+
+    Map<String, Long> buckets = Maps.newLinkedHashMap();
+    for (int i = 0; i <= BUCKET_UPPER_BOUNDS.length; i++) {
+      long bucketCount = bucketCounts.get(i);
+      if (bucketCount > 0) {
+        buckets.put(i == BUCKET_UPPER_BOUNDS.length ? bucketName(Long.MAX_VALUE)
+            : bucketName(BUCKET_UPPER_BOUNDS[i]), bucketCount);
+      }
+    }
+    snapshot.put("buckets", buckets);
+    return snapshot;
+  }
+
+  private static int bucketIndex(long latency) {
+    for (int i = 0; i < BUCKET_UPPER_BOUNDS.length; i++) {
+      if (latency <= BUCKET_UPPER_BOUNDS[i]) {
+        return i;
+      }
+    }
+    return BUCKET_UPPER_BOUNDS.length;
+  }
+}
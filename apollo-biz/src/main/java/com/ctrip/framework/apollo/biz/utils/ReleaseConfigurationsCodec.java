@@ -0,0 +1,198 @@
+package com.ctrip.framework.apollo.biz.utils;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.BaseEncoding;
+import com.google.gson.Gson;
+
+import com.ctrip.framework.apollo.common.constants.GsonType;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Release.configurations 的存储编码，带版本号，未编码的 JSON 原样读出
+ *
+ * The stored form of Release.configurations is either the plain json of the legacy rows, which always starts with
+ * '{', or a versioned encoding in the format of $version$payload:
+ *
+ * <ul>
+ *   <li>$1$: the base64 of the deflated utf-8 json, since the column is a text one</li>
+ *   <li>$2$baseReleaseId$depth$: the changes against the base release, which is encoded as the json above. The depth
+ *   is the number of deltas from the nearest full release, which is 0 for the full ones</li>
+ * </ul>
+ */
+public class ReleaseConfigurationsCodec {
+  private static final String PREFIX = "$";
+  private static final String DEFLATE_V1 = "$1$";
+  private static final String DELTA_V2 = "$2$";
+  private static final BaseEncoding BASE64 = BaseEncoding.base64();
+  private static final Gson GSON = new Gson();
+
+  /**
+   * @param minSize only the configurations not shorter than it are compressed, 0 means never
+   */
+  public static String encode(String configurations, int minSize) {
+    if (configurations == null || minSize <= 0 || configurations.length() < minSize) {
+      return configurations;
+    }
+    String encoded = DEFLATE_V1 + BASE64.encode(deflate(configurations.getBytes(StandardCharsets.UTF_8)));
+    // 压缩后反而变大时，保留原文
+    //keep the plain json if it doesn't pay off
+    return encoded.length() < configurations.length() ? encoded : configurations;
+  }
+
+  public static String decode(String stored) {
+    if (!isEncoded(stored)) {
+      return stored;
+    }
+    if (stored.startsWith(DEFLATE_V1)) {
+      byte[] compressed = BASE64.decode(stored.substring(DEFLATE_V1.length()));
+      return new String(inflate(compressed), StandardCharsets.UTF_8);
+    }
+    if (isDelta(stored)) {
+      throw new IllegalStateException("The delta release configurations should be resolved against the base release");
+    }
+    throw new IllegalStateException(String.format("Unsupported release configurations encoding: %s",
+        stored.substring(0, Math.min(stored.length(), 8))));
+  }
+
+  public static boolean isEncoded(String stored) {
+    return stored != null && stored.startsWith(PREFIX);
+  }
+
+  public static boolean isDelta(String stored) {
+    return stored != null && stored.startsWith(DELTA_V2);
+  }
+
+  /**
+   * @return the id of the base release of the delta
+   */
+  public static long getDeltaBaseId(String stored) {
+    return Long.parseLong(deltaHeader(stored)[0]);
+  }
+
+  /**
+   * @return the number of deltas from the nearest full release, 0 if the stored configurations are full
+   */
+  public static int getDeltaDepth(String stored) {
+    return isDelta(stored) ? Integer.parseInt(deltaHeader(stored)[1]) : 0;
+  }
+
+  /**
+   * @return the prefix of the stored configurations of all the deltas against the base release
+   */
+  public static String deltaPrefix(long baseReleaseId) {
+    return DELTA_V2 + baseReleaseId + PREFIX;
+  }
+
+  /**
+   * @param minSize the delta not shorter than it is compressed, 0 means never
+   */
+  public static String encodeDelta(long baseReleaseId, int depth, Map<String, String> base,
+                                   Map<String, String> configurations, int minSize) {
+    Delta delta = new Delta();
+    for (Map.Entry<String, String> entry : configurations.entrySet()) {
+      if (!base.containsKey(entry.getKey()) || !Objects.equals(base.get(entry.getKey()), entry.getValue())) {
+        delta.set.put(entry.getKey(), entry.getValue());
+      }
+    }
+    for (String key : base.keySet()) {
+      if (!configurations.containsKey(key)) {
+        delta.removed.add(key);
+      }
+    }
+    return deltaPrefix(baseReleaseId) + depth + PREFIX + encode(GSON.toJson(delta), minSize);
+  }
+
+  /**
+   * @param base the configurations of the base release
+   * @return the configurations of the delta, applied on a copy of base
+   */
+  public static Map<String, String> decodeDelta(String stored, Map<String, String> base) {
+    String[] header = deltaHeader(stored);
+    Delta delta = GSON.fromJson(decode(header[2]), Delta.class);
+    Map<String, String> configurations = Maps.newLinkedHashMap(base);
+    if (delta.removed != null) {
+      for (String key : delta.removed) {
+        configurations.remove(key);
+      }
+    }
+    if (delta.set != null) {
+      configurations.putAll(delta.set);
+    }
+    return configurations;
+  }
+
+  public static Map<String, String> toMap(String configurations) {
+    return GSON.fromJson(configurations, GsonType.CONFIG);
+  }
+
+  public static String toJson(Map<String, String> configurations) {
+    return GSON.toJson(configurations);
+  }
+
+  /**
+   * @return baseReleaseId, depth and payload
+   */
+  private static String[] deltaHeader(String stored) {
+    if (!isDelta(stored)) {
+      throw new IllegalArgumentException("Not delta release configurations");
+    }
+    int baseIdEnd = stored.indexOf(PREFIX, DELTA_V2.length());
+    int depthEnd = baseIdEnd < 0 ? -1 : stored.indexOf(PREFIX, baseIdEnd + 1);
+    if (depthEnd < 0) {
+      throw new IllegalStateException("Corrupted delta release configurations");
+    }
+    return new String[]{stored.substring(DELTA_V2.length(), baseIdEnd), stored.substring(baseIdEnd + 1, depthEnd),
+        stored.substring(depthEnd + 1)};
+  }
+
+  private static class Delta {
+    private Map<String, String> set = Maps.newLinkedHashMap();
+    private List<String> removed = Lists.newArrayList();
+  }
+
+  private static byte[] deflate(byte[] data) {
+    Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+    try {
+      deflater.setInput(data);
+      deflater.finish();
+      ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(data.length / 4, 64));
+      byte[] buffer = new byte[8192];
+      while (!deflater.finished()) {
+        out.write(buffer, 0, deflater.deflate(buffer));
+      }
+      return out.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private static byte[] inflate(byte[] data) {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(data);
+      ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+      byte[] buffer = new byte[8192];
+      while (!inflater.finished()) {
+        int length = inflater.inflate(buffer);
+        if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new IllegalStateException("Truncated release configurations");
+        }
+        out.write(buffer, 0, length);
+      }
+      return out.toByteArray();
+    } catch (DataFormatException ex) {
+      throw new IllegalStateException("Corrupted release configurations", ex);
+    } finally {
+      inflater.end();
+    }
+  }
+}
@@ -2,6 +2,7 @@ package com.ctrip.framework.apollo.biz;
 
 import com.ctrip.framework.apollo.biz.entity.Namespace;
 import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.entity.ReleaseHeader;
 import com.ctrip.framework.apollo.biz.entity.ServerConfig;
 import com.ctrip.framework.apollo.common.entity.AppNamespace;
 
@@ -51,4 +52,11 @@ public class MockBeanFactory {
     return instance;
   }
 
+  public static ReleaseHeader mockReleaseHeader(Release release) {
+    return new ReleaseHeader(release.getId(), release.getReleaseKey(), release.getName(), release.getAppId(),
+        release.getClusterName(), release.getNamespaceName(), release.getComment(), release.isAbandoned(),
+        release.getDataChangeCreatedBy(), release.getDataChangeCreatedTime(), release.getDataChangeLastModifiedBy(),
+        release.getDataChangeLastModifiedTime());
+  }
+
 }
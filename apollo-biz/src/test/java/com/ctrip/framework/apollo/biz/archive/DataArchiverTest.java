@@ -0,0 +1,153 @@
+package com.ctrip.framework.apollo.biz.archive;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import com.ctrip.framework.apollo.biz.AbstractUnitTest;
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.Audit;
+import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.entity.ReleaseHeader;
+import com.ctrip.framework.apollo.biz.repository.AuditRepository;
+import com.ctrip.framework.apollo.biz.repository.CommitRepository;
+import com.ctrip.framework.apollo.biz.repository.ReleaseHistoryRepository;
+import com.ctrip.framework.apollo.biz.repository.ReleaseRepository;
+import com.ctrip.framework.apollo.biz.service.ArchiveService;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DataArchiverTest extends AbstractUnitTest {
+  private DataArchiver dataArchiver;
+  @Mock
+  private BizConfig bizConfig;
+  @Mock
+  private ArchiveService archiveService;
+  @Mock
+  private AuditRepository auditRepository;
+  @Mock
+  private CommitRepository commitRepository;
+  @Mock
+  private ReleaseHistoryRepository releaseHistoryRepository;
+  @Mock
+  private ReleaseRepository releaseRepository;
+  private String someAppId;
+  private String someClusterName;
+  private String someNamespaceName;
+
+  @Before
+  public void setUp() throws Exception {
+    dataArchiver = new DataArchiver();
+    ReflectionTestUtils.setField(dataArchiver, "bizConfig", bizConfig);
+    ReflectionTestUtils.setField(dataArchiver, "archiveService", archiveService);
+    ReflectionTestUtils.setField(dataArchiver, "auditRepository", auditRepository);
+    ReflectionTestUtils.setField(dataArchiver, "commitRepository", commitRepository);
+    ReflectionTestUtils.setField(dataArchiver, "releaseHistoryRepository", releaseHistoryRepository);
+    ReflectionTestUtils.setField(dataArchiver, "releaseRepository", releaseRepository);
+
+    someAppId = "someAppId";
+    someClusterName = "someClusterName";
+    someNamespaceName = "someNamespaceName";
+    when(bizConfig.archiveRetentionInDays(anyString())).thenReturn(0);
+    when(bizConfig.archiveBatch()).thenReturn(2);
+    when(bizConfig.archiveRowsPerSecond()).thenReturn(10000);
+    when(bizConfig.archiveReleaseKeepPerNamespace()).thenReturn(2);
+  }
+
+  @Test
+  public void testArchiveUntilRetentionWindow() throws Exception {
+    Date expiredTime = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(10));
+    Audit someAudit = assembleAudit(1, expiredTime);
+    Audit anotherAudit = assembleAudit(2, expiredTime);
+    Audit yetAnotherAudit = assembleAudit(3, expiredTime);
+    Audit latestAudit = assembleAudit(4, new Date());
+
+    when(bizConfig.archiveRetentionInDays("Audit")).thenReturn(7);
+    when(auditRepository.findByIdGreaterThanOrderByIdAsc(0, PageRequest.of(0, 2)))
+        .thenReturn(Lists.newArrayList(someAudit, anotherAudit));
+    when(auditRepository.findByIdGreaterThanOrderByIdAsc(2, PageRequest.of(0, 2)))
+        .thenReturn(Lists.newArrayList(yetAnotherAudit, latestAudit));
+    when(archiveService.archive(Lists.newArrayList(someAudit, anotherAudit))).thenReturn(2);
+    when(archiveService.archive(Lists.newArrayList(yetAnotherAudit))).thenReturn(1);
+
+    assertEquals(3, dataArchiver.archive());
+
+    verify(archiveService).archive(Lists.newArrayList(yetAnotherAudit));
+  }
+
+  @Test
+  public void testArchiveFromCursorOfLastPass() throws Exception {
+    Audit someAudit = assembleAudit(1, new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(10)));
+    Audit latestAudit = assembleAudit(2, new Date());
+
+    when(bizConfig.archiveRetentionInDays("Audit")).thenReturn(7);
+    when(auditRepository.findByIdGreaterThanOrderByIdAsc(0, PageRequest.of(0, 2)))
+        .thenReturn(Lists.newArrayList(someAudit, latestAudit));
+    when(auditRepository.findByIdGreaterThanOrderByIdAsc(1, PageRequest.of(0, 2)))
+        .thenReturn(Lists.newArrayList(latestAudit));
+    when(archiveService.archive(Lists.newArrayList(someAudit))).thenReturn(1);
+
+    assertEquals(1, dataArchiver.archive());
+    assertEquals(0, dataArchiver.archive());
+
+    verify(auditRepository, times(1)).findByIdGreaterThanOrderByIdAsc(0, PageRequest.of(0, 2));
+    verify(auditRepository, times(1)).findByIdGreaterThanOrderByIdAsc(1, PageRequest.of(0, 2));
+  }
+
+  @Test
+  public void testKeepLatestAndDeltaBaseReleases() throws Exception {
+    ReleaseHeader deltaBaseRelease = assembleReleaseHeader(1);
+    ReleaseHeader archivedBaseRelease = assembleReleaseHeader(2);
+    ReleaseHeader archivedDeltaRelease = assembleReleaseHeader(3);
+    ReleaseHeader keptBaseRelease = assembleReleaseHeader(4);
+    ReleaseHeader keptDeltaRelease = assembleReleaseHeader(5);
+    ReleaseHeader keptRelease = assembleReleaseHeader(6);
+    ReleaseHeader latestRelease = assembleReleaseHeader(7);
+    Set<Long> candidateIds = Sets.newHashSet(1L, 2L, 3L, 4L, 5L);
+    Set<Long> archivableIds = Sets.newHashSet(2L, 3L);
+    List<Release> archivableReleases = Lists.newArrayList(mock(Release.class), mock(Release.class));
+
+    when(releaseRepository.findActiveReleaseHeaders(someAppId, someClusterName, someNamespaceName,
+        PageRequest.of(0, 2))).thenReturn(Lists.newArrayList(latestRelease, keptRelease));
+    // 1 and 5 are the bases of the live deltas 7 and 6, and 4 is the base of the kept 5
+    when(releaseRepository.findDeltaBaseReleaseIds(candidateIds, candidateIds))
+        .thenReturn(Sets.newHashSet(1L, 5L));
+    when(releaseRepository.findDeltaBaseReleaseIds(Sets.newHashSet(2L, 3L, 4L), Sets.newHashSet(2L, 3L, 4L)))
+        .thenReturn(Sets.newHashSet(4L));
+    when(releaseRepository.findDeltaBaseReleaseIds(archivableIds, archivableIds)).thenReturn(Collections.emptySet());
+    when(releaseRepository.findByIdIn(archivableIds)).thenReturn(archivableReleases);
+
+    List<Release> archivable = dataArchiver.findArchivableReleases(Lists.newArrayList(deltaBaseRelease,
+        archivedBaseRelease, archivedDeltaRelease, keptBaseRelease, keptDeltaRelease, keptRelease, latestRelease));
+
+    assertEquals(archivableReleases, archivable);
+  }
+
+  private Audit assembleAudit(long id, Date createdTime) {
+    Audit audit = new Audit();
+    audit.setId(id);
+    audit.setDataChangeCreatedTime(createdTime);
+    return audit;
+  }
+
+  private ReleaseHeader assembleReleaseHeader(long id) {
+    return new ReleaseHeader(id, null, null, someAppId, someClusterName, someNamespaceName, null, false, null, null,
+        null, null);
+  }
+}
@@ -0,0 +1,141 @@
+package com.ctrip.framework.apollo.biz.datasource;
+
+import com.google.common.collect.ImmutableMap;
+
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Supplier;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class ReplicaRoutingDataSourceTest {
+  private ReplicaRoutingDataSource replicaRoutingDataSource;
+  private DataSource primary;
+  private DataSource replica;
+  private String someReplicaName;
+
+  @Before
+  public void setUp() throws Exception {
+    primary = assembleDataSource("primary");
+    replica = assembleDataSource("replica");
+    someReplicaName = "someReplica";
+
+    replicaRoutingDataSource = new ReplicaRoutingDataSource(primary, ImmutableMap.of(someReplicaName, replica), 1);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    new JdbcTemplate(primary).execute("drop table `ReleaseMessage`");
+    new JdbcTemplate(replica).execute("drop table `ReleaseMessage`");
+  }
+
+  @Test
+  public void testReadFromPrimaryIfNotMarked() throws Exception {
+    insertReleaseMessages(primary, 1);
+    insertReleaseMessages(replica, 1);
+    replicaRoutingDataSource.checkLag();
+
+    assertEquals(ReplicaRoutingDataSource.PRIMARY, replicaRoutingDataSource.determineCurrentLookupKey());
+  }
+
+  @Test
+  public void testReadFromReplicaOnlyIfMessageApplied() throws Exception {
+    insertReleaseMessages(primary, 3);
+    insertReleaseMessages(replica, 2);
+    replicaRoutingDataSource.checkLag();
+
+    assertEquals(someReplicaName, ReplicaReads.read(2, replicaRoutingDataSource::determineCurrentLookupKey));
+    assertEquals(ReplicaRoutingDataSource.PRIMARY,
+        ReplicaReads.read(3, replicaRoutingDataSource::determineCurrentLookupKey));
+    assertEquals(ReplicaRoutingDataSource.PRIMARY, ReplicaReads.read(2, () ->
+        ReplicaReads.read(3, replicaRoutingDataSource::determineCurrentLookupKey)));
+  }
+
+  @Test
+  public void testReadFromReplicaWithinMaxLag() throws Exception {
+    insertReleaseMessages(primary, 3);
+    insertReleaseMessages(replica, 2);
+    replicaRoutingDataSource.checkLag();
+
+    assertEquals(someReplicaName, ReplicaReads.read(replicaRoutingDataSource::determineCurrentLookupKey));
+
+    insertReleaseMessages(primary, 1);
+    replicaRoutingDataSource.checkLag();
+
+    assertEquals(ReplicaRoutingDataSource.PRIMARY,
+        ReplicaReads.read(replicaRoutingDataSource::determineCurrentLookupKey));
+  }
+
+  @Test
+  public void testReadFromPrimaryIfReplicaUnavailable() throws Exception {
+    insertReleaseMessages(primary, 1);
+    insertReleaseMessages(replica, 1);
+    replicaRoutingDataSource.checkLag();
+    new JdbcTemplate(replica).execute("drop table `ReleaseMessage`");
+    replicaRoutingDataSource.checkLag();
+    new JdbcTemplate(replica).execute("create table `ReleaseMessage` (`Id` bigint auto_increment primary key)");
+
+    assertEquals(ReplicaRoutingDataSource.PRIMARY,
+        ReplicaReads.read(1, replicaRoutingDataSource::determineCurrentLookupKey));
+  }
+
+  @Test
+  public void testMarkedReadsOfOneRequestRoutedOnTheirOwn() throws Exception {
+    insertReleaseMessages(primary, 3);
+    insertReleaseMessages(replica, 2);
+    replicaRoutingDataSource.checkLag();
+    LocalContainerEntityManagerFactoryBean entityManagerFactoryBean = new LocalContainerEntityManagerFactoryBean();
+    entityManagerFactoryBean.setDataSource(replicaRoutingDataSource);
+    entityManagerFactoryBean.setPackagesToScan(ReleaseMessage.class.getPackage().getName());
+    entityManagerFactoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+    entityManagerFactoryBean.afterPropertiesSet();
+    EntityManagerFactory entityManagerFactory = entityManagerFactoryBean.getObject();
+    EntityManager entityManager = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+    Supplier<Long> largestMessageIdReader = () -> (Long) entityManager
+        .createQuery("select max(m.id) from ReleaseMessage m").getSingleResult();
+
+    //the entity manager bound to the request by OpenEntityManagerInView
+    EntityManagerHolder requestEntityManagerHolder = new EntityManagerHolder(
+        entityManagerFactory.createEntityManager());
+    TransactionSynchronizationManager.bindResource(entityManagerFactory, requestEntityManagerHolder);
+    try {
+      assertEquals(2, (long) ReplicaReads.read(2, largestMessageIdReader));
+      assertEquals(3, (long) ReplicaReads.read(3, largestMessageIdReader));
+      assertEquals(3, (long) largestMessageIdReader.get());
+      assertSame(requestEntityManagerHolder, TransactionSynchronizationManager.getResource(entityManagerFactory));
+    } finally {
+      TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+      requestEntityManagerHolder.getEntityManager().close();
+      entityManagerFactoryBean.destroy();
+    }
+  }
+
+  private DataSource assembleDataSource(String name) {
+    JdbcDataSource dataSource = new JdbcDataSource();
+    dataSource.setURL(String.format("jdbc:h2:mem:%s;mode=mysql;DB_CLOSE_DELAY=-1", name));
+    new JdbcTemplate(dataSource).execute("create table `ReleaseMessage` (`Id` bigint auto_increment primary key)");
+    return dataSource;
+  }
+
+  private void insertReleaseMessages(DataSource dataSource, int count) {
+    for (int i = 0; i < count; i++) {
+      new JdbcTemplate(dataSource).update("insert into `ReleaseMessage` (`Id`) values (null)");
+    }
+  }
+}
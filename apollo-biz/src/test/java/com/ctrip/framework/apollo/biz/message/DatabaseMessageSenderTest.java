@@ -30,6 +30,7 @@ public class DatabaseMessageSenderTest extends AbstractUnitTest{
   public void setUp() throws Exception {
     messageSender = new DatabaseMessageSender();
     ReflectionTestUtils.setField(messageSender, "releaseMessageRepository", releaseMessageRepository);
+    ReflectionTestUtils.setField(messageSender, "releasePropagationTracker", new ReleasePropagationTracker());
   }
 
   @Test
@@ -0,0 +1,125 @@
+package com.ctrip.framework.apollo.biz.message;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import com.ctrip.framework.apollo.biz.AbstractUnitTest;
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.repository.ReleaseMessageRepository;
+import com.ctrip.framework.apollo.biz.service.ReleaseMessageService;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReleaseMessageCompactorTest extends AbstractUnitTest {
+  private ReleaseMessageCompactor releaseMessageCompactor;
+  @Mock
+  private BizConfig bizConfig;
+  @Mock
+  private ReleaseMessageRepository releaseMessageRepository;
+  @Mock
+  private ReleaseMessageService releaseMessageService;
+  private int someBatch;
+
+  @Before
+  public void setUp() throws Exception {
+    releaseMessageCompactor = new ReleaseMessageCompactor();
+    ReflectionTestUtils.setField(releaseMessageCompactor, "bizConfig", bizConfig);
+    ReflectionTestUtils.setField(releaseMessageCompactor, "releaseMessageRepository", releaseMessageRepository);
+    ReflectionTestUtils.setField(releaseMessageCompactor, "releaseMessageService", releaseMessageService);
+
+    someBatch = 2;
+    when(bizConfig.releaseMessageCompactionBatch()).thenReturn(someBatch);
+    when(bizConfig.releaseMessageCompactionRowsPerSecond()).thenReturn(10000);
+  }
+
+  @Test
+  public void testCompactInRangedBatches() throws Exception {
+    String someMessage = "someMessage";
+    String anotherMessage = "anotherMessage";
+    ReleaseMessage first = assembleReleaseMessage(1, someMessage);
+    ReleaseMessage second = assembleReleaseMessage(2, anotherMessage);
+    ReleaseMessage third = assembleReleaseMessage(3, someMessage);
+
+    when(releaseMessageRepository.findTopByOrderByIdDesc()).thenReturn(third);
+    when(releaseMessageRepository.findByIdGreaterThanAndIdLessThanEqualOrderByIdAsc(0L, 3L,
+        PageRequest.of(0, someBatch))).thenReturn(Lists.newArrayList(first, second));
+    when(releaseMessageRepository.findByIdGreaterThanAndIdLessThanEqualOrderByIdAsc(2L, 3L,
+        PageRequest.of(0, someBatch))).thenReturn(Lists.newArrayList(third));
+    when(releaseMessageRepository.findByMessageInAndIdLessThan(Sets.newHashSet(someMessage, anotherMessage), 2L))
+        .thenReturn(Lists.newArrayList(first));
+    when(releaseMessageRepository.findByMessageInAndIdLessThan(Sets.newHashSet(someMessage), 3L))
+        .thenReturn(Lists.newArrayList(first));
+    when(releaseMessageService.batchDelete(anyCollection())).thenReturn(1);
+
+    assertEquals(1, releaseMessageCompactor.compact());
+
+    ArgumentCaptor<Collection> deleted = ArgumentCaptor.forClass(Collection.class);
+    verify(releaseMessageService, times(1)).batchDelete(deleted.capture());
+    assertEquals(Lists.newArrayList(1L), Lists.newArrayList(deleted.getValue()));
+    assertEquals(3L, ReflectionTestUtils.getField(releaseMessageCompactor, "cursor"));
+  }
+
+  @Test
+  public void testCompactOnlyMessagesSentSinceLastPass() throws Exception {
+    String someMessage = "someMessage";
+    ReleaseMessage older = assembleReleaseMessage(4, someMessage);
+    ReleaseMessage latest = assembleReleaseMessage(10, someMessage);
+    ReflectionTestUtils.setField(releaseMessageCompactor, "cursor", 5L);
+
+    when(releaseMessageRepository.findTopByOrderByIdDesc()).thenReturn(latest);
+    when(releaseMessageRepository.findByIdGreaterThanAndIdLessThanEqualOrderByIdAsc(5L, 10L,
+        PageRequest.of(0, someBatch))).thenReturn(Lists.newArrayList(latest));
+    when(releaseMessageRepository.findByMessageInAndIdLessThan(Sets.newHashSet(someMessage), 10L))
+        .thenReturn(Lists.newArrayList(older));
+    when(releaseMessageService.batchDelete(anyCollection())).thenReturn(1);
+
+    assertEquals(1, releaseMessageCompactor.compact());
+
+    ArgumentCaptor<Collection> deleted = ArgumentCaptor.forClass(Collection.class);
+    verify(releaseMessageService, times(1)).batchDelete(deleted.capture());
+    assertEquals(Lists.newArrayList(4L), Lists.newArrayList(deleted.getValue()));
+    verify(releaseMessageRepository, never()).findByIdGreaterThanAndIdLessThanEqualOrderByIdAsc(eq(0L), eq(10L),
+        eq(PageRequest.of(0, someBatch)));
+
+    // 没有新消息时不再扫描
+    //nothing is scanned if no message is sent since the last pass
+    assertEquals(0, releaseMessageCompactor.compact());
+
+    verify(releaseMessageRepository, times(1)).findByIdGreaterThanAndIdLessThanEqualOrderByIdAsc(anyLong(),
+        anyLong(), any(PageRequest.class));
+    assertEquals(10L, ReflectionTestUtils.getField(releaseMessageCompactor, "cursor"));
+  }
+
+  @Test
+  public void testCompactEmptyTable() throws Exception {
+    when(releaseMessageRepository.findTopByOrderByIdDesc()).thenReturn(null);
+
+    assertEquals(0, releaseMessageCompactor.compact());
+
+    verify(releaseMessageService, never()).batchDelete(anyCollection());
+  }
+
+  private ReleaseMessage assembleReleaseMessage(long id, String message) {
+    ReleaseMessage releaseMessage = new ReleaseMessage(message);
+    releaseMessage.setId(id);
+    return releaseMessage;
+  }
+}
@@ -36,6 +36,8 @@ public class ReleaseMessageScannerTest extends AbstractUnitTest {
     ReflectionTestUtils
         .setField(releaseMessageScanner, "releaseMessageRepository", releaseMessageRepository);
     ReflectionTestUtils.setField(releaseMessageScanner, "bizConfig", bizConfig);
+    ReflectionTestUtils.setField(releaseMessageScanner, "releasePropagationTracker",
+        new ReleasePropagationTracker());
     databaseScanInterval = 100; //100 ms
     when(bizConfig.releaseMessageScanIntervalInMilli()).thenReturn(databaseScanInterval);
     releaseMessageScanner.afterPropertiesSet();
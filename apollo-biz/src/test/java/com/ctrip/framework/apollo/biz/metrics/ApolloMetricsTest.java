@@ -0,0 +1,54 @@
+package com.ctrip.framework.apollo.biz.metrics;
+
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+public class ApolloMetricsTest {
+  private PrometheusMeterRegistry prometheusMeterRegistry;
+
+  @Before
+  public void setUp() throws Exception {
+    prometheusMeterRegistry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    Metrics.addRegistry(prometheusMeterRegistry);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    Metrics.removeRegistry(prometheusMeterRegistry);
+  }
+
+  @Test
+  public void testScrape() throws Exception {
+    ApolloMetrics.counter("some.counter", "someTag", "someValue").increment(2);
+    ExecutorService someExecutor = ApolloMetrics.monitorExecutor(
+        new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+            ApolloThreadFactory.create("ApolloMetricsTest", true)), "ApolloMetricsTest");
+
+    try {
+      someExecutor.submit(() -> {
+      }).get(5, TimeUnit.SECONDS);
+
+      String result = prometheusMeterRegistry.scrape();
+
+      assertTrue(result.contains("apollo_some_counter_total{someTag=\"someValue\",} 2.0"));
+      assertTrue(result.contains("executor_completed_tasks_total{name=\"ApolloMetricsTest\",}"));
+      assertTrue(result.contains("executor_seconds_count{name=\"ApolloMetricsTest\",} 1.0"));
+    } finally {
+      someExecutor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package com.ctrip.framework.apollo.biz.service;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import com.ctrip.framework.apollo.biz.AbstractIntegrationTest;
+import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.entity.ReleaseHistory;
+import com.ctrip.framework.apollo.biz.repository.ReleaseHistoryRepository;
+import com.ctrip.framework.apollo.biz.repository.ReleaseRepository;
+import com.ctrip.framework.apollo.common.constants.ReleaseOperation;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class ArchiveServiceTest extends AbstractIntegrationTest {
+  @Autowired
+  private ArchiveService archiveService;
+  @Autowired
+  private ReleaseHistoryService releaseHistoryService;
+  @Autowired
+  private ReleaseService releaseService;
+  @Autowired
+  private ReleaseHistoryRepository releaseHistoryRepository;
+  @Autowired
+  private ReleaseRepository releaseRepository;
+
+  private String someAppId;
+  private String someClusterName;
+  private String someNamespaceName;
+
+  @Before
+  public void setUp() throws Exception {
+    someAppId = "someAppId";
+    someClusterName = "someClusterName";
+    someNamespaceName = "someNamespaceName";
+  }
+
+  @Test
+  public void testReleaseHistoriesFallThroughToArchive() throws Exception {
+    List<ReleaseHistory> releaseHistories = Lists.newArrayList();
+    for (int i = 0; i < 5; i++) {
+      releaseHistories.add(releaseHistoryService.createReleaseHistory(someAppId, someClusterName, someNamespaceName,
+          someClusterName, i + 1, i, ReleaseOperation.NORMAL_RELEASE, null, "someOperator"));
+    }
+
+    assertEquals(2, archiveService.archive(releaseHistories.subList(0, 2)));
+
+    List<Long> expectedIds = Lists.reverse(releaseHistories).stream().map(ReleaseHistory::getId)
+        .collect(Collectors.toList());
+    List<ReleaseHistory> firstPage = releaseHistoryService.findReleaseHistoriesByNamespace(someAppId,
+        someClusterName, someNamespaceName, Long.MAX_VALUE, 2);
+    List<ReleaseHistory> secondPage = releaseHistoryService.findReleaseHistoriesByNamespace(someAppId,
+        someClusterName, someNamespaceName, firstPage.get(1).getId(), 2);
+    Page<ReleaseHistory> lastPage = releaseHistoryService.findReleaseHistoriesByNamespace(someAppId,
+        someClusterName, someNamespaceName, PageRequest.of(2, 2));
+
+    assertEquals(3, releaseHistoryRepository.findByAppIdAndClusterNameAndNamespaceNameOrderByIdDesc(someAppId,
+        someClusterName, someNamespaceName, PageRequest.of(0, 10)).getTotalElements());
+    assertEquals(expectedIds.subList(0, 2), ids(firstPage));
+    assertEquals(expectedIds.subList(2, 4), ids(secondPage));
+    assertEquals(expectedIds.subList(4, 5), ids(lastPage.getContent()));
+    assertEquals(5, lastPage.getTotalElements());
+    assertEquals(1, lastPage.getContent().get(0).getReleaseId());
+    assertEquals(releaseHistories.get(0).getDataChangeCreatedTime(),
+        lastPage.getContent().get(0).getDataChangeCreatedTime());
+  }
+
+  @Test
+  public void testArchivedReleaseIsStoredInFull() throws Exception {
+    String someConfigurations = String.format("{\"someKey\":\"%s\"}", Strings.repeat("someValue", 100));
+    Release someRelease = new Release();
+    someRelease.setReleaseKey("someReleaseKey");
+    someRelease.setName("someName");
+    someRelease.setComment("someComment");
+    someRelease.setAppId(someAppId);
+    someRelease.setClusterName(someClusterName);
+    someRelease.setNamespaceName(someNamespaceName);
+    someRelease.setConfigurations(someConfigurations);
+    someRelease.compressConfigurations(10);
+    someRelease.setDataChangeCreatedBy("someOperator");
+    someRelease.setDataChangeCreatedTime(new Date());
+    releaseRepository.save(someRelease);
+
+    archiveService.archive(Lists.newArrayList(someRelease));
+
+    assertFalse(releaseRepository.existsById(someRelease.getId()));
+    List<Release> releases = releaseService.findByReleaseIds(Sets.newHashSet(someRelease.getId()));
+    assertEquals(1, releases.size());
+    assertEquals(someRelease.getReleaseKey(), releases.get(0).getReleaseKey());
+    assertEquals(someConfigurations, releases.get(0).getConfigurations());
+    assertEquals(someConfigurations, releases.get(0).getStoredConfigurations());
+  }
+
+  private List<Long> ids(List<ReleaseHistory> releaseHistories) {
+    return releaseHistories.stream().map(ReleaseHistory::getId).collect(Collectors.toList());
+  }
+}
@@ -205,6 +205,42 @@ public class InstanceServiceTest extends AbstractIntegrationTest {
     assertEquals(Lists.newArrayList(anotherInstance), anotherResult.getContent());
   }
 
+  @Test
+  @Rollback
+  public void testFindInstancesByNamespaceWithKeyset() throws Exception {
+    String someConfigAppId = "someConfigAppId";
+    String someConfigClusterName = "someConfigClusterName";
+    String someConfigNamespaceName = "someConfigNamespaceName";
+    String someReleaseKey = "someReleaseKey";
+    Date someValidDate = new Date();
+
+    String someAppId = "someAppId";
+    String someClusterName = "someClusterName";
+    String someDataCenter = "someDataCenter";
+    List<Instance> instances = Lists.newArrayList();
+    for (int i = 0; i < 3; i++) {
+      Instance instance = instanceService.createInstance(assembleInstance(someAppId, someClusterName,
+          someDataCenter, "someIp" + i));
+      prepareInstanceConfigForInstance(instance.getId(), someConfigAppId, someConfigClusterName,
+          someConfigNamespaceName, someReleaseKey, someValidDate);
+      instances.add(instance);
+    }
+
+    List<Instance> firstPage = instanceService.findInstancesByNamespace(someConfigAppId, someConfigClusterName,
+        someConfigNamespaceName, 0, 2);
+    List<Instance> secondPage = instanceService.findInstancesByNamespace(someConfigAppId, someConfigClusterName,
+        someConfigNamespaceName, firstPage.get(1).getId(), 2);
+    List<Instance> secondPageOfInstanceAppId = instanceService.findInstancesByNamespaceAndInstanceAppId(someAppId,
+        someConfigAppId, someConfigClusterName, someConfigNamespaceName, instances.get(0).getId(), 2);
+    List<InstanceConfig> secondPageOfReleaseKey = instanceService.findActiveInstanceConfigsByReleaseKey(
+        someReleaseKey, instances.get(1).getId(), 2);
+
+    assertEquals(instances.subList(0, 2), firstPage);
+    assertEquals(instances.subList(2, 3), secondPage);
+    assertEquals(instances.subList(1, 3), secondPageOfInstanceAppId);
+    assertEquals(1, secondPageOfReleaseKey.size());
+    assertEquals(instances.get(2).getId(), secondPageOfReleaseKey.get(0).getInstanceId());
+  }
 
   @Test
   @Rollback
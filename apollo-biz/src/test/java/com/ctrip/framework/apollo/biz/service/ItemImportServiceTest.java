@@ -0,0 +1,106 @@
+package com.ctrip.framework.apollo.biz.service;
+
+import com.google.common.collect.Maps;
+
+import com.ctrip.framework.apollo.biz.AbstractIntegrationTest;
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.Item;
+import com.ctrip.framework.apollo.biz.entity.Namespace;
+import com.ctrip.framework.apollo.common.dto.ItemChangeSets;
+import com.ctrip.framework.apollo.common.dto.ItemImportProgressDTO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ItemImportServiceTest extends AbstractIntegrationTest {
+  @Autowired
+  private ItemImportService itemImportService;
+  @Autowired
+  private ItemService itemService;
+  @Autowired
+  private BizConfig bizConfig;
+  @Autowired
+  private ItemSetService itemSetService;
+
+  private Namespace someNamespace;
+
+  @Before
+  public void setUp() throws Exception {
+    BizConfig someBizConfig = mock(BizConfig.class);
+    when(someBizConfig.itemImportBatch()).thenReturn(2);
+    ReflectionTestUtils.setField(itemImportService, "bizConfig", someBizConfig);
+
+    someNamespace = new Namespace("someAppId", "someClusterName", "someNamespaceName");
+    someNamespace.setId(1000);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    ReflectionTestUtils.setField(itemImportService, "bizConfig", bizConfig);
+    ReflectionTestUtils.setField(itemImportService, "itemSetService", itemSetService);
+  }
+
+  @Test
+  public void testImportItemsInBatches() throws Exception {
+    Map<String, String> entries = Maps.newLinkedHashMap();
+    entries.put("k1", "v1");
+    entries.put("k2", "v2");
+    entries.put("k3", "v3");
+    itemImportService.importItems(someNamespace, entries.entrySet().iterator(), "someOperator");
+
+    entries.put("k2", "updated");
+    entries.put("k4", "v4");
+    ItemImportProgressDTO progress = itemImportService.importItems(someNamespace, entries.entrySet().iterator(),
+        "someOperator");
+
+    assertEquals(ItemImportProgressDTO.Status.COMPLETED, progress.getStatus());
+    assertEquals(4, progress.getParsed());
+    assertEquals(1, progress.getCreated());
+    assertEquals(1, progress.getUpdated());
+    assertEquals(2, progress.getUnchanged());
+    assertEquals(2, progress.getBatches());
+    assertEquals(ItemImportProgressDTO.Status.COMPLETED, itemImportService.findProgress(someNamespace.getAppId(),
+        someNamespace.getClusterName(), someNamespace.getNamespaceName()).getStatus());
+
+    Map<String, String> items = Maps.newHashMap();
+    for (Item item : itemService.findItemsWithOrdered(someNamespace.getId())) {
+      items.put(item.getKey(), item.getValue());
+    }
+    assertEquals(entries, items);
+  }
+
+  @Test
+  public void testFailedBatchNotCounted() throws Exception {
+    ItemSetService someItemSetService = mock(ItemSetService.class);
+    when(someItemSetService.updateSet(any(Namespace.class), any(ItemChangeSets.class)))
+        .thenThrow(new IllegalStateException("some failure"));
+    ReflectionTestUtils.setField(itemImportService, "itemSetService", someItemSetService);
+
+    Map<String, String> entries = Maps.newLinkedHashMap();
+    entries.put("k1", "v1");
+    try {
+      itemImportService.importItems(someNamespace, entries.entrySet().iterator(), "someOperator");
+      fail("Expected the import to fail");
+    } catch (IllegalStateException ex) {
+      //expected
+    }
+
+    ItemImportProgressDTO progress = itemImportService.findProgress(someNamespace.getAppId(),
+        someNamespace.getClusterName(), someNamespace.getNamespaceName());
+    assertEquals(ItemImportProgressDTO.Status.FAILED, progress.getStatus());
+    assertEquals(1, progress.getParsed());
+    assertEquals(0, progress.getCreated());
+    assertEquals(0, progress.getBatches());
+  }
+}
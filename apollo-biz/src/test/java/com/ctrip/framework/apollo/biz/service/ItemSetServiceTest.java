@@ -0,0 +1,101 @@
+package com.ctrip.framework.apollo.biz.service;
+
+import com.ctrip.framework.apollo.biz.AbstractIntegrationTest;
+import com.ctrip.framework.apollo.biz.entity.Audit;
+import com.ctrip.framework.apollo.biz.entity.Commit;
+import com.ctrip.framework.apollo.biz.entity.Item;
+import com.ctrip.framework.apollo.biz.repository.CommitRepository;
+import com.ctrip.framework.apollo.common.dto.ItemChangeSets;
+import com.ctrip.framework.apollo.common.dto.ItemDTO;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ItemSetServiceTest extends AbstractIntegrationTest {
+  @Autowired
+  private ItemSetService itemSetService;
+  @Autowired
+  private ItemService itemService;
+  @Autowired
+  private AuditService auditService;
+  @Autowired
+  private CommitRepository commitRepository;
+
+  private String someAppId;
+  private String someClusterName;
+  private String someNamespaceName;
+  private long someNamespaceId;
+
+  @Before
+  public void setUp() throws Exception {
+    someAppId = "someAppId";
+    someClusterName = "someClusterName";
+    someNamespaceName = "someNamespaceName";
+    someNamespaceId = 1000;
+  }
+
+  @Test
+  public void testUpdateSetInBatches() throws Exception {
+    int createdSize = 5;
+    ItemChangeSets createChangeSet = new ItemChangeSets();
+    createChangeSet.setDataChangeLastModifiedBy("created");
+    for (int i = 0; i < createdSize; i++) {
+      createChangeSet.addCreateItem(assembleItem("key_" + i, "value_" + i));
+    }
+    createChangeSet.addCreateItem(assembleItem("", ""));
+
+    itemSetService.updateSet(someAppId, someClusterName, someNamespaceName, createChangeSet);
+
+    List<Item> items = itemService.findItemsWithOrdered(someNamespaceId);
+    assertEquals(createdSize + 1, items.size());
+    for (int i = 0; i < createdSize; i++) {
+      assertEquals("key_" + i, items.get(i).getKey());
+      assertEquals(i + 1, items.get(i).getLineNum().intValue());
+      assertTrue(items.get(i).getId() > 0);
+    }
+
+    ItemChangeSets updateAndDeleteChangeSet = new ItemChangeSets();
+    updateAndDeleteChangeSet.setDataChangeLastModifiedBy("updated");
+    ItemDTO updatedItem = assembleItem(items.get(0).getKey(), "updated_value");
+    updatedItem.setId(items.get(0).getId());
+    updatedItem.setLineNum(items.get(0).getLineNum());
+    updateAndDeleteChangeSet.addUpdateItem(updatedItem);
+    for (int i = 1; i < 3; i++) {
+      ItemDTO deletedItem = new ItemDTO();
+      deletedItem.setId(items.get(i).getId());
+      updateAndDeleteChangeSet.addDeleteItem(deletedItem);
+    }
+
+    itemSetService.updateSet(someAppId, someClusterName, someNamespaceName, updateAndDeleteChangeSet);
+
+    List<Item> updatedItems = itemService.findItemsWithOrdered(someNamespaceId);
+    assertEquals(createdSize - 1, updatedItems.size());
+    assertEquals("updated_value", updatedItems.get(0).getValue());
+    assertEquals("updated", updatedItems.get(0).getDataChangeLastModifiedBy());
+    assertEquals("key_3", updatedItems.get(1).getKey());
+
+    assertEquals(createdSize + 1, auditService.find("created", Item.class.getSimpleName(),
+        Audit.OP.INSERT.name()).size());
+    assertEquals(1, auditService.find("updated", Item.class.getSimpleName(), Audit.OP.UPDATE.name()).size());
+    assertEquals(2, auditService.find("updated", Item.class.getSimpleName(), Audit.OP.DELETE.name()).size());
+    List<Commit> commits = commitRepository.findByAppIdAndClusterNameAndNamespaceNameOrderByIdDesc(someAppId,
+        someClusterName, someNamespaceName, PageRequest.of(0, 10));
+    assertEquals(2, commits.size());
+    assertTrue(commits.get(0).getChangeSets().contains("updated_value"));
+  }
+
+  private ItemDTO assembleItem(String key, String value) {
+    ItemDTO item = new ItemDTO();
+    item.setNamespaceId(someNamespaceId);
+    item.setKey(key);
+    item.setValue(value);
+    return item;
+  }
+}
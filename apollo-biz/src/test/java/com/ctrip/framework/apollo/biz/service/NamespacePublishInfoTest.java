@@ -1,6 +1,7 @@
 package com.ctrip.framework.apollo.biz.service;
 
 import com.ctrip.framework.apollo.biz.AbstractUnitTest;
+import com.ctrip.framework.apollo.biz.MockBeanFactory;
 import com.ctrip.framework.apollo.biz.entity.Cluster;
 import com.ctrip.framework.apollo.biz.entity.Item;
 import com.ctrip.framework.apollo.biz.entity.Namespace;
@@ -64,7 +65,8 @@ public class NamespacePublishInfoTest extends AbstractUnitTest {
     when(clusterService.findParentClusters(testApp)).thenReturn(Collections.singletonList(cluster));
     when(namespaceRepository.findByAppIdAndClusterNameOrderByIdAsc(testApp, ConfigConsts.CLUSTER_NAME_DEFAULT))
         .thenReturn(Collections.singletonList(namespace));
-    when(releaseService.findLatestActiveRelease(namespace)).thenReturn(release);
+    when(releaseService.findLatestActiveReleaseHeader(namespace)).thenReturn(MockBeanFactory.mockReleaseHeader(release));
+    when(releaseService.findOne(release.getId())).thenReturn(release);
     when(itemService.findItemsModifiedAfterDate(anyLong(), anyObject())).thenReturn(Collections.singletonList(item));
 
     Map<String, Boolean> result = namespaceService.namespacePublishInfo(testApp);
@@ -84,7 +86,8 @@ public class NamespacePublishInfoTest extends AbstractUnitTest {
     when(clusterService.findParentClusters(testApp)).thenReturn(Collections.singletonList(cluster));
     when(namespaceRepository.findByAppIdAndClusterNameOrderByIdAsc(testApp, ConfigConsts.CLUSTER_NAME_DEFAULT))
         .thenReturn(Collections.singletonList(namespace));
-    when(releaseService.findLatestActiveRelease(namespace)).thenReturn(release);
+    when(releaseService.findLatestActiveReleaseHeader(namespace)).thenReturn(MockBeanFactory.mockReleaseHeader(release));
+    when(releaseService.findOne(release.getId())).thenReturn(release);
     when(itemService.findItemsModifiedAfterDate(anyLong(), anyObject())).thenReturn(Collections.singletonList(item));
 
     Map<String, Boolean> result = namespaceService.namespacePublishInfo(testApp);
@@ -1,15 +1,21 @@
 package com.ctrip.framework.apollo.biz.service;
 
+import com.google.common.collect.Maps;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
 import com.ctrip.framework.apollo.biz.AbstractIntegrationTest;
+import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.biz.entity.GrayReleaseRule;
+import com.ctrip.framework.apollo.biz.entity.Item;
 import com.ctrip.framework.apollo.biz.entity.Namespace;
 import com.ctrip.framework.apollo.biz.entity.Release;
 import com.ctrip.framework.apollo.biz.entity.ReleaseHistory;
 import com.ctrip.framework.apollo.common.constants.GsonType;
 import com.ctrip.framework.apollo.common.constants.ReleaseOperation;
+import com.ctrip.framework.apollo.common.dto.ItemChangeSets;
+import com.ctrip.framework.apollo.common.dto.ItemDTO;
+import com.ctrip.framework.apollo.common.utils.BeanUtils;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -18,10 +24,15 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.lang.reflect.Type;
 import java.util.Map;
 
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+
 public class ReleaseCreationTest extends AbstractIntegrationTest {
 
   private Gson gson = new Gson();
@@ -32,6 +43,12 @@ public class ReleaseCreationTest extends AbstractIntegrationTest {
   private NamespaceBranchService namespaceBranchService;
   @Autowired
   private ReleaseHistoryService releaseHistoryService;
+  @Autowired
+  private ItemService itemService;
+  @Autowired
+  private ItemSetService itemSetService;
+  @Autowired
+  private BizConfig bizConfig;
 
   private String testApp = "test";
   private String testNamespace = "application";
@@ -69,6 +86,73 @@ public class ReleaseCreationTest extends AbstractIntegrationTest {
     Assert.assertEquals(0, releaseHistory.getPreviousReleaseId());
   }
 
+  @Test
+  @Sql(scripts = "/sql/release-creation-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+  @Sql(scripts = "/sql/clean.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+  public void testPublishNormalNamespaceIncrementally() {
+    long namespaceId = 100;
+    String clusterName = "only-master";
+    Namespace namespace = instanceNamespace(namespaceId, clusterName);
+    ReleaseService releaseServiceTarget = AopTestUtils.getTargetObject(releaseService);
+    BizConfig someBizConfig = spy(bizConfig);
+    doReturn(100).when(someBizConfig).releaseIncrementalBuildMaxCommits();
+    ReflectionTestUtils.setField(releaseServiceTarget, "bizConfig", someBizConfig);
+
+    try {
+      releaseService.publish(namespace, "", "", operator, false);
+
+      Map<String, Item> items = Maps.newHashMap();
+      for (Item item : itemService.findItemsWithoutOrdered(namespaceId)) {
+        items.put(item.getKey(), item);
+      }
+      ItemChangeSets changeSets = new ItemChangeSets();
+      changeSets.setDataChangeLastModifiedBy(operator);
+      ItemDTO updatedItem = BeanUtils.transfrom(ItemDTO.class, items.get("k1"));
+      updatedItem.setValue("v1-1");
+      changeSets.addUpdateItem(updatedItem);
+      changeSets.addDeleteItem(BeanUtils.transfrom(ItemDTO.class, items.get("k2")));
+      ItemDTO createdItem = new ItemDTO("k4", "v4", "", 0);
+      createdItem.setNamespaceId(namespaceId);
+      changeSets.addCreateItem(createdItem);
+      itemSetService.updateSet(namespace, changeSets);
+
+      releaseService.publish(namespace, "", "", operator, false);
+
+      Map<String, String> configuration = parseConfiguration(releaseService.findLatestActiveRelease(namespace)
+          .getConfigurations());
+      Assert.assertEquals(3, configuration.size());
+      Assert.assertEquals("v1-1", configuration.get("k1"));
+      Assert.assertEquals("v3", configuration.get("k3"));
+      Assert.assertEquals("v4", configuration.get("k4"));
+
+      //items added without commits
+      Item item = new Item();
+      item.setNamespaceId(namespaceId);
+      item.setKey("k5");
+      item.setValue("v5");
+      item.setLineNum(0);
+      itemService.save(item);
+
+      releaseService.publish(namespace, "", "", operator, false);
+
+      configuration = parseConfiguration(releaseService.findLatestActiveRelease(namespace).getConfigurations());
+      Assert.assertEquals(4, configuration.size());
+      Assert.assertEquals("v5", configuration.get("k5"));
+
+      //values changed without commits, which keep the number of keys
+      Item changedItem = items.get("k3");
+      changedItem.setValue("v3-1");
+      itemService.update(changedItem);
+
+      releaseService.publish(namespace, "", "", operator, false);
+
+      configuration = parseConfiguration(releaseService.findLatestActiveRelease(namespace).getConfigurations());
+      Assert.assertEquals(4, configuration.size());
+      Assert.assertEquals("v3-1", configuration.get("k3"));
+    } finally {
+      ReflectionTestUtils.setField(releaseServiceTarget, "bizConfig", bizConfig);
+    }
+  }
 
   /**
    *               Master     |      Branch
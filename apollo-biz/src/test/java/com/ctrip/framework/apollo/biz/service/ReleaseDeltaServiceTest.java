@@ -0,0 +1,129 @@
+package com.ctrip.framework.apollo.biz.service;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+import com.ctrip.framework.apollo.biz.AbstractUnitTest;
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.repository.ReleaseRepository;
+import com.ctrip.framework.apollo.biz.utils.ReleaseConfigurationsCodec;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReleaseDeltaServiceTest extends AbstractUnitTest {
+  private ReleaseDeltaService releaseDeltaService;
+  @Mock
+  private BizConfig bizConfig;
+  @Mock
+  private ReleaseRepository releaseRepository;
+  private String someAppId;
+  private String someClusterName;
+  private String someNamespaceName;
+  private Map<String, String> someConfigurations;
+
+  @Before
+  public void setUp() throws Exception {
+    releaseDeltaService = new ReleaseDeltaService();
+    ReflectionTestUtils.setField(releaseDeltaService, "bizConfig", bizConfig);
+    ReflectionTestUtils.setField(releaseDeltaService, "releaseRepository", releaseRepository);
+
+    someAppId = "someAppId";
+    someClusterName = "someClusterName";
+    someNamespaceName = "someNamespaceName";
+    someConfigurations = Maps.newHashMap();
+    for (int i = 0; i < 50; i++) {
+      someConfigurations.put("key" + i, Strings.repeat("value" + i, 10));
+    }
+    when(bizConfig.releaseDeltaCheckpointInterval()).thenReturn(3);
+  }
+
+  @Test
+  public void testEncodeAndResolveDeltaChain() throws Exception {
+    Release fullRelease = assembleRelease(1, someConfigurations);
+    fullRelease.storeConfigurations(fullRelease.getConfigurations());
+    Map<String, String> secondConfigurations = Maps.newHashMap(someConfigurations);
+    secondConfigurations.put("key1", "anotherValue");
+    secondConfigurations.remove("key2");
+    Release secondRelease = assembleRelease(2, secondConfigurations);
+    Map<String, String> thirdConfigurations = Maps.newHashMap(secondConfigurations);
+    thirdConfigurations.put("newKey", "newValue");
+    Release thirdRelease = assembleRelease(3, thirdConfigurations);
+
+    mockLatestRelease(fullRelease);
+    releaseDeltaService.encode(secondRelease);
+    when(releaseRepository.findById(1L)).thenReturn(Optional.of(loaded(fullRelease)));
+    mockLatestRelease(loaded(secondRelease));
+    releaseDeltaService.encode(thirdRelease);
+
+    assertTrue(ReleaseConfigurationsCodec.isDelta(secondRelease.getStoredConfigurations()));
+    assertEquals(1, ReleaseConfigurationsCodec.getDeltaBaseId(secondRelease.getStoredConfigurations()));
+    assertEquals(2, ReleaseConfigurationsCodec.getDeltaDepth(thirdRelease.getStoredConfigurations()));
+    assertTrue(thirdRelease.getStoredConfigurations().length() < thirdRelease.getConfigurations().length());
+
+    when(releaseRepository.findById(2L)).thenReturn(Optional.of(loaded(secondRelease)));
+    Release loadedThirdRelease = loaded(thirdRelease);
+    releaseDeltaService.resolve(loadedThirdRelease);
+    Release anotherLoadedThirdRelease = loaded(thirdRelease);
+    releaseDeltaService.resolve(anotherLoadedThirdRelease);
+
+    assertEquals(thirdConfigurations, ReleaseConfigurationsCodec.toMap(loadedThirdRelease.getConfigurations()));
+    assertEquals(thirdConfigurations, ReleaseConfigurationsCodec.toMap(anotherLoadedThirdRelease.getConfigurations()));
+    verify(releaseRepository, times(1)).findById(1L);
+  }
+
+  @Test
+  public void testFullCheckpoint() throws Exception {
+    Release someRelease = assembleRelease(10, someConfigurations);
+    someRelease.storeConfigurations(ReleaseConfigurationsCodec.encodeDelta(9, 2, someConfigurations,
+        someConfigurations, 0));
+    Release anotherRelease = assembleRelease(11, ImmutableMap.of("someKey", "someValue"));
+    Release latestRelease = assembleRelease(12, someConfigurations);
+
+    mockLatestRelease(someRelease);
+    releaseDeltaService.encode(anotherRelease);
+
+    assertFalse(ReleaseConfigurationsCodec.isEncoded(anotherRelease.getStoredConfigurations()));
+
+    when(bizConfig.releaseDeltaCheckpointInterval()).thenReturn(0);
+    releaseDeltaService.encode(latestRelease);
+
+    assertFalse(ReleaseConfigurationsCodec.isEncoded(latestRelease.getStoredConfigurations()));
+  }
+
+  private void mockLatestRelease(Release release) {
+    when(releaseRepository.findFirstByAppIdAndClusterNameAndNamespaceNameAndIsAbandonedFalseOrderByIdDesc(someAppId,
+        someClusterName, someNamespaceName)).thenReturn(release);
+  }
+
+  private Release loaded(Release release) {
+    Release loaded = new Release();
+    loaded.setId(release.getId());
+    loaded.setConfigurations(release.getStoredConfigurations());
+    return loaded;
+  }
+
+  private Release assembleRelease(long id, Map<String, String> configurations) {
+    Release release = new Release();
+    release.setId(id);
+    release.setAppId(someAppId);
+    release.setClusterName(someClusterName);
+    release.setNamespaceName(someNamespaceName);
+    release.setConfigurations(ReleaseConfigurationsCodec.toJson(configurations));
+    return release;
+  }
+}
@@ -18,6 +18,7 @@ import org.mockito.Mock;
 import org.springframework.data.domain.PageRequest;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
@@ -38,6 +39,10 @@ public class ReleaseServiceTest extends AbstractUnitTest {
   private ReleaseHistoryService releaseHistoryService;
   @Mock
   private ItemSetService itemSetService;
+  @Mock
+  private ReleaseDeltaService releaseDeltaService;
+  @Mock
+  private ArchiveService archiveService;
   @InjectMocks
   private ReleaseService releaseService;
 
@@ -81,10 +86,7 @@ public class ReleaseServiceTest extends AbstractUnitTest {
   public void testHasNoRelease() {
 
     when(releaseRepository.findById(releaseId)).thenReturn(Optional.of(firstRelease));
-    when(releaseRepository.findByAppIdAndClusterNameAndNamespaceNameAndIsAbandonedFalseOrderByIdDesc(appId,
-                                                                                                     clusterName,
-                                                                                                     namespaceName,
-                                                                                                     pageRequest))
+    when(releaseRepository.findActiveReleaseHeaders(appId, clusterName, namespaceName, pageRequest))
         .thenReturn(null);
 
     releaseService.rollback(releaseId, user);
@@ -94,12 +96,9 @@ public class ReleaseServiceTest extends AbstractUnitTest {
   public void testRollback() {
 
     when(releaseRepository.findById(releaseId)).thenReturn(Optional.of(firstRelease));
-    when(releaseRepository.findByAppIdAndClusterNameAndNamespaceNameAndIsAbandonedFalseOrderByIdDesc(appId,
-                                                                                                     clusterName,
-                                                                                                     namespaceName,
-                                                                                                     pageRequest))
-        .thenReturn(
-            Arrays.asList(firstRelease, secondRelease));
+    when(releaseRepository.findActiveReleaseHeaders(appId, clusterName, namespaceName, pageRequest))
+        .thenReturn(Arrays.asList(MockBeanFactory.mockReleaseHeader(firstRelease),
+                                  MockBeanFactory.mockReleaseHeader(secondRelease)));
 
     releaseService.rollback(releaseId, user);
 
@@ -174,6 +173,17 @@ public class ReleaseServiceTest extends AbstractUnitTest {
     assertEquals(someReleases, result);
   }
 
+  @Test
+  public void testFindOneFromArchive() throws Exception {
+    Release archivedRelease = mock(Release.class);
+
+    when(releaseRepository.findById(releaseId)).thenReturn(Optional.empty());
+    when(archiveService.findByIds(Release.class, Collections.singleton(releaseId)))
+        .thenReturn(Lists.newArrayList(archivedRelease));
+
+    assertEquals(archivedRelease, releaseService.findOne(releaseId));
+  }
+
   @Test
   public void testFindByReleaseKeys() throws Exception {
     Release someRelease = mock(Release.class);
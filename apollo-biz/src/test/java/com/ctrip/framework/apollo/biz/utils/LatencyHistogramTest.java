@@ -0,0 +1,79 @@
+package com.ctrip.framework.apollo.biz.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class LatencyHistogramTest {
+  private LatencyHistogram histogram;
+
+  @Before
+  public void setUp() throws Exception {
+    histogram = new LatencyHistogram();
+  }
+
+  @Test
+  public void testEmpty() throws Exception {
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getPercentile(99));
+    assertEquals(1, histogram.getRatioWithin(100), 0);
+  }
+
+  @Test
+  public void testPercentiles() throws Exception {
+    for (int i = 0; i < 90; i++) {
+      histogram.record(30);
+    }
+    for (int i = 0; i < 9; i++) {
+      histogram.record(700);
+    }
+    histogram.record(400000);
+
+    assertEquals(100, histogram.getCount());
+    assertEquals(400000, histogram.getMax());
+    assertEquals(50, histogram.getPercentile(50));
+    assertEquals(50, histogram.getPercentile(90));
+    assertEquals(1000, histogram.getPercentile(99));
+    assertEquals(400000, histogram.getPercentile(100));
+    assertEquals(0.99, histogram.getRatioWithin(5000), 0.0001);
+  }
+
+  @Test
+  public void testPercentileCappedByMax() throws Exception {
+    histogram.record(3);
+
+    assertEquals(3, histogram.getPercentile(50));
+  }
+
+  @Test
+  public void testNegativeLatencyRecordedAsZero() throws Exception {
+    histogram.record(-10);
+
+    assertEquals(1, histogram.getCount());
+    assertEquals(0, histogram.getMax());
+  }
+
+  @Test
+  public void testBucketName() throws Exception {
+    assertEquals("<=50ms", LatencyHistogram.bucketName(0));
+    assertEquals("<=500ms", LatencyHistogram.bucketName(500));
+    assertEquals("<=1000ms", LatencyHistogram.bucketName(501));
+    assertEquals(">300000ms", LatencyHistogram.bucketName(300001));
+  }
+
+  @Test
+  public void testSnapshot() throws Exception {
+    histogram.record(100);
+    histogram.record(300);
+
+    Map<String, Object> snapshot = histogram.snapshot(250);
+
+    assertEquals(2L, snapshot.get("count"));
+    assertEquals(200L, snapshot.get("mean"));
+    assertEquals(0.5, (Double) snapshot.get("withinSlo"), 0);
+    assertEquals(2, ((Map) snapshot.get("buckets")).size());
+  }
+}
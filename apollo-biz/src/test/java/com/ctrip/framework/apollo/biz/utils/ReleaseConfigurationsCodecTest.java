@@ -0,0 +1,70 @@
+package com.ctrip.framework.apollo.biz.utils;
+
+import com.google.common.base.Strings;
+
+import com.ctrip.framework.apollo.biz.entity.Release;
+
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ReleaseConfigurationsCodecTest {
+  private static final String SOME_CONFIGURATIONS =
+      String.format("{\"someKey\":\"%s\",\"anotherKey\":\"值\"}", Strings.repeat("someValue", 100));
+
+  @Test
+  public void testEncodeAndDecode() throws Exception {
+    String encoded = ReleaseConfigurationsCodec.encode(SOME_CONFIGURATIONS, 10);
+
+    assertTrue(ReleaseConfigurationsCodec.isEncoded(encoded));
+    assertTrue(encoded.length() < SOME_CONFIGURATIONS.length());
+    assertEquals(SOME_CONFIGURATIONS, ReleaseConfigurationsCodec.decode(encoded));
+  }
+
+  @Test
+  public void testNotEncodedBelowMinSizeOrDisabled() throws Exception {
+    assertSame(SOME_CONFIGURATIONS, ReleaseConfigurationsCodec.encode(SOME_CONFIGURATIONS, 0));
+    assertSame(SOME_CONFIGURATIONS,
+        ReleaseConfigurationsCodec.encode(SOME_CONFIGURATIONS, SOME_CONFIGURATIONS.length() + 1));
+  }
+
+  @Test
+  public void testNotEncodedIfNotSmaller() throws Exception {
+    String someShortConfigurations = "{\"k\":\"v\"}";
+
+    assertSame(someShortConfigurations, ReleaseConfigurationsCodec.encode(someShortConfigurations, 1));
+  }
+
+  @Test
+  public void testDecodeLegacyPlainJson() throws Exception {
+    assertFalse(ReleaseConfigurationsCodec.isEncoded(SOME_CONFIGURATIONS));
+    assertSame(SOME_CONFIGURATIONS, ReleaseConfigurationsCodec.decode(SOME_CONFIGURATIONS));
+    assertEquals(null, ReleaseConfigurationsCodec.decode(null));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testDecodeUnsupportedVersion() throws Exception {
+    ReleaseConfigurationsCodec.decode("$9$abc");
+  }
+
+  @Test
+  public void testReleaseCompressConfigurations() throws Exception {
+    Release release = new Release();
+    release.setConfigurations(SOME_CONFIGURATIONS);
+
+    release.compressConfigurations(10);
+
+    assertTrue(ReleaseConfigurationsCodec.isEncoded((String) ReflectionTestUtils.getField(release, "configurations")));
+    assertEquals(SOME_CONFIGURATIONS, release.getConfigurations());
+
+    Release loaded = new Release();
+    ReflectionTestUtils.setField(loaded, "configurations", ReflectionTestUtils.getField(release, "configurations"));
+
+    assertEquals(SOME_CONFIGURATIONS, loaded.getConfigurations());
+    assertSame(loaded.getConfigurations(), loaded.getConfigurations());
+  }
+}
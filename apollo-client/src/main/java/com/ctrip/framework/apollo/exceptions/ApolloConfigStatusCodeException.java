@@ -5,18 +5,32 @@ package com.ctrip.framework.apollo.exceptions;
  */
 public class ApolloConfigStatusCodeException extends RuntimeException{
   private final int m_statusCode;
+  private final long m_retryAfterInSeconds;
 
   public ApolloConfigStatusCodeException(int statusCode, String message) {
     super(String.format("[status code: %d] %s", statusCode, message));
     this.m_statusCode = statusCode;
+    this.m_retryAfterInSeconds = -1;
   }
 
   public ApolloConfigStatusCodeException(int statusCode, Throwable cause) {
+    this(statusCode, cause, -1);
+  }
+
+  public ApolloConfigStatusCodeException(int statusCode, Throwable cause, long retryAfterInSeconds) {
     super(cause);
     this.m_statusCode = statusCode;
+    this.m_retryAfterInSeconds = retryAfterInSeconds;
   }
 
   public int getStatusCode() {
     return m_statusCode;
   }
+
+  /**
+   * @return the delay in seconds of the Retry-After header, or -1 if the server didn't send one
+   */
+  public long getRetryAfterInSeconds() {
+    return m_retryAfterInSeconds;
+  }
 }
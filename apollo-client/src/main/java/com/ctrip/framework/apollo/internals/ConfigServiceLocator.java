@@ -3,10 +3,13 @@ package com.ctrip.framework.apollo.internals;
 import com.ctrip.framework.apollo.core.ServiceNameConsts;
 import com.ctrip.framework.foundation.Foundation;
 import java.lang.reflect.Type;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
@@ -14,8 +17,11 @@ import org.slf4j.LoggerFactory;
 
 import com.ctrip.framework.apollo.build.ApolloInjector;
 import com.ctrip.framework.apollo.core.dto.ServiceDTO;
+import com.ctrip.framework.apollo.core.schedule.ExponentialSchedulePolicy;
+import com.ctrip.framework.apollo.core.schedule.SchedulePolicy;
 import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.exceptions.ApolloConfigException;
+import com.ctrip.framework.apollo.exceptions.ApolloConfigStatusCodeException;
 import com.ctrip.framework.apollo.tracer.Tracer;
 import com.ctrip.framework.apollo.tracer.spi.Transaction;
 import com.ctrip.framework.apollo.util.ConfigUtil;
@@ -29,6 +35,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.escape.Escaper;
 import com.google.common.net.UrlEscapers;
+import com.google.common.util.concurrent.RateLimiter;
 import com.google.gson.reflect.TypeToken;
 
 public class ConfigServiceLocator {
@@ -40,6 +47,12 @@ public class ConfigServiceLocator {
   private ScheduledExecutorService m_executorService;
   private static final Joiner.MapJoiner MAP_JOINER = Joiner.on("&").withKeyValueSeparator("=");
   private static final Escaper queryParamEscaper = UrlEscapers.urlFormParameterEscaper();
+  //90 seconds, should be longer than meta server side's long polling timeout, which is now 60 seconds
+  private static final int LONG_POLLING_READ_TIMEOUT = 90 * 1000;
+  private volatile String m_configServicesETag;
+  private ExecutorService m_longPollingService;
+  private SchedulePolicy m_longPollFailSchedulePolicyInSecond;
+  private RateLimiter m_longPollRateLimiter;
 
   /**
    * Create a config service locator.
@@ -53,6 +66,10 @@ public class ConfigServiceLocator {
     m_configUtil = ApolloInjector.getInstance(ConfigUtil.class);
     this.m_executorService = Executors.newScheduledThreadPool(1,
         ApolloThreadFactory.create("ConfigServiceLocator", true));
+    this.m_longPollingService = Executors.newSingleThreadExecutor(
+        ApolloThreadFactory.create("ConfigServiceLocatorLongPoll", true));
+    m_longPollFailSchedulePolicyInSecond = new ExponentialSchedulePolicy(1, 120); //in second
+    m_longPollRateLimiter = RateLimiter.create(m_configUtil.getLongPollQPS());
     initConfigServices();
   }
 
@@ -68,6 +85,7 @@ public class ConfigServiceLocator {
     // update from meta service
     this.tryUpdateConfigServices();
     this.schedulePeriodicRefresh();
+    this.startLongPollingRefresh();
   }
 
   private List<ServiceDTO> getCustomizedConfigService() {
@@ -117,6 +135,36 @@ public class ConfigServiceLocator {
     return m_configServices.get();
   }
 
+  /**
+   * 优先访问 Meta Service 为本应用分配的 Config Service，其余的作为备用
+   *
+   * Shuffle the preferred config services and the fallbacks separately, the preferred ones first
+   */
+  static List<ServiceDTO> shufflePreferredFirst(List<ServiceDTO> services) {
+    List<ServiceDTO> preferred = Lists.newLinkedList();
+    List<ServiceDTO> fallbacks = Lists.newLinkedList();
+    for (ServiceDTO service : services) {
+      (service.isFallback() ? fallbacks : preferred).add(service);
+    }
+    Collections.shuffle(preferred);
+    Collections.shuffle(fallbacks);
+    preferred.addAll(fallbacks);
+    return preferred;
+  }
+
+  /**
+   * @return the preferred config services, or all of them if none is preferred
+   */
+  static List<ServiceDTO> preferred(List<ServiceDTO> services) {
+    List<ServiceDTO> preferred = Lists.newArrayList();
+    for (ServiceDTO service : services) {
+      if (!service.isFallback()) {
+        preferred.add(service);
+      }
+    }
+    return preferred.isEmpty() ? services : preferred;
+  }
+
   private boolean tryUpdateConfigServices() {
     try {
       updateConfigServices();
@@ -140,10 +188,109 @@ public class ConfigServiceLocator {
         m_configUtil.getRefreshIntervalTimeUnit());
   }
 
-  private synchronized void updateConfigServices() {
-    String url = assembleMetaServiceUrl();
+  /**
+   * Long poll the meta service so that config service changes are applied in seconds instead of waiting for
+   * the next periodic refresh, which is kept as a fallback.
+   */
+  private void startLongPollingRefresh() {
+    m_longPollingService.submit(new Runnable() {
+      @Override
+      public void run() {
+        doLongPollingRefresh();
+      }
+    });
+  }
+
+  private void doLongPollingRefresh() {
+    while (!Thread.currentThread().isInterrupted()) {
+      if (!m_longPollRateLimiter.tryAcquire(5, TimeUnit.SECONDS)) {
+        //wait at most 5 seconds
+        try {
+          TimeUnit.SECONDS.sleep(5);
+        } catch (InterruptedException e) {
+          //stopped
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+      String url = assembleMetaServiceUrl("/services/config/notifications");
+      Transaction transaction = Tracer.newTransaction("Apollo.MetaService", "pollConfigService");
+      transaction.addData("Url", url);
+      try {
+        HttpRequest request = assembleConditionalRequest(url);
+        request.setReadTimeout(LONG_POLLING_READ_TIMEOUT);
 
+        HttpResponse<List<ServiceDTO>> response = m_httpUtil.doGet(request, m_responseType);
+        String eTag = response.getHeader("ETag");
+
+        if (response.getStatusCode() == 200) {
+          //meta server of older versions doesn't support long polling
+          if (eTag == null) {
+            logger.info("Meta server doesn't support long polling config services, will only refresh periodically");
+            transaction.setStatus(Transaction.SUCCESS);
+            return;
+          }
+          List<ServiceDTO> services = response.getBody();
+          if (services != null && !services.isEmpty()) {
+            setConfigServices(services, eTag);
+          }
+        }
+
+        m_longPollFailSchedulePolicyInSecond.success();
+        transaction.addData("StatusCode", response.getStatusCode());
+        transaction.setStatus(Transaction.SUCCESS);
+      } catch (ApolloConfigStatusCodeException ex) {
+        transaction.setStatus(ex);
+        if (ex.getStatusCode() == 404) {
+          logger.info("Meta server doesn't support long polling config services, will only refresh periodically");
+          return;
+        }
+        waitForNextLongPolling(ex);
+      } catch (Throwable ex) {
+        transaction.setStatus(ex);
+        waitForNextLongPolling(ex);
+      } finally {
+        transaction.complete();
+      }
+    }
+  }
+
+  private void waitForNextLongPolling(Throwable ex) {
+    Tracer.logEvent("ApolloConfigException", ExceptionUtil.getDetailMessage(ex));
+    long sleepTimeInSecond = m_longPollFailSchedulePolicyInSecond.fail();
+    logger.debug("Long polling config services failed, will retry in {} seconds, reason: {}", sleepTimeInSecond,
+        ExceptionUtil.getDetailMessage(ex));
+    try {
+      TimeUnit.SECONDS.sleep(sleepTimeInSecond);
+    } catch (InterruptedException ie) {
+      //stopped, keep the interrupted status so that the long polling loop exits
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Stop long polling the meta service, the periodic refresh is not affected
+   */
+  void stopLongPollingRefresh() {
+    m_longPollingService.shutdownNow();
+  }
+
+  /**
+   * Send the ETag of the current config services, so that the meta server could reply 304 if nothing changed
+   */
+  private HttpRequest assembleConditionalRequest(String url) {
     HttpRequest request = new HttpRequest(url);
+    String eTag = m_configServicesETag;
+    if (eTag != null && !m_configServices.get().isEmpty()) {
+      request.setHeader("If-None-Match", eTag);
+    }
+    return request;
+  }
+
+  private synchronized void updateConfigServices() {
+    String url = assembleMetaServiceUrl("/services/config");
+
+    HttpRequest request = assembleConditionalRequest(url);
     int maxRetries = 2;
     Throwable exception = null;
 
@@ -153,12 +300,15 @@ public class ConfigServiceLocator {
       try {
         HttpResponse<List<ServiceDTO>> response = m_httpUtil.doGet(request, m_responseType);
         transaction.setStatus(Transaction.SUCCESS);
+        if (response.getStatusCode() == 304) {
+          return;
+        }
         List<ServiceDTO> services = response.getBody();
         if (services == null || services.isEmpty()) {
           logConfigService("Empty response!");
           continue;
         }
-        setConfigServices(services);
+        setConfigServices(services, response.getHeader("ETag"));
         return;
       } catch (Throwable ex) {
         Tracer.logEvent("ApolloConfigException", ExceptionUtil.getDetailMessage(ex));
@@ -180,11 +330,16 @@ public class ConfigServiceLocator {
   }
 
   private void setConfigServices(List<ServiceDTO> services) {
+    setConfigServices(services, null);
+  }
+
+  private void setConfigServices(List<ServiceDTO> services, String eTag) {
     m_configServices.set(services);
+    m_configServicesETag = eTag;
     logConfigServices(services);
   }
 
-  private String assembleMetaServiceUrl() {
+  private String assembleMetaServiceUrl(String path) {
     String domainName = m_configUtil.getMetaServerDomainName();
     String appId = m_configUtil.getAppId();
     String localIp = m_configUtil.getLocalIp();
@@ -195,7 +350,7 @@ public class ConfigServiceLocator {
       queryParams.put("ip", queryParamEscaper.escape(localIp));
     }
 
-    return domainName + "/services/config?" + MAP_JOINER.join(queryParams);
+    return domainName + path + "?" + MAP_JOINER.join(queryParams);
   }
 
   private void logConfigServices(List<ServiceDTO> serviceDtos) {
@@ -23,6 +23,7 @@ import com.ctrip.framework.apollo.core.schedule.ExponentialSchedulePolicy;
 import com.ctrip.framework.apollo.core.schedule.SchedulePolicy;
 import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.exceptions.ApolloConfigException;
+import com.ctrip.framework.apollo.exceptions.ApolloConfigStatusCodeException;
 import com.ctrip.framework.apollo.tracer.Tracer;
 import com.ctrip.framework.apollo.tracer.spi.Transaction;
 import com.ctrip.framework.apollo.util.ConfigUtil;
@@ -55,6 +56,8 @@ public class RemoteConfigLongPollService {
   private static final long INIT_NOTIFICATION_ID = ConfigConsts.NOTIFICATION_ID_PLACEHOLDER;
   //90 seconds, should be longer than server side's long polling timeout, which is now 60 seconds
   private static final int LONG_POLLING_READ_TIMEOUT = 90 * 1000;
+  private static final long MIN_LONG_POLLING_BACKOFF_IN_SECONDS = 1;
+  private static final long MAX_LONG_POLLING_BACKOFF_IN_SECONDS = 120;
   /**
    * 长轮询 ExecutorService
    */
@@ -108,7 +111,8 @@ public class RemoteConfigLongPollService {
    * Constructor.
    */
   public RemoteConfigLongPollService() {
-    m_longPollFailSchedulePolicyInSecond = new ExponentialSchedulePolicy(1, 120); //in second
+    m_longPollFailSchedulePolicyInSecond = new ExponentialSchedulePolicy(MIN_LONG_POLLING_BACKOFF_IN_SECONDS,
+        MAX_LONG_POLLING_BACKOFF_IN_SECONDS);
     m_longPollingStopped = new AtomicBoolean(false);
     m_longPollingService = Executors.newSingleThreadExecutor(
         ApolloThreadFactory.create("RemoteConfigLongPollService", true));
@@ -197,6 +201,7 @@ public class RemoteConfigLongPollService {
   private void doLongPollingRefresh(String appId, String cluster, String dataCenter) {
     final Random random = new Random();
     ServiceDTO lastServiceDto = null;
+    boolean failed = false;
     // 循环执行，直到停止或线程中断
     while (!m_longPollingStopped.get() && !Thread.currentThread().isInterrupted()) {
       // 限流
@@ -212,9 +217,11 @@ public class RemoteConfigLongPollService {
       try {
         // 获得 Config Service 的地址
         if (lastServiceDto == null) {
-          // 获得所有的 Config Service 的地址
+          // 获得所有的 Config Service 的地址，失败后也会选择备用的 Config Service
+          //fail over to the fallback config services as well after a failure
           List<ServiceDTO> configServices = getConfigServices();
-          lastServiceDto = configServices.get(random.nextInt(configServices.size()));
+          List<ServiceDTO> candidates = failed ? configServices : ConfigServiceLocator.preferred(configServices);
+          lastServiceDto = candidates.get(random.nextInt(candidates.size()));
         }
 
         // 组装长轮询通知变更的地址
@@ -252,19 +259,30 @@ public class RemoteConfigLongPollService {
         }
 
         // 标记成功
+        failed = false;
         m_longPollFailSchedulePolicyInSecond.success();
         transaction.addData("StatusCode", response.getStatusCode());
         transaction.setStatus(Transaction.SUCCESS);
       } catch (Throwable ex) {
         // 重置连接的 Config Service 的地址，下次请求不同的 Config Service
         lastServiceDto = null;
-        Tracer.logEvent("ApolloConfigException", ExceptionUtil.getDetailMessage(ex));
+        failed = true;
         transaction.setStatus(ex);
         // 标记失败，计算下一次延迟执行时间
-        long sleepTimeInSecond = m_longPollFailSchedulePolicyInSecond.fail();
-        logger.warn(
-            "Long polling failed, will retry in {} seconds. appId: {}, cluster: {}, namespaces: {}, long polling url: {}, reason: {}",
-            sleepTimeInSecond, appId, cluster, assembleNamespaces(), url, ExceptionUtil.getDetailMessage(ex));
+        long sleepTimeInSecond = nextLongPollingDelayInSeconds(ex);
+        // Config Service 超出长轮询上限或正在关闭，属于预期内的拒绝，退避后请求其他 Config Service
+        //the config service is out of long polling budget or shutting down, back off and try another one
+        if (isRejectedByServer(ex)) {
+          Tracer.logEvent("Apollo.LongPoll.Rejected", url);
+          logger.info(
+              "Long polling rejected by server, will retry in {} seconds. appId: {}, cluster: {}, long polling url: {}",
+              sleepTimeInSecond, appId, cluster, url);
+        } else {
+          Tracer.logEvent("ApolloConfigException", ExceptionUtil.getDetailMessage(ex));
+          logger.warn(
+              "Long polling failed, will retry in {} seconds. appId: {}, cluster: {}, namespaces: {}, long polling url: {}, reason: {}",
+              sleepTimeInSecond, appId, cluster, assembleNamespaces(), url, ExceptionUtil.getDetailMessage(ex));
+        }
         // 等待一定时间，下次失败重试
         try {
           TimeUnit.SECONDS.sleep(sleepTimeInSecond);
@@ -277,6 +295,31 @@ public class RemoteConfigLongPollService {
     }
   }
 
+  /**
+   * 计算失败后下一次长轮询的延迟，服务端拒绝时遵循其 Retry-After，但不超过最大退避时间
+   *
+   * @return the delay of the next long polling after a failure, which is the Retry-After of the server if it rejects
+   * the long polling, clamped to the max backoff
+   */
+  long nextLongPollingDelayInSeconds(Throwable ex) {
+    long delayInSeconds = m_longPollFailSchedulePolicyInSecond.fail();
+    if (isRejectedByServer(ex)) {
+      long retryAfterInSeconds = ((ApolloConfigStatusCodeException) ex).getRetryAfterInSeconds();
+      if (retryAfterInSeconds >= 0) {
+        delayInSeconds = Math.min(retryAfterInSeconds, MAX_LONG_POLLING_BACKOFF_IN_SECONDS);
+      }
+    }
+    return delayInSeconds;
+  }
+
+  private boolean isRejectedByServer(Throwable ex) {
+    if (!(ex instanceof ApolloConfigStatusCodeException)) {
+      return false;
+    }
+    int statusCode = ((ApolloConfigStatusCodeException) ex).getStatusCode();
+    return statusCode == 429 || statusCode == 503;
+  }
+
   private void notify(ServiceDTO lastServiceDto, List<ApolloConfigNotification> notifications) {
     if (notifications == null || notifications.isEmpty()) {
       return;
@@ -299,7 +342,11 @@ public class RemoteConfigLongPollService {
       for (RemoteConfigRepository remoteConfigRepository : toBeNotified) {
         try {
           // 进行通知
-          remoteConfigRepository.onLongPollNotified(lastServiceDto, remoteMessages);
+          if (notification.getConfig() != null) {
+            remoteConfigRepository.onLongPollNotified(lastServiceDto, remoteMessages, notification.getConfig());
+          } else {
+            remoteConfigRepository.onLongPollNotified(lastServiceDto, remoteMessages);
+          }
         } catch (Throwable ex) {
           Tracer.logError(ex);
         }
@@ -375,6 +422,10 @@ public class RemoteConfigLongPollService {
       queryParams.put("ip", queryParamEscaper.escape(localIp));
     }
 
+    if (m_configUtil.isLongPollingWithConfigsEnabled()) {
+      queryParams.put("withConfigs", "true");
+    }
+
     String params = MAP_JOINER.join(queryParams);
     if (!uri.endsWith("/")) {
       uri += "/";
@@ -1,14 +1,15 @@
 package com.ctrip.framework.apollo.internals;
 
 import com.ctrip.framework.apollo.enums.ConfigSourceType;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
@@ -94,6 +95,10 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
    * 失败定时重试策略，使用 {@link ExponentialSchedulePolicy}
    */
   private final SchedulePolicy m_loadConfigFailSchedulePolicy;
+  /**
+   * 缓存的配置被应用的时间，在下一次查询配置时上报给 Config Service，用于统计发布的生效延迟，0 表示无需上报
+   */
+  private final AtomicLong m_releaseAppliedTime;
   private final Gson gson;
 
   static {
@@ -120,6 +125,7 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
     m_configNeedForceRefresh = new AtomicBoolean(true);
     m_loadConfigFailSchedulePolicy = new ExponentialSchedulePolicy(m_configUtil.getOnErrorRetryInterval(),
         m_configUtil.getOnErrorRetryInterval() * 8);
+    m_releaseAppliedTime = new AtomicLong();
     gson = new Gson();
     // 尝试同步配置
     this.trySync();
@@ -185,6 +191,7 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
         m_configCache.set(current);
         // 发布 Repository 的配置发生变化，触发对应的监听器们
         this.fireRepositoryChange(m_namespace, this.getConfig());
+        markReleaseApplied(previous);
       }
 
       if (current != null) {
@@ -235,9 +242,8 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
     String url = null;
     // 循环读取配置重试次数直到成功。每一次，都会循环所有的 ServiceDTO 数组。
     for (int i = 0; i < maxRetries; i++) {
-      // 随机所有的 Config Service 的地址
-      List<ServiceDTO> randomConfigServices = Lists.newLinkedList(configServices);
-      Collections.shuffle(randomConfigServices);
+      // 随机所有的 Config Service 的地址，为本应用分配的优先，备用的在后
+      List<ServiceDTO> randomConfigServices = ConfigServiceLocator.shufflePreferredFirst(configServices);
       // 优先访问通知配置变更的 Config Service 的地址。并且，获取到时，需要置空，避免重复优先访问。
       //Access the server which notifies the client first
       if (m_longPollServiceDto.get() != null) {
@@ -281,6 +287,10 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
           transaction.addData("StatusCode", response.getStatusCode());
           transaction.setStatus(Transaction.SUCCESS);
 
+          // 应用时间已随本次请求上报
+          //the applied time is reported by this query
+          m_releaseAppliedTime.set(0);
+
           // 无新的配置，直接返回缓存的 ApolloConfig 对象
           if (response.getStatusCode() == 304) {
             logger.debug("Config server responds with 304 HTTP status code.");
@@ -360,6 +370,11 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
       queryParams.put("messages", queryParamEscaper.escape(gson.toJson(remoteMessages)));
     }
 
+    long releaseAppliedTime = m_releaseAppliedTime.get();
+    if (previousConfig != null && releaseAppliedTime > 0) {
+      queryParams.put("releaseAppliedTime", String.valueOf(releaseAppliedTime));
+    }
+
     String pathExpanded = String.format(path, pathParams.toArray());
 
     if (!queryParams.isEmpty()) {
@@ -376,6 +391,26 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
   }
 
   public void onLongPollNotified(ServiceDTO longPollNotifiedServiceDto, ApolloNotificationMessages remoteMessages) {
+    onLongPollNotified(longPollNotifiedServiceDto, remoteMessages, null);
+  }
+
+  /**
+   * @param config the latest config carried by the notification, null if not carried
+   */
+  public void onLongPollNotified(ServiceDTO longPollNotifiedServiceDto, ApolloNotificationMessages remoteMessages,
+                                 final ApolloConfig config) {
+    // 通知携带了最新配置，直接使用，无需再次请求 Config Service
+    if (config != null) {
+      m_remoteMessages.set(remoteMessages);
+      m_executorService.submit(new Runnable() {
+        @Override
+        public void run() {
+          applyLongPollConfig(config);
+        }
+      });
+      return;
+    }
+
     // 设置长轮询到配置更新的 Config Service 。下次同步配置时，优先读取该服务
     m_longPollServiceDto.set(longPollNotifiedServiceDto);
     // 设置 m_remoteMessages
@@ -391,6 +426,37 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
     });
   }
 
+  /**
+   * Only the updates are reported, the first load is not a release propagation
+   */
+  private void markReleaseApplied(ApolloConfig previous) {
+    if (previous != null) {
+      m_releaseAppliedTime.set(System.currentTimeMillis());
+    }
+  }
+
+  private synchronized void applyLongPollConfig(ApolloConfig current) {
+    Transaction transaction = Tracer.newTransaction("Apollo.ConfigService", "applyLongPollConfig");
+    try {
+      ApolloConfig previous = m_configCache.get();
+      if (previous == null || !Objects.equals(previous.getReleaseKey(), current.getReleaseKey())) {
+        logger.debug("Remote Config refreshed by long polling!");
+        m_configCache.set(current);
+        this.fireRepositoryChange(m_namespace, this.getConfig());
+        markReleaseApplied(previous);
+      }
+
+      Tracer.logEvent(String.format("Apollo.Client.Configs.%s", current.getNamespaceName()),
+          current.getReleaseKey());
+      transaction.setStatus(Transaction.SUCCESS);
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      Tracer.logError(ex);
+    } finally {
+      transaction.complete();
+    }
+  }
+
   private List<ServiceDTO> getConfigServices() {
     List<ServiceDTO> services = m_serviceLocator.getConfigServices();
     if (services.size() == 0) {
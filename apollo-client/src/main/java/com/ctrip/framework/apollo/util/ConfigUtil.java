@@ -34,6 +34,8 @@ public class ConfigUtil {
   private TimeUnit configCacheExpireTimeUnit = TimeUnit.MINUTES;//1 minute
   private long longPollingInitialDelayInMills = 2000;//2 seconds
   private boolean autoUpdateInjectedSpringProperties = true;
+  private boolean longPollingWithConfigs = false;
+  private boolean cborEncoding = false;
 
   public ConfigUtil() {
     initRefreshInterval();
@@ -44,6 +46,8 @@ public class ConfigUtil {
     initMaxConfigCacheSize();
     initLongPollingInitialDelayInMills();
     initAutoUpdateInjectedSpringProperties();
+    initLongPollingWithConfigs();
+    initCborEncoding();
   }
 
   /**
@@ -292,4 +296,44 @@ public class ConfigUtil {
   public boolean isAutoUpdateInjectedSpringPropertiesEnabled() {
     return autoUpdateInjectedSpringProperties;
   }
+
+  private void initLongPollingWithConfigs() {
+    // 1. Get from System Property
+    String withConfigs = System.getProperty("apollo.longPollingWithConfigs");
+    if (Strings.isNullOrEmpty(withConfigs)) {
+      // 2. Get from app.properties
+      withConfigs = Foundation.app().getProperty("apollo.longPollingWithConfigs", null);
+    }
+    if (!Strings.isNullOrEmpty(withConfigs)) {
+      longPollingWithConfigs = Boolean.parseBoolean(withConfigs.trim());
+    }
+  }
+
+  /**
+   * Whether the long polling notifications should carry the latest configs, so that there is no need to query the
+   * config service again.
+   */
+  public boolean isLongPollingWithConfigsEnabled() {
+    return longPollingWithConfigs;
+  }
+
+  private void initCborEncoding() {
+    // 1. Get from System Property
+    String enableCbor = System.getProperty("apollo.cborEncoding");
+    if (Strings.isNullOrEmpty(enableCbor)) {
+      // 2. Get from app.properties
+      enableCbor = Foundation.app().getProperty("apollo.cborEncoding", null);
+    }
+    if (!Strings.isNullOrEmpty(enableCbor)) {
+      cborEncoding = Boolean.parseBoolean(enableCbor.trim());
+    }
+  }
+
+  /**
+   * Whether to ask the config service to respond configs and notifications in cbor instead of json, which is more
+   * compact and cheaper to parse.
+   */
+  public boolean isCborEncodingEnabled() {
+    return cborEncoding;
+  }
 }
@@ -1,6 +1,7 @@
 package com.ctrip.framework.apollo.util.http;
 
 import com.ctrip.framework.apollo.build.ApolloInjector;
+import com.ctrip.framework.apollo.core.codec.ApolloCborCodec;
 import com.ctrip.framework.apollo.exceptions.ApolloConfigException;
 import com.ctrip.framework.apollo.exceptions.ApolloConfigStatusCodeException;
 import com.ctrip.framework.apollo.util.ConfigUtil;
@@ -14,11 +15,13 @@ import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.Map;
 
 /**
  * @author Jason Song(song_s@ctrip.com)
  */
 public class HttpUtil {
+  private static final String ACCEPT_CBOR_OR_JSON = ApolloCborCodec.MEDIA_TYPE + ", application/json;q=0.9";
   private ConfigUtil m_configUtil;
   private Gson gson;
 
@@ -46,7 +49,7 @@ public class HttpUtil {
       }
     };
 
-    return doGetWithSerializeFunction(httpRequest, convertResponse);
+    return doGetWithSerializeFunction(httpRequest, convertResponse, responseType);
   }
 
   /**
@@ -65,19 +68,32 @@ public class HttpUtil {
       }
     };
 
-    return doGetWithSerializeFunction(httpRequest, convertResponse);
+    return doGetWithSerializeFunction(httpRequest, convertResponse, responseType);
   }
 
   private <T> HttpResponse<T> doGetWithSerializeFunction(HttpRequest httpRequest,
-                                                         Function<String, T> serializeFunction) {
+                                                         Function<String, T> serializeFunction,
+                                                         Type responseType) {
     InputStreamReader isr = null;
     InputStreamReader esr = null;
+    InputStream is = null;
     int statusCode;
     try {
       HttpURLConnection conn = (HttpURLConnection) new URL(httpRequest.getUrl()).openConnection();
 
       conn.setRequestMethod("GET");
 
+      // 优先使用 cbor 编码，老版本的 Config Service 会忽略该请求头，继续返回 json
+      //prefer cbor, old config services ignore the header and still respond json
+      boolean acceptCbor = m_configUtil.isCborEncodingEnabled() && ApolloCborCodec.supports(responseType);
+      if (acceptCbor) {
+        conn.setRequestProperty("Accept", ACCEPT_CBOR_OR_JSON);
+      }
+
+      for (Map.Entry<String, String> header : httpRequest.getHeaders().entrySet()) {
+        conn.setRequestProperty(header.getKey(), header.getValue());
+      }
+
       int connectTimeout = httpRequest.getConnectTimeout();
       if (connectTimeout < 0) {
         connectTimeout = m_configUtil.getConnectTimeout();
@@ -94,11 +110,17 @@ public class HttpUtil {
       conn.connect();
 
       statusCode = conn.getResponseCode();
-      String response;
+      String response = null;
+      T binaryResponse = null;
 
       try {
-        isr = new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8);
-        response = CharStreams.toString(isr);
+        if (acceptCbor && ApolloCborCodec.isCbor(conn.getContentType())) {
+          is = conn.getInputStream();
+          binaryResponse = ApolloCborCodec.decode(is, responseType);
+        } else {
+          isr = new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8);
+          response = CharStreams.toString(isr);
+        }
       } catch (IOException ex) {
         /**
          * according to https://docs.oracle.com/javase/7/docs/technotes/guides/net/http-keepalive.html,
@@ -121,16 +143,18 @@ public class HttpUtil {
           throw ex;
         } else {
           // for status codes like 404, IOException is expected when calling conn.getInputStream()
-          throw new ApolloConfigStatusCodeException(statusCode, ex);
+          throw new ApolloConfigStatusCodeException(statusCode, ex,
+              parseRetryAfter(conn.getHeaderField("Retry-After")));
         }
       }
 
       if (statusCode == 200) {
-        return new HttpResponse<>(statusCode, serializeFunction.apply(response));
+        T body = binaryResponse != null ? binaryResponse : serializeFunction.apply(response);
+        return new HttpResponse<>(statusCode, body, conn.getHeaderFields());
       }
 
       if (statusCode == 304) {
-        return new HttpResponse<>(statusCode, null);
+        return new HttpResponse<>(statusCode, null, conn.getHeaderFields());
       }
     } catch (ApolloConfigStatusCodeException ex) {
       throw ex;
@@ -145,6 +169,14 @@ public class HttpUtil {
         }
       }
 
+      if (is != null) {
+        try {
+          is.close();
+        } catch (IOException ex) {
+          // ignore
+        }
+      }
+
       if (esr != null) {
         try {
           esr.close();
@@ -158,4 +190,18 @@ public class HttpUtil {
         String.format("Get operation failed for %s", httpRequest.getUrl()));
   }
 
+  /**
+   * Only the delay-seconds form of Retry-After is supported, the http-date form is ignored
+   */
+  private long parseRetryAfter(String retryAfter) {
+    if (retryAfter == null) {
+      return -1;
+    }
+    try {
+      return Math.max(0, Long.parseLong(retryAfter.trim()));
+    } catch (NumberFormatException ex) {
+      return -1;
+    }
+  }
+
 }
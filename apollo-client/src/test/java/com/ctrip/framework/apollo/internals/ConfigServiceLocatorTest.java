@@ -1,17 +1,36 @@
 package com.ctrip.framework.apollo.internals;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import com.ctrip.framework.apollo.build.MockInjector;
 import com.ctrip.framework.apollo.core.dto.ServiceDTO;
+import com.ctrip.framework.apollo.exceptions.ApolloConfigException;
+import com.ctrip.framework.apollo.util.ConfigUtil;
+import com.ctrip.framework.apollo.util.http.HttpRequest;
+import com.ctrip.framework.apollo.util.http.HttpUtil;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import java.lang.reflect.Type;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import org.junit.After;
 import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
 
 public class ConfigServiceLocatorTest {
 
   @After
   public void tearDown() throws Exception {
     System.clearProperty("apollo.configService");
+    MockInjector.reset();
   }
 
   @Test
@@ -30,4 +49,65 @@ public class ConfigServiceLocatorTest {
     assertEquals(someConfigServiceUrl.trim(), result.get(0).getHomepageUrl());
     assertEquals(anotherConfigServiceUrl.trim(), result.get(1).getHomepageUrl());
   }
+
+  @Test
+  public void testShufflePreferredFirst() throws Exception {
+    ServiceDTO somePreferred = assembleService("somePreferred", false);
+    ServiceDTO anotherPreferred = assembleService("anotherPreferred", false);
+    ServiceDTO someFallback = assembleService("someFallback", true);
+    ServiceDTO anotherFallback = assembleService("anotherFallback", true);
+    List<ServiceDTO> services = Lists.newArrayList(someFallback, somePreferred, anotherFallback, anotherPreferred);
+
+    for (int i = 0; i < 10; i++) {
+      List<ServiceDTO> result = ConfigServiceLocator.shufflePreferredFirst(services);
+
+      assertEquals(4, result.size());
+      assertEquals(Sets.newHashSet(somePreferred, anotherPreferred), Sets.newHashSet(result.subList(0, 2)));
+      assertEquals(Sets.newHashSet(someFallback, anotherFallback), Sets.newHashSet(result.subList(2, 4)));
+    }
+    assertEquals(Lists.newArrayList(somePreferred, anotherPreferred), ConfigServiceLocator.preferred(services));
+  }
+
+  @Test
+  public void testPreferredWithOnlyFallbacks() throws Exception {
+    List<ServiceDTO> services = Lists.newArrayList(assembleService("someService", true));
+
+    assertSame(services, ConfigServiceLocator.preferred(services));
+    assertEquals(services, ConfigServiceLocator.shufflePreferredFirst(services));
+  }
+
+  @Test
+  public void testStopLongPollingRefresh() throws Exception {
+    ConfigUtil configUtil = mock(ConfigUtil.class);
+    when(configUtil.getMetaServerDomainName()).thenReturn("http://someServer");
+    when(configUtil.getAppId()).thenReturn("someAppId");
+    when(configUtil.getLongPollQPS()).thenReturn(2);
+    when(configUtil.getRefreshInterval()).thenReturn(5);
+    when(configUtil.getRefreshIntervalTimeUnit()).thenReturn(TimeUnit.MINUTES);
+    when(configUtil.getOnErrorRetryInterval()).thenReturn(1L);
+    when(configUtil.getOnErrorRetryIntervalTimeUnit()).thenReturn(TimeUnit.MILLISECONDS);
+    HttpUtil httpUtil = mock(HttpUtil.class);
+    when(httpUtil.doGet(any(HttpRequest.class), any(Type.class))).thenThrow(new ApolloConfigException("some error"));
+    MockInjector.reset();
+    MockInjector.setInstance(ConfigUtil.class, configUtil);
+    MockInjector.setInstance(HttpUtil.class, httpUtil);
+
+    ConfigServiceLocator configServiceLocator = new ConfigServiceLocator();
+    //the initial fetch retries twice, then the long polling fails and backs off
+    verify(httpUtil, timeout(5000).atLeast(3)).doGet(any(HttpRequest.class), any(Type.class));
+
+    configServiceLocator.stopLongPollingRefresh();
+
+    ExecutorService longPollingService =
+        (ExecutorService) ReflectionTestUtils.getField(configServiceLocator, "m_longPollingService");
+    assertTrue(longPollingService.awaitTermination(1, TimeUnit.SECONDS));
+  }
+
+  private ServiceDTO assembleService(String instanceId, boolean fallback) {
+    ServiceDTO service = new ServiceDTO();
+    service.setInstanceId(instanceId);
+    service.setHomepageUrl("http://" + instanceId);
+    service.setFallback(fallback);
+    return service;
+  }
 }
@@ -11,6 +11,7 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +31,7 @@ import org.mockito.stubbing.Answer;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import com.ctrip.framework.apollo.build.MockInjector;
+import com.ctrip.framework.apollo.exceptions.ApolloConfigStatusCodeException;
 import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
 import com.ctrip.framework.apollo.core.dto.ServiceDTO;
@@ -465,6 +467,30 @@ public class RemoteConfigLongPollServiceTest {
             + "%22%2C%22notificationId%22%3A" + anotherNotificationId + "%7D%5D"));
   }
 
+  @Test
+  public void testNextLongPollingDelayHonorsRetryAfter() throws Exception {
+    long someRetryAfter = 3;
+    long tooLongRetryAfter = 1000;
+    long maxBackoff = 120;
+
+    assertEquals(someRetryAfter, remoteConfigLongPollService.nextLongPollingDelayInSeconds(
+        new ApolloConfigStatusCodeException(429, new IOException(), someRetryAfter)));
+    assertEquals(0, remoteConfigLongPollService.nextLongPollingDelayInSeconds(
+        new ApolloConfigStatusCodeException(503, new IOException(), 0)));
+    //clamped to the max backoff
+    assertEquals(maxBackoff, remoteConfigLongPollService.nextLongPollingDelayInSeconds(
+        new ApolloConfigStatusCodeException(429, new IOException(), tooLongRetryAfter)));
+  }
+
+  @Test
+  public void testNextLongPollingDelayWithoutRetryAfter() throws Exception {
+    //exponential backoff starting from 1 second
+    assertEquals(1, remoteConfigLongPollService.nextLongPollingDelayInSeconds(
+        new ApolloConfigStatusCodeException(429, new IOException())));
+    assertEquals(2, remoteConfigLongPollService.nextLongPollingDelayInSeconds(
+        new ApolloConfigStatusCodeException(500, new IOException(), 1)));
+  }
+
   public static class MockConfigUtil extends ConfigUtil {
     @Override
     public String getAppId() {
@@ -1,6 +1,7 @@
 package com.ctrip.framework.apollo.internals;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.any;
@@ -150,6 +151,36 @@ public class RemoteConfigRepositoryTest {
     remoteConfigLongPollService.stopLongPollingRefresh();
   }
 
+  @Test
+  public void testReportReleaseAppliedTime() throws Exception {
+    ApolloConfig someApolloConfig = assembleApolloConfig(ImmutableMap.of("someKey", "someValue"));
+    ApolloConfig newApolloConfig = assembleApolloConfig(ImmutableMap.of("someKey", "anotherValue"));
+    newApolloConfig.setReleaseKey("2");
+
+    when(someResponse.getStatusCode()).thenReturn(200);
+    when(someResponse.getBody()).thenReturn(someApolloConfig);
+
+    RemoteConfigRepository remoteConfigRepository = new RemoteConfigRepository(someNamespace);
+    remoteConfigLongPollService.stopLongPollingRefresh();
+
+    when(someResponse.getBody()).thenReturn(newApolloConfig);
+    remoteConfigRepository.sync();
+
+    when(someResponse.getStatusCode()).thenReturn(304);
+    remoteConfigRepository.sync();
+    remoteConfigRepository.sync();
+
+    ArgumentCaptor<HttpRequest> captor = ArgumentCaptor.forClass(HttpRequest.class);
+    verify(httpUtil, times(4)).doGet(captor.capture(), eq(ApolloConfig.class));
+    List<HttpRequest> requests = captor.getAllValues();
+
+    //the first load and the update are not reported, the applied time is reported once after the update
+    assertFalse(requests.get(0).getUrl().contains("releaseAppliedTime="));
+    assertFalse(requests.get(1).getUrl().contains("releaseAppliedTime="));
+    assertTrue(requests.get(2).getUrl().contains("releaseAppliedTime="));
+    assertFalse(requests.get(3).getUrl().contains("releaseAppliedTime="));
+  }
+
   @Test
   public void testLongPollingRefresh() throws Exception {
     Map<String, String> configurations = ImmutableMap.of("someKey", "someValue");
@@ -205,6 +236,51 @@ public class RemoteConfigRepositoryTest {
     assertTrue(request.getUrl().contains("messages=%7B%22details%22%3A%7B%22someKey%22%3A1%7D%7D"));
   }
 
+  @Test
+  public void testLongPollingRefreshWithConfigs() throws Exception {
+    Map<String, String> configurations = ImmutableMap.of("someKey", "someValue");
+    ApolloConfig someApolloConfig = assembleApolloConfig(configurations);
+
+    when(someResponse.getStatusCode()).thenReturn(200);
+    when(someResponse.getBody()).thenReturn(someApolloConfig);
+
+    final SettableFuture<Boolean> longPollFinished = SettableFuture.create();
+    RepositoryChangeListener someListener = mock(RepositoryChangeListener.class);
+    doAnswer(new Answer<Void>() {
+
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        longPollFinished.set(true);
+        return null;
+      }
+
+    }).when(someListener).onRepositoryChange(any(String.class), any(Properties.class));
+
+    RemoteConfigRepository remoteConfigRepository = new RemoteConfigRepository(someNamespace);
+    remoteConfigRepository.addChangeListener(someListener);
+    final ArgumentCaptor<Properties> captor = ArgumentCaptor.forClass(Properties.class);
+
+    Map<String, String> newConfigurations = ImmutableMap.of("someKey", "anotherValue");
+    ApolloConfig newApolloConfig = assembleApolloConfig(newConfigurations);
+    newApolloConfig.setReleaseKey("2");
+
+    ApolloConfigNotification someNotification = mock(ApolloConfigNotification.class);
+    when(someNotification.getNamespaceName()).thenReturn(someNamespace);
+    when(someNotification.getConfig()).thenReturn(newApolloConfig);
+
+    when(pollResponse.getStatusCode()).thenReturn(HttpServletResponse.SC_OK);
+    when(pollResponse.getBody()).thenReturn(Lists.newArrayList(someNotification));
+
+    longPollFinished.get(500, TimeUnit.MILLISECONDS);
+
+    remoteConfigLongPollService.stopLongPollingRefresh();
+
+    verify(someListener, times(1)).onRepositoryChange(eq(someNamespace), captor.capture());
+    assertEquals(newConfigurations, captor.getValue());
+    //the config is carried by the notification, so it is only queried once when initializing
+    verify(httpUtil, times(1)).doGet(any(HttpRequest.class), eq(ApolloConfig.class));
+  }
+
   @Test
   public void testAssembleQueryConfigUrl() throws Exception {
     Gson gson = new Gson();
@@ -0,0 +1,67 @@
+package com.ctrip.framework.apollo.common.controller;
+
+import com.ctrip.framework.apollo.core.codec.ApolloCborCodec;
+import com.ctrip.framework.apollo.core.dto.ApolloConfig;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Write {@link ApolloConfig} and List&lt;ApolloConfigNotification&gt; as CBOR for the clients which accept it,
+ * see {@link ApolloCborCodec}.
+ */
+public class ApolloCborHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+  public static final MediaType APPLICATION_CBOR = MediaType.parseMediaType(ApolloCborCodec.MEDIA_TYPE);
+
+  public ApolloCborHttpMessageConverter() {
+    super(APPLICATION_CBOR);
+  }
+
+  @Override
+  protected boolean supports(Class<?> clazz) {
+    return clazz == ApolloConfig.class || List.class.isAssignableFrom(clazz);
+  }
+
+  @Override
+  public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+    return ApolloCborCodec.supports(type) && canRead(mediaType);
+  }
+
+  @Override
+  public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+    // List 需要根据泛型判断元素类型
+    //the element type of a list could only be checked by the generic type
+    return ApolloCborCodec.supports(type != null ? type : clazz) && canWrite(mediaType);
+  }
+
+  @Override
+  public boolean canRead(Class<?> clazz, MediaType mediaType) {
+    return canRead(clazz, null, mediaType);
+  }
+
+  @Override
+  public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+    return canWrite(clazz, clazz, mediaType);
+  }
+
+  @Override
+  public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+    return ApolloCborCodec.decode(inputMessage.getBody(), type);
+  }
+
+  @Override
+  protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+    return ApolloCborCodec.decode(inputMessage.getBody(), clazz);
+  }
+
+  @Override
+  protected void writeInternal(Object o, Type type, HttpOutputMessage outputMessage) throws IOException {
+    ApolloCborCodec.encode(o, outputMessage.getBody());
+  }
+}
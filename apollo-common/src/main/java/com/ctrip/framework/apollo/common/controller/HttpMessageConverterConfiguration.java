@@ -26,7 +26,8 @@ public class HttpMessageConverterConfiguration {
             new GsonBuilder().setDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").create());
     final List<HttpMessageConverter<?>> converters = Lists.newArrayList(
             new ByteArrayHttpMessageConverter(), new StringHttpMessageConverter(),
-            new AllEncompassingFormHttpMessageConverter(), gsonHttpMessageConverter);
+            new AllEncompassingFormHttpMessageConverter(), gsonHttpMessageConverter,
+            new ApolloCborHttpMessageConverter());
     return new HttpMessageConverters() {
       @Override
       public List<HttpMessageConverter<?>> getConverters() {
@@ -1,21 +1,29 @@
 package com.ctrip.framework.apollo.common.controller;
 
+import com.ctrip.framework.apollo.core.codec.ApolloCborCodec;
+
 import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
 import org.springframework.boot.web.server.MimeMappings;
 import org.springframework.boot.web.server.WebServerFactoryCustomizer;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.servlet.config.annotation.ContentNegotiationConfigurer;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 @Configuration
 public class WebMvcConfig implements WebMvcConfigurer, WebServerFactoryCustomizer<TomcatServletWebServerFactory> {
+  private static final List<MediaType> JSON_ONLY = Collections.singletonList(MediaType.APPLICATION_JSON);
+  private static final List<MediaType> CBOR_OR_JSON = Collections.unmodifiableList(
+      Arrays.asList(ApolloCborHttpMessageConverter.APPLICATION_CBOR, MediaType.APPLICATION_JSON));
 
   @Override
   public void addArgumentResolvers(List<HandlerMethodArgumentResolver> argumentResolvers) {
@@ -29,7 +37,15 @@ public class WebMvcConfig implements WebMvcConfigurer, WebServerFactoryCustomize
   @Override
   public void configureContentNegotiation(ContentNegotiationConfigurer configurer) {
     configurer.favorPathExtension(false);
-    configurer.ignoreAcceptHeader(true).defaultContentType(MediaType.APPLICATION_JSON);
+    // 默认 json ，仅当客户端明确接受 cbor 时才使用 cbor ，兼容老版本客户端
+    //json by default, cbor is only used when the client accepts it explicitly
+    configurer.ignoreAcceptHeader(true).defaultContentTypeStrategy(request -> {
+      String accept = request.getHeader(HttpHeaders.ACCEPT);
+      if (accept != null && accept.contains(ApolloCborCodec.MEDIA_TYPE)) {
+        return CBOR_OR_JSON;
+      }
+      return JSON_ONLY;
+    });
   }
 
   @Override
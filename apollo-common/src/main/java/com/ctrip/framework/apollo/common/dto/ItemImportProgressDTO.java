@@ -0,0 +1,140 @@
+package com.ctrip.framework.apollo.common.dto;
+
+import java.util.Date;
+
+public class ItemImportProgressDTO {
+
+  public enum Status {
+    RUNNING, COMPLETED, FAILED
+  }
+
+  private String appId;
+
+  private String clusterName;
+
+  private String namespaceName;
+
+  private String operator;
+
+  private Status status;
+
+  private long parsed;
+
+  private long created;
+
+  private long updated;
+
+  private long unchanged;
+
+  private int batches;
+
+  private String message;
+
+  private Date startTime;
+
+  private Date lastUpdateTime;
+
+  public String getAppId() {
+    return appId;
+  }
+
+  public void setAppId(String appId) {
+    this.appId = appId;
+  }
+
+  public String getClusterName() {
+    return clusterName;
+  }
+
+  public void setClusterName(String clusterName) {
+    this.clusterName = clusterName;
+  }
+
+  public String getNamespaceName() {
+    return namespaceName;
+  }
+
+  public void setNamespaceName(String namespaceName) {
+    this.namespaceName = namespaceName;
+  }
+
+  public String getOperator() {
+    return operator;
+  }
+
+  public void setOperator(String operator) {
+    this.operator = operator;
+  }
+
+  public Status getStatus() {
+    return status;
+  }
+
+  public void setStatus(Status status) {
+    this.status = status;
+  }
+
+  public long getParsed() {
+    return parsed;
+  }
+
+  public void setParsed(long parsed) {
+    this.parsed = parsed;
+  }
+
+  public long getCreated() {
+    return created;
+  }
+
+  public void setCreated(long created) {
+    this.created = created;
+  }
+
+  public long getUpdated() {
+    return updated;
+  }
+
+  public void setUpdated(long updated) {
+    this.updated = updated;
+  }
+
+  public long getUnchanged() {
+    return unchanged;
+  }
+
+  public void setUnchanged(long unchanged) {
+    this.unchanged = unchanged;
+  }
+
+  public int getBatches() {
+    return batches;
+  }
+
+  public void setBatches(int batches) {
+    this.batches = batches;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  public void setMessage(String message) {
+    this.message = message;
+  }
+
+  public Date getStartTime() {
+    return startTime;
+  }
+
+  public void setStartTime(Date startTime) {
+    this.startTime = startTime;
+  }
+
+  public Date getLastUpdateTime() {
+    return lastUpdateTime;
+  }
+
+  public void setLastUpdateTime(Date lastUpdateTime) {
+    this.lastUpdateTime = lastUpdateTime;
+  }
+}
@@ -0,0 +1,65 @@
+package com.ctrip.framework.apollo.common.utils;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import com.ctrip.framework.apollo.common.exception.BadRequestException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 把嵌套的 map 和 list 按 spring boot 的方式展开为 properties，例如 a.b[0]=c
+ *
+ * Flatten the nested maps and lists of yaml or json to properties the same way as spring boot does, e.g. a.b[0]=c.
+ * Nulls, empty maps and empty lists are flattened to empty values.
+ *
+ * Yaml aliases let a small document reference the same node many times or even itself, so the depth and the number
+ * of flattened entries are capped instead of expanding them without bound.
+ */
+public class FlattenUtils {
+  static final int MAX_DEPTH = 64;
+  static final int MAX_ENTRIES = 100000;
+
+  public static Map<String, String> flatten(Map<?, ?> tree) {
+    Map<String, String> result = Maps.newLinkedHashMap();
+    flatten(null, tree, 0, result);
+    return result;
+  }
+
+  private static void flatten(String path, Object value, int depth, Map<String, String> result) {
+    if (depth > MAX_DEPTH) {
+      throw new BadRequestException(String.format("Content is nested deeper than %d levels, e.g. %s", MAX_DEPTH,
+          path));
+    }
+    if (value instanceof Map) {
+      Map<?, ?> map = (Map<?, ?>) value;
+      if (map.isEmpty() && path != null) {
+        put(path, "", result);
+      }
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        String key = String.valueOf(entry.getKey());
+        flatten(path == null ? key : path + "." + key, entry.getValue(), depth + 1, result);
+      }
+      return;
+    }
+    if (value instanceof Collection) {
+      List<?> list = value instanceof List ? (List<?>) value : Lists.newArrayList((Collection<?>) value);
+      if (list.isEmpty()) {
+        put(path, "", result);
+      }
+      for (int i = 0; i < list.size(); i++) {
+        flatten(path + "[" + i + "]", list.get(i), depth + 1, result);
+      }
+      return;
+    }
+    put(path, value == null ? "" : String.valueOf(value), result);
+  }
+
+  private static void put(String path, String value, Map<String, String> result) {
+    if (result.put(path, value) == null && result.size() > MAX_ENTRIES) {
+      throw new BadRequestException(String.format("Content is flattened to more than %d entries", MAX_ENTRIES));
+    }
+  }
+}
@@ -0,0 +1,131 @@
+package com.ctrip.framework.apollo.configservice;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.configservice.controller.NotificationControllerV2;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.netflix.appinfo.ApplicationInfoManager;
+import com.netflix.appinfo.InstanceInfo.InstanceStatus;
+import com.netflix.discovery.EurekaClientConfig;
+import com.netflix.eureka.EurekaServerConfig;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Config Service 优雅关闭
+ *
+ * 1. 从注册中心下线，并继续服务到 Meta Service 和客户端感知到下线，新的客户端不再连接本节点
+ * 2. 在时间窗口内分散地完成挂起的长轮询，通知客户端连接其他节点
+ * 3. 之后才停止 Web 容器
+ *
+ * Runs in the highest phase, so it stops before any other lifecycle bean, while the web server is still
+ * serving requests. The whole shutdown takes the deregister delay plus the drain window, which the termination
+ * grace period of the deployment should allow for.
+ */
+@Component
+public class ConfigServiceGracefulShutdown implements SmartLifecycle {
+  private static final Logger logger = LoggerFactory.getLogger(ConfigServiceGracefulShutdown.class);
+
+  @Autowired
+  private ObjectProvider<ApplicationInfoManager> applicationInfoManager;
+
+  @Autowired
+  private ObjectProvider<EurekaClientConfig> eurekaClientConfig;
+
+  @Autowired
+  private ObjectProvider<EurekaServerConfig> eurekaServerConfig;
+
+  @Autowired
+  private NotificationControllerV2 notificationControllerV2;
+
+  @Autowired
+  private BizConfig bizConfig;
+
+  private volatile boolean running = false;
+
+  @Override
+  public void start() {
+    running = true;
+  }
+
+  @Override
+  public void stop() {
+    try {
+      if (deregister()) {
+        waitForDeregistration();
+      }
+      notificationControllerV2.drainLongPolls(bizConfig.longPollingDrainWindowInMilli());
+    } catch (Throwable ex) {
+      logger.error("Graceful shutdown failed", ex);
+      Tracer.logError(ex);
+    } finally {
+      running = false;
+    }
+  }
+
+  @Override
+  public void stop(Runnable callback) {
+    stop();
+    callback.run();
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  @Override
+  public boolean isAutoStartup() {
+    return true;
+  }
+
+  @Override
+  public int getPhase() {
+    return Integer.MAX_VALUE;
+  }
+
+  private boolean deregister() {
+    ApplicationInfoManager manager = applicationInfoManager.getIfAvailable();
+    if (manager == null) {
+      return false;
+    }
+    logger.info("Marking config service instance as down in eureka");
+    manager.setInstanceStatus(InstanceStatus.DOWN);
+    return true;
+  }
+
+  private void waitForDeregistration() throws InterruptedException {
+    long delay = deregisterDelayInMilli();
+    logger.info("Waiting {} ms for the meta services and clients to see the instance down", delay);
+    TimeUnit.MILLISECONDS.sleep(delay);
+  }
+
+  /**
+   * 下线状态先被 Eureka Server 的响应缓存刷新，再被 Meta Service 的 Eureka Client 拉取
+   *
+   * The status is first refreshed into the response cache of eureka server, then fetched by the eureka clients of
+   * the meta services, which notify the clients by long polling right away.
+   */
+  long deregisterDelayInMilli() {
+    long delay = bizConfig.longPollingDeregisterDelayInMilli();
+    if (delay >= 0) {
+      return delay;
+    }
+    delay = 0;
+    EurekaClientConfig clientConfig = eurekaClientConfig.getIfAvailable();
+    if (clientConfig != null) {
+      delay += TimeUnit.SECONDS.toMillis(clientConfig.getRegistryFetchIntervalSeconds());
+    }
+    EurekaServerConfig serverConfig = eurekaServerConfig.getIfAvailable();
+    if (serverConfig != null && serverConfig.shouldUseReadOnlyResponseCache()) {
+      delay += serverConfig.getResponseCacheUpdateIntervalMs();
+    }
+    return delay;
+  }
+}
@@ -1,6 +1,8 @@
 package com.ctrip.framework.apollo.configservice;
 
+import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.biz.service.AppService;
+import com.ctrip.framework.apollo.configservice.controller.NotificationControllerV2;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.actuate.health.Health;
@@ -14,13 +16,23 @@ public class ConfigServiceHealthIndicator implements HealthIndicator {
   @Autowired
   private AppService appService;
 
+  @Autowired
+  private NotificationControllerV2 notificationControllerV2;
+
+  @Autowired
+  private BizConfig bizConfig;
+
   @Override
   public Health health() {
     int errorCode = check();
     if (errorCode != 0) {
       return Health.down().withDetail("Error Code", errorCode).build();
     }
-    return Health.up().build();
+    //expose long polling occupancy so that load balancers could route new clients to less loaded nodes
+    return Health.up()
+        .withDetail("parkedLongPolls", notificationControllerV2.getParkedLongPolls())
+        .withDetail("maxParkedLongPolls", bizConfig.longPollingMaxParkedRequests())
+        .build();
   }
 
   private int check() {
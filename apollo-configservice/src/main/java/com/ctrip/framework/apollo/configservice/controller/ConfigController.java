@@ -2,15 +2,21 @@ package com.ctrip.framework.apollo.configservice.controller;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
@@ -18,9 +24,16 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.entity.ReleaseHeader;
+import com.ctrip.framework.apollo.biz.grayReleaseRule.GrayReleaseRulesHolder;
+import com.ctrip.framework.apollo.biz.message.ReleasePropagationTracker;
+import com.ctrip.framework.apollo.biz.message.ReleasePropagationTracker.Hop;
+import com.ctrip.framework.apollo.biz.metrics.ApolloMetrics;
+import com.ctrip.framework.apollo.biz.service.ReleaseService;
 import com.ctrip.framework.apollo.common.entity.AppNamespace;
 import com.ctrip.framework.apollo.configservice.service.AppNamespaceServiceWithCache;
 import com.ctrip.framework.apollo.configservice.service.config.ConfigService;
+import com.ctrip.framework.apollo.configservice.util.ConfigQueryRateLimiter;
 import com.ctrip.framework.apollo.configservice.util.InstanceConfigAuditUtil;
 import com.ctrip.framework.apollo.configservice.util.NamespaceUtil;
 import com.ctrip.framework.apollo.core.ConfigConsts;
@@ -29,8 +42,11 @@ import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
 import com.ctrip.framework.apollo.tracer.Tracer;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
@@ -42,6 +58,13 @@ import com.google.gson.reflect.TypeToken;
 public class ConfigController {
   private static final Splitter X_FORWARDED_FOR_SPLITTER = Splitter.on(",").omitEmptyStrings()
       .trimResults();
+  private static final Splitter RELEASE_KEY_SPLITTER = Splitter.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR)
+      .omitEmptyStrings();
+  private static final long MAX_MERGED_CONFIG_CACHE_SIZE = 50 * 1024 * 1024; // 50MB
+  private static final long MERGED_CONFIG_EXPIRE_AFTER_ACCESS = 60; // 60 minutes
+  private static final String NO_CLIENT_SIDE_RELEASE_KEY = "-1";
+  private static final String THROTTLED_RETRY_AFTER_IN_SECONDS = "1";
+  private static final String RELEASE_APPLIED_TIME_PARAM = "releaseAppliedTime";
   @Autowired
   private ConfigService configService;
   @Autowired
@@ -51,11 +74,39 @@ public class ConfigController {
   @Autowired
   private InstanceConfigAuditUtil instanceConfigAuditUtil;
   @Autowired
+  private ConfigQueryRateLimiter configQueryRateLimiter;
+  @Autowired
+  private ReleasePropagationTracker releasePropagationTracker;
+  @Autowired
+  private GrayReleaseRulesHolder grayReleaseRulesHolder;
+  @Autowired
+  private ReleaseService releaseService;
+  @Autowired
   private Gson gson;
 
   private static final Type configurationTypeReference = new TypeToken<Map<String, String>>() {
       }.getType();
 
+  /**
+   * 合并后的配置缓存
+   * key: 参与合并的 Release 编号，按优先级拼接，例如 `appReleaseId+publicReleaseId`
+   * value: 合并后的配置 Map，只读
+   *
+   * Release is immutable once persisted and every publish creates a new release id, so an entry is
+   * naturally superseded when either side is republished and the stale one just expires.
+   */
+  private final Cache<String, Map<String, String>> mergedConfigurationsCache;
+
+  public ConfigController() {
+    mergedConfigurationsCache = CacheBuilder.newBuilder()
+        .expireAfterAccess(MERGED_CONFIG_EXPIRE_AFTER_ACCESS, TimeUnit.MINUTES)
+        .weigher((String key, Map<String, String> value) -> weigh(value))
+        .maximumWeight(MAX_MERGED_CONFIG_CACHE_SIZE)
+        .recordStats()
+        .build();
+    ApolloMetrics.monitorCache(mergedConfigurationsCache, "ConfigController.mergedConfigurations");
+  }
+
   @RequestMapping(value = "/{appId}/{clusterName}/{namespace:.+}", method = RequestMethod.GET)
   public ApolloConfig queryConfig(@PathVariable String appId, @PathVariable String clusterName,
                                   @PathVariable String namespace,
@@ -77,39 +128,22 @@ public class ConfigController {
       clientIp = tryToGetClientIp(request);
     }
 
+    // 超出限流，不访问缓存和数据库，告知客户端稍后重试。不能返回 304，客户端的配置可能已经过期
+    //throttled, tell the client to retry later without touching the cache or db. 304 is not an option even if the
+    //client has a release key, as its config might be outdated
+    if (configQueryRateLimiter.isThrottled(appId, clientIp, request)) {
+      response.setHeader(HttpHeaders.RETRY_AFTER, THROTTLED_RETRY_AFTER_IN_SECONDS);
+      response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+      return null;
+    }
+
     // 解析 messagesAsString 参数，创建 ApolloNotificationMessages 对象。
     ApolloNotificationMessages clientMessages = transformMessages(messagesAsString);
 
-    // 创建 Release 数组
-    List<Release> releases = Lists.newLinkedList();
-
-    // 获得 Namespace 对应的 Release 对象
-    String appClusterNameLoaded = clusterName;
-    if (!ConfigConsts.NO_APPID_PLACEHOLDER.equalsIgnoreCase(appId)) {
-      // 获得 Release 对象
-      Release currentAppRelease = configService.loadConfig(appId, clientIp, appId, clusterName, namespace,
-          dataCenter, clientMessages);
-
-      if (currentAppRelease != null) {
-        // 添加到 Release 数组中。
-        releases.add(currentAppRelease);
-        // 获得 Release 对应的 Cluster 名字
-        //we have cluster search process, so the cluster name might be overridden
-        appClusterNameLoaded = currentAppRelease.getClusterName();
-      }
-    }
-
-    // 若 Namespace 为关联类型，则获取关联的 Namespace 的 Release 对象
-    //if namespace does not belong to this appId, should check if there is a public configuration
-    if (!namespaceBelongsToAppId(appId, namespace)) {
-      // 获得 Release 对象
-      Release publicRelease = this.findPublicConfig(appId, clientIp, clusterName, namespace,
-          dataCenter, clientMessages);
-      if (!Objects.isNull(publicRelease)) {
-        // 添加到 Release 数组中
-        releases.add(publicRelease);
-      }
-    }
+    // 获得 Namespace 对应的 Release 数组
+    List<Release> releases = findReleases(appId, clientIp, clusterName, namespace, dataCenter, clientMessages);
+    // 获得 Release 对应的 Cluster 名字
+    String appClusterNameLoaded = resolveAppClusterNameLoaded(appId, clusterName, releases);
 
     // 若获得不到 Release ，返回状态码为 404 的响应
     if (releases.isEmpty()) {
@@ -126,8 +160,8 @@ public class ConfigController {
     auditReleases(appId, clusterName, dataCenter, clientIp, releases);
 
     // 计算 Config Service 的合并 ReleaseKey
-    String mergedReleaseKey = releases.stream().map(Release::getReleaseKey)
-            .collect(Collectors.joining(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR));
+    String mergedReleaseKey = assembleMergedReleaseKey(releases);
+    String releaseAppliedTime = request.getParameter(RELEASE_APPLIED_TIME_PARAM);
 
     // 对比 Client 的合并 Release Key 。若相等，说明没有改变，返回状态码为 304 的响应
     if (mergedReleaseKey.equals(clientSideReleaseKey)) {
@@ -135,9 +169,20 @@ public class ConfigController {
       response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
       Tracer.logEvent("Apollo.Config.NotModified",
           assembleKey(appId, appClusterNameLoaded, originalNamespace, dataCenter));
+      trackApplied(releases, releaseAppliedTime);
       return null;
     }
 
+    // 上报的是客户端当前配置的应用时间，而非本次返回的新配置
+    //the report is about the release the client applied before, not the new one returned
+    trackApplied(clientSideReleaseKey, releaseAppliedTime);
+
+    // 客户端已有旧的配置，说明是新发布到达了客户端
+    //the client has an old release, so a new release is delivered
+    if (!NO_CLIENT_SIDE_RELEASE_KEY.equals(clientSideReleaseKey)) {
+      trackDelivered(releases);
+    }
+
     // 创建 ApolloConfig 对象
     ApolloConfig apolloConfig = new ApolloConfig(appId, appClusterNameLoaded, originalNamespace,
         mergedReleaseKey);
@@ -150,6 +195,152 @@ public class ConfigController {
     return apolloConfig;
   }
 
+  /**
+   * Load the latest config without a http request, e.g. to carry it in the long polling response.
+   *
+   * @return the config, or null if not found
+   */
+  public ApolloConfig loadConfig(String appId, String clusterName, String originalNamespace, String dataCenter,
+                                 String clientIp, ApolloNotificationMessages clientMessages) {
+    return loadConfig(appId, clusterName, originalNamespace, dataCenter, clientIp, clientMessages,
+        Maps.newHashMap());
+  }
+
+  /**
+   * Load the latest config without a http request, sharing the release lookup with the other clients notified of
+   * the same release. The clients are still audited one by one.
+   *
+   * @param loadedReleases the releases already loaded for the other clients, keyed by what decides them
+   * @return the config, or null if not found
+   */
+  public ApolloConfig loadConfig(String appId, String clusterName, String originalNamespace, String dataCenter,
+                                 String clientIp, ApolloNotificationMessages clientMessages,
+                                 Map<String, List<Release>> loadedReleases) {
+    //strip out .properties suffix
+    String namespace = namespaceUtil.filterNamespaceName(originalNamespace);
+    //fix the character case issue, such as FX.apollo <-> fx.apollo
+    String normalizedNamespace = namespaceUtil.normalizeNamespace(appId, namespace);
+
+    List<Release> releases = loadedReleases.computeIfAbsent(
+        assembleLoadedReleasesKey(appId, clusterName, normalizedNamespace, dataCenter, clientIp),
+        key -> findReleases(appId, clientIp, clusterName, normalizedNamespace, dataCenter, clientMessages));
+    if (releases.isEmpty()) {
+      return null;
+    }
+
+    auditReleases(appId, clusterName, dataCenter, clientIp, releases);
+
+    String appClusterNameLoaded = resolveAppClusterNameLoaded(appId, clusterName, releases);
+    ApolloConfig apolloConfig = new ApolloConfig(appId, appClusterNameLoaded, originalNamespace,
+        assembleMergedReleaseKey(releases));
+    apolloConfig.setConfigurations(mergeReleaseConfigurations(releases));
+    trackDelivered(releases);
+
+    return apolloConfig;
+  }
+
+  private List<Release> findReleases(String appId, String clientIp, String clusterName, String namespace,
+                                     String dataCenter, ApolloNotificationMessages clientMessages) {
+    // 创建 Release 数组
+    List<Release> releases = Lists.newLinkedList();
+
+    // 获得 Namespace 对应的 Release 对象
+    if (!ConfigConsts.NO_APPID_PLACEHOLDER.equalsIgnoreCase(appId)) {
+      // 获得 Release 对象
+      Release currentAppRelease = configService.loadConfig(appId, clientIp, appId, clusterName, namespace,
+          dataCenter, clientMessages);
+
+      if (currentAppRelease != null) {
+        // 添加到 Release 数组中。
+        releases.add(currentAppRelease);
+      }
+    }
+
+    // 若 Namespace 为关联类型，则获取关联的 Namespace 的 Release 对象
+    //if namespace does not belong to this appId, should check if there is a public configuration
+    if (!namespaceBelongsToAppId(appId, namespace)) {
+      // 获得 Release 对象
+      Release publicRelease = this.findPublicConfig(appId, clientIp, clusterName, namespace,
+          dataCenter, clientMessages);
+      if (!Objects.isNull(publicRelease)) {
+        // 添加到 Release 数组中
+        releases.add(publicRelease);
+      }
+    }
+
+    return releases;
+  }
+
+  /**
+   * we have cluster search process, so the cluster name might be overridden by the app's own release
+   */
+  private String resolveAppClusterNameLoaded(String appId, String clusterName, List<Release> releases) {
+    if (ConfigConsts.NO_APPID_PLACEHOLDER.equalsIgnoreCase(appId) || releases.isEmpty()) {
+      return clusterName;
+    }
+    Release firstRelease = releases.get(0);
+    // 公共 Namespace 的 Release 属于其他 App
+    if (!Objects.equals(appId, firstRelease.getAppId())) {
+      return clusterName;
+    }
+    return firstRelease.getClusterName();
+  }
+
+  private void trackDelivered(List<Release> releases) {
+    releasePropagationTracker.record(Hop.DELIVERED, latestPublishTime(releases));
+  }
+
+  /**
+   * 客户端在应用新配置后的下一次查询中，上报应用的时间
+   *
+   * @param appliedTime the time the client applied the current release, reported on the query after applying it
+   */
+  private void trackApplied(List<Release> releases, String appliedTime) {
+    if (Strings.isNullOrEmpty(appliedTime)) {
+      return;
+    }
+    trackApplied(latestPublishTime(releases), appliedTime);
+  }
+
+  /**
+   * Only queried when the client reports and a newer release is returned, which is rare
+   *
+   * @param clientSideReleaseKey the merged release key of the config applied by the client
+   */
+  private void trackApplied(String clientSideReleaseKey, String appliedTime) {
+    if (Strings.isNullOrEmpty(appliedTime) || NO_CLIENT_SIDE_RELEASE_KEY.equals(clientSideReleaseKey)) {
+      return;
+    }
+    Set<String> releaseKeys = Sets.newHashSet(RELEASE_KEY_SPLITTER.split(clientSideReleaseKey));
+    trackApplied(releaseService.findReleaseHeadersByReleaseKeys(releaseKeys).stream()
+        .map(ReleaseHeader::getDataChangeCreatedTime).filter(Objects::nonNull)
+        .max(Date::compareTo).orElse(null), appliedTime);
+  }
+
+  private void trackApplied(Date publishTime, String appliedTime) {
+    if (publishTime == null) {
+      return;
+    }
+    try {
+      releasePropagationTracker.record(Hop.APPLIED, publishTime.getTime(), Long.parseLong(appliedTime));
+    } catch (NumberFormatException ex) {
+      //ignore the malformed report
+    }
+  }
+
+  /**
+   * the merged config changes when any of the releases is published, so the latest one is the publish in effect
+   */
+  private Date latestPublishTime(List<Release> releases) {
+    return releases.stream().map(Release::getDataChangeCreatedTime).filter(Objects::nonNull)
+        .max(Date::compareTo).orElse(null);
+  }
+
+  private String assembleMergedReleaseKey(List<Release> releases) {
+    return releases.stream().map(Release::getReleaseKey)
+        .collect(Collectors.joining(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR));
+  }
+
   private boolean namespaceBelongsToAppId(String appId, String namespaceName) {
     //Every app has an 'application' namespace
     if (Objects.equals(ConfigConsts.NAMESPACE_APPLICATION, namespaceName)) {
@@ -192,8 +383,26 @@ public class ConfigController {
   /**
    * Merge configurations of releases.
    * Release in lower index override those in higher index
+   *
+   * The merged result is cached by release ids and shared between requests, so it is read only.
    */
   Map<String, String> mergeReleaseConfigurations(List<Release> releases) {
+    String cacheKey = assembleMergedConfigurationsCacheKey(releases);
+    // 未持久化的 Release ，无法缓存
+    if (cacheKey == null) {
+      return doMergeReleaseConfigurations(releases);
+    }
+
+    Map<String, String> result = mergedConfigurationsCache.getIfPresent(cacheKey);
+    if (result == null) {
+      Tracer.logEvent("Apollo.Config.MergedCache.Miss", cacheKey);
+      result = Collections.unmodifiableMap(doMergeReleaseConfigurations(releases));
+      mergedConfigurationsCache.put(cacheKey, result);
+    }
+    return result;
+  }
+
+  private Map<String, String> doMergeReleaseConfigurations(List<Release> releases) {
     Map<String, String> result = Maps.newHashMap();
     // 反转 Release 数组，循环添加到 Map 中。
     for (Release release : Lists.reverse(releases)) {
@@ -202,6 +411,43 @@ public class ConfigController {
     return result;
   }
 
+  private String assembleMergedConfigurationsCacheKey(List<Release> releases) {
+    StringBuilder key = new StringBuilder();
+    for (Release release : releases) {
+      if (release.getId() <= 0) {
+        return null;
+      }
+      if (key.length() > 0) {
+        key.append(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR);
+      }
+      key.append(release.getId());
+    }
+    return key.toString();
+  }
+
+  private static int weigh(Map<String, String> configurations) {
+    int weight = 0;
+    for (Map.Entry<String, String> entry : configurations.entrySet()) {
+      weight += entry.getKey().length();
+      weight += entry.getValue() == null ? 0 : entry.getValue().length();
+    }
+    return weight;
+  }
+
+  /**
+   * 灰度发布的客户端可能获得不同的 Release ，需按 IP 区分
+   *
+   * clients with gray release rules might get different releases, so they are told apart by ip
+   */
+  private String assembleLoadedReleasesKey(String appId, String cluster, String namespace, String dataCenter,
+                                           String clientIp) {
+    String key = assembleKey(appId, cluster, namespace, dataCenter);
+    if (grayReleaseRulesHolder.hasGrayReleaseRule(appId, clientIp, namespace)) {
+      key += ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR + clientIp;
+    }
+    return key;
+  }
+
   private String assembleKey(String appId, String cluster, String namespace, String dataCenter) {
     List<String> keyParts = Lists.newArrayList(appId, cluster, namespace);
     if (!Strings.isNullOrEmpty(dataCenter)) {
@@ -12,17 +12,19 @@ import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
-import com.google.gson.Gson;
 
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
 import com.ctrip.framework.apollo.biz.grayReleaseRule.GrayReleaseRulesHolder;
 import com.ctrip.framework.apollo.biz.message.ReleaseMessageListener;
 import com.ctrip.framework.apollo.biz.message.Topics;
+import com.ctrip.framework.apollo.biz.metrics.ApolloMetrics;
+import com.ctrip.framework.apollo.configservice.util.ConfigFileTranscoder;
+import com.ctrip.framework.apollo.configservice.util.ConfigQueryRateLimiter;
 import com.ctrip.framework.apollo.configservice.util.NamespaceUtil;
 import com.ctrip.framework.apollo.configservice.util.WatchKeysUtil;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.dto.ApolloConfig;
-import com.ctrip.framework.apollo.core.utils.PropertiesUtil;
+import com.ctrip.framework.apollo.core.enums.ConfigFileFormat;
 import com.ctrip.framework.apollo.tracer.Tracer;
 
 import org.slf4j.Logger;
@@ -40,7 +42,6 @@ import org.springframework.web.bind.annotation.RestController;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
@@ -61,13 +62,14 @@ public class ConfigFileController implements ReleaseMessageListener {
   private static final long EXPIRE_AFTER_WRITE = 30;
   private final HttpHeaders propertiesResponseHeaders;
   private final HttpHeaders jsonResponseHeaders;
+  private final HttpHeaders yamlResponseHeaders;
   private final ResponseEntity<String> NOT_FOUND_RESPONSE;
+  private final ResponseEntity<String> TOO_MANY_REQUESTS_RESPONSE;
   private Cache<String, String> localCache;
   private final Multimap<String, String>
       watchedKeys2CacheKey = Multimaps.synchronizedSetMultimap(HashMultimap.create());
   private final Multimap<String, String>
       cacheKey2WatchedKeys = Multimaps.synchronizedSetMultimap(HashMultimap.create());
-  private static final Gson gson = new Gson();
 
   @Autowired
   private ConfigController configController;
@@ -81,6 +83,12 @@ public class ConfigFileController implements ReleaseMessageListener {
   @Autowired
   private GrayReleaseRulesHolder grayReleaseRulesHolder;
 
+  @Autowired
+  private ConfigQueryRateLimiter configQueryRateLimiter;
+
+  @Autowired
+  private ConfigFileTranscoder configFileTranscoder;
+
   public ConfigFileController() {
     localCache = CacheBuilder.newBuilder()
         .expireAfterWrite(EXPIRE_AFTER_WRITE, TimeUnit.MINUTES)
@@ -108,12 +116,19 @@ public class ConfigFileController implements ReleaseMessageListener {
             logger.debug("removed cache key: {}", cacheKey);
           }
         })
+        .recordStats()
         .build();
+    ApolloMetrics.monitorCache(localCache, "ConfigFileController.local");
     propertiesResponseHeaders = new HttpHeaders();
     propertiesResponseHeaders.add("Content-Type", "text/plain;charset=UTF-8");
     jsonResponseHeaders = new HttpHeaders();
     jsonResponseHeaders.add("Content-Type", "application/json;charset=UTF-8");
+    yamlResponseHeaders = new HttpHeaders();
+    yamlResponseHeaders.add("Content-Type", "application/x-yaml;charset=UTF-8");
     NOT_FOUND_RESPONSE = new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    HttpHeaders tooManyRequestsResponseHeaders = new HttpHeaders();
+    tooManyRequestsResponseHeaders.set(HttpHeaders.RETRY_AFTER, "1");
+    TOO_MANY_REQUESTS_RESPONSE = new ResponseEntity<>(tooManyRequestsResponseHeaders, HttpStatus.TOO_MANY_REQUESTS);
   }
 
   @RequestMapping(value = "/{appId}/{clusterName}/{namespace:.+}", method = RequestMethod.GET)
@@ -122,16 +137,19 @@ public class ConfigFileController implements ReleaseMessageListener {
                                                         @PathVariable String namespace,
                                                         @RequestParam(value = "dataCenter", required = false) String dataCenter,
                                                         @RequestParam(value = "ip", required = false) String clientIp,
+                                                        @RequestParam(value = "transcode", defaultValue = "false") boolean transcode,
                                                         HttpServletRequest request,
                                                         HttpServletResponse response)
       throws IOException {
 
+    // transcode 为 true 时，yaml、json 格式的 Namespace 会被转换为 properties 格式
+    //with transcode, the yaml and json namespaces are flattened to properties instead of content=...
     String result =
-        queryConfig(ConfigFileOutputFormat.PROPERTIES, appId, clusterName, namespace, dataCenter,
+        queryConfig(transcode ? ConfigFileOutputFormat.TRANSCODED_PROPERTIES : ConfigFileOutputFormat.PROPERTIES, appId, clusterName, namespace, dataCenter,
             clientIp, request, response);
 
     if (result == null) {
-      return NOT_FOUND_RESPONSE;
+      return notFoundOrThrottled(appId, clientIp, request);
     }
 
     return new ResponseEntity<>(result, propertiesResponseHeaders, HttpStatus.OK);
@@ -143,20 +161,43 @@ public class ConfigFileController implements ReleaseMessageListener {
                                                   @PathVariable String namespace,
                                                   @RequestParam(value = "dataCenter", required = false) String dataCenter,
                                                   @RequestParam(value = "ip", required = false) String clientIp,
+                                                  @RequestParam(value = "transcode", defaultValue = "false") boolean transcode,
                                                   HttpServletRequest request,
                                                   HttpServletResponse response) throws IOException {
 
+    // transcode 为 true 时，yaml 格式的 Namespace 会被转换为 json 对象，json 格式的 Namespace 直接返回其内容
+    //with transcode, the yaml namespaces are converted to json objects and the json namespaces return the content
     String result =
-        queryConfig(ConfigFileOutputFormat.JSON, appId, clusterName, namespace, dataCenter,
-            clientIp, request, response);
+        queryConfig(transcode ? ConfigFileOutputFormat.TRANSCODED_JSON : ConfigFileOutputFormat.JSON, appId,
+            clusterName, namespace, dataCenter, clientIp, request, response);
 
     if (result == null) {
-      return NOT_FOUND_RESPONSE;
+      return notFoundOrThrottled(appId, clientIp, request);
     }
 
     return new ResponseEntity<>(result, jsonResponseHeaders, HttpStatus.OK);
   }
 
+  @RequestMapping(value = "/yaml/{appId}/{clusterName}/{namespace:.+}", method = RequestMethod.GET)
+  public ResponseEntity<String> queryConfigAsYaml(@PathVariable String appId,
+                                                  @PathVariable String clusterName,
+                                                  @PathVariable String namespace,
+                                                  @RequestParam(value = "dataCenter", required = false) String dataCenter,
+                                                  @RequestParam(value = "ip", required = false) String clientIp,
+                                                  HttpServletRequest request,
+                                                  HttpServletResponse response) throws IOException {
+
+    String result =
+        queryConfig(ConfigFileOutputFormat.YAML, appId, clusterName, namespace, dataCenter,
+            clientIp, request, response);
+
+    if (result == null) {
+      return notFoundOrThrottled(appId, clientIp, request);
+    }
+
+    return new ResponseEntity<>(result, yamlResponseHeaders, HttpStatus.OK);
+  }
+
   String queryConfig(ConfigFileOutputFormat outputFormat, String appId, String clusterName,
                      String namespace, String dataCenter, String clientIp,
                      HttpServletRequest request,
@@ -233,20 +274,12 @@ public class ConfigFileController implements ReleaseMessageListener {
       return null;
     }
 
-    String result = null;
-
-    switch (outputFormat) {
-      case PROPERTIES:
-        Properties properties = new Properties();
-        properties.putAll(apolloConfig.getConfigurations());
-        result = PropertiesUtil.toString(properties);
-        break;
-      case JSON:
-        result = gson.toJson(apolloConfig.getConfigurations());
-        break;
-    }
+    // 未要求转换时，保持原有行为，将配置视为 properties 格式输出
+    //without transcoding, the configurations are always rendered as key-value pairs as before
+    ConfigFileFormat sourceFormat = outputFormat.isTranscoded() ? ConfigFileTranscoder.determineFormat(namespace)
+        : ConfigFileFormat.Properties;
 
-    return result;
+    return configFileTranscoder.transcode(apolloConfig, sourceFormat, outputFormat.getTargetFormat());
   }
 
   String assembleCacheKey(ConfigFileOutputFormat outputFormat, String appId, String clusterName,
@@ -283,17 +316,53 @@ public class ConfigFileController implements ReleaseMessageListener {
   }
 
   enum ConfigFileOutputFormat {
-    PROPERTIES("properties"), JSON("json");
+    PROPERTIES("properties", ConfigFileFormat.Properties, false),
+    JSON("json", ConfigFileFormat.JSON, false),
+    TRANSCODED_PROPERTIES("transcoded-properties", ConfigFileFormat.Properties, true),
+    TRANSCODED_JSON("transcoded-json", ConfigFileFormat.JSON, true),
+    YAML("yaml", ConfigFileFormat.YAML, true);
 
     private String value;
+    private ConfigFileFormat targetFormat;
+    private boolean transcoded;
 
-    ConfigFileOutputFormat(String value) {
+    ConfigFileOutputFormat(String value, ConfigFileFormat targetFormat, boolean transcoded) {
       this.value = value;
+      this.targetFormat = targetFormat;
+      this.transcoded = transcoded;
     }
 
     public String getValue() {
       return value;
     }
+
+    public ConfigFileFormat getTargetFormat() {
+      return targetFormat;
+    }
+
+    /**
+     * @return whether the namespace's own format is respected, e.g. a yaml namespace is parsed as yaml
+     */
+    public boolean isTranscoded() {
+      return transcoded;
+    }
+  }
+
+  /**
+   * 缓存命中时不限流，未命中时由 ConfigController 限流，此处只读取其判断结果
+   *
+   * The cached results are served without throttling, the others are loaded by ConfigController, which throttles
+   * the request and records the decision on it, so no permit is taken again here
+   */
+  private ResponseEntity<String> notFoundOrThrottled(String appId, String clientIp, HttpServletRequest request) {
+    return isThrottled(appId, clientIp, request) ? TOO_MANY_REQUESTS_RESPONSE : NOT_FOUND_RESPONSE;
+  }
+
+  private boolean isThrottled(String appId, String clientIp, HttpServletRequest request) {
+    if (Strings.isNullOrEmpty(clientIp)) {
+      clientIp = tryToGetClientIp(request);
+    }
+    return configQueryRateLimiter.isThrottled(appId, clientIp, request);
   }
 
   private String tryToGetClientIp(HttpServletRequest request) {
@@ -13,9 +13,13 @@ import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
 import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.Release;
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
 import com.ctrip.framework.apollo.biz.message.ReleaseMessageListener;
+import com.ctrip.framework.apollo.biz.message.ReleasePropagationTracker;
+import com.ctrip.framework.apollo.biz.message.ReleasePropagationTracker.Hop;
 import com.ctrip.framework.apollo.biz.message.Topics;
+import com.ctrip.framework.apollo.biz.metrics.ApolloMetrics;
 import com.ctrip.framework.apollo.biz.utils.EntityManagerUtil;
 import com.ctrip.framework.apollo.common.exception.BadRequestException;
 import com.ctrip.framework.apollo.configservice.service.ReleaseMessageServiceWithCache;
@@ -40,13 +44,21 @@ import org.springframework.web.context.request.async.DeferredResult;
 
 import java.lang.reflect.Type;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Jason Song(song_s@ctrip.com)
@@ -66,9 +78,35 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
   private static final Type notificationsTypeReference =
       new TypeToken<List<ApolloConfigNotification>>() {
       }.getType();
+  private static final int MIN_RETRY_AFTER_IN_SECONDS = 1;
+  private static final int MAX_RETRY_AFTER_IN_SECONDS = 5;
+
+  /**
+   * 当前挂起的长轮询数量
+   */
+  private final AtomicInteger parkedLongPolls = new AtomicInteger();
+
+  /**
+   * 是否正在关闭，关闭中不再挂起新的长轮询
+   */
+  private volatile boolean draining = false;
 
   private final ExecutorService largeNotificationBatchExecutorService;
 
+  /**
+   * 为要求通知携带配置的客户端加载配置，避免阻塞 ReleaseMessageScanner 线程
+   */
+  private ExecutorService configLoadExecutorService;
+
+  /**
+   * 处于防抖窗口内的 Watch Key，及窗口内待通知的最新 ReleaseMessage
+   * key: Watch Key
+   * value: 窗口内最新的 ReleaseMessage，窗口内没有新的发布时为空
+   */
+  private final ConcurrentMap<String, Optional<ReleaseMessage>> debounceWindows = Maps.newConcurrentMap();
+
+  private ScheduledExecutorService debounceExecutorService;
+
   @Autowired
   private WatchKeysUtil watchKeysUtil;
 
@@ -87,9 +125,25 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
   @Autowired
   private BizConfig bizConfig;
 
+  @Autowired
+  private ConfigController configController;
+
+  @Autowired
+  private ReleasePropagationTracker releasePropagationTracker;
+
   public NotificationControllerV2() {
-    largeNotificationBatchExecutorService = Executors.newSingleThreadExecutor(ApolloThreadFactory.create
-        ("NotificationControllerV2", true));
+    largeNotificationBatchExecutorService = ApolloMetrics.monitorExecutor(
+        new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+            ApolloThreadFactory.create("NotificationControllerV2", true)), "NotificationControllerV2");
+    debounceExecutorService = ApolloMetrics.monitorScheduledExecutor(new ScheduledThreadPoolExecutor(1,
+        ApolloThreadFactory.create("NotificationControllerV2Debounce", true)), "NotificationControllerV2Debounce");
+    configLoadExecutorService = ApolloMetrics.monitorExecutor(
+        new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+            ApolloThreadFactory.create("NotificationControllerV2ConfigLoad", true)),
+        "NotificationControllerV2ConfigLoad");
+    ApolloMetrics.monitorMap(debounceWindows, "NotificationControllerV2.debounceWindows");
+    ApolloMetrics.gauge("long.polls.parked", parkedLongPolls, AtomicInteger::get);
+    ApolloMetrics.gauge("long.polls.watch.keys", deferredResults, results -> results.keySet().size());
   }
 
   @RequestMapping(method = RequestMethod.GET)
@@ -98,7 +152,42 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
       @RequestParam(value = "cluster") String cluster,
       @RequestParam(value = "notifications") String notificationsAsString,
       @RequestParam(value = "dataCenter", required = false) String dataCenter,
-      @RequestParam(value = "ip", required = false) String clientIp) {
+      @RequestParam(value = "ip", required = false) String clientIp,
+      @RequestParam(value = "withConfigs", defaultValue = "false") boolean withConfigs) {
+    return registerLongPoll(appId, cluster, notificationsAsString, dataCenter, clientIp, withConfigs).getResult();
+  }
+
+  /**
+   * 注册长轮询，供 Servlet 容器及非阻塞长轮询服务共用
+   *
+   * Register a long polling request in the watch key registry, shared by the servlet endpoint and the
+   * non-blocking long polling server
+   *
+   * @return the wrapper whose result is either set already or set once the watched keys change
+   */
+  public DeferredResultWrapper registerLongPoll(String appId, String cluster, String notificationsAsString,
+                                                String dataCenter, String clientIp, boolean withConfigs) {
+    // 正在关闭，通知客户端连接其他节点
+    //this node is shutting down, tell the client to reconnect elsewhere
+    if (draining) {
+      Tracer.logEvent("Apollo.LongPoll.Draining", appId);
+      DeferredResultWrapper drainingResultWrapper = new DeferredResultWrapper();
+      drainingResultWrapper.setServiceUnavailableResult(MIN_RETRY_AFTER_IN_SECONDS);
+      return drainingResultWrapper;
+    }
+
+    // 超过本节点可挂起的长轮询上限，快速拒绝，客户端会稍后重试或切换到其他节点
+    //reject fast if this node is out of long polling budget
+    int maxParkedLongPolls = bizConfig.longPollingMaxParkedRequests();
+    if (maxParkedLongPolls > 0 && parkedLongPolls.get() >= maxParkedLongPolls) {
+      Tracer.logEvent("Apollo.LongPoll.Rejected", appId);
+      DeferredResultWrapper rejectedResultWrapper = new DeferredResultWrapper();
+      // 随机化重试时间，避免客户端同时重试
+      rejectedResultWrapper.setTooManyRequestsResult(
+          ThreadLocalRandom.current().nextInt(MIN_RETRY_AFTER_IN_SECONDS, MAX_RETRY_AFTER_IN_SECONDS + 1));
+      return rejectedResultWrapper;
+    }
+
     // 解析 notificationsAsString 参数，创建 ApolloConfigNotification 数组
     List<ApolloConfigNotification> notifications = null;
 
@@ -115,6 +204,12 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
 
     // 创建 DeferredResultWrapper 对象
     DeferredResultWrapper deferredResultWrapper = new DeferredResultWrapper();
+    // 通知携带最新配置，客户端无需再次请求 Config Service
+    //carry the latest configs in the notifications to save the client a round trip
+    if (withConfigs) {
+      deferredResultWrapper.withConfigs((notification, loadedReleases) -> configController.loadConfig(appId, cluster,
+          notification.getNamespaceName(), dataCenter, clientIp, notification.getMessages(), loadedReleases));
+    }
     // Namespace 集合
     Set<String> namespaces = Sets.newHashSet();
     // 客户端的通知 Map。Key 为 Namespace 名，Value 为 通知编号。
@@ -175,6 +270,7 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
 
       // 注册结束事件
       deferredResultWrapper.onCompletion(() -> {
+        parkedLongPolls.decrementAndGet();
         // 移除 Watch Key + DeferredResultWrapper 出 `deferredResults`
         //unregister all keys
         for (String key : watchedKeys) {
@@ -186,6 +282,7 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
 
       // 注册 Watch Key + DeferredResultWrapper 到 `deferredResults` 中，等待配置发生变化后通知。详见 `#handleMessage(...)` 方法。
       //register all keys
+      parkedLongPolls.incrementAndGet();
       for (String key : watchedKeys) {
         this.deferredResults.put(key, deferredResultWrapper);
       }
@@ -196,7 +293,7 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
           watchedKeys, appId, cluster, namespaces, dataCenter);
     }
 
-    return deferredResultWrapper.getResult();
+    return deferredResultWrapper;
   }
 
   private Map<String, ApolloConfigNotification> filterNotifications(String appId,
@@ -274,6 +371,53 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
     return newNotifications;
   }
 
+  /**
+   * 关闭前，在 windowInMilli 时间窗口内，随机分散地完成所有挂起的长轮询，避免客户端同时重连
+   *
+   * Complete all parked long polls with 503 so that the clients reconnect to other nodes. The completions are
+   * spread evenly over the window in random order, so the clients do not reconnect at the same moment.
+   */
+  public void drainLongPolls(long windowInMilli) {
+    draining = true;
+
+    List<DeferredResultWrapper> wrappers;
+    //iterating a synchronized multimap's view must be synchronized manually
+    synchronized (deferredResults) {
+      wrappers = Lists.newArrayList(Sets.newHashSet(deferredResults.values()));
+    }
+    Collections.shuffle(wrappers);
+
+    int size = wrappers.size();
+    logger.info("Draining {} parked long polls in {} ms", size, windowInMilli);
+    Tracer.logEvent("Apollo.LongPoll.Drain", String.valueOf(size));
+
+    long start = System.currentTimeMillis();
+    boolean interrupted = false;
+    for (int i = 0; i < size; i++) {
+      long delay = start + windowInMilli * i / size - System.currentTimeMillis();
+      if (delay > 0 && !interrupted) {
+        try {
+          TimeUnit.MILLISECONDS.sleep(delay);
+        } catch (InterruptedException e) {
+          //complete the rest at once
+          interrupted = true;
+        }
+      }
+      wrappers.get(i).setServiceUnavailableResult(MIN_RETRY_AFTER_IN_SECONDS);
+    }
+
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * @return the number of long polling requests parked on this node
+   */
+  public int getParkedLongPolls() {
+    return parkedLongPolls.get();
+  }
+
   @Override
   public void handleMessage(ReleaseMessage message, String channel) {
     logger.info("message received - channel: {}, message: {}", channel, message);
@@ -298,6 +442,50 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
       return;
     }
 
+    int debounceInterval = bizConfig.releaseMessageNotificationDebounceIntervalInMilli();
+    if (debounceInterval <= 0) {
+      notifyClients(changedNamespace, message);
+      return;
+    }
+
+    // 窗口外的发布立即通知并开启窗口，窗口内的后续发布合并为窗口结束时的一次通知，并携带最新的通知编号
+    //notify on the leading edge and open a window, the releases following within the window are collapsed into one
+    //notification with the latest id when it closes
+    synchronized (debounceWindows) {
+      if (debounceWindows.containsKey(content)) {
+        debounceWindows.put(content, Optional.of(message));
+        Tracer.logEvent("Apollo.LongPoll.Debounced", content);
+        return;
+      }
+      debounceWindows.put(content, Optional.empty());
+    }
+    notifyClients(changedNamespace, message);
+    scheduleDebounceWindowClose(changedNamespace, content, debounceInterval);
+  }
+
+  private void scheduleDebounceWindowClose(String changedNamespace, String content, int debounceInterval) {
+    debounceExecutorService.schedule(() -> closeDebounceWindow(changedNamespace, content, debounceInterval),
+        debounceInterval, TimeUnit.MILLISECONDS);
+  }
+
+  private void closeDebounceWindow(String changedNamespace, String content, int debounceInterval) {
+    Optional<ReleaseMessage> pending;
+    synchronized (debounceWindows) {
+      pending = debounceWindows.get(content);
+      if (pending == null || !pending.isPresent()) {
+        debounceWindows.remove(content);
+        return;
+      }
+      //the trailing notification opens another window, so that a continuous burst is still collapsed
+      debounceWindows.put(content, Optional.empty());
+    }
+    notifyClients(changedNamespace, pending.get());
+    scheduleDebounceWindowClose(changedNamespace, content, debounceInterval);
+  }
+
+  private void notifyClients(String changedNamespace, ReleaseMessage message) {
+    String content = message.getMessage();
+
     //create a new list to avoid ConcurrentModificationException
     // 创建 DeferredResultWrapper 数组，避免并发问题。
     List<DeferredResultWrapper> results = Lists.newArrayList(deferredResults.get(content));
@@ -306,12 +494,15 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
     ApolloConfigNotification configNotification = new ApolloConfigNotification(changedNamespace, message.getId());
     configNotification.addMessage(content, message.getId());
 
+    long fanOutStart = System.nanoTime();
+
     //do async notification if too many clients
     // 若需要通知的客户端过多，使用 ExecutorService 异步通知，避免“惊群效应”
     if (results.size() > bizConfig.releaseMessageNotificationBatch()) {
       largeNotificationBatchExecutorService.submit(() -> {
         logger.debug("Async notify {} clients for key {} with batch {}", results.size(), content,
             bizConfig.releaseMessageNotificationBatch());
+        Map<String, List<Release>> loadedReleases = Maps.newHashMap();
         for (int i = 0; i < results.size(); i++) {
           // 每 N 个客户端，sleep 一段时间。
           if (i > 0 && i % bizConfig.releaseMessageNotificationBatch() == 0) {
@@ -323,21 +514,51 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
           }
           logger.debug("Async notify {}", results.get(i));
           // 设置结果
-          results.get(i).setResult(configNotification);
+          results.get(i).setResult(configNotification, loadedReleases);
         }
+        releasePropagationTracker.record(Hop.NOTIFIED, message.getDataChangeLastModifiedTime());
+        recordFanOut("async", results.size(), fanOutStart);
       });
       return;
     }
 
     logger.debug("Notify {} clients for key {}", results.size(), content);
 
+    List<DeferredResultWrapper> resultsWithConfigs = Lists.newArrayList();
     for (DeferredResultWrapper result : results) {
+      if (result.isWithConfigs()) {
+        resultsWithConfigs.add(result);
+        continue;
+      }
       // 设置结果
       result.setResult(configNotification);
     }
+    // 携带配置的客户端在独立线程中通知，配置对所有客户端只加载一次
+    //load the configs on another thread, once for all the clients
+    if (!resultsWithConfigs.isEmpty()) {
+      configLoadExecutorService.submit(() -> {
+        Map<String, List<Release>> loadedReleases = Maps.newHashMap();
+        for (DeferredResultWrapper result : resultsWithConfigs) {
+          result.setResult(configNotification, loadedReleases);
+        }
+      });
+    }
+    if (!results.isEmpty()) {
+      releasePropagationTracker.record(Hop.NOTIFIED, message.getDataChangeLastModifiedTime());
+      recordFanOut("sync", results.size(), fanOutStart);
+    }
     logger.debug("Notification completed");
   }
 
+  /**
+   * @param mode sync, or async in batches
+   */
+  private void recordFanOut(String mode, int clients, long startInNanos) {
+    ApolloMetrics.timer("notification.fanout", "mode", mode)
+        .record(System.nanoTime() - startInNanos, TimeUnit.NANOSECONDS);
+    ApolloMetrics.counter("notification.clients", "mode", mode).increment(clients);
+  }
+
   /**
    * 通过 ReleaseMessage 的消息内容，获得对应 Namespace 的名字
    */
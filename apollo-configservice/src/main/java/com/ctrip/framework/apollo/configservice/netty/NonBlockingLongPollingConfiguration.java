@@ -0,0 +1,32 @@
+package com.ctrip.framework.apollo.configservice.netty;
+
+import com.ctrip.framework.apollo.configservice.controller.NotificationControllerV2;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * 配置了 apollo.long-polling.non-blocking.port 时，额外启动非阻塞长轮询服务
+ *
+ * Enabled by setting apollo.long-polling.non-blocking.port, the servlet endpoint keeps working so the long polling
+ * traffic could be switched over gradually, e.g. by the load balancer in front of the config services.
+ */
+@Configuration
+@ConditionalOnProperty(NonBlockingLongPollingConfiguration.PORT)
+public class NonBlockingLongPollingConfiguration {
+  static final String PORT = "apollo.long-polling.non-blocking.port";
+  static final String WORKER_THREADS = "apollo.long-polling.non-blocking.worker-threads";
+  static final String REGISTRATION_THREADS = "apollo.long-polling.non-blocking.registration-threads";
+  private static final int DEFAULT_REGISTRATION_THREADS = 8;
+
+  @Bean
+  public NonBlockingLongPollingServer nonBlockingLongPollingServer(Environment environment,
+                                                                   NotificationControllerV2 notificationControllerV2) {
+    return new NonBlockingLongPollingServer(notificationControllerV2,
+        environment.getRequiredProperty(PORT, Integer.class),
+        environment.getProperty(WORKER_THREADS, Integer.class, 0),
+        environment.getProperty(REGISTRATION_THREADS, Integer.class, DEFAULT_REGISTRATION_THREADS));
+  }
+}
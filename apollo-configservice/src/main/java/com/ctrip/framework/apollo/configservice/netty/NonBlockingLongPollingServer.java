@@ -0,0 +1,134 @@
+package com.ctrip.framework.apollo.configservice.netty;
+
+import com.ctrip.framework.apollo.biz.metrics.ApolloMetrics;
+import com.ctrip.framework.apollo.configservice.controller.NotificationControllerV2;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 Netty 的非阻塞长轮询服务，挂起的长轮询不占用线程，每个连接仅占用少量内存
+ *
+ * A standalone netty server for /notifications/v2, so that one node could hold a huge number of idle long polls
+ * without the servlet container's thread and connection limits.
+ *
+ * Stops right after {@link com.ctrip.framework.apollo.configservice.ConfigServiceGracefulShutdown} has drained the
+ * parked long polls.
+ */
+public class NonBlockingLongPollingServer implements SmartLifecycle {
+  private static final Logger logger = LoggerFactory.getLogger(NonBlockingLongPollingServer.class);
+  private static final int MAX_CONTENT_LENGTH = 64 * 1024;
+  private static final int BACKLOG = 1024;
+  private static final int REGISTRATION_QUEUE_CAPACITY = 10000;
+
+  private final NotificationV2Handler handler;
+  private final ExecutorService registrationExecutorService;
+  private final int port;
+  private final int workerThreads;
+
+  private EventLoopGroup bossGroup;
+  private EventLoopGroup workerGroup;
+  private Channel serverChannel;
+  private volatile boolean running = false;
+
+  /**
+   * @param workerThreads the number of event loop threads, 0 means netty's default
+   * @param registrationThreads the number of threads registering the long polls, which read the database
+   */
+  public NonBlockingLongPollingServer(NotificationControllerV2 notificationControllerV2, int port,
+                                      int workerThreads, int registrationThreads) {
+    this.registrationExecutorService = ApolloMetrics.monitorExecutor(
+        new ThreadPoolExecutor(registrationThreads, registrationThreads, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(REGISTRATION_QUEUE_CAPACITY),
+            ApolloThreadFactory.create("NonBlockingLongPollingRegistration", true)),
+        "NonBlockingLongPollingRegistration");
+    this.handler = new NotificationV2Handler(notificationControllerV2, registrationExecutorService);
+    this.port = port;
+    this.workerThreads = workerThreads;
+  }
+
+  @Override
+  public void start() {
+    bossGroup = new NioEventLoopGroup(1, ApolloThreadFactory.create("NonBlockingLongPollingBoss", true));
+    workerGroup = new NioEventLoopGroup(workerThreads,
+        ApolloThreadFactory.create("NonBlockingLongPollingWorker", true));
+
+    ServerBootstrap bootstrap = new ServerBootstrap()
+        .group(bossGroup, workerGroup)
+        .channel(NioServerSocketChannel.class)
+        .option(ChannelOption.SO_BACKLOG, BACKLOG)
+        .childOption(ChannelOption.TCP_NODELAY, true)
+        .childOption(ChannelOption.SO_KEEPALIVE, true)
+        .childHandler(new ChannelInitializer<SocketChannel>() {
+          @Override
+          protected void initChannel(SocketChannel channel) {
+            channel.pipeline()
+                .addLast(new HttpServerCodec())
+                .addLast(new HttpObjectAggregator(MAX_CONTENT_LENGTH))
+                .addLast(handler);
+          }
+        });
+
+    serverChannel = bootstrap.bind(port).syncUninterruptibly().channel();
+    running = true;
+    logger.info("Non-blocking long polling server started on port {}", port);
+  }
+
+  @Override
+  public void stop() {
+    try {
+      if (serverChannel != null) {
+        serverChannel.close().syncUninterruptibly();
+      }
+    } finally {
+      if (bossGroup != null) {
+        bossGroup.shutdownGracefully();
+      }
+      if (workerGroup != null) {
+        workerGroup.shutdownGracefully();
+      }
+      registrationExecutorService.shutdown();
+      running = false;
+    }
+    logger.info("Non-blocking long polling server stopped");
+  }
+
+  @Override
+  public void stop(Runnable callback) {
+    stop();
+    callback.run();
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  @Override
+  public boolean isAutoStartup() {
+    return true;
+  }
+
+  @Override
+  public int getPhase() {
+    return Integer.MAX_VALUE - 1;
+  }
+}
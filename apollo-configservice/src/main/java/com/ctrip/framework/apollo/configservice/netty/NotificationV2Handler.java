@@ -0,0 +1,283 @@
+package com.ctrip.framework.apollo.configservice.netty;
+
+import com.google.common.base.Strings;
+import com.google.gson.Gson;
+
+import com.ctrip.framework.apollo.common.exception.BadRequestException;
+import com.ctrip.framework.apollo.configservice.controller.NotificationControllerV2;
+import com.ctrip.framework.apollo.configservice.wrapper.DeferredResultWrapper;
+import com.ctrip.framework.apollo.core.codec.ApolloCborCodec;
+import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
+import com.ctrip.framework.apollo.tracer.Tracer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 非阻塞地处理 /notifications/v2 长轮询，与 {@link NotificationControllerV2} 共用 Watch Key 注册表
+ *
+ * Serves /notifications/v2 without holding a thread per request. The long polls are registered in the same
+ * watch key registry as the servlet endpoint, so admission control, draining and notification fan-out behave the
+ * same. Stateless and shared by all the channels, the in flight long poll is kept as a channel attribute.
+ *
+ * The registration reads the database, so it is run by the registration executor, only parking the long poll and
+ * writing the response happen on the event loop.
+ */
+@Sharable
+public class NotificationV2Handler extends SimpleChannelInboundHandler<FullHttpRequest> {
+  private static final Logger logger = LoggerFactory.getLogger(NotificationV2Handler.class);
+  private static final Gson gson = new Gson();
+  static final String PATH = "/notifications/v2";
+  private static final AttributeKey<LongPoll> LONG_POLL = AttributeKey.valueOf("apolloLongPoll");
+
+  private final NotificationControllerV2 notificationControllerV2;
+
+  private final Executor registrationExecutor;
+
+  /**
+   * @param registrationExecutor runs the registrations, which read the database, off the event loops
+   */
+  public NotificationV2Handler(NotificationControllerV2 notificationControllerV2, Executor registrationExecutor) {
+    this.notificationControllerV2 = notificationControllerV2;
+    this.registrationExecutor = registrationExecutor;
+  }
+
+  @Override
+  protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+    boolean keepAlive = HttpUtil.isKeepAlive(request);
+    QueryStringDecoder decoder = new QueryStringDecoder(request.uri());
+
+    if (!PATH.equals(decoder.path())) {
+      writeResponse(ctx, HttpResponseStatus.NOT_FOUND, keepAlive);
+      return;
+    }
+    if (!HttpMethod.GET.equals(request.method())) {
+      writeResponse(ctx, HttpResponseStatus.METHOD_NOT_ALLOWED, keepAlive);
+      return;
+    }
+
+    // 同一连接上的前一个长轮询（如客户端流水线请求）先结束
+    //finish the previous long poll on the same connection, e.g. pipelined by the client
+    LongPoll previous = ctx.channel().attr(LONG_POLL).getAndSet(null);
+    if (previous != null) {
+      previous.complete();
+    }
+
+    Map<String, List<String>> parameters = decoder.parameters();
+    String appId;
+    String cluster;
+    String notifications;
+    try {
+      appId = requiredParameter(parameters, "appId");
+      cluster = requiredParameter(parameters, "cluster");
+      notifications = requiredParameter(parameters, "notifications");
+    } catch (BadRequestException ex) {
+      writeResponse(ctx, HttpResponseStatus.BAD_REQUEST, keepAlive);
+      return;
+    }
+    String dataCenter = parameter(parameters, "dataCenter");
+    String clientIp = parameter(parameters, "ip");
+    boolean withConfigs = Boolean.parseBoolean(parameter(parameters, "withConfigs"));
+    boolean cbor = ApolloCborCodec.isCbor(request.headers().get(HttpHeaderNames.ACCEPT));
+
+    // 注册长轮询需要查询数据库，不能在 EventLoop 中执行，否则会阻塞该 EventLoop 上的所有连接
+    //registering queries the database, so it is done by the registration executor to keep the event loop responsive
+    try {
+      registrationExecutor.execute(() -> {
+        DeferredResultWrapper wrapper;
+        try {
+          wrapper = notificationControllerV2.registerLongPoll(appId, cluster, notifications, dataCenter, clientIp,
+              withConfigs);
+        } catch (BadRequestException ex) {
+          inEventLoop(ctx, () -> writeResponse(ctx, HttpResponseStatus.BAD_REQUEST, keepAlive));
+          return;
+        } catch (Throwable ex) {
+          logger.error("Register long polling failed", ex);
+          Tracer.logError(ex);
+          inEventLoop(ctx, () -> writeResponse(ctx, HttpResponseStatus.INTERNAL_SERVER_ERROR, keepAlive));
+          return;
+        }
+        inEventLoop(ctx, () -> park(ctx, wrapper, cbor, keepAlive));
+      });
+    } catch (RejectedExecutionException ex) {
+      Tracer.logEvent("Apollo.LongPoll.RegistrationRejected", appId);
+      writeResponse(ctx, HttpResponseStatus.SERVICE_UNAVAILABLE, keepAlive);
+    }
+  }
+
+  private void park(ChannelHandlerContext ctx, DeferredResultWrapper wrapper, boolean cbor, boolean keepAlive) {
+    // 注册期间客户端已断开连接，直接从注册表中移除
+    //the client went away while registering
+    if (!ctx.channel().isActive()) {
+      wrapper.complete();
+      return;
+    }
+    //a pipelined request might have been parked meanwhile
+    LongPoll previous = ctx.channel().attr(LONG_POLL).getAndSet(null);
+    if (previous != null) {
+      previous.complete();
+    }
+
+    LongPoll longPoll = new LongPoll(wrapper, ctx.executor().schedule(wrapper::expire,
+        DeferredResultWrapper.TIMEOUT, TimeUnit.MILLISECONDS));
+    ctx.channel().attr(LONG_POLL).set(longPoll);
+
+    // 结果可能由发布消息线程设置，Netty 会将写操作切换到 Channel 所在的 EventLoop
+    //the result might be set by the release message thread, netty switches the write to the channel's event loop
+    wrapper.setResultHandler(result -> writeResult(ctx, longPoll, result, cbor, keepAlive));
+  }
+
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+    // 客户端断开连接，及时从注册表中移除，不必等到超时
+    //unregister as soon as the client goes away instead of waiting for the timeout
+    LongPoll longPoll = ctx.channel().attr(LONG_POLL).getAndSet(null);
+    if (longPoll != null) {
+      longPoll.complete();
+    }
+    super.channelInactive(ctx);
+  }
+
+  @Override
+  public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+    logger.debug("Long polling channel failed", cause);
+    ctx.close();
+  }
+
+  private void writeResult(ChannelHandlerContext ctx, LongPoll longPoll,
+                           ResponseEntity<List<ApolloConfigNotification>> result, boolean cbor, boolean keepAlive) {
+    FullHttpResponse response = assembleResponse(ctx, result, cbor);
+    result.getHeaders().forEach((name, values) -> response.headers().add(name, values));
+
+    ctx.writeAndFlush(keepAlive(response, keepAlive)).addListener(future -> {
+      if (ctx.channel().attr(LONG_POLL).compareAndSet(longPoll, null)) {
+        longPoll.complete();
+      }
+      if (!keepAlive || !future.isSuccess()) {
+        ctx.close();
+      }
+    });
+  }
+
+  private void writeResponse(ChannelHandlerContext ctx, HttpResponseStatus status, boolean keepAlive) {
+    FullHttpResponse response = assembleResponse(ctx, status);
+    if (keepAlive) {
+      ctx.writeAndFlush(keepAlive(response, true));
+    } else {
+      ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+    }
+  }
+
+  private FullHttpResponse assembleResponse(ChannelHandlerContext ctx,
+                                            ResponseEntity<List<ApolloConfigNotification>> result, boolean cbor) {
+    HttpResponseStatus status = HttpResponseStatus.valueOf(result.getStatusCodeValue());
+    if (!result.hasBody()) {
+      return assembleResponse(ctx, status);
+    }
+    try {
+      return assembleResponse(ctx, status, result.getBody(), cbor);
+    } catch (Throwable ex) {
+      Tracer.logError(ex);
+      return assembleResponse(ctx, HttpResponseStatus.INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  private FullHttpResponse assembleResponse(ChannelHandlerContext ctx, HttpResponseStatus status, Object body,
+                                            boolean cbor) {
+    ByteBuf content;
+    String contentType;
+    if (cbor) {
+      content = ctx.alloc().buffer();
+      try (ByteBufOutputStream out = new ByteBufOutputStream(content)) {
+        ApolloCborCodec.encode(body, out);
+      } catch (IOException ex) {
+        content.release();
+        throw new IllegalStateException(ex);
+      }
+      contentType = ApolloCborCodec.MEDIA_TYPE;
+    } else {
+      content = Unpooled.wrappedBuffer(gson.toJson(body).getBytes(StandardCharsets.UTF_8));
+      contentType = "application/json;charset=UTF-8";
+    }
+    FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, content);
+    response.headers().set(HttpHeaderNames.CONTENT_TYPE, contentType);
+    return response;
+  }
+
+  private FullHttpResponse assembleResponse(ChannelHandlerContext ctx, HttpResponseStatus status) {
+    return new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, ctx.alloc().buffer(0));
+  }
+
+  private FullHttpResponse keepAlive(FullHttpResponse response, boolean keepAlive) {
+    HttpUtil.setContentLength(response, response.content().readableBytes());
+    HttpUtil.setKeepAlive(response, keepAlive);
+    return response;
+  }
+
+  private static void inEventLoop(ChannelHandlerContext ctx, Runnable task) {
+    if (ctx.executor().inEventLoop()) {
+      task.run();
+    } else {
+      ctx.executor().execute(task);
+    }
+  }
+
+  private static String parameter(Map<String, List<String>> parameters, String name) {
+    List<String> values = parameters.get(name);
+    return values == null || values.isEmpty() ? null : values.get(0);
+  }
+
+  private static String requiredParameter(Map<String, List<String>> parameters, String name) {
+    String value = parameter(parameters, name);
+    if (Strings.isNullOrEmpty(value)) {
+      throw new BadRequestException("Missing parameter " + name);
+    }
+    return value;
+  }
+
+  /**
+   * The long poll in flight on a channel
+   */
+  private static class LongPoll {
+    private final DeferredResultWrapper wrapper;
+    private final ScheduledFuture<?> timeout;
+
+    LongPoll(DeferredResultWrapper wrapper, ScheduledFuture<?> timeout) {
+      this.wrapper = wrapper;
+      this.timeout = timeout;
+    }
+
+    void complete() {
+      timeout.cancel(false);
+      wrapper.complete();
+    }
+  }
+}
@@ -10,6 +10,8 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.datasource.ReplicaReads;
+import com.ctrip.framework.apollo.biz.metrics.ApolloMetrics;
 import com.ctrip.framework.apollo.biz.repository.AppNamespaceRepository;
 import com.ctrip.framework.apollo.common.entity.AppNamespace;
 import com.ctrip.framework.apollo.core.ConfigConsts;
@@ -28,8 +30,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -64,6 +66,8 @@ public class AppNamespaceServiceWithCache implements InitializingBean {
 
   public AppNamespaceServiceWithCache() {
     initialize();
+    ApolloMetrics.gauge("map.size", this, service -> service.appNamespaceIdCache.size(),
+        "map", "AppNamespaceServiceWithCache.appNamespaces");
   }
 
   private void initialize() {
@@ -71,8 +75,8 @@ public class AppNamespaceServiceWithCache implements InitializingBean {
     publicAppNamespaceCache = new CaseInsensitiveMapWrapper<>(Maps.newConcurrentMap());
     appNamespaceCache = new CaseInsensitiveMapWrapper<>(Maps.newConcurrentMap());
     appNamespaceIdCache = Maps.newConcurrentMap();
-    scheduledExecutorService = Executors.newScheduledThreadPool(1, ApolloThreadFactory
-        .create("AppNamespaceServiceWithCache", true));
+    scheduledExecutorService = ApolloMetrics.monitorScheduledExecutor(new ScheduledThreadPoolExecutor(1,
+        ApolloThreadFactory.create("AppNamespaceServiceWithCache", true)), "AppNamespaceServiceWithCache");
   }
 
   public AppNamespace findByAppIdAndNamespace(String appId, String namespaceName) {
@@ -155,8 +159,8 @@ public class AppNamespaceServiceWithCache implements InitializingBean {
     boolean hasMore = true;
     while (hasMore && !Thread.currentThread().isInterrupted()) {
       //current batch is 500
-      List<AppNamespace> appNamespaces = appNamespaceRepository
-          .findFirst500ByIdGreaterThanOrderByIdAsc(maxIdScanned);
+      List<AppNamespace> appNamespaces = ReplicaReads.read(() -> appNamespaceRepository
+          .findFirst500ByIdGreaterThanOrderByIdAsc(maxIdScanned));
       if (CollectionUtils.isEmpty(appNamespaces)) {
         break;
       }
@@ -186,7 +190,7 @@ public class AppNamespaceServiceWithCache implements InitializingBean {
     }
     List<List<Long>> partitionIds = Lists.partition(ids, 500);
     for (List<Long> toRebuild : partitionIds) {
-      Iterable<AppNamespace> appNamespaces = appNamespaceRepository.findAllById(toRebuild);
+      Iterable<AppNamespace> appNamespaces = ReplicaReads.read(() -> appNamespaceRepository.findAllById(toRebuild));
 
       if (appNamespaces == null) {
         continue;
@@ -196,7 +200,7 @@ public class AppNamespaceServiceWithCache implements InitializingBean {
       Set<Long> foundIds = handleUpdatedAppNamespaces(appNamespaces);
 
       //handle deleted
-      handleDeletedAppNamespaces(Sets.difference(Sets.newHashSet(toRebuild), foundIds));
+      handleDeletedAppNamespaces(confirmDeleted(Sets.difference(Sets.newHashSet(toRebuild), foundIds)));
     }
   }
 
@@ -235,6 +239,23 @@ public class AppNamespaceServiceWithCache implements InitializingBean {
     return foundIds;
   }
 
+  // 从库可能尚未同步主库扫描到的新记录，删除前需在主库确认
+  //the replica might not have applied the new ones scanned from the primary yet, so confirm with the primary
+  private Set<Long> confirmDeleted(Set<Long> missingIds) {
+    if (CollectionUtils.isEmpty(missingIds)) {
+      return missingIds;
+    }
+    Iterable<AppNamespace> appNamespaces = appNamespaceRepository.findAllById(missingIds);
+    if (appNamespaces == null) {
+      return missingIds;
+    }
+    Set<Long> deletedIds = Sets.newHashSet(missingIds);
+    for (AppNamespace appNamespace : appNamespaces) {
+      deletedIds.remove(appNamespace.getId());
+    }
+    return deletedIds;
+  }
+
   //for those deleted app namespaces
   private void handleDeletedAppNamespaces(Set<Long> deletedIds) {
     if (CollectionUtils.isEmpty(deletedIds)) {
@@ -8,6 +8,7 @@ import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
 import com.ctrip.framework.apollo.biz.message.ReleaseMessageListener;
 import com.ctrip.framework.apollo.biz.message.Topics;
+import com.ctrip.framework.apollo.biz.metrics.ApolloMetrics;
 import com.ctrip.framework.apollo.biz.repository.ReleaseMessageRepository;
 import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.tracer.Tracer;
@@ -25,7 +26,8 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -71,6 +73,8 @@ public class ReleaseMessageServiceWithCache implements ReleaseMessageListener, I
 
   public ReleaseMessageServiceWithCache() {
     initialize();
+    ApolloMetrics.gauge("map.size", this, service -> service.releaseMessageCache.size(),
+        "map", "ReleaseMessageServiceWithCache.releaseMessages");
   }
 
   private void initialize() {
@@ -79,8 +83,9 @@ public class ReleaseMessageServiceWithCache implements ReleaseMessageListener, I
     // 设置 doScan 为 true
     doScan = new AtomicBoolean(true);
     // 创建 ExecutorService
-    executorService = Executors.newSingleThreadExecutor(ApolloThreadFactory
-        .create("ReleaseMessageServiceWithCache", true));
+    executorService = ApolloMetrics.monitorExecutor(
+        new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+            ApolloThreadFactory.create("ReleaseMessageServiceWithCache", true)), "ReleaseMessageServiceWithCache");
   }
 
   public ReleaseMessage findLatestReleaseMessageForMessages(Set<String> messages) {
@@ -6,13 +6,17 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
+import com.ctrip.framework.apollo.biz.datasource.ReplicaReads;
 import com.ctrip.framework.apollo.biz.entity.Release;
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
 import com.ctrip.framework.apollo.biz.message.Topics;
+import com.ctrip.framework.apollo.biz.metrics.ApolloMetrics;
 import com.ctrip.framework.apollo.biz.service.ReleaseMessageService;
 import com.ctrip.framework.apollo.biz.service.ReleaseService;
 import com.ctrip.framework.apollo.biz.utils.ReleaseMessageKeyGenerator;
+import com.ctrip.framework.apollo.configservice.service.ReleaseMessageServiceWithCache;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
 import com.ctrip.framework.apollo.tracer.Tracer;
@@ -42,6 +46,7 @@ public class ConfigServiceWithCache extends AbstractConfigService {
   private static final String TRACER_EVENT_CACHE_LOAD_ID = "ConfigCache.LoadFromDBById";
   private static final String TRACER_EVENT_CACHE_GET = "ConfigCache.Get";
   private static final String TRACER_EVENT_CACHE_GET_ID = "ConfigCache.GetById";
+  private static final String TRACER_EVENT_CACHE_MESSAGE_NOT_SCANNED = "ConfigCache.MessageNotScanned";
   private static final Splitter STRING_SPLITTER =
       Splitter.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR).omitEmptyStrings();
 
@@ -51,6 +56,9 @@ public class ConfigServiceWithCache extends AbstractConfigService {
   @Autowired
   private ReleaseMessageService releaseMessageService;
 
+  @Autowired
+  private ReleaseMessageServiceWithCache releaseMessageServiceWithCache;
+
   private LoadingCache<String, ConfigCacheEntry> configCache;
 
   private LoadingCache<Long, Optional<Release>> configIdCache;
@@ -65,6 +73,7 @@ public class ConfigServiceWithCache extends AbstractConfigService {
   void initialize() {
     configCache = CacheBuilder.newBuilder()
         .expireAfterAccess(DEFAULT_EXPIRED_AFTER_ACCESS_IN_MINUTES, TimeUnit.MINUTES)
+        .recordStats()
         .build(new CacheLoader<String, ConfigCacheEntry>() {
           @Override
           public ConfigCacheEntry load(String key) throws Exception {
@@ -77,10 +86,14 @@ public class ConfigServiceWithCache extends AbstractConfigService {
 
             Transaction transaction = Tracer.newTransaction(TRACER_EVENT_CACHE_LOAD, key);
             try {
-              ReleaseMessage latestReleaseMessage = releaseMessageService.findLatestReleaseMessageForMessages(Lists
-                  .newArrayList(key));
-              Release latestRelease = releaseService.findLatestActiveRelease(namespaceInfo.get(0), namespaceInfo.get(1),
-                  namespaceInfo.get(2));
+              // 从库需已同步内存中扫描到的最新 ReleaseMessage，否则回退到主库
+              //read from a replica only if it has applied the latest message scanned, otherwise from the primary
+              long requiredMessageId = latestScannedMessageId(key);
+              ReleaseMessage latestReleaseMessage = ReplicaReads.read(requiredMessageId, () ->
+                  releaseMessageService.findLatestReleaseMessageForMessages(Lists.newArrayList(key)));
+              Release latestRelease = ReplicaReads.read(requiredMessageId, () ->
+                  releaseService.findLatestActiveRelease(namespaceInfo.get(0), namespaceInfo.get(1),
+                      namespaceInfo.get(2)));
 
               transaction.setStatus(Transaction.SUCCESS);
 
@@ -102,6 +115,7 @@ public class ConfigServiceWithCache extends AbstractConfigService {
         });
     configIdCache = CacheBuilder.newBuilder()
         .expireAfterAccess(DEFAULT_EXPIRED_AFTER_ACCESS_IN_MINUTES, TimeUnit.MINUTES)
+        .recordStats()
         .build(new CacheLoader<Long, Optional<Release>>() {
           @Override
           public Optional<Release> load(Long key) throws Exception {
@@ -120,6 +134,8 @@ public class ConfigServiceWithCache extends AbstractConfigService {
             }
           }
         });
+    ApolloMetrics.monitorCache(configCache, "ConfigServiceWithCache.config");
+    ApolloMetrics.monitorCache(configIdCache, "ConfigServiceWithCache.configId");
   }
 
   @Override
@@ -140,14 +156,31 @@ public class ConfigServiceWithCache extends AbstractConfigService {
     //cache is out-dated
     if (clientMessages != null && clientMessages.has(key) &&
         clientMessages.get(key) > cacheEntry.getNotificationId()) {
-      //invalidate the cache and try to load from db again
-      invalidate(key);
-      cacheEntry = configCache.getUnchecked(key);
+      // 客户端上报的通知编号不可信，仅当内存中已扫描到更新的 ReleaseMessage 时，才从 DB 重新加载
+      //the id reported by client is not trusted, only reload when the newer message is really scanned
+      if (hasNewerMessageScanned(key, cacheEntry.getNotificationId())) {
+        //invalidate the cache and try to load from db again
+        invalidate(key);
+        cacheEntry = configCache.getUnchecked(key);
+      } else {
+        //the pending scan will invalidate the cache once the message arrives
+        Tracer.logEvent(TRACER_EVENT_CACHE_MESSAGE_NOT_SCANNED, key);
+      }
     }
 
     return cacheEntry.getRelease();
   }
 
+  private boolean hasNewerMessageScanned(String key, long notificationId) {
+    return latestScannedMessageId(key) > notificationId;
+  }
+
+  private long latestScannedMessageId(String key) {
+    ReleaseMessage latestScanned = releaseMessageServiceWithCache
+        .findLatestReleaseMessageForMessages(Sets.newHashSet(key));
+    return latestScanned == null ? ConfigConsts.NOTIFICATION_ID_PLACEHOLDER : latestScanned.getId();
+  }
+
   private void invalidate(String key) {
     configCache.invalidate(key);
     Tracer.logEvent(TRACER_EVENT_CACHE_INVALIDATE, key);
@@ -163,8 +196,8 @@ public class ConfigServiceWithCache extends AbstractConfigService {
     try {
       invalidate(message.getMessage());
 
-      //warm up the cache
-      configCache.getUnchecked(message.getMessage());
+      //warm up the cache, the message might not be merged into releaseMessageServiceWithCache yet
+      ReplicaReads.read(message.getId(), () -> configCache.getUnchecked(message.getMessage()));
     } catch (Throwable ex) {
       //ignore
     }
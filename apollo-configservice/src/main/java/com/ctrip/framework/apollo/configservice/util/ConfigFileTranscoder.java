@@ -0,0 +1,246 @@
+package com.ctrip.framework.apollo.configservice.util;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import com.ctrip.framework.apollo.biz.metrics.ApolloMetrics;
+import com.ctrip.framework.apollo.common.exception.BadRequestException;
+import com.ctrip.framework.apollo.common.utils.FlattenUtils;
+import com.ctrip.framework.apollo.core.ConfigConsts;
+import com.ctrip.framework.apollo.core.dto.ApolloConfig;
+import com.ctrip.framework.apollo.core.enums.ConfigFileFormat;
+import com.ctrip.framework.apollo.core.utils.PropertiesUtil;
+import com.ctrip.framework.apollo.tracer.Tracer;
+
+import org.springframework.stereotype.Component;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.representer.Representer;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * 配置文件格式转换，properties、yaml、json 之间互相转换，结果按 Release Key 缓存
+ *
+ * Transcode the configurations between properties, yaml and json. Since a release never changes, the result is
+ * cached by release key, so each format is rendered once per release no matter how many clients ask for it.
+ *
+ * Nested yaml and json are flattened to properties the same way as spring boot does, e.g. a.b[0]=c.
+ */
+@Component
+public class ConfigFileTranscoder {
+  private static final Joiner STRING_JOINER = Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR);
+  private static final long MAX_CACHE_SIZE = 50 * 1024 * 1024; // 50MB
+  private static final long EXPIRE_AFTER_ACCESS = 30;
+  private static final Gson gson = new Gson();
+
+  private final Cache<String, String> transcodedCache;
+
+  public ConfigFileTranscoder() {
+    transcodedCache = CacheBuilder.newBuilder()
+        .expireAfterAccess(EXPIRE_AFTER_ACCESS, TimeUnit.MINUTES)
+        .weigher((String key, String value) -> value.length())
+        .maximumWeight(MAX_CACHE_SIZE)
+        .recordStats()
+        .build();
+    ApolloMetrics.monitorCache(transcodedCache, "ConfigFileTranscoder.transcoded");
+  }
+
+  /**
+   * 根据 Namespace 名字的后缀判断配置的格式，例如 application.yml 为 yaml 格式
+   */
+  public static ConfigFileFormat determineFormat(String namespace) {
+    int dotIndex = namespace.lastIndexOf('.');
+    if (dotIndex < 0) {
+      return ConfigFileFormat.Properties;
+    }
+    String extension = namespace.substring(dotIndex + 1).toLowerCase();
+    if (!ConfigFileFormat.isValidFormat(extension)) {
+      return ConfigFileFormat.Properties;
+    }
+    ConfigFileFormat format = ConfigFileFormat.fromString(extension);
+    return format == ConfigFileFormat.YML ? ConfigFileFormat.YAML : format;
+  }
+
+  /**
+   * @param sourceFormat the format of the configurations, the non-properties formats keep their content in
+   *                     {@link ConfigConsts#CONFIG_FILE_CONTENT_KEY}
+   * @param targetFormat the format to render
+   */
+  public String transcode(ApolloConfig apolloConfig, ConfigFileFormat sourceFormat, ConfigFileFormat targetFormat)
+      throws IOException {
+    String releaseKey = apolloConfig.getReleaseKey();
+    if (Strings.isNullOrEmpty(releaseKey)) {
+      return doTranscode(apolloConfig.getConfigurations(), sourceFormat, targetFormat);
+    }
+
+    String cacheKey = STRING_JOINER.join(sourceFormat.getValue(), targetFormat.getValue(), releaseKey);
+    try {
+      return transcodedCache.get(cacheKey, () -> {
+        Tracer.logEvent("ConfigFile.Transcode.Miss", cacheKey);
+        return doTranscode(apolloConfig.getConfigurations(), sourceFormat, targetFormat);
+      });
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof IOException) {
+        throw (IOException) ex.getCause();
+      }
+      throw new IllegalStateException(ex.getCause());
+    } catch (RuntimeException ex) {
+      //unchecked exceptions are wrapped in UncheckedExecutionException
+      if (ex.getCause() instanceof BadRequestException) {
+        throw (BadRequestException) ex.getCause();
+      }
+      throw ex;
+    }
+  }
+
+  String doTranscode(Map<String, String> configurations, ConfigFileFormat sourceFormat,
+                     ConfigFileFormat targetFormat) throws IOException {
+    if (sourceFormat == ConfigFileFormat.Properties) {
+      switch (targetFormat) {
+        case Properties:
+          return toProperties(configurations);
+        case JSON:
+          return gson.toJson(configurations);
+        case YAML:
+          return dumpYaml(new TreeMap<>(configurations));
+      }
+    }
+
+    String content = configurations.get(ConfigConsts.CONFIG_FILE_CONTENT_KEY);
+    if (sourceFormat == targetFormat) {
+      return Strings.nullToEmpty(content);
+    }
+
+    Map<String, Object> tree;
+    switch (sourceFormat) {
+      case YAML:
+        tree = loadYaml(content);
+        break;
+      case JSON:
+        tree = loadJson(content);
+        break;
+      default:
+        throw new BadRequestException(String.format("Transcoding from %s to %s is not supported",
+            sourceFormat.getValue(), targetFormat.getValue()));
+    }
+
+    switch (targetFormat) {
+      case Properties:
+        return toProperties(FlattenUtils.flatten(tree));
+      case JSON:
+        return gson.toJson(tree);
+      case YAML:
+        return dumpYaml(tree);
+      default:
+        throw new BadRequestException(String.format("Transcoding from %s to %s is not supported",
+            sourceFormat.getValue(), targetFormat.getValue()));
+    }
+  }
+
+  private static String toProperties(Map<String, String> configurations) throws IOException {
+    Properties properties = new Properties();
+    properties.putAll(configurations);
+    return PropertiesUtil.toString(properties);
+  }
+
+  private static Yaml yaml() {
+    DumperOptions options = new DumperOptions();
+    options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+    //snake yaml is not thread safe
+    return new Yaml(new SafeConstructor(), new Representer(), options);
+  }
+
+  private static String dumpYaml(Map<String, ?> tree) {
+    return tree.isEmpty() ? "" : yaml().dump(tree);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> loadYaml(String content) {
+    if (Strings.isNullOrEmpty(content)) {
+      return Maps.newLinkedHashMap();
+    }
+    Object tree;
+    try {
+      tree = yaml().load(content);
+    } catch (YAMLException ex) {
+      throw new BadRequestException("Invalid yaml content: " + ex.getMessage());
+    }
+    if (tree == null) {
+      return Maps.newLinkedHashMap();
+    }
+    if (!(tree instanceof Map)) {
+      throw new BadRequestException("Only yaml content of a map could be transcoded");
+    }
+    return (Map<String, Object>) tree;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> loadJson(String content) {
+    if (Strings.isNullOrEmpty(content)) {
+      return Maps.newLinkedHashMap();
+    }
+    Object tree;
+    try {
+      tree = toPlainObject(new JsonParser().parse(content));
+    } catch (JsonParseException ex) {
+      throw new BadRequestException("Invalid json content: " + ex.getMessage());
+    }
+    if (!(tree instanceof Map)) {
+      throw new BadRequestException("Only json content of an object could be transcoded");
+    }
+    return (Map<String, Object>) tree;
+  }
+
+  /**
+   * Convert to plain maps, lists and scalars so that snake yaml could dump them without type tags
+   */
+  private static Object toPlainObject(JsonElement element) {
+    if (element == null || element.isJsonNull()) {
+      return null;
+    }
+    if (element.isJsonObject()) {
+      Map<String, Object> map = Maps.newLinkedHashMap();
+      for (Map.Entry<String, JsonElement> entry : ((JsonObject) element).entrySet()) {
+        map.put(entry.getKey(), toPlainObject(entry.getValue()));
+      }
+      return map;
+    }
+    if (element.isJsonArray()) {
+      return StreamSupport.stream(((JsonArray) element).spliterator(), false)
+          .map(ConfigFileTranscoder::toPlainObject).collect(Collectors.toList());
+    }
+    JsonPrimitive primitive = (JsonPrimitive) element;
+    if (primitive.isBoolean()) {
+      return primitive.getAsBoolean();
+    }
+    if (primitive.isNumber()) {
+      String number = primitive.getAsString();
+      try {
+        return Long.parseLong(number);
+      } catch (NumberFormatException ex) {
+        return Double.parseDouble(number);
+      }
+    }
+    return primitive.getAsString();
+  }
+}
@@ -0,0 +1,88 @@
+package com.ctrip.framework.apollo.configservice.util;
+
+import com.google.common.base.Strings;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.RateLimiter;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.tracer.Tracer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 配置查询限流器，按 appId 和客户端 IP 分别限流
+ *
+ * Token buckets are kept in memory per config service instance and only consumed with non-blocking
+ * {@link RateLimiter#tryAcquire()}, so well-behaved clients are not delayed.
+ */
+@Component
+public class ConfigQueryRateLimiter {
+  /**
+   * 标记请求已经过限流判断，避免 ConfigFileController 内部调用 ConfigController 时重复扣减
+   */
+  private static final String THROTTLED_ATTRIBUTE = ConfigQueryRateLimiter.class.getName() + ".THROTTLED";
+  private static final int RATE_LIMITER_MAX_SIZE = 100000;
+  private static final long RATE_LIMITER_EXPIRE_AFTER_ACCESS = 10; // 10 minutes
+
+  @Autowired
+  private BizConfig bizConfig;
+
+  private final RateLimiters appIdRateLimiters = new RateLimiters();
+  private final RateLimiters ipRateLimiters = new RateLimiters();
+
+  /**
+   * @return whether the config query should be rejected
+   */
+  public boolean isThrottled(String appId, String clientIp, HttpServletRequest request) {
+    Object throttled = request.getAttribute(THROTTLED_ATTRIBUTE);
+    if (throttled != null) {
+      return (Boolean) throttled;
+    }
+
+    boolean result = !appIdRateLimiters.tryAcquire(appId, bizConfig.configQueryRateLimitPerAppId())
+        || !ipRateLimiters.tryAcquire(clientIp, bizConfig.configQueryRateLimitPerIp());
+
+    if (result) {
+      Tracer.logEvent("Apollo.Config.Throttled", String.format("%s,%s", appId, clientIp));
+    }
+    request.setAttribute(THROTTLED_ATTRIBUTE, result);
+
+    return result;
+  }
+
+  private static class RateLimiters {
+    private volatile int permitsPerSecond;
+    private final LoadingCache<String, RateLimiter> rateLimiters = CacheBuilder.newBuilder()
+        .expireAfterAccess(RATE_LIMITER_EXPIRE_AFTER_ACCESS, TimeUnit.MINUTES)
+        .maximumSize(RATE_LIMITER_MAX_SIZE)
+        .build(new CacheLoader<String, RateLimiter>() {
+          @Override
+          public RateLimiter load(String key) {
+            return RateLimiter.create(permitsPerSecond);
+          }
+        });
+
+    boolean tryAcquire(String key, int permitsPerSecond) {
+      if (permitsPerSecond <= 0 || Strings.isNullOrEmpty(key)) {
+        return true;
+      }
+      // 限流配置变化时，重建所有令牌桶
+      //rate is refreshed at runtime, rebuild the buckets once it changes
+      if (this.permitsPerSecond != permitsPerSecond) {
+        synchronized (this) {
+          if (this.permitsPerSecond != permitsPerSecond) {
+            this.permitsPerSecond = permitsPerSecond;
+            rateLimiters.invalidateAll();
+          }
+        }
+      }
+      return rateLimiters.getUnchecked(key).tryAcquire();
+    }
+  }
+}
@@ -9,6 +9,7 @@ import com.google.common.collect.Queues;
 
 import com.ctrip.framework.apollo.biz.entity.Instance;
 import com.ctrip.framework.apollo.biz.entity.InstanceConfig;
+import com.ctrip.framework.apollo.biz.metrics.ApolloMetrics;
 import com.ctrip.framework.apollo.biz.service.InstanceService;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
@@ -24,7 +25,8 @@ import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -79,20 +81,28 @@ public class InstanceConfigAuditUtil implements InitializingBean {
   private InstanceService instanceService;
 
   public InstanceConfigAuditUtil() {
-    auditExecutorService = Executors.newSingleThreadExecutor(
-        ApolloThreadFactory.create("InstanceConfigAuditUtil", true));
+    auditExecutorService = ApolloMetrics.monitorExecutor(
+        new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+            ApolloThreadFactory.create("InstanceConfigAuditUtil", true)), "InstanceConfigAuditUtil");
     auditStopped = new AtomicBoolean(false);
     instanceCache = CacheBuilder.newBuilder().expireAfterAccess(1, TimeUnit.HOURS)
-        .maximumSize(INSTANCE_CACHE_MAX_SIZE).build();
+        .maximumSize(INSTANCE_CACHE_MAX_SIZE).recordStats().build();
     instanceConfigReleaseKeyCache = CacheBuilder.newBuilder().expireAfterWrite(1, TimeUnit.DAYS)
-        .maximumSize(INSTANCE_CONFIG_CACHE_MAX_SIZE).build();
+        .maximumSize(INSTANCE_CONFIG_CACHE_MAX_SIZE).recordStats().build();
+    ApolloMetrics.monitorQueue(audits, "InstanceConfigAuditUtil.audits");
+    ApolloMetrics.monitorCache(instanceCache, "InstanceConfigAuditUtil.instance");
+    ApolloMetrics.monitorCache(instanceConfigReleaseKeyCache, "InstanceConfigAuditUtil.instanceConfigReleaseKey");
   }
 
   public boolean audit(String appId, String clusterName, String dataCenter, String
       ip, String configAppId, String configClusterName, String configNamespace, String releaseKey) {
-    // 添加到队列中
-    return this.audits.offer(new InstanceConfigAuditModel(appId, clusterName, dataCenter, ip,
+    // 添加到队列中，队列已满时丢弃
+    boolean accepted = this.audits.offer(new InstanceConfigAuditModel(appId, clusterName, dataCenter, ip,
         configAppId, configClusterName, configNamespace, releaseKey));
+    if (!accepted) {
+      ApolloMetrics.counter("instance.config.audit.dropped").increment();
+    }
+    return accepted;
   }
 
   void doAudit(InstanceConfigAuditModel auditModel) {
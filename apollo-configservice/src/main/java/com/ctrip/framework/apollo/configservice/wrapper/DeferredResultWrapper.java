@@ -3,26 +3,41 @@ package com.ctrip.framework.apollo.configservice.wrapper;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
+import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.core.dto.ApolloConfig;
 import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
+import com.ctrip.framework.apollo.tracer.Tracer;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.context.request.async.DeferredResult;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * @author Jason Song(song_s@ctrip.com)
  */
 public class DeferredResultWrapper {
-  private static final long TIMEOUT = 60 * 1000;//60 seconds
+  public static final long TIMEOUT = 60 * 1000;//60 seconds
   private static final ResponseEntity<List<ApolloConfigNotification>>
       NOT_MODIFIED_RESPONSE_LIST = new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
 
   private Map<String, String> normalizedNamespaceNameToOriginalNamespaceName;
   private DeferredResult<ResponseEntity<List<ApolloConfigNotification>>> result;
-
+  /**
+   * 加载通知对应的最新配置，为空表示客户端未要求通知携带配置
+   * 第二个参数为同一批通知中已加载的 Release ，在客户端之间共享
+   */
+  private BiFunction<ApolloConfigNotification, Map<String, List<Release>>, ApolloConfig> configLoader;
+  private Runnable timeoutCallback;
+  private Runnable completionCallback;
+  private final AtomicBoolean completed = new AtomicBoolean(false);
 
   public DeferredResultWrapper() {
     result = new DeferredResult<>(TIMEOUT, NOT_MODIFIED_RESPONSE_LIST);
@@ -36,32 +51,136 @@ public class DeferredResultWrapper {
   }
 
 
+  /**
+   * Carry the latest config in each notification, so the client does not need another round trip
+   */
+  public void withConfigs(BiFunction<ApolloConfigNotification, Map<String, List<Release>>, ApolloConfig> configLoader) {
+    this.configLoader = configLoader;
+  }
+
+  public boolean isWithConfigs() {
+    return configLoader != null;
+  }
+
   public void onTimeout(Runnable timeoutCallback) {
+    this.timeoutCallback = timeoutCallback;
     result.onTimeout(timeoutCallback);
   }
 
   public void onCompletion(Runnable completionCallback) {
+    this.completionCallback = completionCallback;
     result.onCompletion(completionCallback);
   }
 
+  /**
+   * 在 Servlet 容器之外处理结果，例如非阻塞长轮询服务。此时超时和完成回调需由调用方通过 {@link #expire()} 和 {@link #complete()} 触发
+   *
+   * Hand the result over to a host other than the servlet container, which is then responsible for calling
+   * {@link #expire()} after {@link #TIMEOUT} and {@link #complete()} once the request is finished
+   */
+  @SuppressWarnings("unchecked")
+  public void setResultHandler(Consumer<ResponseEntity<List<ApolloConfigNotification>>> resultHandler) {
+    result.setResultHandler(value -> resultHandler.accept((ResponseEntity<List<ApolloConfigNotification>>) value));
+  }
+
+  /**
+   * Time out the request with 304, if no result has been set yet
+   */
+  public void expire() {
+    if (result.isSetOrExpired()) {
+      return;
+    }
+    if (timeoutCallback != null) {
+      timeoutCallback.run();
+    }
+    result.setResult(NOT_MODIFIED_RESPONSE_LIST);
+  }
+
+  /**
+   * Run the completion callback, at most once
+   */
+  public void complete() {
+    if (completed.compareAndSet(false, true) && completionCallback != null) {
+      completionCallback.run();
+    }
+  }
+
 
   public void setResult(ApolloConfigNotification notification) {
-    setResult(Lists.newArrayList(notification));
+    setResult(notification, Maps.newHashMap());
   }
 
   /**
-   * The namespace name is used as a key in client side, so we have to return the original one instead of the correct one
+   * @param loadedReleases the releases loaded for the other clients notified of the same release, so that they are
+   *                       loaded only once for all the clients
    */
+  public void setResult(ApolloConfigNotification notification, Map<String, List<Release>> loadedReleases) {
+    setResult(Lists.newArrayList(notification), loadedReleases);
+  }
+
   public void setResult(List<ApolloConfigNotification> notifications) {
+    setResult(notifications, Maps.newHashMap());
+  }
+
+  /**
+   * The namespace name is used as a key in client side, so we have to return the original one instead of the correct one
+   */
+  public void setResult(List<ApolloConfigNotification> notifications, Map<String, List<Release>> loadedReleases) {
+    // 通知会被多个客户端共享，携带配置时需要复制，因为每个客户端的配置可能不同，例如灰度发布
+    //the notifications are shared between clients, copy them since the configs might differ, e.g. gray release
+    if (configLoader != null) {
+      notifications = notifications.stream().map(DeferredResultWrapper::copy).collect(Collectors.toList());
+    }
+
     if (normalizedNamespaceNameToOriginalNamespaceName != null) {
       notifications.stream().filter(notification -> normalizedNamespaceNameToOriginalNamespaceName.containsKey
           (notification.getNamespaceName())).forEach(notification -> notification.setNamespaceName(
               normalizedNamespaceNameToOriginalNamespaceName.get(notification.getNamespaceName())));
     }
 
+    if (configLoader != null) {
+      notifications.forEach(notification -> loadConfig(notification, loadedReleases));
+    }
+
     result.setResult(new ResponseEntity<>(notifications, HttpStatus.OK));
   }
 
+  private void loadConfig(ApolloConfigNotification notification, Map<String, List<Release>> loadedReleases) {
+    try {
+      notification.setConfig(configLoader.apply(notification, loadedReleases));
+    } catch (Throwable ex) {
+      //the client would fall back to query the config itself
+      Tracer.logError(ex);
+    }
+  }
+
+  private static ApolloConfigNotification copy(ApolloConfigNotification notification) {
+    ApolloConfigNotification copied = new ApolloConfigNotification(notification.getNamespaceName(),
+        notification.getNotificationId());
+    copied.setMessages(notification.getMessages());
+    return copied;
+  }
+
+  /**
+   * Reject the request since the server is too busy, the client should retry later or try another server
+   */
+  public void setTooManyRequestsResult(int retryAfterInSeconds) {
+    setRetryAfterResult(HttpStatus.TOO_MANY_REQUESTS, retryAfterInSeconds);
+  }
+
+  /**
+   * Tell the client to reconnect to another server since this one is shutting down
+   */
+  public void setServiceUnavailableResult(int retryAfterInSeconds) {
+    setRetryAfterResult(HttpStatus.SERVICE_UNAVAILABLE, retryAfterInSeconds);
+  }
+
+  private void setRetryAfterResult(HttpStatus status, int retryAfterInSeconds) {
+    HttpHeaders headers = new HttpHeaders();
+    headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterInSeconds));
+    result.setResult(new ResponseEntity<>(headers, status));
+  }
+
   public DeferredResult<ResponseEntity<List<ApolloConfigNotification>>> getResult() {
     return result;
   }
@@ -1,79 +1,164 @@
 package com.ctrip.framework.apollo.metaservice.controller;
 
 import com.ctrip.framework.apollo.core.dto.ServiceDTO;
+import com.ctrip.framework.apollo.metaservice.service.ConfigServiceAffinityRouter;
 import com.ctrip.framework.apollo.metaservice.service.DiscoveryService;
-import com.netflix.appinfo.InstanceInfo;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
 import java.util.List;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
 
 @RestController
 @RequestMapping("/services")
 public class ServiceController {
+  private static final long CONFIG_SERVICE_WATCH_TIMEOUT = 60 * 1000;//60 seconds
+  private static final ResponseEntity<List<ServiceDTO>> NOT_MODIFIED_RESPONSE =
+      new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
 
   @Autowired
   private DiscoveryService discoveryService;
 
+  @Autowired
+  private ConfigServiceAffinityRouter configServiceAffinityRouter;
+
+  /**
+   * long polling clients waiting for the config service instances to change
+   */
+  private final Set<ConfigServiceWatcher> configServiceWatchers = Sets.newConcurrentHashSet();
+
+  @PostConstruct
+  void initialize() {
+    discoveryService.addConfigServiceChangeListener(this::notifyConfigServiceWatchers);
+  }
 
   @RequestMapping("/meta")
   public List<ServiceDTO> getMetaService() {
-    List<InstanceInfo> instances = discoveryService.getMetaServiceInstances();
-    List<ServiceDTO> result = instances.stream().map(new Function<InstanceInfo, ServiceDTO>() {
-
-      @Override
-      public ServiceDTO apply(InstanceInfo instance) {
-        ServiceDTO service = new ServiceDTO();
-        service.setAppName(instance.getAppName());
-        service.setInstanceId(instance.getInstanceId());
-        service.setHomepageUrl(instance.getHomePageUrl());
-        return service;
-      }
-
-    }).collect(Collectors.toList());
-    return result;
+    return discoveryService.getMetaServiceInstances();
   }
 
+  /**
+   * Get the config service instances, with an ETag so that the clients could skip unchanged results
+   * by sending If-None-Match.
+   */
   @RequestMapping("/config")
-  public List<ServiceDTO> getConfigService(
+  public ResponseEntity<List<ServiceDTO>> getConfigService(
       @RequestParam(value = "appId", defaultValue = "") String appId,
-      @RequestParam(value = "ip", required = false) String clientIp) {
-    List<InstanceInfo> instances = discoveryService.getConfigServiceInstances();
-    List<ServiceDTO> result = instances.stream().map(new Function<InstanceInfo, ServiceDTO>() {
-
-      @Override
-      public ServiceDTO apply(InstanceInfo instance) {
-        ServiceDTO service = new ServiceDTO();
-        service.setAppName(instance.getAppName());
-        service.setInstanceId(instance.getInstanceId());
-        service.setHomepageUrl(instance.getHomePageUrl());
-        return service;
-      }
+      @RequestParam(value = "ip", required = false) String clientIp,
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String clientSideETag) {
+    List<ServiceDTO> instances = findConfigServices(appId);
+    String eTag = generateETag(instances);
 
-    }).collect(Collectors.toList());
-    return result;
+    if (Objects.equals(eTag, clientSideETag)) {
+      return notModified(eTag);
+    }
+
+    return ok(instances, eTag);
+  }
+
+  /**
+   * Long polling version of {@link #getConfigService(String, String, String)}, which returns as soon as
+   * the config service instances differ from the client's ETag, or 304 after 60 seconds.
+   */
+  @RequestMapping("/config/notifications")
+  public DeferredResult<ResponseEntity<List<ServiceDTO>>> pollConfigService(
+      @RequestParam(value = "appId", defaultValue = "") String appId,
+      @RequestParam(value = "ip", required = false) String clientIp,
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String clientSideETag) {
+    ConfigServiceWatcher watcher = new ConfigServiceWatcher(appId, clientSideETag);
+
+    if (!watcher.notifyIfChanged()) {
+      watcher.result.onCompletion(() -> configServiceWatchers.remove(watcher));
+      configServiceWatchers.add(watcher);
+      //double check in case the instances changed before the watcher was registered
+      watcher.notifyIfChanged();
+    }
+
+    return watcher.result;
   }
 
   @RequestMapping("/admin")
   public List<ServiceDTO> getAdminService() {
-    List<InstanceInfo> instances = discoveryService.getAdminServiceInstances();
-    List<ServiceDTO> result = instances.stream().map(new Function<InstanceInfo, ServiceDTO>() {
-
-      @Override
-      public ServiceDTO apply(InstanceInfo instance) {
-        ServiceDTO service = new ServiceDTO();
-        service.setAppName(instance.getAppName());
-        service.setInstanceId(instance.getInstanceId());
-        service.setHomepageUrl(instance.getHomePageUrl());
-        return service;
-      }
+    return discoveryService.getAdminServiceInstances();
+  }
+
+  private void notifyConfigServiceWatchers() {
+    Tracer.logEvent("Apollo.MetaService.ConfigServiceChanged", String.valueOf(configServiceWatchers.size()));
+    //create a new list to avoid ConcurrentModificationException
+    for (ConfigServiceWatcher watcher : Lists.newArrayList(configServiceWatchers)) {
+      watcher.notifyIfChanged();
+    }
+  }
+
+  private List<ServiceDTO> findConfigServices(String appId) {
+    return configServiceAffinityRouter.route(appId, discoveryService.getConfigServiceInstances());
+  }
+
+  /**
+   * The ETag only depends on the instances and which of them are fallbacks, not their order, as the order is derived
+   * from the instances
+   */
+  static String generateETag(List<ServiceDTO> instances) {
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    instances.stream()
+        .sorted(Comparator.comparing(ServiceDTO::getInstanceId, Comparator.nullsFirst(Comparator.naturalOrder())))
+        .forEach(instance -> hasher
+            .putString(String.valueOf(instance.getInstanceId()), StandardCharsets.UTF_8)
+            .putChar('@')
+            .putString(String.valueOf(instance.getHomepageUrl()), StandardCharsets.UTF_8)
+            .putBoolean(instance.isFallback())
+            .putChar(','));
+    return "\"" + hasher.hash().toString() + "\"";
+  }
 
-    }).collect(Collectors.toList());
-    return result;
+  private static ResponseEntity<List<ServiceDTO>> ok(List<ServiceDTO> instances, String eTag) {
+    return ResponseEntity.ok().eTag(eTag).body(instances);
+  }
+
+  private static ResponseEntity<List<ServiceDTO>> notModified(String eTag) {
+    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+  }
+
+  private class ConfigServiceWatcher {
+    private final String appId;
+    private final String clientSideETag;
+    private final DeferredResult<ResponseEntity<List<ServiceDTO>>> result;
+
+    ConfigServiceWatcher(String appId, String clientSideETag) {
+      this.appId = appId;
+      this.clientSideETag = clientSideETag;
+      this.result = new DeferredResult<>(CONFIG_SERVICE_WATCH_TIMEOUT, NOT_MODIFIED_RESPONSE);
+    }
+
+    /**
+     * @return whether the result is set
+     */
+    boolean notifyIfChanged() {
+      List<ServiceDTO> instances = findConfigServices(appId);
+      String eTag = generateETag(instances);
+      if (Objects.equals(eTag, clientSideETag)) {
+        return false;
+      }
+      result.setResult(ok(instances, eTag));
+      return true;
+    }
   }
 }
@@ -0,0 +1,89 @@
+package com.ctrip.framework.apollo.metaservice.service;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.core.dto.ServiceDTO;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Route each app's clients to a small and stable set of config service instances, so that every
+ * config service only has to keep a part of the namespaces in its caches.
+ *
+ * Instances are ranked with rendezvous (highest random weight) hashing on appId. All of them are
+ * returned in that order, the top ones are preferred and the rest are marked as fallbacks, which the
+ * clients fail over to in order. The result only depends on the appId, the instance ids and the
+ * configuration, so every meta service node, before or after a restart, routes the same app to the
+ * same instances. Apps are spread evenly across the instances by the hash, and only the apps preferring
+ * an instance are moved when it goes away.
+ *
+ * The preferred set of an app is widened as instances are added, to at least 1 / max-load-factor of
+ * them, so a single busy app puts at most max-load-factor times its fair share of load on one instance.
+ */
+@Service
+public class ConfigServiceAffinityRouter {
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+  @Autowired
+  private BizConfig bizConfig;
+
+  /**
+   * @return all the instances, the preferred ones for the app first and then the fallbacks in rendezvous order, or
+   * the instances as they are if affinity routing is disabled
+   */
+  public List<ServiceDTO> route(String appId, List<ServiceDTO> services) {
+    int replicas = preferredReplicas(services.size());
+    if (Strings.isNullOrEmpty(appId) || replicas <= 0 || services.size() <= replicas) {
+      return services;
+    }
+
+    //ties, e.g. duplicate instance ids, are broken by the homepage url so that the order of the input doesn't matter
+    List<ServiceDTO> ranked = services.stream()
+        .sorted(Comparator.comparingLong((ServiceDTO service) -> score(appId, service.getInstanceId())).reversed()
+            .thenComparing(ServiceDTO::getInstanceId, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(ServiceDTO::getHomepageUrl, Comparator.nullsFirst(Comparator.naturalOrder())))
+        .collect(Collectors.toList());
+
+    //the instances are shared by all the apps, so the fallbacks are marked on copies
+    List<ServiceDTO> result = Lists.newArrayListWithCapacity(ranked.size());
+    for (int i = 0; i < ranked.size(); i++) {
+      result.add(i < replicas ? ranked.get(i) : fallback(ranked.get(i)));
+    }
+    return result;
+  }
+
+  private int preferredReplicas(int instances) {
+    int replicas = bizConfig.configServiceAffinityReplicas();
+    int maxLoadFactor = bizConfig.configServiceAffinityMaxLoadFactor();
+    if (replicas <= 0 || maxLoadFactor <= 0) {
+      return replicas;
+    }
+    return Math.max(replicas, (instances + maxLoadFactor - 1) / maxLoadFactor);
+  }
+
+  private long score(String appId, String instanceId) {
+    return HASH_FUNCTION.newHasher()
+        .putString(appId, StandardCharsets.UTF_8)
+        .putChar('+')
+        .putString(Strings.nullToEmpty(instanceId), StandardCharsets.UTF_8)
+        .hash().asLong();
+  }
+
+  private static ServiceDTO fallback(ServiceDTO service) {
+    ServiceDTO fallback = new ServiceDTO();
+    fallback.setAppName(service.getAppName());
+    fallback.setInstanceId(service.getInstanceId());
+    fallback.setHomepageUrl(service.getHomepageUrl());
+    fallback.setFallback(true);
+    return fallback;
+  }
+}
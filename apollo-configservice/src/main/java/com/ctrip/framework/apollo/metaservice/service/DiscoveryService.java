@@ -1,9 +1,15 @@
 package com.ctrip.framework.apollo.metaservice.service;
 
 import com.ctrip.framework.apollo.core.ServiceNameConsts;
+import com.ctrip.framework.apollo.core.dto.ServiceDTO;
 import com.ctrip.framework.apollo.tracer.Tracer;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.netflix.appinfo.InstanceInfo;
+import com.netflix.discovery.CacheRefreshedEvent;
 import com.netflix.discovery.EurekaClient;
+import com.netflix.discovery.EurekaEvent;
+import com.netflix.discovery.EurekaEventListener;
 import com.netflix.discovery.shared.Application;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,34 +17,113 @@ import org.springframework.stereotype.Service;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
 
+import javax.annotation.PostConstruct;
+
+/**
+ * Service instances are converted from eureka's local registry once and cached until eureka client
+ * refreshes its registry, so the meta service endpoints don't need to rebuild them on every call.
+ */
 @Service
-public class DiscoveryService {
+public class DiscoveryService implements EurekaEventListener {
 
   @Autowired
   private EurekaClient eurekaClient;
 
-  public List<InstanceInfo> getConfigServiceInstances() {
-    Application application = eurekaClient.getApplication(ServiceNameConsts.APOLLO_CONFIGSERVICE);
-    if (application == null) {
-      Tracer.logEvent("Apollo.EurekaDiscovery.NotFound", ServiceNameConsts.APOLLO_CONFIGSERVICE);
-    }
-    return application != null ? application.getInstances() : Collections.emptyList();
+  /**
+   * key: service name
+   * value: service instances, read only
+   */
+  private final ConcurrentMap<String, List<ServiceDTO>> serviceInstancesCache = Maps.newConcurrentMap();
+
+  private final List<Runnable> configServiceChangeListeners = Lists.newCopyOnWriteArrayList();
+
+  private volatile List<ServiceDTO> lastConfigServiceInstances;
+
+  @PostConstruct
+  void initialize() {
+    eurekaClient.registerEventListener(this);
   }
 
-  public List<InstanceInfo> getMetaServiceInstances() {
-    Application application = eurekaClient.getApplication(ServiceNameConsts.APOLLO_METASERVICE);
-    if (application == null) {
-      Tracer.logEvent("Apollo.EurekaDiscovery.NotFound", ServiceNameConsts.APOLLO_METASERVICE);
+  public List<ServiceDTO> getConfigServiceInstances() {
+    return getServiceInstances(ServiceNameConsts.APOLLO_CONFIGSERVICE);
+  }
+
+  public List<ServiceDTO> getMetaServiceInstances() {
+    return getServiceInstances(ServiceNameConsts.APOLLO_METASERVICE);
+  }
+
+  public List<ServiceDTO> getAdminServiceInstances() {
+    return getServiceInstances(ServiceNameConsts.APOLLO_ADMINSERVICE);
+  }
+
+  /**
+   * Register a listener which is called when the config service instances are changed
+   */
+  public void addConfigServiceChangeListener(Runnable listener) {
+    configServiceChangeListeners.add(listener);
+  }
+
+  @Override
+  public void onEvent(EurekaEvent event) {
+    //eureka client has fetched a new registry, so the cached instances might be out-dated
+    if (!(event instanceof CacheRefreshedEvent)) {
+      return;
+    }
+    serviceInstancesCache.clear();
+
+    List<ServiceDTO> previous = lastConfigServiceInstances;
+    List<ServiceDTO> current = getConfigServiceInstances();
+    lastConfigServiceInstances = current;
+
+    if (previous == null || !isSameInstances(previous, current)) {
+      for (Runnable listener : configServiceChangeListeners) {
+        try {
+          listener.run();
+        } catch (Throwable ex) {
+          Tracer.logError(ex);
+        }
+      }
     }
-    return application != null ? application.getInstances() : Collections.emptyList();
   }
 
-  public List<InstanceInfo> getAdminServiceInstances() {
-    Application application = eurekaClient.getApplication(ServiceNameConsts.APOLLO_ADMINSERVICE);
+  private List<ServiceDTO> getServiceInstances(String serviceName) {
+    List<ServiceDTO> instances = serviceInstancesCache.get(serviceName);
+    if (instances != null) {
+      return instances;
+    }
+
+    Application application = eurekaClient.getApplication(serviceName);
     if (application == null) {
-      Tracer.logEvent("Apollo.EurekaDiscovery.NotFound", ServiceNameConsts.APOLLO_ADMINSERVICE);
+      Tracer.logEvent("Apollo.EurekaDiscovery.NotFound", serviceName);
+      return Collections.emptyList();
     }
-    return application != null ? application.getInstances() : Collections.emptyList();
+
+    instances = Collections.unmodifiableList(
+        application.getInstances().stream().map(this::transformToServiceDTO).collect(Collectors.toList()));
+    serviceInstancesCache.put(serviceName, instances);
+
+    return instances;
+  }
+
+  private boolean isSameInstances(List<ServiceDTO> some, List<ServiceDTO> another) {
+    //the order of instances doesn't matter
+    return some.size() == another.size() && toInstanceSet(some).equals(toInstanceSet(another));
+  }
+
+  private Set<String> toInstanceSet(List<ServiceDTO> instances) {
+    return instances.stream().map(instance -> instance.getInstanceId() + "@" + instance.getHomepageUrl())
+        .collect(Collectors.toSet());
+  }
+
+  private ServiceDTO transformToServiceDTO(InstanceInfo instance) {
+    ServiceDTO service = new ServiceDTO();
+    service.setAppName(instance.getAppName());
+    service.setInstanceId(instance.getInstanceId());
+    service.setHomepageUrl(instance.getHomePageUrl());
+    return service;
   }
 }
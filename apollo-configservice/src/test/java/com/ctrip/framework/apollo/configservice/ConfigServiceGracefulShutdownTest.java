@@ -0,0 +1,94 @@
+package com.ctrip.framework.apollo.configservice;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.configservice.controller.NotificationControllerV2;
+import com.netflix.appinfo.ApplicationInfoManager;
+import com.netflix.appinfo.InstanceInfo.InstanceStatus;
+import com.netflix.discovery.EurekaClientConfig;
+import com.netflix.eureka.EurekaServerConfig;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ConfigServiceGracefulShutdownTest {
+  private ConfigServiceGracefulShutdown configServiceGracefulShutdown;
+
+  @Mock
+  private ApplicationInfoManager applicationInfoManager;
+  @Mock
+  private EurekaClientConfig eurekaClientConfig;
+  @Mock
+  private EurekaServerConfig eurekaServerConfig;
+  @Mock
+  private NotificationControllerV2 notificationControllerV2;
+  @Mock
+  private BizConfig bizConfig;
+
+  @Before
+  public void setUp() throws Exception {
+    configServiceGracefulShutdown = new ConfigServiceGracefulShutdown();
+    ReflectionTestUtils.setField(configServiceGracefulShutdown, "applicationInfoManager",
+        assembleObjectProvider(applicationInfoManager));
+    ReflectionTestUtils.setField(configServiceGracefulShutdown, "eurekaClientConfig",
+        assembleObjectProvider(eurekaClientConfig));
+    ReflectionTestUtils.setField(configServiceGracefulShutdown, "eurekaServerConfig",
+        assembleObjectProvider(eurekaServerConfig));
+    ReflectionTestUtils.setField(configServiceGracefulShutdown, "notificationControllerV2", notificationControllerV2);
+    ReflectionTestUtils.setField(configServiceGracefulShutdown, "bizConfig", bizConfig);
+  }
+
+  @Test
+  public void testStopInOrder() throws Exception {
+    int someDrainWindow = 100;
+    when(bizConfig.longPollingDeregisterDelayInMilli()).thenReturn(10);
+    when(bizConfig.longPollingDrainWindowInMilli()).thenReturn(someDrainWindow);
+    Runnable someCallback = mock(Runnable.class);
+
+    configServiceGracefulShutdown.start();
+    configServiceGracefulShutdown.stop(someCallback);
+
+    InOrder inOrder = inOrder(applicationInfoManager, notificationControllerV2, someCallback);
+    inOrder.verify(applicationInfoManager).setInstanceStatus(InstanceStatus.DOWN);
+    inOrder.verify(notificationControllerV2).drainLongPolls(someDrainWindow);
+    inOrder.verify(someCallback).run();
+    assertFalse(configServiceGracefulShutdown.isRunning());
+  }
+
+  @Test
+  public void testDeregisterDelayDerivedFromEureka() throws Exception {
+    when(bizConfig.longPollingDeregisterDelayInMilli()).thenReturn(-1);
+    when(eurekaClientConfig.getRegistryFetchIntervalSeconds()).thenReturn(30);
+    when(eurekaServerConfig.shouldUseReadOnlyResponseCache()).thenReturn(true);
+    when(eurekaServerConfig.getResponseCacheUpdateIntervalMs()).thenReturn(30000L);
+
+    assertEquals(60000, configServiceGracefulShutdown.deregisterDelayInMilli());
+  }
+
+  @Test
+  public void testDeregisterDelayConfigured() throws Exception {
+    int someDelay = 1000;
+    when(bizConfig.longPollingDeregisterDelayInMilli()).thenReturn(someDelay);
+
+    assertEquals(someDelay, configServiceGracefulShutdown.deregisterDelayInMilli());
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> ObjectProvider<T> assembleObjectProvider(T object) {
+    ObjectProvider<T> objectProvider = mock(ObjectProvider.class);
+    when(objectProvider.getIfAvailable()).thenReturn(object);
+    return objectProvider;
+  }
+}
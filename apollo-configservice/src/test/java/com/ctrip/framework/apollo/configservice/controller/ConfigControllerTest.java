@@ -5,12 +5,20 @@ import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
 
 import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.entity.ReleaseHeader;
+import com.ctrip.framework.apollo.biz.grayReleaseRule.GrayReleaseRulesHolder;
+import com.ctrip.framework.apollo.biz.message.ReleasePropagationTracker;
+import com.ctrip.framework.apollo.biz.message.ReleasePropagationTracker.Hop;
+import com.ctrip.framework.apollo.biz.service.ReleaseService;
 import com.ctrip.framework.apollo.common.entity.AppNamespace;
 import com.ctrip.framework.apollo.configservice.service.config.ConfigService;
+import com.ctrip.framework.apollo.configservice.util.ConfigQueryRateLimiter;
 import com.ctrip.framework.apollo.configservice.util.InstanceConfigAuditUtil;
 import com.ctrip.framework.apollo.configservice.util.NamespaceUtil;
 import com.ctrip.framework.apollo.core.ConfigConsts;
@@ -23,6 +31,8 @@ import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
@@ -30,6 +40,8 @@ import javax.servlet.http.HttpServletResponse;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
@@ -68,7 +80,14 @@ public class ConfigControllerTest {
   @Mock
   private InstanceConfigAuditUtil instanceConfigAuditUtil;
   @Mock
+  private ConfigQueryRateLimiter configQueryRateLimiter;
+  @Mock
   private HttpServletRequest someRequest;
+  @Mock
+  private GrayReleaseRulesHolder grayReleaseRulesHolder;
+  @Mock
+  private ReleaseService releaseService;
+  private ReleasePropagationTracker releasePropagationTracker;
   private Gson gson = new Gson();
 
   @Before
@@ -78,7 +97,12 @@ public class ConfigControllerTest {
     ReflectionTestUtils.setField(configController, "appNamespaceService", appNamespaceService);
     ReflectionTestUtils.setField(configController, "namespaceUtil", namespaceUtil);
     ReflectionTestUtils.setField(configController, "instanceConfigAuditUtil", instanceConfigAuditUtil);
+    ReflectionTestUtils.setField(configController, "configQueryRateLimiter", configQueryRateLimiter);
+    releasePropagationTracker = new ReleasePropagationTracker();
+    ReflectionTestUtils.setField(configController, "releasePropagationTracker", releasePropagationTracker);
     ReflectionTestUtils.setField(configController, "gson", gson);
+    ReflectionTestUtils.setField(configController, "grayReleaseRulesHolder", grayReleaseRulesHolder);
+    ReflectionTestUtils.setField(configController, "releaseService", releaseService);
 
     someAppId = "1";
     someClusterName = "someClusterName";
@@ -103,6 +127,32 @@ public class ConfigControllerTest {
     when(configController.transformMessages(someMessagesAsString)).thenReturn(someNotificationMessages);
   }
 
+  @Test
+  public void testQueryConfigThrottled() throws Exception {
+    String someClientSideReleaseKey = "1";
+    HttpServletResponse someResponse = mock(HttpServletResponse.class);
+    HttpServletResponse anotherResponse = mock(HttpServletResponse.class);
+
+    when(configQueryRateLimiter.isThrottled(someAppId, someClientIp, someRequest)).thenReturn(true);
+
+    ApolloConfig result = configController.queryConfig(someAppId, someClusterName,
+        defaultNamespaceName, someDataCenter, someClientSideReleaseKey, someClientIp, someMessagesAsString,
+        someRequest, someResponse);
+    ApolloConfig anotherResult = configController.queryConfig(someAppId, someClusterName,
+        defaultNamespaceName, someDataCenter, "-1", someClientIp, someMessagesAsString,
+        someRequest, anotherResponse);
+
+    assertNull(result);
+    assertNull(anotherResult);
+    verify(someResponse, times(1)).setStatus(429);
+    verify(someResponse, times(1)).setHeader("Retry-After", "1");
+    verify(someResponse, never()).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    verify(anotherResponse, times(1)).setStatus(429);
+    verify(anotherResponse, times(1)).setHeader("Retry-After", "1");
+    verify(configService, never()).loadConfig(anyString(), anyString(), anyString(), anyString(), anyString(),
+        anyString(), any(ApolloNotificationMessages.class));
+  }
+
   @Test
   public void testQueryConfig() throws Exception {
     String someClientSideReleaseKey = "1";
@@ -214,6 +264,56 @@ public class ConfigControllerTest {
     verify(someResponse, times(1)).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
   }
 
+  @Test
+  public void testQueryConfigTracksReleasePropagation() throws Exception {
+    String someClientSideReleaseKey = "1";
+    String someServerSideNewReleaseKey = "2";
+    long somePublishTime = System.currentTimeMillis() - 100000;
+    long someLatency = 1200;
+    HttpServletResponse someResponse = mock(HttpServletResponse.class);
+
+    when(configService.loadConfig(someAppId, someClientIp, someAppId, someClusterName, defaultNamespaceName,
+        someDataCenter, someNotificationMessages)).thenReturn(someRelease);
+    when(someRelease.getReleaseKey()).thenReturn(someServerSideNewReleaseKey);
+    when(someRelease.getDataChangeCreatedTime()).thenReturn(new Date(somePublishTime));
+    when(someRequest.getParameter("releaseAppliedTime")).thenReturn(String.valueOf(somePublishTime + someLatency));
+
+    configController.queryConfig(someAppId, someClusterName, defaultNamespaceName, someDataCenter,
+        someClientSideReleaseKey, someClientIp, someMessagesAsString, someRequest, someResponse);
+    configController.queryConfig(someAppId, someClusterName, defaultNamespaceName, someDataCenter,
+        someServerSideNewReleaseKey, someClientIp, someMessagesAsString, someRequest, someResponse);
+
+    assertEquals(1, releasePropagationTracker.getHistogram(Hop.DELIVERED).getCount());
+    assertEquals(1, releasePropagationTracker.getHistogram(Hop.APPLIED).getCount());
+    assertEquals(someLatency, releasePropagationTracker.getHistogram(Hop.APPLIED).getMax());
+  }
+
+  @Test
+  public void testQueryConfigTracksAppliedReleaseWhenNewReleaseReturned() throws Exception {
+    String someClientSideReleaseKey = "1";
+    String someServerSideNewReleaseKey = "2";
+    long somePublishTime = System.currentTimeMillis() - 100000;
+    long someLatency = 1200;
+    HttpServletResponse someResponse = mock(HttpServletResponse.class);
+    ReleaseHeader someClientSideRelease = new ReleaseHeader(1, someClientSideReleaseKey, "someName", someAppId,
+        someClusterName, defaultNamespaceName, null, false, null, new Date(somePublishTime), null, null);
+
+    when(configService.loadConfig(someAppId, someClientIp, someAppId, someClusterName, defaultNamespaceName,
+        someDataCenter, someNotificationMessages)).thenReturn(someRelease);
+    when(someRelease.getReleaseKey()).thenReturn(someServerSideNewReleaseKey);
+    when(someRelease.getDataChangeCreatedTime()).thenReturn(new Date());
+    when(releaseService.findReleaseHeadersByReleaseKeys(Sets.newHashSet(someClientSideReleaseKey)))
+        .thenReturn(Lists.newArrayList(someClientSideRelease));
+    when(someRequest.getParameter("releaseAppliedTime")).thenReturn(String.valueOf(somePublishTime + someLatency));
+
+    ApolloConfig result = configController.queryConfig(someAppId, someClusterName, defaultNamespaceName,
+        someDataCenter, someClientSideReleaseKey, someClientIp, someMessagesAsString, someRequest, someResponse);
+
+    assertEquals(someServerSideNewReleaseKey, result.getReleaseKey());
+    assertEquals(1, releasePropagationTracker.getHistogram(Hop.APPLIED).getCount());
+    assertEquals(someLatency, releasePropagationTracker.getHistogram(Hop.APPLIED).getMax());
+  }
+
   @Test
   public void testQueryConfigWithAppOwnNamespace() throws Exception {
     String someClientSideReleaseKey = "1";
@@ -383,6 +483,44 @@ public class ConfigControllerTest {
     assertEquals(value2, result.get(key2));
   }
 
+  @Test
+  public void testMergeReleaseConfigurationsWithCache() throws Exception {
+    Gson gson = new Gson();
+    String someKey = "someKey";
+    String someValue = "someValue";
+    String anotherValue = "anotherValue";
+    long someReleaseId = 1;
+    long somePublicReleaseId = 2;
+    long anotherReleaseId = 3;
+
+    Release someAppRelease = spy(new Release());
+    someAppRelease.setId(someReleaseId);
+    someAppRelease.setConfigurations(gson.toJson(ImmutableMap.of(someKey, someValue)));
+
+    Release somePublicRelease = spy(new Release());
+    somePublicRelease.setId(somePublicReleaseId);
+    somePublicRelease.setConfigurations(gson.toJson(ImmutableMap.of(someKey, anotherValue)));
+
+    Map<String, String> result =
+        configController.mergeReleaseConfigurations(Lists.newArrayList(someAppRelease, somePublicRelease));
+    Map<String, String> anotherResult =
+        configController.mergeReleaseConfigurations(Lists.newArrayList(someAppRelease, somePublicRelease));
+
+    assertEquals(someValue, result.get(someKey));
+    assertSame(result, anotherResult);
+    verify(someAppRelease, times(1)).getConfigurations();
+    verify(somePublicRelease, times(1)).getConfigurations();
+
+    Release anotherAppRelease = new Release();
+    anotherAppRelease.setId(anotherReleaseId);
+    anotherAppRelease.setConfigurations(gson.toJson(ImmutableMap.of(someKey, anotherValue)));
+
+    Map<String, String> republishedResult =
+        configController.mergeReleaseConfigurations(Lists.newArrayList(anotherAppRelease, somePublicRelease));
+
+    assertEquals(anotherValue, republishedResult.get(someKey));
+  }
+
   @Test(expected = JsonSyntaxException.class)
   public void testTransformConfigurationToMapFailed() throws Exception {
     String someInvalidConfiguration = "xxx";
@@ -439,6 +577,40 @@ public class ConfigControllerTest {
     assertEquals("foo", result.getConfigurations().get("apollo.public.bar"));
   }
 
+  @Test
+  public void testLoadConfigOnceForClientsOfSameRelease() throws Exception {
+    String someServerSideNewReleaseKey = "2";
+    String anotherClientIp = "anotherClientIp";
+    String someGrayClientIp = "someGrayClientIp";
+    Map<String, List<Release>> loadedReleases = Maps.newHashMap();
+
+    when(configService.loadConfig(eq(someAppId), anyString(), eq(someAppId), eq(someClusterName),
+        eq(defaultNamespaceName), eq(someDataCenter), eq(someNotificationMessages))).thenReturn(someRelease);
+    when(grayReleaseRulesHolder.hasGrayReleaseRule(someAppId, someGrayClientIp, defaultNamespaceName))
+        .thenReturn(true);
+    when(someRelease.getReleaseKey()).thenReturn(someServerSideNewReleaseKey);
+    when(someRelease.getNamespaceName()).thenReturn(defaultNamespaceName);
+
+    List<ApolloConfig> results = Lists.newArrayList();
+    for (String clientIp : Lists.newArrayList(someClientIp, anotherClientIp, someGrayClientIp)) {
+      results.add(configController.loadConfig(someAppId, someClusterName, defaultNamespaceName, someDataCenter,
+          clientIp, someNotificationMessages, loadedReleases));
+    }
+
+    verify(configService, times(1)).loadConfig(someAppId, someClientIp, someAppId, someClusterName,
+        defaultNamespaceName, someDataCenter, someNotificationMessages);
+    verify(configService, never()).loadConfig(someAppId, anotherClientIp, someAppId, someClusterName,
+        defaultNamespaceName, someDataCenter, someNotificationMessages);
+    verify(configService, times(1)).loadConfig(someAppId, someGrayClientIp, someAppId, someClusterName,
+        defaultNamespaceName, someDataCenter, someNotificationMessages);
+    verify(instanceConfigAuditUtil, times(3)).audit(eq(someAppId), eq(someClusterName), eq(someDataCenter),
+        anyString(), eq(someAppId), eq(someClusterName), eq(defaultNamespaceName), eq(someServerSideNewReleaseKey));
+    for (ApolloConfig result : results) {
+      assertEquals(someServerSideNewReleaseKey, result.getReleaseKey());
+      assertEquals("foo", result.getConfigurations().get("apollo.bar"));
+    }
+  }
+
   @Test
   public void testTransformMessages() throws Exception {
     String someKey = "someKey";
@@ -11,8 +11,11 @@ import com.google.gson.Gson;
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
 import com.ctrip.framework.apollo.biz.grayReleaseRule.GrayReleaseRulesHolder;
 import com.ctrip.framework.apollo.biz.message.Topics;
+import com.ctrip.framework.apollo.configservice.util.ConfigFileTranscoder;
+import com.ctrip.framework.apollo.configservice.util.ConfigQueryRateLimiter;
 import com.ctrip.framework.apollo.configservice.util.NamespaceUtil;
 import com.ctrip.framework.apollo.configservice.util.WatchKeysUtil;
+import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.dto.ApolloConfig;
 
 import org.junit.Before;
@@ -20,6 +23,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.util.ReflectionTestUtils;
@@ -52,6 +56,8 @@ public class ConfigFileControllerTest {
   private NamespaceUtil namespaceUtil;
   @Mock
   private GrayReleaseRulesHolder grayReleaseRulesHolder;
+  @Mock
+  private ConfigQueryRateLimiter configQueryRateLimiter;
   private ConfigFileController configFileController;
   private String someAppId;
   private String someClusterName;
@@ -72,6 +78,8 @@ public class ConfigFileControllerTest {
     ReflectionTestUtils.setField(configFileController, "watchKeysUtil", watchKeysUtil);
     ReflectionTestUtils.setField(configFileController, "namespaceUtil", namespaceUtil);
     ReflectionTestUtils.setField(configFileController, "grayReleaseRulesHolder", grayReleaseRulesHolder);
+    ReflectionTestUtils.setField(configFileController, "configQueryRateLimiter", configQueryRateLimiter);
+    ReflectionTestUtils.setField(configFileController, "configFileTranscoder", new ConfigFileTranscoder());
 
     someAppId = "someAppId";
     someClusterName = "someClusterName";
@@ -121,7 +129,7 @@ public class ConfigFileControllerTest {
     ResponseEntity<String> response =
         configFileController
             .queryConfigAsProperties(someAppId, someClusterName, someNamespace, someDataCenter,
-                someClientIp, someRequest, someResponse);
+                someClientIp, false, someRequest, someResponse);
 
     assertEquals(2, watchedKeys2CacheKey.size());
     assertEquals(2, cacheKey2WatchedKeys.size());
@@ -137,7 +145,7 @@ public class ConfigFileControllerTest {
     ResponseEntity<String> anotherResponse =
         configFileController
             .queryConfigAsProperties(someAppId, someClusterName, someNamespace, someDataCenter,
-                someClientIp, someRequest, someResponse);
+                someClientIp, false, someRequest, someResponse);
 
     assertEquals(response, anotherResponse);
 
@@ -146,6 +154,40 @@ public class ConfigFileControllerTest {
             someRequest, someResponse);
   }
 
+  @Test
+  public void testQueryConfigThrottledOnlyOnCacheMiss() throws Exception {
+    String anotherNamespace = "anotherNamespace";
+    ApolloConfig someApolloConfig = mock(ApolloConfig.class);
+    when(someApolloConfig.getConfigurations()).thenReturn(ImmutableMap.of("someKey", "someValue"));
+    when(configController
+        .queryConfig(someAppId, someClusterName, someNamespace, someDataCenter, "-1", someClientIp, null,
+            someRequest, someResponse)).thenReturn(someApolloConfig);
+    when(namespaceUtil.filterNamespaceName(anotherNamespace)).thenReturn(anotherNamespace);
+    when(namespaceUtil.normalizeNamespace(someAppId, anotherNamespace)).thenReturn(anotherNamespace);
+    when(watchKeysUtil.assembleAllWatchKeys(someAppId, someClusterName, someNamespace, someDataCenter))
+        .thenReturn(Sets.newHashSet("someWatchKey"));
+
+    ResponseEntity<String> response = configFileController.queryConfigAsProperties(someAppId, someClusterName,
+        someNamespace, someDataCenter, someClientIp, false, someRequest, someResponse);
+
+    // 之后的请求被限流，ConfigController 不再返回配置
+    //the following requests are throttled, so ConfigController returns no config
+    when(configQueryRateLimiter.isThrottled(someAppId, someClientIp, someRequest)).thenReturn(true);
+
+    ResponseEntity<String> cachedResponse = configFileController.queryConfigAsProperties(someAppId,
+        someClusterName, someNamespace, someDataCenter, someClientIp, false, someRequest, someResponse);
+    ResponseEntity<String> throttledResponse = configFileController.queryConfigAsProperties(someAppId,
+        someClusterName, anotherNamespace, someDataCenter, someClientIp, false, someRequest, someResponse);
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertEquals(response, cachedResponse);
+    assertEquals(HttpStatus.TOO_MANY_REQUESTS, throttledResponse.getStatusCode());
+    assertEquals("1", throttledResponse.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    verify(configController, times(1))
+        .queryConfig(someAppId, someClusterName, someNamespace, someDataCenter, "-1", someClientIp, null,
+            someRequest, someResponse);
+  }
+
   @Test
   public void testQueryConfigAsJson() throws Exception {
     String someKey = "someKey";
@@ -170,12 +212,44 @@ public class ConfigFileControllerTest {
     ResponseEntity<String> response =
         configFileController
             .queryConfigAsJson(someAppId, someClusterName, someNamespace, someDataCenter,
-                someClientIp, someRequest, someResponse);
+                someClientIp, false, someRequest, someResponse);
 
     assertEquals(HttpStatus.OK, response.getStatusCode());
     assertEquals(configurations, gson.fromJson(response.getBody(), responseType));
   }
 
+  @Test
+  public void testQueryYamlNamespaceAsTranscodedProperties() throws Exception {
+    String someYamlNamespace = "someNamespace.yml";
+    String someWatchKey = "someWatchKey";
+
+    when(namespaceUtil.filterNamespaceName(someYamlNamespace)).thenReturn(someYamlNamespace);
+    when(namespaceUtil.normalizeNamespace(someAppId, someYamlNamespace)).thenReturn(someYamlNamespace);
+    ApolloConfig someApolloConfig = mock(ApolloConfig.class);
+    when(someApolloConfig.getReleaseKey()).thenReturn("someReleaseKey");
+    when(someApolloConfig.getConfigurations())
+        .thenReturn(ImmutableMap.of(ConfigConsts.CONFIG_FILE_CONTENT_KEY, "some:\n  key: someValue\n"));
+    when(configController
+        .queryConfig(someAppId, someClusterName, someYamlNamespace, someDataCenter, "-1", someClientIp, null,
+            someRequest, someResponse)).thenReturn(someApolloConfig);
+    when(watchKeysUtil
+        .assembleAllWatchKeys(someAppId, someClusterName, someYamlNamespace, someDataCenter))
+        .thenReturn(Sets.newHashSet(someWatchKey));
+
+    ResponseEntity<String> response =
+        configFileController
+            .queryConfigAsProperties(someAppId, someClusterName, someYamlNamespace, someDataCenter,
+                someClientIp, true, someRequest, someResponse);
+    ResponseEntity<String> untranscodedResponse =
+        configFileController
+            .queryConfigAsProperties(someAppId, someClusterName, someYamlNamespace, someDataCenter,
+                someClientIp, false, someRequest, someResponse);
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertEquals("some.key=someValue", response.getBody().trim());
+    assertTrue(untranscodedResponse.getBody().startsWith(ConfigConsts.CONFIG_FILE_CONTENT_KEY + "="));
+  }
+
   @Test
   public void testQueryConfigWithGrayRelease() throws Exception {
     String someKey = "someKey";
@@ -198,12 +272,12 @@ public class ConfigFileControllerTest {
     ResponseEntity<String> response =
         configFileController
             .queryConfigAsJson(someAppId, someClusterName, someNamespace, someDataCenter,
-                someClientIp, someRequest, someResponse);
+                someClientIp, false, someRequest, someResponse);
 
     ResponseEntity<String> anotherResponse =
         configFileController
             .queryConfigAsJson(someAppId, someClusterName, someNamespace, someDataCenter,
-                someClientIp, someRequest, someResponse);
+                someClientIp, false, someRequest, someResponse);
 
     verify(configController, times(2))
         .queryConfig(someAppId, someClusterName, someNamespace, someDataCenter, "-1", someClientIp, null,
@@ -7,23 +7,29 @@ import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.gson.Gson;
 
 import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.Release;
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.message.ReleasePropagationTracker;
 import com.ctrip.framework.apollo.biz.message.Topics;
 import com.ctrip.framework.apollo.biz.utils.EntityManagerUtil;
 import com.ctrip.framework.apollo.configservice.service.ReleaseMessageServiceWithCache;
 import com.ctrip.framework.apollo.configservice.util.NamespaceUtil;
 import com.ctrip.framework.apollo.configservice.util.WatchKeysUtil;
 import com.ctrip.framework.apollo.core.ConfigConsts;
+import com.ctrip.framework.apollo.core.dto.ApolloConfig;
 import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.util.ReflectionTestUtils;
@@ -31,12 +37,18 @@ import org.springframework.web.context.request.async.DeferredResult;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -66,6 +78,8 @@ public class NotificationControllerV2Test {
   private WatchKeysUtil watchKeysUtil;
   @Mock
   private BizConfig bizConfig;
+  @Mock
+  private ConfigController configController;
 
   private Gson gson;
 
@@ -85,6 +99,9 @@ public class NotificationControllerV2Test {
     ReflectionTestUtils.setField(controller, "watchKeysUtil", watchKeysUtil);
     ReflectionTestUtils.setField(controller, "gson", gson);
     ReflectionTestUtils.setField(controller, "bizConfig", bizConfig);
+    ReflectionTestUtils.setField(controller, "configController", configController);
+    ReflectionTestUtils.setField(controller, "releasePropagationTracker", new ReleasePropagationTracker());
+    ReflectionTestUtils.setField(controller, "configLoadExecutorService", MoreExecutors.newDirectExecutorService());
 
     someAppId = "someAppId";
     someCluster = "someCluster";
@@ -123,7 +140,7 @@ public class NotificationControllerV2Test {
     DeferredResult<ResponseEntity<List<ApolloConfigNotification>>>
         deferredResult = controller
         .pollNotification(someAppId, someCluster, notificationAsString, someDataCenter,
-            someClientIp);
+            someClientIp, false);
 
     assertEquals(watchKeysMap.size(), deferredResults.size());
 
@@ -152,7 +169,7 @@ public class NotificationControllerV2Test {
     DeferredResult<ResponseEntity<List<ApolloConfigNotification>>>
         deferredResult = controller
         .pollNotification(someAppId, someCluster, notificationAsString, someDataCenter,
-            someClientIp);
+            someClientIp, false);
 
     assertEquals(watchKeysMap.size(), deferredResults.size());
 
@@ -196,7 +213,7 @@ public class NotificationControllerV2Test {
     DeferredResult<ResponseEntity<List<ApolloConfigNotification>>>
         deferredResult = controller
         .pollNotification(someAppId, someCluster, notificationAsString, someDataCenter,
-            someClientIp);
+            someClientIp, false);
 
     assertEquals(watchKeysMap.size(), deferredResults.size());
 
@@ -245,7 +262,7 @@ public class NotificationControllerV2Test {
     DeferredResult<ResponseEntity<List<ApolloConfigNotification>>>
         deferredResult = controller
         .pollNotification(someAppId, someCluster, notificationAsString, someDataCenter,
-            someClientIp);
+            someClientIp, false);
 
     ResponseEntity<List<ApolloConfigNotification>> result =
         (ResponseEntity<List<ApolloConfigNotification>>) deferredResult.getResult();
@@ -284,7 +301,7 @@ public class NotificationControllerV2Test {
     DeferredResult<ResponseEntity<List<ApolloConfigNotification>>>
         deferredResult = controller
         .pollNotification(someAppId, someCluster, notificationAsString, someDataCenter,
-            someClientIp);
+            someClientIp, false);
 
     assertEquals(watchKeysMap.size(), deferredResults.size());
 
@@ -308,6 +325,86 @@ public class NotificationControllerV2Test {
     assertEquals(someId, notificationMessages.get(anotherWatchKey).longValue());
   }
 
+  @Test
+  public void testPollNotificationWithConfigsAndHandleMessage() throws Exception {
+    String someWatchKey = Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR)
+        .join(someAppId, someCluster, defaultNamespace);
+    ApolloConfig someConfig = new ApolloConfig(someAppId, someCluster, defaultNamespace, "someReleaseKey");
+
+    Multimap<String, String> watchKeysMap =
+        assembleMultiMap(defaultNamespace, Lists.newArrayList(someWatchKey));
+
+    String notificationAsString =
+        transformApolloConfigNotificationsToString(defaultNamespace, someNotificationId);
+
+    when(watchKeysUtil
+        .assembleAllWatchKeys(someAppId, someCluster, Sets.newHashSet(defaultNamespace),
+            someDataCenter)).thenReturn(watchKeysMap);
+    when(configController.loadConfig(eq(someAppId), eq(someCluster), eq(defaultNamespace), eq(someDataCenter),
+        eq(someClientIp), any(ApolloNotificationMessages.class), any(Map.class))).thenReturn(someConfig);
+
+    DeferredResult<ResponseEntity<List<ApolloConfigNotification>>>
+        deferredResult = controller
+        .pollNotification(someAppId, someCluster, notificationAsString, someDataCenter,
+            someClientIp, true);
+    DeferredResult<ResponseEntity<List<ApolloConfigNotification>>>
+        anotherDeferredResult = controller
+        .pollNotification(someAppId, someCluster, notificationAsString, someDataCenter,
+            someClientIp, false);
+
+    long someId = 1;
+    ReleaseMessage someReleaseMessage = new ReleaseMessage(someWatchKey);
+    someReleaseMessage.setId(someId);
+
+    controller.handleMessage(someReleaseMessage, Topics.APOLLO_RELEASE_TOPIC);
+
+    ResponseEntity<List<ApolloConfigNotification>> response =
+        (ResponseEntity<List<ApolloConfigNotification>>) deferredResult.getResult();
+    ResponseEntity<List<ApolloConfigNotification>> anotherResponse =
+        (ResponseEntity<List<ApolloConfigNotification>>) anotherDeferredResult.getResult();
+
+    assertEquals(1, response.getBody().size());
+    assertEquals(someId, response.getBody().get(0).getNotificationId());
+    assertSame(someConfig, response.getBody().get(0).getConfig());
+    assertEquals(1, anotherResponse.getBody().size());
+    assertNull(anotherResponse.getBody().get(0).getConfig());
+  }
+
+  @Test
+  public void testPollNotificationWithConfigsLoadsReleasesOnceForAllClients() throws Exception {
+    String someWatchKey = Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR)
+        .join(someAppId, someCluster, defaultNamespace);
+    int someClients = 5;
+
+    Multimap<String, String> watchKeysMap =
+        assembleMultiMap(defaultNamespace, Lists.newArrayList(someWatchKey));
+
+    String notificationAsString =
+        transformApolloConfigNotificationsToString(defaultNamespace, someNotificationId);
+
+    when(watchKeysUtil
+        .assembleAllWatchKeys(someAppId, someCluster, Sets.newHashSet(defaultNamespace),
+            someDataCenter)).thenReturn(watchKeysMap);
+
+    for (int i = 0; i < someClients; i++) {
+      controller.pollNotification(someAppId, someCluster, notificationAsString, someDataCenter,
+          someClientIp + i, true);
+    }
+
+    ReleaseMessage someReleaseMessage = new ReleaseMessage(someWatchKey);
+    someReleaseMessage.setId(1);
+
+    controller.handleMessage(someReleaseMessage, Topics.APOLLO_RELEASE_TOPIC);
+
+    ArgumentCaptor<Map> loadedReleasesCaptor = ArgumentCaptor.forClass(Map.class);
+    verify(configController, times(someClients)).loadConfig(eq(someAppId), eq(someCluster), eq(defaultNamespace),
+        eq(someDataCenter), any(String.class), any(ApolloNotificationMessages.class), loadedReleasesCaptor.capture());
+    List<Map> loadedReleases = loadedReleasesCaptor.getAllValues();
+    for (Map<String, List<Release>> someLoadedReleases : loadedReleases) {
+      assertSame(loadedReleases.get(0), someLoadedReleases);
+    }
+  }
+
   @Test
   public void testPollNotificationWithHandleMessageInBatch() throws Exception {
     String someWatchKey = Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR)
@@ -331,11 +428,11 @@ public class NotificationControllerV2Test {
     DeferredResult<ResponseEntity<List<ApolloConfigNotification>>>
         deferredResult = controller
         .pollNotification(someAppId, someCluster, notificationAsString, someDataCenter,
-            someClientIp);
+            someClientIp, false);
     DeferredResult<ResponseEntity<List<ApolloConfigNotification>>>
         anotherDeferredResult = controller
         .pollNotification(someAppId, someCluster, notificationAsString, someDataCenter,
-            someClientIp);
+            someClientIp, false);
 
     long someId = 1;
     ReleaseMessage someReleaseMessage = new ReleaseMessage(someWatchKey);
@@ -352,6 +449,75 @@ public class NotificationControllerV2Test {
     assertTrue(deferredResult.hasResult() && anotherDeferredResult.hasResult());
   }
 
+  @Test
+  public void testPollNotificationWithHandleMessageDebounced() throws Exception {
+    String someWatchKey = Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR)
+        .join(someAppId, someCluster, defaultNamespace);
+    int someDebounceInterval = 50;
+    ScheduledExecutorService debounceExecutorService = mock(ScheduledExecutorService.class);
+    ReflectionTestUtils.setField(controller, "debounceExecutorService", debounceExecutorService);
+
+    Multimap<String, String> watchKeysMap =
+        assembleMultiMap(defaultNamespace, Lists.newArrayList(someWatchKey));
+
+    String notificationAsString =
+        transformApolloConfigNotificationsToString(defaultNamespace, someNotificationId);
+
+    when(watchKeysUtil
+        .assembleAllWatchKeys(someAppId, someCluster, Sets.newHashSet(defaultNamespace),
+            someDataCenter)).thenReturn(watchKeysMap);
+    when(bizConfig.releaseMessageNotificationDebounceIntervalInMilli()).thenReturn(someDebounceInterval);
+
+    //an isolated release is notified at once
+    DeferredResult<ResponseEntity<List<ApolloConfigNotification>>> deferredResult = controller
+        .pollNotification(someAppId, someCluster, notificationAsString, someDataCenter, someClientIp, false);
+
+    controller.handleMessage(assembleReleaseMessage(someWatchKey, 1), Topics.APOLLO_RELEASE_TOPIC);
+
+    assertEquals(1, getNotificationId(deferredResult));
+    ArgumentCaptor<Runnable> windowClose = ArgumentCaptor.forClass(Runnable.class);
+    verify(debounceExecutorService, times(1))
+        .schedule(windowClose.capture(), eq((long) someDebounceInterval), eq(TimeUnit.MILLISECONDS));
+
+    //the releases following within the window are collapsed into one when it closes
+    DeferredResult<ResponseEntity<List<ApolloConfigNotification>>> anotherDeferredResult = controller
+        .pollNotification(someAppId, someCluster, notificationAsString, someDataCenter, someClientIp, false);
+
+    controller.handleMessage(assembleReleaseMessage(someWatchKey, 2), Topics.APOLLO_RELEASE_TOPIC);
+    controller.handleMessage(assembleReleaseMessage(someWatchKey, 3), Topics.APOLLO_RELEASE_TOPIC);
+
+    assertFalse(anotherDeferredResult.hasResult());
+
+    windowClose.getValue().run();
+
+    assertEquals(3, getNotificationId(anotherDeferredResult));
+    verify(debounceExecutorService, times(2))
+        .schedule(windowClose.capture(), eq((long) someDebounceInterval), eq(TimeUnit.MILLISECONDS));
+
+    //the window closes without pending releases, so the next release is notified at once
+    windowClose.getValue().run();
+
+    DeferredResult<ResponseEntity<List<ApolloConfigNotification>>> yetAnotherDeferredResult = controller
+        .pollNotification(someAppId, someCluster, notificationAsString, someDataCenter, someClientIp, false);
+
+    controller.handleMessage(assembleReleaseMessage(someWatchKey, 4), Topics.APOLLO_RELEASE_TOPIC);
+
+    assertEquals(4, getNotificationId(yetAnotherDeferredResult));
+  }
+
+  private ReleaseMessage assembleReleaseMessage(String watchKey, long id) {
+    ReleaseMessage releaseMessage = new ReleaseMessage(watchKey);
+    releaseMessage.setId(id);
+    return releaseMessage;
+  }
+
+  private long getNotificationId(DeferredResult<ResponseEntity<List<ApolloConfigNotification>>> deferredResult) {
+    ResponseEntity<List<ApolloConfigNotification>> response =
+        (ResponseEntity<List<ApolloConfigNotification>>) deferredResult.getResult();
+    assertEquals(1, response.getBody().size());
+    return response.getBody().get(0).getNotificationId();
+  }
+
   private String transformApolloConfigNotificationsToString(
       String namespace, long notificationId) {
     List<ApolloConfigNotification> notifications =
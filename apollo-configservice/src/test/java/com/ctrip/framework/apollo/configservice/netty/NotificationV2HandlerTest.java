@@ -0,0 +1,258 @@
+package com.ctrip.framework.apollo.configservice.netty;
+
+import com.google.common.collect.Queues;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import com.ctrip.framework.apollo.common.exception.BadRequestException;
+import com.ctrip.framework.apollo.configservice.controller.NotificationControllerV2;
+import com.ctrip.framework.apollo.configservice.wrapper.DeferredResultWrapper;
+import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.QueryStringEncoder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class NotificationV2HandlerTest {
+  private static final Type notificationsType = new TypeToken<List<ApolloConfigNotification>>() {
+  }.getType();
+
+  @Mock
+  private NotificationControllerV2 notificationControllerV2;
+  private EmbeddedChannel channel;
+  private Queue<Runnable> registrations;
+  private boolean rejectRegistrations;
+  private DeferredResultWrapper someWrapper;
+  private AtomicInteger completions;
+  private String someAppId;
+  private String someCluster;
+  private String someNamespace;
+  private String someNotifications;
+  private Gson gson;
+
+  @Before
+  public void setUp() throws Exception {
+    registrations = Queues.newArrayDeque();
+    rejectRegistrations = false;
+    channel = new EmbeddedChannel(new NotificationV2Handler(notificationControllerV2, task -> {
+      if (rejectRegistrations) {
+        throw new RejectedExecutionException();
+      }
+      registrations.add(task);
+    }));
+    someWrapper = new DeferredResultWrapper();
+    completions = new AtomicInteger();
+    someWrapper.onCompletion(completions::incrementAndGet);
+
+    someAppId = "someAppId";
+    someCluster = "someCluster";
+    someNamespace = "someNamespace";
+    gson = new Gson();
+    someNotifications = gson.toJson(new ApolloConfigNotification[]{new ApolloConfigNotification(someNamespace, -1)});
+
+    when(notificationControllerV2.registerLongPoll(someAppId, someCluster, someNotifications, null, null, false))
+        .thenReturn(someWrapper);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void testPollNotificationWithResultSetAlready() throws Exception {
+    long someId = 1;
+    someWrapper.setResult(new ApolloConfigNotification(someNamespace, someId));
+
+    channel.writeInbound(assembleRequest(someAppId, someCluster, someNotifications));
+    runRegistrations();
+
+    FullHttpResponse response = channel.readOutbound();
+    assertEquals(HttpResponseStatus.OK, response.status());
+    List<ApolloConfigNotification> notifications = readNotifications(response);
+    assertEquals(1, notifications.size());
+    assertEquals(someNamespace, notifications.get(0).getNamespaceName());
+    assertEquals(someId, notifications.get(0).getNotificationId());
+    assertEquals(1, completions.get());
+    response.release();
+  }
+
+  @Test
+  public void testPollNotificationParkedAndNotified() throws Exception {
+    long someId = 1;
+
+    channel.writeInbound(assembleRequest(someAppId, someCluster, someNotifications));
+    runRegistrations();
+
+    assertNull(channel.readOutbound());
+    assertEquals(0, completions.get());
+
+    someWrapper.setResult(new ApolloConfigNotification(someNamespace, someId));
+    channel.runPendingTasks();
+
+    FullHttpResponse response = channel.readOutbound();
+    assertEquals(HttpResponseStatus.OK, response.status());
+    assertEquals(someId, readNotifications(response).get(0).getNotificationId());
+    assertEquals(1, completions.get());
+    response.release();
+  }
+
+  @Test
+  public void testPollNotificationExpired() throws Exception {
+    channel.writeInbound(assembleRequest(someAppId, someCluster, someNotifications));
+    runRegistrations();
+
+    someWrapper.expire();
+    channel.runPendingTasks();
+
+    FullHttpResponse response = channel.readOutbound();
+    assertEquals(HttpResponseStatus.NOT_MODIFIED, response.status());
+    assertEquals(0, response.content().readableBytes());
+    assertEquals(1, completions.get());
+    response.release();
+  }
+
+  @Test
+  public void testPollNotificationWithClientDisconnected() throws Exception {
+    channel.writeInbound(assembleRequest(someAppId, someCluster, someNotifications));
+    runRegistrations();
+
+    channel.close();
+
+    assertEquals(1, completions.get());
+  }
+
+  @Test
+  public void testPollNotificationWithBadRequest() throws Exception {
+    channel.writeInbound(assembleRequest(someAppId, someCluster, null));
+
+    FullHttpResponse response = channel.readOutbound();
+    assertEquals(HttpResponseStatus.BAD_REQUEST, response.status());
+    verify(notificationControllerV2, never())
+        .registerLongPoll(anyString(), anyString(), anyString(), anyString(), anyString(), anyBoolean());
+    response.release();
+  }
+
+  @Test
+  public void testPollNotificationRejectedByController() throws Exception {
+    when(notificationControllerV2.registerLongPoll(someAppId, someCluster, someNotifications, null, null, false))
+        .thenThrow(new BadRequestException("someError"));
+
+    channel.writeInbound(assembleRequest(someAppId, someCluster, someNotifications));
+    runRegistrations();
+
+    FullHttpResponse response = channel.readOutbound();
+    assertEquals(HttpResponseStatus.BAD_REQUEST, response.status());
+    response.release();
+  }
+
+  @Test
+  public void testPollNotificationWithTooManyRequests() throws Exception {
+    int someRetryAfter = 3;
+    someWrapper.setTooManyRequestsResult(someRetryAfter);
+
+    channel.writeInbound(assembleRequest(someAppId, someCluster, someNotifications));
+    runRegistrations();
+
+    FullHttpResponse response = channel.readOutbound();
+    assertEquals(HttpResponseStatus.TOO_MANY_REQUESTS, response.status());
+    assertEquals(String.valueOf(someRetryAfter), response.headers().get(HttpHeaderNames.RETRY_AFTER));
+    response.release();
+  }
+
+  @Test
+  public void testPollNotificationRegisteredOffTheEventLoop() throws Exception {
+    long someId = 1;
+    someWrapper.setResult(new ApolloConfigNotification(someNamespace, someId));
+
+    channel.writeInbound(assembleRequest(someAppId, someCluster, someNotifications));
+
+    verify(notificationControllerV2, never())
+        .registerLongPoll(anyString(), anyString(), anyString(), anyString(), anyString(), anyBoolean());
+    assertNull(channel.readOutbound());
+
+    Thread registrationThread = new Thread(this::runRegistrations);
+    registrationThread.start();
+    registrationThread.join();
+    channel.runPendingTasks();
+
+    FullHttpResponse response = channel.readOutbound();
+    assertEquals(HttpResponseStatus.OK, response.status());
+    assertEquals(someId, readNotifications(response).get(0).getNotificationId());
+    assertEquals(1, completions.get());
+    response.release();
+  }
+
+  @Test
+  public void testPollNotificationWithClientDisconnectedWhileRegistering() throws Exception {
+    channel.writeInbound(assembleRequest(someAppId, someCluster, someNotifications));
+
+    channel.close();
+    runRegistrations();
+
+    assertNull(channel.readOutbound());
+    assertEquals(1, completions.get());
+  }
+
+  @Test
+  public void testPollNotificationWithRegistrationRejected() throws Exception {
+    rejectRegistrations = true;
+
+    channel.writeInbound(assembleRequest(someAppId, someCluster, someNotifications));
+
+    FullHttpResponse response = channel.readOutbound();
+    assertEquals(HttpResponseStatus.SERVICE_UNAVAILABLE, response.status());
+    verify(notificationControllerV2, never())
+        .registerLongPoll(anyString(), anyString(), anyString(), anyString(), anyString(), anyBoolean());
+    response.release();
+  }
+
+  private void runRegistrations() {
+    Runnable registration;
+    while ((registration = registrations.poll()) != null) {
+      registration.run();
+    }
+  }
+
+  private DefaultFullHttpRequest assembleRequest(String appId, String cluster, String notifications) {
+    QueryStringEncoder encoder = new QueryStringEncoder(NotificationV2Handler.PATH);
+    encoder.addParam("appId", appId);
+    encoder.addParam("cluster", cluster);
+    if (notifications != null) {
+      encoder.addParam("notifications", notifications);
+    }
+    return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, encoder.toString());
+  }
+
+  private List<ApolloConfigNotification> readNotifications(FullHttpResponse response) {
+    return gson.fromJson(response.content().toString(StandardCharsets.UTF_8), notificationsType);
+  }
+}
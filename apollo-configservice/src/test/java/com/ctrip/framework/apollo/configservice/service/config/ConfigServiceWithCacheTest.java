@@ -2,6 +2,7 @@ package com.ctrip.framework.apollo.configservice.service.config;
 
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 import com.ctrip.framework.apollo.biz.entity.Release;
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
@@ -9,6 +10,7 @@ import com.ctrip.framework.apollo.biz.message.Topics;
 import com.ctrip.framework.apollo.biz.service.ReleaseMessageService;
 import com.ctrip.framework.apollo.biz.service.ReleaseService;
 import com.ctrip.framework.apollo.biz.utils.ReleaseMessageKeyGenerator;
+import com.ctrip.framework.apollo.configservice.service.ReleaseMessageServiceWithCache;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -36,6 +38,8 @@ public class ConfigServiceWithCacheTest {
   @Mock
   private ReleaseMessageService releaseMessageService;
   @Mock
+  private ReleaseMessageServiceWithCache releaseMessageServiceWithCache;
+  @Mock
   private Release someRelease;
   @Mock
   private ReleaseMessage someReleaseMessage;
@@ -52,6 +56,8 @@ public class ConfigServiceWithCacheTest {
     configServiceWithCache = new ConfigServiceWithCache();
     ReflectionTestUtils.setField(configServiceWithCache, "releaseService", releaseService);
     ReflectionTestUtils.setField(configServiceWithCache, "releaseMessageService", releaseMessageService);
+    ReflectionTestUtils.setField(configServiceWithCache, "releaseMessageServiceWithCache",
+        releaseMessageServiceWithCache);
 
     configServiceWithCache.initialize();
 
@@ -192,6 +198,8 @@ public class ConfigServiceWithCacheTest {
     when(releaseService.findLatestActiveRelease(someAppId, someClusterName, someNamespaceName)).thenReturn
         (anotherRelease);
     when(anotherReleaseMessage.getId()).thenReturn(someNewNotificationId);
+    when(releaseMessageServiceWithCache.findLatestReleaseMessageForMessages(Sets.newHashSet(someKey)))
+        .thenReturn(anotherReleaseMessage);
 
     Release stillOldRelease = configServiceWithCache.findLatestActiveRelease(someAppId, someClusterName,
         someNamespaceName, someNotificationMessages);
@@ -209,6 +217,29 @@ public class ConfigServiceWithCacheTest {
     verify(releaseService, times(2)).findLatestActiveRelease(someAppId, someClusterName, someNamespaceName);
   }
 
+  @Test
+  public void testFindLatestActiveReleaseWithNotificationIdNotScanned() throws Exception {
+    long someFakeNotificationId = Long.MAX_VALUE;
+
+    when(releaseMessageService.findLatestReleaseMessageForMessages(Lists.newArrayList(someKey))).thenReturn
+        (someReleaseMessage);
+    when(releaseService.findLatestActiveRelease(someAppId, someClusterName, someNamespaceName)).thenReturn
+        (someRelease);
+    when(someReleaseMessage.getId()).thenReturn(someNotificationId);
+    when(releaseMessageServiceWithCache.findLatestReleaseMessageForMessages(Sets.newHashSet(someKey)))
+        .thenReturn(someReleaseMessage);
+
+    someNotificationMessages.put(someKey, someFakeNotificationId);
+
+    for (int i = 0; i < 10; i++) {
+      assertEquals(someRelease, configServiceWithCache.findLatestActiveRelease(someAppId, someClusterName,
+          someNamespaceName, someNotificationMessages));
+    }
+
+    verify(releaseMessageService, times(1)).findLatestReleaseMessageForMessages(Lists.newArrayList(someKey));
+    verify(releaseService, times(1)).findLatestActiveRelease(someAppId, someClusterName, someNamespaceName);
+  }
+
   @Test
   public void testFindLatestActiveReleaseWithReleaseMessageNotification() throws Exception {
     long someNewNotificationId = someNotificationId + 1;
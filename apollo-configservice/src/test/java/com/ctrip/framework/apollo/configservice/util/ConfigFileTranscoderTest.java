@@ -0,0 +1,134 @@
+package com.ctrip.framework.apollo.configservice.util;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+
+import com.ctrip.framework.apollo.common.exception.BadRequestException;
+import com.ctrip.framework.apollo.core.ConfigConsts;
+import com.ctrip.framework.apollo.core.dto.ApolloConfig;
+import com.ctrip.framework.apollo.core.enums.ConfigFileFormat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ConfigFileTranscoderTest {
+  private ConfigFileTranscoder configFileTranscoder;
+  private String someYaml;
+  private String someJson;
+
+  @Before
+  public void setUp() throws Exception {
+    configFileTranscoder = new ConfigFileTranscoder();
+    someYaml = "server:\n  port: 8080\n  hosts:\n  - a\n  - b\nname: someName\n";
+    someJson = "{\"server\":{\"port\":8080,\"hosts\":[\"a\",\"b\"]},\"name\":\"someName\"}";
+  }
+
+  @Test
+  public void testDetermineFormat() throws Exception {
+    assertEquals(ConfigFileFormat.Properties, ConfigFileTranscoder.determineFormat("application"));
+    assertEquals(ConfigFileFormat.Properties, ConfigFileTranscoder.determineFormat("FX.apollo"));
+    assertEquals(ConfigFileFormat.YAML, ConfigFileTranscoder.determineFormat("application.yml"));
+    assertEquals(ConfigFileFormat.YAML, ConfigFileTranscoder.determineFormat("application.YAML"));
+    assertEquals(ConfigFileFormat.JSON, ConfigFileTranscoder.determineFormat("application.json"));
+    assertEquals(ConfigFileFormat.XML, ConfigFileTranscoder.determineFormat("application.xml"));
+  }
+
+  @Test
+  public void testYamlToProperties() throws Exception {
+    Properties properties = transcodeToProperties(someYaml, ConfigFileFormat.YAML);
+
+    assertEquals(4, properties.size());
+    assertEquals("8080", properties.getProperty("server.port"));
+    assertEquals("a", properties.getProperty("server.hosts[0]"));
+    assertEquals("b", properties.getProperty("server.hosts[1]"));
+    assertEquals("someName", properties.getProperty("name"));
+  }
+
+  @Test
+  public void testJsonToProperties() throws Exception {
+    assertEquals(transcodeToProperties(someYaml, ConfigFileFormat.YAML),
+        transcodeToProperties(someJson, ConfigFileFormat.JSON));
+  }
+
+  @Test
+  public void testYamlToJson() throws Exception {
+    String json = configFileTranscoder.doTranscode(content(someYaml), ConfigFileFormat.YAML, ConfigFileFormat.JSON);
+
+    assertEquals(new JsonParser().parse(someJson), new JsonParser().parse(json));
+  }
+
+  @Test
+  public void testJsonToYaml() throws Exception {
+    String yaml = configFileTranscoder.doTranscode(content(someJson), ConfigFileFormat.JSON, ConfigFileFormat.YAML);
+
+    assertEquals(someYaml, yaml);
+  }
+
+  @Test
+  public void testPropertiesToYamlAndJson() throws Exception {
+    Map<String, String> configurations = ImmutableMap.of("someKey", "someValue", "another.key", "1");
+
+    String yaml = configFileTranscoder.doTranscode(configurations, ConfigFileFormat.Properties,
+        ConfigFileFormat.YAML);
+    String json = configFileTranscoder.doTranscode(configurations, ConfigFileFormat.Properties,
+        ConfigFileFormat.JSON);
+
+    assertEquals("another.key: '1'\nsomeKey: someValue\n", yaml);
+    assertEquals(configurations, new Gson().fromJson(json, Map.class));
+  }
+
+  @Test
+  public void testSameFormatReturnsContent() throws Exception {
+    assertSame(someYaml,
+        configFileTranscoder.doTranscode(content(someYaml), ConfigFileFormat.YAML, ConfigFileFormat.YAML));
+  }
+
+  @Test(expected = BadRequestException.class)
+  public void testInvalidYaml() throws Exception {
+    configFileTranscoder.doTranscode(content("a: b: c"), ConfigFileFormat.YAML, ConfigFileFormat.Properties);
+  }
+
+  @Test(expected = BadRequestException.class)
+  public void testXmlNotSupported() throws Exception {
+    configFileTranscoder.doTranscode(content("<a/>"), ConfigFileFormat.XML, ConfigFileFormat.Properties);
+  }
+
+  @Test
+  public void testTranscodeCachedByReleaseKey() throws Exception {
+    ApolloConfig someApolloConfig = mock(ApolloConfig.class);
+    when(someApolloConfig.getReleaseKey()).thenReturn("someReleaseKey");
+    when(someApolloConfig.getConfigurations()).thenReturn(content(someYaml));
+    ApolloConfig anotherApolloConfig = mock(ApolloConfig.class);
+    when(anotherApolloConfig.getReleaseKey()).thenReturn("someReleaseKey");
+
+    String result = configFileTranscoder.transcode(someApolloConfig, ConfigFileFormat.YAML, ConfigFileFormat.JSON);
+    String anotherResult =
+        configFileTranscoder.transcode(anotherApolloConfig, ConfigFileFormat.YAML, ConfigFileFormat.JSON);
+
+    assertSame(result, anotherResult);
+    verify(someApolloConfig, times(1)).getConfigurations();
+  }
+
+  private Properties transcodeToProperties(String content, ConfigFileFormat sourceFormat) throws Exception {
+    Properties properties = new Properties();
+    properties.load(new StringReader(
+        configFileTranscoder.doTranscode(content(content), sourceFormat, ConfigFileFormat.Properties)));
+    return properties;
+  }
+
+  private Map<String, String> content(String content) {
+    return ImmutableMap.of(ConfigConsts.CONFIG_FILE_CONTENT_KEY, content);
+  }
+}
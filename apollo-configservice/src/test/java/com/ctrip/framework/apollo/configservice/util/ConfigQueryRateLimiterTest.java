@@ -0,0 +1,85 @@
+package com.ctrip.framework.apollo.configservice.util;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ConfigQueryRateLimiterTest {
+  private ConfigQueryRateLimiter configQueryRateLimiter;
+
+  @Mock
+  private BizConfig bizConfig;
+
+  private String someAppId;
+  private String anotherAppId;
+  private String someClientIp;
+  private String anotherClientIp;
+
+  @Before
+  public void setUp() throws Exception {
+    configQueryRateLimiter = new ConfigQueryRateLimiter();
+    ReflectionTestUtils.setField(configQueryRateLimiter, "bizConfig", bizConfig);
+
+    someAppId = "someAppId";
+    anotherAppId = "anotherAppId";
+    someClientIp = "1.1.1.1";
+    anotherClientIp = "2.2.2.2";
+  }
+
+  @Test
+  public void testIsThrottledWithRateLimitDisabled() throws Exception {
+    for (int i = 0; i < 100; i++) {
+      assertFalse(configQueryRateLimiter.isThrottled(someAppId, someClientIp, new MockHttpServletRequest()));
+    }
+  }
+
+  @Test
+  public void testIsThrottledPerAppId() throws Exception {
+    when(bizConfig.configQueryRateLimitPerAppId()).thenReturn(1);
+
+    assertFalse(configQueryRateLimiter.isThrottled(someAppId, someClientIp, new MockHttpServletRequest()));
+    assertTrue(configQueryRateLimiter.isThrottled(someAppId, anotherClientIp, new MockHttpServletRequest()));
+    assertFalse(configQueryRateLimiter.isThrottled(anotherAppId, someClientIp, new MockHttpServletRequest()));
+  }
+
+  @Test
+  public void testIsThrottledPerIp() throws Exception {
+    when(bizConfig.configQueryRateLimitPerIp()).thenReturn(1);
+
+    assertFalse(configQueryRateLimiter.isThrottled(someAppId, someClientIp, new MockHttpServletRequest()));
+    assertTrue(configQueryRateLimiter.isThrottled(anotherAppId, someClientIp, new MockHttpServletRequest()));
+    assertFalse(configQueryRateLimiter.isThrottled(someAppId, anotherClientIp, new MockHttpServletRequest()));
+  }
+
+  @Test
+  public void testIsThrottledOnlyCountedOncePerRequest() throws Exception {
+    when(bizConfig.configQueryRateLimitPerAppId()).thenReturn(1);
+    MockHttpServletRequest someRequest = new MockHttpServletRequest();
+
+    assertFalse(configQueryRateLimiter.isThrottled(someAppId, someClientIp, someRequest));
+    assertFalse(configQueryRateLimiter.isThrottled(someAppId, someClientIp, someRequest));
+  }
+
+  @Test
+  public void testIsThrottledWithRateLimitRefreshed() throws Exception {
+    when(bizConfig.configQueryRateLimitPerAppId()).thenReturn(1);
+
+    assertFalse(configQueryRateLimiter.isThrottled(someAppId, someClientIp, new MockHttpServletRequest()));
+    assertTrue(configQueryRateLimiter.isThrottled(someAppId, someClientIp, new MockHttpServletRequest()));
+
+    when(bizConfig.configQueryRateLimitPerAppId()).thenReturn(100);
+
+    assertFalse(configQueryRateLimiter.isThrottled(someAppId, someClientIp, new MockHttpServletRequest()));
+  }
+}
@@ -0,0 +1,130 @@
+package com.ctrip.framework.apollo.metaservice.controller;
+
+import com.ctrip.framework.apollo.core.dto.ServiceDTO;
+import com.ctrip.framework.apollo.metaservice.service.ConfigServiceAffinityRouter;
+import com.ctrip.framework.apollo.metaservice.service.DiscoveryService;
+import com.google.common.collect.Lists;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ServiceControllerTest {
+  private ServiceController serviceController;
+
+  @Mock
+  private DiscoveryService discoveryService;
+  @Mock
+  private ConfigServiceAffinityRouter configServiceAffinityRouter;
+
+  private String someAppId;
+  private String someClientIp;
+  private List<ServiceDTO> someServices;
+
+  @Before
+  public void setUp() throws Exception {
+    serviceController = new ServiceController();
+    ReflectionTestUtils.setField(serviceController, "discoveryService", discoveryService);
+    ReflectionTestUtils.setField(serviceController, "configServiceAffinityRouter", configServiceAffinityRouter);
+
+    someAppId = "someAppId";
+    someClientIp = "someClientIp";
+    someServices = Lists.newArrayList(assembleService("someInstance"), assembleService("anotherInstance"));
+
+    when(discoveryService.getConfigServiceInstances()).thenReturn(someServices);
+    when(configServiceAffinityRouter.route(anyString(), anyListOf(ServiceDTO.class)))
+        .thenAnswer(invocation -> invocation.getArguments()[1]);
+  }
+
+  @Test
+  public void testGetConfigServiceWithETag() throws Exception {
+    ResponseEntity<List<ServiceDTO>> result = serviceController.getConfigService(someAppId, someClientIp, null);
+
+    assertEquals(HttpStatus.OK, result.getStatusCode());
+    assertEquals(someServices, result.getBody());
+
+    String someETag = result.getHeaders().getETag();
+    ResponseEntity<List<ServiceDTO>> anotherResult =
+        serviceController.getConfigService(someAppId, someClientIp, someETag);
+
+    assertEquals(HttpStatus.NOT_MODIFIED, anotherResult.getStatusCode());
+    assertNull(anotherResult.getBody());
+  }
+
+  @Test
+  public void testETagIgnoresOrder() throws Exception {
+    assertEquals(ServiceController.generateETag(someServices),
+        ServiceController.generateETag(Lists.reverse(someServices)));
+    assertNotEquals(ServiceController.generateETag(someServices),
+        ServiceController.generateETag(someServices.subList(0, 1)));
+
+    //the same instances with a different preferred set, e.g. after config-service.affinity.replicas is changed
+    List<ServiceDTO> fallbacks = Lists.newArrayList();
+    for (ServiceDTO service : someServices) {
+      ServiceDTO fallback = new ServiceDTO();
+      fallback.setInstanceId(service.getInstanceId());
+      fallback.setHomepageUrl(service.getHomepageUrl());
+      fallback.setFallback(true);
+      fallbacks.add(fallback);
+    }
+    assertNotEquals(ServiceController.generateETag(someServices), ServiceController.generateETag(fallbacks));
+  }
+
+  @Test
+  public void testPollConfigServiceWithOutdatedETag() throws Exception {
+    DeferredResult<ResponseEntity<List<ServiceDTO>>> result =
+        serviceController.pollConfigService(someAppId, someClientIp, "\"someOutdatedETag\"");
+
+    assertTrue(result.hasResult());
+    assertEquals(someServices, ((ResponseEntity<?>) result.getResult()).getBody());
+  }
+
+  @Test
+  public void testPollConfigServiceNotifiedWhenChanged() throws Exception {
+    ArgumentCaptor<Runnable> listenerCaptor = ArgumentCaptor.forClass(Runnable.class);
+    serviceController.initialize();
+    verify(discoveryService).addConfigServiceChangeListener(listenerCaptor.capture());
+
+    String someETag = ServiceController.generateETag(someServices);
+    DeferredResult<ResponseEntity<List<ServiceDTO>>> result =
+        serviceController.pollConfigService(someAppId, someClientIp, someETag);
+
+    assertFalse(result.hasResult());
+
+    List<ServiceDTO> anotherServices = Lists.newArrayList(someServices);
+    anotherServices.add(assembleService("yetAnotherInstance"));
+    when(discoveryService.getConfigServiceInstances()).thenReturn(anotherServices);
+
+    listenerCaptor.getValue().run();
+
+    assertTrue(result.hasResult());
+    assertEquals(anotherServices, ((ResponseEntity<?>) result.getResult()).getBody());
+  }
+
+  private ServiceDTO assembleService(String instanceId) {
+    ServiceDTO service = new ServiceDTO();
+    service.setInstanceId(instanceId);
+    service.setHomepageUrl("http://" + instanceId);
+    return service;
+  }
+}
@@ -0,0 +1,146 @@
+package com.ctrip.framework.apollo.metaservice.service;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.core.dto.ServiceDTO;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ConfigServiceAffinityRouterTest {
+  private ConfigServiceAffinityRouter configServiceAffinityRouter;
+
+  @Mock
+  private BizConfig bizConfig;
+
+  private List<ServiceDTO> someServices;
+  private String someAppId;
+
+  @Before
+  public void setUp() throws Exception {
+    configServiceAffinityRouter = new ConfigServiceAffinityRouter();
+    ReflectionTestUtils.setField(configServiceAffinityRouter, "bizConfig", bizConfig);
+
+    someAppId = "someAppId";
+    someServices = Lists.newArrayList();
+    for (int i = 0; i < 10; i++) {
+      someServices.add(assembleService("someInstance" + i));
+    }
+  }
+
+  @Test
+  public void testRouteWithAffinityDisabled() throws Exception {
+    when(bizConfig.configServiceAffinityReplicas()).thenReturn(0);
+
+    assertSame(someServices, configServiceAffinityRouter.route(someAppId, someServices));
+  }
+
+  @Test
+  public void testRouteWithNotEnoughInstances() throws Exception {
+    when(bizConfig.configServiceAffinityReplicas()).thenReturn(someServices.size());
+
+    assertSame(someServices, configServiceAffinityRouter.route(someAppId, someServices));
+  }
+
+  @Test
+  public void testRouteIsSticky() throws Exception {
+    int someReplicas = 3;
+    when(bizConfig.configServiceAffinityReplicas()).thenReturn(someReplicas);
+
+    List<ServiceDTO> result = configServiceAffinityRouter.route(someAppId, someServices);
+    List<ServiceDTO> anotherResult = configServiceAffinityRouter.route(someAppId, Lists.reverse(someServices));
+
+    assertEquals(someReplicas, preferred(result).size());
+    assertEquals(toInstanceIds(result), toInstanceIds(anotherResult));
+  }
+
+  @Test
+  public void testRouteWithFallbacks() throws Exception {
+    int someReplicas = 3;
+    when(bizConfig.configServiceAffinityReplicas()).thenReturn(someReplicas);
+
+    List<ServiceDTO> result = configServiceAffinityRouter.route(someAppId, someServices);
+
+    assertEquals(someServices.size(), result.size());
+    assertEquals(Sets.newHashSet(toInstanceIds(someServices)), Sets.newHashSet(toInstanceIds(result)));
+    for (int i = 0; i < result.size(); i++) {
+      assertEquals(i >= someReplicas, result.get(i).isFallback());
+    }
+    //the shared instances are not marked
+    for (ServiceDTO service : someServices) {
+      assertFalse(service.isFallback());
+    }
+
+    //the preferred instance going away moves the app to the first fallback only
+    List<ServiceDTO> remaining = Lists.newArrayList(someServices);
+    remaining.removeIf(service -> service.getInstanceId().equals(result.get(0).getInstanceId()));
+    List<ServiceDTO> anotherResult = configServiceAffinityRouter.route(someAppId, remaining);
+
+    assertEquals(toInstanceIds(result.subList(1, someReplicas + 1)), toInstanceIds(preferred(anotherResult)));
+  }
+
+  @Test
+  public void testRouteWidenedWithInstanceCount() throws Exception {
+    int someReplicas = 1;
+    int someMaxLoadFactor = 4;
+    when(bizConfig.configServiceAffinityReplicas()).thenReturn(someReplicas);
+    when(bizConfig.configServiceAffinityMaxLoadFactor()).thenReturn(someMaxLoadFactor);
+
+    assertEquals(someReplicas, preferred(configServiceAffinityRouter.route(someAppId,
+        someServices.subList(0, someMaxLoadFactor))).size());
+    //10 instances, each app prefers at least 1 / 4 of them
+    assertEquals(3, preferred(configServiceAffinityRouter.route(someAppId, someServices)).size());
+  }
+
+  @Test
+  public void testRouteIsBalanced() throws Exception {
+    int someReplicas = 2;
+    int someAppCount = 1000;
+    when(bizConfig.configServiceAffinityReplicas()).thenReturn(someReplicas);
+
+    Map<String, Integer> loads = Maps.newHashMap();
+    for (int i = 0; i < someAppCount; i++) {
+      for (ServiceDTO service : preferred(configServiceAffinityRouter.route("someAppId" + i, someServices))) {
+        loads.merge(service.getInstanceId(), 1, Integer::sum);
+      }
+    }
+
+    int maxLoad = (int) Math.ceil(1.25 * someAppCount * someReplicas / someServices.size());
+    assertEquals(someServices.size(), loads.size());
+    for (int load : loads.values()) {
+      assertTrue(load <= maxLoad);
+    }
+  }
+
+  private List<ServiceDTO> preferred(List<ServiceDTO> services) {
+    return services.stream().filter(service -> !service.isFallback()).collect(Collectors.toList());
+  }
+
+  private List<String> toInstanceIds(List<ServiceDTO> services) {
+    return Lists.transform(services, ServiceDTO::getInstanceId);
+  }
+
+  private ServiceDTO assembleService(String instanceId) {
+    ServiceDTO service = new ServiceDTO();
+    service.setInstanceId(instanceId);
+    service.setHomepageUrl("http://" + instanceId);
+    return service;
+  }
+}
@@ -0,0 +1,92 @@
+package com.ctrip.framework.apollo.metaservice.service;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.core.ServiceNameConsts;
+import com.ctrip.framework.apollo.core.dto.ServiceDTO;
+import com.google.common.collect.Lists;
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.discovery.EurekaClient;
+import com.netflix.discovery.shared.Application;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DiscoveryServiceTest {
+  @Mock
+  private BizConfig bizConfig;
+
+  private List<InstanceInfo> someInstances;
+  private int someReplicas;
+
+  @Before
+  public void setUp() throws Exception {
+    someReplicas = 3;
+    when(bizConfig.configServiceAffinityReplicas()).thenReturn(someReplicas);
+
+    someInstances = Lists.newArrayList();
+    for (int i = 0; i < 10; i++) {
+      someInstances.add(InstanceInfo.Builder.newBuilder()
+          .setAppName(ServiceNameConsts.APOLLO_CONFIGSERVICE)
+          .setInstanceId("someInstance" + i)
+          .setHostName("someInstance" + i)
+          .setHomePageUrl(null, "http://someInstance" + i)
+          .build());
+    }
+  }
+
+  @Test
+  public void testRoutersOfDifferentNodesAgree() throws Exception {
+    //two meta service nodes whose eureka clients list the instances in different orders
+    DiscoveryService someDiscoveryService = assembleDiscoveryService(someInstances);
+    DiscoveryService anotherDiscoveryService = assembleDiscoveryService(Lists.reverse(someInstances));
+    ConfigServiceAffinityRouter someRouter = assembleRouter();
+    ConfigServiceAffinityRouter anotherRouter = assembleRouter();
+
+    //the other node has served different apps before, e.g. after a restart
+    for (int i = 0; i < 100; i++) {
+      anotherRouter.route("anotherAppId" + i, anotherDiscoveryService.getConfigServiceInstances());
+    }
+
+    for (int i = 0; i < 100; i++) {
+      String someAppId = "someAppId" + i;
+      List<ServiceDTO> result = someRouter.route(someAppId, someDiscoveryService.getConfigServiceInstances());
+      List<ServiceDTO> anotherResult =
+          anotherRouter.route(someAppId, anotherDiscoveryService.getConfigServiceInstances());
+
+      assertEquals(someReplicas, result.stream().filter(service -> !service.isFallback()).count());
+      assertEquals(toInstanceIds(result), toInstanceIds(anotherResult));
+    }
+  }
+
+  private DiscoveryService assembleDiscoveryService(List<InstanceInfo> instances) {
+    Application application = new Application(ServiceNameConsts.APOLLO_CONFIGSERVICE);
+    instances.forEach(application::addInstance);
+    EurekaClient eurekaClient = mock(EurekaClient.class);
+    when(eurekaClient.getApplication(ServiceNameConsts.APOLLO_CONFIGSERVICE)).thenReturn(application);
+
+    DiscoveryService discoveryService = new DiscoveryService();
+    ReflectionTestUtils.setField(discoveryService, "eurekaClient", eurekaClient);
+    return discoveryService;
+  }
+
+  private ConfigServiceAffinityRouter assembleRouter() {
+    ConfigServiceAffinityRouter router = new ConfigServiceAffinityRouter();
+    ReflectionTestUtils.setField(router, "bizConfig", bizConfig);
+    return router;
+  }
+
+  private List<String> toInstanceIds(List<ServiceDTO> services) {
+    return Lists.transform(services, ServiceDTO::getInstanceId);
+  }
+}
@@ -0,0 +1,280 @@
+package com.ctrip.framework.apollo.core.codec;
+
+import com.ctrip.framework.apollo.core.dto.ApolloConfig;
+import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
+import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CBOR encoding of {@link ApolloConfig} and {@link ApolloConfigNotification}, which is more compact and cheaper to
+ * encode and decode than json for large namespaces.
+ *
+ * <p>The schema mirrors the json one, so that it is self-describing and unknown fields could be skipped:</p>
+ * <pre>
+ * ApolloConfig = {
+ *   "appId": text, "cluster": text, "namespaceName": text, "releaseKey": text,
+ *   "configurations": { * text => text }
+ * }
+ * ApolloConfigNotification = {
+ *   "namespaceName": text, "notificationId": int,
+ *   ? "messages": { "details": { * text => int } },
+ *   ? "config": ApolloConfig
+ * }
+ * /notifications/v2 response = [ * ApolloConfigNotification ]
+ * </pre>
+ *
+ * <p>The buffers are cached per thread and reused, so the hot path does little allocation except the decoded
+ * strings.</p>
+ */
+public class ApolloCborCodec {
+  public static final String MEDIA_TYPE = "application/cbor";
+
+  private static final int INITIAL_BUFFER_SIZE = 8 * 1024; // 8KB
+  /**
+   * 超过该大小的缓冲区不再复用，避免线程长期持有大内存
+   */
+  private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024; // 1MB
+
+  private static final String APP_ID = "appId";
+  private static final String CLUSTER = "cluster";
+  private static final String NAMESPACE_NAME = "namespaceName";
+  private static final String RELEASE_KEY = "releaseKey";
+  private static final String CONFIGURATIONS = "configurations";
+  private static final String NOTIFICATION_ID = "notificationId";
+  private static final String MESSAGES = "messages";
+  private static final String DETAILS = "details";
+  private static final String CONFIG = "config";
+
+  private static final ThreadLocal<CborWriter> writers = new ThreadLocal<CborWriter>() {
+    @Override
+    protected CborWriter initialValue() {
+      return new CborWriter(INITIAL_BUFFER_SIZE);
+    }
+  };
+
+  private static final ThreadLocal<CborReader> readers = new ThreadLocal<CborReader>() {
+    @Override
+    protected CborReader initialValue() {
+      return new CborReader(INITIAL_BUFFER_SIZE);
+    }
+  };
+
+  private ApolloCborCodec() {
+  }
+
+  /**
+   * @return whether the type is {@link ApolloConfig} or List&lt;{@link ApolloConfigNotification}&gt;
+   */
+  public static boolean supports(Type type) {
+    if (type == ApolloConfig.class) {
+      return true;
+    }
+    if (!(type instanceof ParameterizedType)) {
+      return false;
+    }
+    ParameterizedType parameterizedType = (ParameterizedType) type;
+    return parameterizedType.getRawType() == List.class
+        && parameterizedType.getActualTypeArguments().length == 1
+        && parameterizedType.getActualTypeArguments()[0] == ApolloConfigNotification.class;
+  }
+
+  public static boolean isCbor(String contentType) {
+    return contentType != null && contentType.toLowerCase().startsWith(MEDIA_TYPE);
+  }
+
+  /**
+   * @param value an {@link ApolloConfig} or a list of {@link ApolloConfigNotification}
+   */
+  @SuppressWarnings("unchecked")
+  public static void encode(Object value, OutputStream out) throws IOException {
+    CborWriter writer = writers.get();
+    writer.reset();
+    try {
+      if (value instanceof ApolloConfig) {
+        writeConfig(writer, (ApolloConfig) value);
+      } else if (value instanceof List) {
+        writeNotifications(writer, (List<ApolloConfigNotification>) value);
+      } else {
+        throw new IllegalArgumentException("Unsupported type: " + value.getClass());
+      }
+      writer.writeTo(out);
+    } finally {
+      if (writer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+        writers.remove();
+      }
+    }
+  }
+
+  /**
+   * @param type a type which {@link #supports(Type)}
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> T decode(InputStream in, Type type) throws IOException {
+    CborReader reader = readers.get();
+    try {
+      reader.reset(in);
+      if (type == ApolloConfig.class) {
+        return (T) readConfig(reader);
+      }
+      if (supports(type)) {
+        return (T) readNotifications(reader);
+      }
+      throw new IllegalArgumentException("Unsupported type: " + type);
+    } finally {
+      if (reader.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+        readers.remove();
+      }
+    }
+  }
+
+  private static void writeConfig(CborWriter writer, ApolloConfig config) {
+    Map<String, String> configurations = config.getConfigurations();
+    writer.writeMapHeader(5);
+    writer.writeString(APP_ID);
+    writer.writeString(config.getAppId());
+    writer.writeString(CLUSTER);
+    writer.writeString(config.getCluster());
+    writer.writeString(NAMESPACE_NAME);
+    writer.writeString(config.getNamespaceName());
+    writer.writeString(RELEASE_KEY);
+    writer.writeString(config.getReleaseKey());
+    writer.writeString(CONFIGURATIONS);
+    if (configurations == null) {
+      writer.writeNull();
+      return;
+    }
+    writer.writeMapHeader(configurations.size());
+    for (Map.Entry<String, String> entry : configurations.entrySet()) {
+      writer.writeString(entry.getKey());
+      writer.writeString(entry.getValue());
+    }
+  }
+
+  private static void writeNotifications(CborWriter writer, List<ApolloConfigNotification> notifications) {
+    writer.writeArrayHeader(notifications.size());
+    for (ApolloConfigNotification notification : notifications) {
+      ApolloNotificationMessages messages = notification.getMessages();
+      ApolloConfig config = notification.getConfig();
+      writer.writeMapHeader(2 + (messages == null ? 0 : 1) + (config == null ? 0 : 1));
+      writer.writeString(NAMESPACE_NAME);
+      writer.writeString(notification.getNamespaceName());
+      writer.writeString(NOTIFICATION_ID);
+      writer.writeLong(notification.getNotificationId());
+      if (messages != null) {
+        Map<String, Long> details = messages.getDetails();
+        writer.writeString(MESSAGES);
+        writer.writeMapHeader(1);
+        writer.writeString(DETAILS);
+        writer.writeMapHeader(details.size());
+        for (Map.Entry<String, Long> entry : details.entrySet()) {
+          writer.writeString(entry.getKey());
+          writer.writeLong(entry.getValue());
+        }
+      }
+      if (config != null) {
+        writer.writeString(CONFIG);
+        writeConfig(writer, config);
+      }
+    }
+  }
+
+  private static ApolloConfig readConfig(CborReader reader) throws IOException {
+    ApolloConfig config = new ApolloConfig();
+    int size = reader.readMapHeader();
+    for (int i = 0; i < size; i++) {
+      String field = reader.readString();
+      if (APP_ID.equals(field)) {
+        config.setAppId(reader.readString());
+      } else if (CLUSTER.equals(field)) {
+        config.setCluster(reader.readString());
+      } else if (NAMESPACE_NAME.equals(field)) {
+        config.setNamespaceName(reader.readString());
+      } else if (RELEASE_KEY.equals(field)) {
+        config.setReleaseKey(reader.readString());
+      } else if (CONFIGURATIONS.equals(field)) {
+        config.setConfigurations(readStringMap(reader));
+      } else {
+        reader.skip();
+      }
+    }
+    return config;
+  }
+
+  private static Map<String, String> readStringMap(CborReader reader) throws IOException {
+    if (reader.tryReadNull()) {
+      return null;
+    }
+    int size = reader.readMapHeader();
+    Map<String, String> result = Maps.newHashMapWithExpectedSize(size);
+    for (int i = 0; i < size; i++) {
+      result.put(reader.readString(), reader.readString());
+    }
+    return result;
+  }
+
+  private static List<ApolloConfigNotification> readNotifications(CborReader reader) throws IOException {
+    int size = reader.readArrayHeader();
+    List<ApolloConfigNotification> notifications = Lists.newArrayListWithCapacity(size);
+    for (int i = 0; i < size; i++) {
+      notifications.add(readNotification(reader));
+    }
+    return notifications;
+  }
+
+  private static ApolloConfigNotification readNotification(CborReader reader) throws IOException {
+    String namespaceName = null;
+    long notificationId = 0;
+    ApolloNotificationMessages messages = null;
+    ApolloConfig config = null;
+
+    int size = reader.readMapHeader();
+    for (int i = 0; i < size; i++) {
+      String field = reader.readString();
+      if (NAMESPACE_NAME.equals(field)) {
+        namespaceName = reader.readString();
+      } else if (NOTIFICATION_ID.equals(field)) {
+        notificationId = reader.readLong();
+      } else if (MESSAGES.equals(field)) {
+        messages = reader.tryReadNull() ? null : readMessages(reader);
+      } else if (CONFIG.equals(field)) {
+        config = reader.tryReadNull() ? null : readConfig(reader);
+      } else {
+        reader.skip();
+      }
+    }
+
+    ApolloConfigNotification notification = new ApolloConfigNotification(namespaceName, notificationId);
+    notification.setMessages(messages);
+    notification.setConfig(config);
+    return notification;
+  }
+
+  private static ApolloNotificationMessages readMessages(CborReader reader) throws IOException {
+    ApolloNotificationMessages messages = new ApolloNotificationMessages();
+    int size = reader.readMapHeader();
+    for (int i = 0; i < size; i++) {
+      String field = reader.readString();
+      if (!DETAILS.equals(field)) {
+        reader.skip();
+        continue;
+      }
+      if (reader.tryReadNull()) {
+        continue;
+      }
+      int detailsSize = reader.readMapHeader();
+      for (int j = 0; j < detailsSize; j++) {
+        messages.put(reader.readString(), reader.readLong());
+      }
+    }
+    return messages;
+  }
+}
@@ -0,0 +1,175 @@
+package com.ctrip.framework.apollo.core.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static com.ctrip.framework.apollo.core.codec.CborWriter.MAJOR_TYPE_ARRAY;
+import static com.ctrip.framework.apollo.core.codec.CborWriter.MAJOR_TYPE_BYTE_STRING;
+import static com.ctrip.framework.apollo.core.codec.CborWriter.MAJOR_TYPE_MAP;
+import static com.ctrip.framework.apollo.core.codec.CborWriter.MAJOR_TYPE_NEGATIVE_INTEGER;
+import static com.ctrip.framework.apollo.core.codec.CborWriter.MAJOR_TYPE_SIMPLE;
+import static com.ctrip.framework.apollo.core.codec.CborWriter.MAJOR_TYPE_TAG;
+import static com.ctrip.framework.apollo.core.codec.CborWriter.MAJOR_TYPE_TEXT_STRING;
+import static com.ctrip.framework.apollo.core.codec.CborWriter.MAJOR_TYPE_UNSIGNED_INTEGER;
+import static com.ctrip.framework.apollo.core.codec.CborWriter.NULL;
+
+/**
+ * A minimal CBOR (RFC 7049) reader which supports the definite length data items, unknown items could be skipped.
+ *
+ * The underlying buffer is reused between decodings, so it is not thread safe.
+ */
+class CborReader {
+  private static final int INDEFINITE_LENGTH = 31;
+
+  private byte[] buffer;
+  private int position;
+  private int limit;
+
+  CborReader(int initialCapacity) {
+    buffer = new byte[initialCapacity];
+  }
+
+  int capacity() {
+    return buffer.length;
+  }
+
+  /**
+   * Read the whole stream into the reused buffer
+   */
+  void reset(InputStream in) throws IOException {
+    position = 0;
+    limit = 0;
+    int read;
+    while ((read = in.read(buffer, limit, buffer.length - limit)) != -1) {
+      limit += read;
+      if (limit == buffer.length) {
+        buffer = Arrays.copyOf(buffer, buffer.length << 1);
+      }
+    }
+  }
+
+  boolean hasRemaining() {
+    return position < limit;
+  }
+
+  /**
+   * @return true and consume it if the next item is null
+   */
+  boolean tryReadNull() throws IOException {
+    ensureRemaining(1);
+    if ((buffer[position] & 0xff) == NULL) {
+      position++;
+      return true;
+    }
+    return false;
+  }
+
+  int readMapHeader() throws IOException {
+    return (int) readArgument(MAJOR_TYPE_MAP);
+  }
+
+  int readArrayHeader() throws IOException {
+    return (int) readArgument(MAJOR_TYPE_ARRAY);
+  }
+
+  long readLong() throws IOException {
+    ensureRemaining(1);
+    int majorType = (buffer[position] & 0xff) >>> 5;
+    if (majorType == MAJOR_TYPE_NEGATIVE_INTEGER) {
+      return -1 - readArgument(MAJOR_TYPE_NEGATIVE_INTEGER);
+    }
+    return readArgument(MAJOR_TYPE_UNSIGNED_INTEGER);
+  }
+
+  /**
+   * @return the string, or null if the next item is null
+   */
+  String readString() throws IOException {
+    if (tryReadNull()) {
+      return null;
+    }
+    int length = (int) readArgument(MAJOR_TYPE_TEXT_STRING);
+    ensureRemaining(length);
+    String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+    position += length;
+    return value;
+  }
+
+  /**
+   * Skip the next data item, e.g. a field unknown to this version
+   */
+  void skip() throws IOException {
+    ensureRemaining(1);
+    int initialByte = buffer[position] & 0xff;
+    int majorType = initialByte >>> 5;
+    int additionalInfo = initialByte & 0x1f;
+
+    if (majorType == MAJOR_TYPE_SIMPLE) {
+      position++;
+      if (additionalInfo >= 24 && additionalInfo <= 27) {
+        skipBytes(1 << (additionalInfo - 24));
+      }
+      return;
+    }
+
+    long argument = readArgument(majorType);
+    switch (majorType) {
+      case MAJOR_TYPE_BYTE_STRING:
+      case MAJOR_TYPE_TEXT_STRING:
+        skipBytes(argument);
+        break;
+      case MAJOR_TYPE_ARRAY:
+        for (long i = 0; i < argument; i++) {
+          skip();
+        }
+        break;
+      case MAJOR_TYPE_MAP:
+        for (long i = 0; i < argument * 2; i++) {
+          skip();
+        }
+        break;
+      case MAJOR_TYPE_TAG:
+        skip();
+        break;
+      default:
+        //integers have no content
+        break;
+    }
+  }
+
+  private long readArgument(int expectedMajorType) throws IOException {
+    ensureRemaining(1);
+    int initialByte = buffer[position++] & 0xff;
+    int majorType = initialByte >>> 5;
+    if (majorType != expectedMajorType) {
+      throw new IOException(String.format("Expect CBOR major type %d but was %d", expectedMajorType, majorType));
+    }
+    int additionalInfo = initialByte & 0x1f;
+    if (additionalInfo < 24) {
+      return additionalInfo;
+    }
+    if (additionalInfo == INDEFINITE_LENGTH || additionalInfo > 27) {
+      throw new IOException("Unsupported CBOR additional information: " + additionalInfo);
+    }
+    int bytes = 1 << (additionalInfo - 24);
+    ensureRemaining(bytes);
+    long argument = 0;
+    for (int i = 0; i < bytes; i++) {
+      argument = (argument << 8) | (buffer[position++] & 0xff);
+    }
+    return argument;
+  }
+
+  private void skipBytes(long bytes) throws IOException {
+    ensureRemaining(bytes);
+    position += bytes;
+  }
+
+  private void ensureRemaining(long bytes) throws IOException {
+    if (bytes < 0 || limit - position < bytes) {
+      throw new IOException("Unexpected end of CBOR data");
+    }
+  }
+}
@@ -0,0 +1,154 @@
+package com.ctrip.framework.apollo.core.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A minimal CBOR (RFC 7049) writer which only supports the data items used by {@link ApolloCborCodec}.
+ *
+ * The underlying buffer is reused between encodings, so it is not thread safe.
+ *
+ * @see <a href="https://tools.ietf.org/html/rfc7049">RFC 7049</a>
+ */
+class CborWriter {
+  static final int MAJOR_TYPE_UNSIGNED_INTEGER = 0;
+  static final int MAJOR_TYPE_NEGATIVE_INTEGER = 1;
+  static final int MAJOR_TYPE_BYTE_STRING = 2;
+  static final int MAJOR_TYPE_TEXT_STRING = 3;
+  static final int MAJOR_TYPE_ARRAY = 4;
+  static final int MAJOR_TYPE_MAP = 5;
+  static final int MAJOR_TYPE_TAG = 6;
+  static final int MAJOR_TYPE_SIMPLE = 7;
+  static final int NULL = 0xf6;
+
+  private byte[] buffer;
+  private int count;
+
+  CborWriter(int initialCapacity) {
+    buffer = new byte[initialCapacity];
+  }
+
+  void reset() {
+    count = 0;
+  }
+
+  int capacity() {
+    return buffer.length;
+  }
+
+  void writeTo(OutputStream out) throws IOException {
+    out.write(buffer, 0, count);
+  }
+
+  void writeMapHeader(int size) {
+    writeTypeAndArgument(MAJOR_TYPE_MAP, size);
+  }
+
+  void writeArrayHeader(int size) {
+    writeTypeAndArgument(MAJOR_TYPE_ARRAY, size);
+  }
+
+  void writeNull() {
+    ensureCapacity(1);
+    buffer[count++] = (byte) NULL;
+  }
+
+  void writeLong(long value) {
+    if (value >= 0) {
+      writeTypeAndArgument(MAJOR_TYPE_UNSIGNED_INTEGER, value);
+    } else {
+      writeTypeAndArgument(MAJOR_TYPE_NEGATIVE_INTEGER, -1 - value);
+    }
+  }
+
+  /**
+   * Encode the string as UTF-8 into the buffer directly, without creating an intermediate byte array
+   */
+  void writeString(String value) {
+    if (value == null) {
+      writeNull();
+      return;
+    }
+    int length = value.length();
+    int utf8Length = utf8Length(value);
+    writeTypeAndArgument(MAJOR_TYPE_TEXT_STRING, utf8Length);
+    ensureCapacity(utf8Length);
+
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        buffer[count++] = (byte) c;
+      } else if (c < 0x800) {
+        buffer[count++] = (byte) (0xc0 | (c >> 6));
+        buffer[count++] = (byte) (0x80 | (c & 0x3f));
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        buffer[count++] = (byte) (0xf0 | (codePoint >> 18));
+        buffer[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+        buffer[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+        buffer[count++] = (byte) (0x80 | (codePoint & 0x3f));
+      } else if (Character.isSurrogate(c)) {
+        //unpaired surrogate, same as String.getBytes(UTF_8)
+        buffer[count++] = (byte) '?';
+      } else {
+        buffer[count++] = (byte) (0xe0 | (c >> 12));
+        buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+        buffer[count++] = (byte) (0x80 | (c & 0x3f));
+      }
+    }
+  }
+
+  private static int utf8Length(String value) {
+    int length = value.length();
+    int utf8Length = 0;
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        utf8Length++;
+      } else if (c < 0x800) {
+        utf8Length += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+        utf8Length += 4;
+        i++;
+      } else if (Character.isSurrogate(c)) {
+        utf8Length++;
+      } else {
+        utf8Length += 3;
+      }
+    }
+    return utf8Length;
+  }
+
+  private void writeTypeAndArgument(int majorType, long argument) {
+    ensureCapacity(9);
+    int initialByte = majorType << 5;
+    if (argument < 24) {
+      buffer[count++] = (byte) (initialByte | argument);
+    } else if (argument <= 0xffL) {
+      buffer[count++] = (byte) (initialByte | 24);
+      buffer[count++] = (byte) argument;
+    } else if (argument <= 0xffffL) {
+      buffer[count++] = (byte) (initialByte | 25);
+      writeBigEndian(argument, 2);
+    } else if (argument <= 0xffffffffL) {
+      buffer[count++] = (byte) (initialByte | 26);
+      writeBigEndian(argument, 4);
+    } else {
+      buffer[count++] = (byte) (initialByte | 27);
+      writeBigEndian(argument, 8);
+    }
+  }
+
+  private void writeBigEndian(long value, int bytes) {
+    for (int i = bytes - 1; i >= 0; i--) {
+      buffer[count++] = (byte) (value >>> (i * 8));
+    }
+  }
+
+  private void ensureCapacity(int extra) {
+    if (count + extra > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, count + extra));
+    }
+  }
+}
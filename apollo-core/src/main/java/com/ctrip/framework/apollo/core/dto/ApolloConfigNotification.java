@@ -18,6 +18,10 @@ public class ApolloConfigNotification {
    * 通知消息集合
    */
   private volatile ApolloNotificationMessages messages;
+  /**
+   * 最新的配置，仅当客户端要求通知携带配置时返回，客户端可以直接使用，无需再次请求 Config Service
+   */
+  private ApolloConfig config;
 
   //for json converter
   public ApolloConfigNotification() {
@@ -48,6 +52,14 @@ public class ApolloConfigNotification {
     this.messages = messages;
   }
 
+  public ApolloConfig getConfig() {
+    return config;
+  }
+
+  public void setConfig(ApolloConfig config) {
+    this.config = config;
+  }
+
   public void addMessage(String key, long notificationId) {
     if (this.messages == null) {
       synchronized (this) {
@@ -8,6 +8,11 @@ public class ServiceDTO {
 
   private String homepageUrl;
 
+  /**
+   * whether the instance is only a fallback for the app, which is used when the preferred ones are unavailable
+   */
+  private boolean fallback;
+
   public String getAppName() {
     return appName;
   }
@@ -20,6 +25,10 @@ public class ServiceDTO {
     return instanceId;
   }
 
+  public boolean isFallback() {
+    return fallback;
+  }
+
   public void setAppName(String appName) {
     this.appName = appName;
   }
@@ -32,12 +41,17 @@ public class ServiceDTO {
     this.instanceId = instanceId;
   }
 
+  public void setFallback(boolean fallback) {
+    this.fallback = fallback;
+  }
+
   @Override
   public String toString() {
     final StringBuilder sb = new StringBuilder("ServiceDTO{");
     sb.append("appName='").append(appName).append('\'');
     sb.append(", instanceId='").append(instanceId).append('\'');
     sb.append(", homepageUrl='").append(homepageUrl).append('\'');
+    sb.append(", fallback=").append(fallback);
     sb.append('}');
     return sb.toString();
   }
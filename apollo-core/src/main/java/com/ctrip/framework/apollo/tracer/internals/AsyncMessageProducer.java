@@ -0,0 +1,200 @@
+package com.ctrip.framework.apollo.tracer.internals;
+
+import com.google.common.collect.Lists;
+
+import com.ctrip.framework.apollo.tracer.spi.MessageProducer;
+import com.ctrip.framework.apollo.tracer.spi.Transaction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 异步的 MessageProducer，消息先写入有界的环形缓冲区，由后台线程批量发送，缓冲区满时丢弃
+ *
+ * Buffer the messages in a bounded ring buffer, so that the request threads are never blocked by the tracing. The
+ * buffered messages are emitted in batches to the delegate by {@link #drainTo(MessageProducer, int)}, and are
+ * dropped when the buffer is full.
+ *
+ * The transactions are replayed on the emitting thread, so they lose their nesting and their duration is carried in
+ * the data of durationInMillis.
+ */
+public class AsyncMessageProducer implements MessageProducer {
+  private static final Logger logger = LoggerFactory.getLogger(AsyncMessageProducer.class);
+  static final String DURATION_KEY = "durationInMillis";
+
+  private final TracerRingBuffer<BufferedMessage> buffer;
+  private final AtomicLong droppedCount = new AtomicLong();
+
+  public AsyncMessageProducer(int bufferSize) {
+    buffer = new TracerRingBuffer<>(bufferSize);
+  }
+
+  @Override
+  public void logError(Throwable cause) {
+    offer(new ErrorMessage(null, cause));
+  }
+
+  @Override
+  public void logError(String message, Throwable cause) {
+    offer(new ErrorMessage(message, cause));
+  }
+
+  @Override
+  public void logEvent(String type, String name) {
+    offer(new EventMessage(type, name, null, null));
+  }
+
+  @Override
+  public void logEvent(String type, String name, String status, String nameValuePairs) {
+    offer(new EventMessage(type, name, status, nameValuePairs));
+  }
+
+  @Override
+  public Transaction newTransaction(String type, String name) {
+    return new BufferedTransaction(type, name);
+  }
+
+  /**
+   * Emit the buffered messages to the delegate, should be called by a single thread
+   *
+   * @return the number of messages emitted
+   */
+  public int drainTo(MessageProducer delegate, int maxMessages) {
+    int emitted = 0;
+    BufferedMessage message;
+    while (emitted < maxMessages && (message = buffer.poll()) != null) {
+      try {
+        message.emitTo(delegate);
+      } catch (Throwable ex) {
+        logger.warn("Failed to emit tracer message", ex);
+      }
+      emitted++;
+    }
+    return emitted;
+  }
+
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  private void offer(BufferedMessage message) {
+    if (!buffer.offer(message)) {
+      droppedCount.incrementAndGet();
+    }
+  }
+
+  private interface BufferedMessage {
+    void emitTo(MessageProducer delegate);
+  }
+
+  private static class ErrorMessage implements BufferedMessage {
+    private final String message;
+    private final Throwable cause;
+
+    ErrorMessage(String message, Throwable cause) {
+      this.message = message;
+      this.cause = cause;
+    }
+
+    @Override
+    public void emitTo(MessageProducer delegate) {
+      if (message == null) {
+        delegate.logError(cause);
+      } else {
+        delegate.logError(message, cause);
+      }
+    }
+  }
+
+  private static class EventMessage implements BufferedMessage {
+    private final String type;
+    private final String name;
+    private final String status;
+    private final String nameValuePairs;
+
+    EventMessage(String type, String name, String status, String nameValuePairs) {
+      this.type = type;
+      this.name = name;
+      this.status = status;
+      this.nameValuePairs = nameValuePairs;
+    }
+
+    @Override
+    public void emitTo(MessageProducer delegate) {
+      if (status == null) {
+        delegate.logEvent(type, name);
+      } else {
+        delegate.logEvent(type, name, status, nameValuePairs);
+      }
+    }
+  }
+
+  /**
+   * Used by the thread creating it only, and buffered when completed
+   */
+  private class BufferedTransaction implements Transaction, BufferedMessage {
+    private final String type;
+    private final String name;
+    private final long startNanos;
+    private String status;
+    private Throwable cause;
+    private List<Object[]> data;
+    private long durationInMillis = -1;
+
+    BufferedTransaction(String type, String name) {
+      this.type = type;
+      this.name = name;
+      this.startNanos = System.nanoTime();
+    }
+
+    @Override
+    public void setStatus(String status) {
+      this.status = status;
+      this.cause = null;
+    }
+
+    @Override
+    public void setStatus(Throwable e) {
+      this.cause = e;
+      this.status = null;
+    }
+
+    @Override
+    public void addData(String key, Object value) {
+      if (data == null) {
+        data = Lists.newArrayList();
+      }
+      data.add(new Object[]{key, value});
+    }
+
+    @Override
+    public void complete() {
+      if (durationInMillis >= 0) {
+        return;
+      }
+      durationInMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+      offer(this);
+    }
+
+    @Override
+    public void emitTo(MessageProducer delegate) {
+      Transaction transaction = delegate.newTransaction(type, name);
+      if (data != null) {
+        for (Object[] pair : data) {
+          transaction.addData((String) pair[0], pair[1]);
+        }
+      }
+      transaction.addData(DURATION_KEY, durationInMillis);
+      if (cause != null) {
+        transaction.setStatus(cause);
+      } else if (status != null) {
+        transaction.setStatus(status);
+      }
+      transaction.complete();
+    }
+  }
+}
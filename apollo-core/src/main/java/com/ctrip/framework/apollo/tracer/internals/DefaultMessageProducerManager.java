@@ -1,27 +1,115 @@
 package com.ctrip.framework.apollo.tracer.internals;
 
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.core.utils.ClassLoaderUtil;
+import com.ctrip.framework.apollo.core.utils.StringUtils;
 import com.ctrip.framework.apollo.tracer.internals.cat.CatMessageProducer;
 import com.ctrip.framework.apollo.tracer.internals.cat.CatNames;
 import com.ctrip.framework.apollo.tracer.spi.MessageProducer;
 import com.ctrip.framework.apollo.tracer.spi.MessageProducerManager;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
 /**
+ * The tracing is configured by system properties:
+ *
+ * <ul>
+ *   <li>apollo.tracer.enabled: false to turn the tracing into no-op, default true</li>
+ *   <li>apollo.tracer.samplingRates: the sampling rates by type, e.g. Apollo.ConfigService=0.1,*=1</li>
+ *   <li>apollo.tracer.async: true to emit the messages asynchronously in batches, default false</li>
+ *   <li>apollo.tracer.asyncBufferSize: the capacity of the async ring buffer, default 8192</li>
+ * </ul>
+ *
  * @author Jason Song(song_s@ctrip.com)
  */
 public class DefaultMessageProducerManager implements MessageProducerManager {
+  private static final Logger logger = LoggerFactory.getLogger(DefaultMessageProducerManager.class);
+  static final String TRACER_ENABLED = "apollo.tracer.enabled";
+  static final String TRACER_SAMPLING_RATES = "apollo.tracer.samplingRates";
+  static final String TRACER_ASYNC = "apollo.tracer.async";
+  static final String TRACER_ASYNC_BUFFER_SIZE = "apollo.tracer.asyncBufferSize";
+  private static final int DEFAULT_ASYNC_BUFFER_SIZE = 8192;
+  private static final int EMIT_BATCH_SIZE = 256;
+  private static final long EMIT_IDLE_INTERVAL_IN_MILLIS = 10;
   private static MessageProducer producer;
 
   public DefaultMessageProducerManager() {
-    if (ClassLoaderUtil.isClassPresent(CatNames.CAT_CLASS)) {
-      producer = new CatMessageProducer();
-    } else {
+    this(ClassLoaderUtil.isClassPresent(CatNames.CAT_CLASS) ? new CatMessageProducer() : null);
+  }
+
+  /**
+   * @param tracerProducer the producer of the tracing system, null if not present
+   */
+  DefaultMessageProducerManager(MessageProducer tracerProducer) {
+    // 未接入或关闭时，使用空实现，不做任何工作
+    if (tracerProducer == null || !Boolean.parseBoolean(System.getProperty(TRACER_ENABLED, "true"))) {
       producer = new NullMessageProducerManager().getProducer();
+      return;
+    }
+
+    MessageProducer messageProducer = tracerProducer;
+    if (Boolean.parseBoolean(System.getProperty(TRACER_ASYNC, "false"))) {
+      AsyncMessageProducer asyncMessageProducer = new AsyncMessageProducer(getAsyncBufferSize());
+      startEmitter(asyncMessageProducer, tracerProducer);
+      messageProducer = asyncMessageProducer;
+    }
+
+    String samplingRates = System.getProperty(TRACER_SAMPLING_RATES);
+    if (!StringUtils.isBlank(samplingRates)) {
+      messageProducer = new SamplingMessageProducer(messageProducer, samplingRates);
     }
+
+    producer = messageProducer;
   }
 
   @Override
   public MessageProducer getProducer() {
     return producer;
   }
+
+  private static int getAsyncBufferSize() {
+    String bufferSize = System.getProperty(TRACER_ASYNC_BUFFER_SIZE);
+    if (!StringUtils.isBlank(bufferSize)) {
+      try {
+        int size = Integer.parseInt(bufferSize.trim());
+        if (size > 0) {
+          return size;
+        }
+      } catch (NumberFormatException ex) {
+        //ignore
+      }
+      logger.warn("Invalid {}: {}, use default {}", TRACER_ASYNC_BUFFER_SIZE, bufferSize, DEFAULT_ASYNC_BUFFER_SIZE);
+    }
+    return DEFAULT_ASYNC_BUFFER_SIZE;
+  }
+
+  private static void startEmitter(final AsyncMessageProducer asyncMessageProducer,
+                                   final MessageProducer tracerProducer) {
+    Thread emitter = ApolloThreadFactory.create("TracerEmitter", true).newThread(new Runnable() {
+      @Override
+      public void run() {
+        long reportedDroppedCount = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+          if (asyncMessageProducer.drainTo(tracerProducer, EMIT_BATCH_SIZE) > 0) {
+            continue;
+          }
+          long droppedCount = asyncMessageProducer.getDroppedCount();
+          if (droppedCount > reportedDroppedCount) {
+            logger.warn("{} tracer messages are dropped since the async buffer is full",
+                droppedCount - reportedDroppedCount);
+            reportedDroppedCount = droppedCount;
+          }
+          try {
+            TimeUnit.MILLISECONDS.sleep(EMIT_IDLE_INTERVAL_IN_MILLIS);
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+      }
+    });
+    emitter.start();
+  }
 }
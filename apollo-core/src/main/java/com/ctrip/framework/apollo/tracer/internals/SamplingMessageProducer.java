@@ -0,0 +1,101 @@
+package com.ctrip.framework.apollo.tracer.internals;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.Maps;
+
+import com.ctrip.framework.apollo.tracer.spi.MessageProducer;
+import com.ctrip.framework.apollo.tracer.spi.Transaction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 按类型采样的 MessageProducer，错误不采样
+ *
+ * Sample the events and transactions by their types, the errors are always logged. A transaction sampled out is a
+ * shared no-op one.
+ */
+public class SamplingMessageProducer implements MessageProducer {
+  private static final Logger logger = LoggerFactory.getLogger(SamplingMessageProducer.class);
+  private static final Transaction NULL_TRANSACTION = new NullTransaction();
+  private static final Splitter RATES_SPLITTER = Splitter.on(',').omitEmptyStrings().trimResults();
+  private static final Splitter RATE_SPLITTER = Splitter.on('=').trimResults();
+  /**
+   * the type to match the types not configured
+   */
+  static final String DEFAULT_TYPE = "*";
+
+  private final MessageProducer delegate;
+  private final Map<String, Double> rates;
+  private final double defaultRate;
+
+  /**
+   * @param rates the sampling rates by type between 0 and 1, e.g. Apollo.ConfigService=0.1,*=1
+   */
+  public SamplingMessageProducer(MessageProducer delegate, String rates) {
+    this.delegate = delegate;
+    this.rates = parseRates(rates);
+    Double configuredDefaultRate = this.rates.remove(DEFAULT_TYPE);
+    this.defaultRate = configuredDefaultRate == null ? 1 : configuredDefaultRate;
+  }
+
+  @Override
+  public void logError(Throwable cause) {
+    delegate.logError(cause);
+  }
+
+  @Override
+  public void logError(String message, Throwable cause) {
+    delegate.logError(message, cause);
+  }
+
+  @Override
+  public void logEvent(String type, String name) {
+    if (isSampled(type)) {
+      delegate.logEvent(type, name);
+    }
+  }
+
+  @Override
+  public void logEvent(String type, String name, String status, String nameValuePairs) {
+    if (isSampled(type)) {
+      delegate.logEvent(type, name, status, nameValuePairs);
+    }
+  }
+
+  @Override
+  public Transaction newTransaction(String type, String name) {
+    return isSampled(type) ? delegate.newTransaction(type, name) : NULL_TRANSACTION;
+  }
+
+  boolean isSampled(String type) {
+    Double rate = rates.get(type);
+    double samplingRate = rate == null ? defaultRate : rate;
+    if (samplingRate >= 1) {
+      return true;
+    }
+    if (samplingRate <= 0) {
+      return false;
+    }
+    return ThreadLocalRandom.current().nextDouble() < samplingRate;
+  }
+
+  private static Map<String, Double> parseRates(String rates) {
+    Map<String, Double> result = Maps.newHashMap();
+    for (String rate : RATES_SPLITTER.split(rates)) {
+      try {
+        String[] typeAndRate = RATE_SPLITTER.splitToList(rate).toArray(new String[0]);
+        if (typeAndRate.length != 2) {
+          throw new IllegalArgumentException("Expect type=rate");
+        }
+        result.put(typeAndRate[0], Double.parseDouble(typeAndRate[1]));
+      } catch (Throwable ex) {
+        logger.warn("Ignore invalid tracer sampling rate: {}", rate, ex);
+      }
+    }
+    return result;
+  }
+}
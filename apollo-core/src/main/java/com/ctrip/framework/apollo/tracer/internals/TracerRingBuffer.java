@@ -0,0 +1,69 @@
+package com.ctrip.framework.apollo.tracer.internals;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded lock free ring buffer with multiple producers and a single consumer. Offering never blocks, it fails
+ * when the buffer is full.
+ */
+class TracerRingBuffer<E> {
+  private final AtomicReferenceArray<E> slots;
+  private final int capacity;
+  private final int mask;
+  /**
+   * the next position to claim by the producers
+   */
+  private final AtomicLong tail = new AtomicLong();
+  /**
+   * the next position to consume, only written by the consumer
+   */
+  private volatile long head;
+
+  /**
+   * @param capacity rounded up to a power of 2
+   */
+  TracerRingBuffer(int capacity) {
+    int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+    this.slots = new AtomicReferenceArray<>(size);
+    this.capacity = size;
+    this.mask = size - 1;
+  }
+
+  /**
+   * @return false if the buffer is full
+   */
+  boolean offer(E element) {
+    long position;
+    do {
+      position = tail.get();
+      if (position - head >= capacity) {
+        return false;
+      }
+    } while (!tail.compareAndSet(position, position + 1));
+
+    slots.lazySet((int) position & mask, element);
+    return true;
+  }
+
+  /**
+   * Should only be called by the consumer thread
+   *
+   * @return the next element, or null if empty or the next element is not published yet
+   */
+  E poll() {
+    long position = head;
+    int index = (int) position & mask;
+    E element = slots.get(index);
+    if (element == null) {
+      return null;
+    }
+    slots.lazySet(index, null);
+    head = position + 1;
+    return element;
+  }
+
+  int capacity() {
+    return capacity;
+  }
+}
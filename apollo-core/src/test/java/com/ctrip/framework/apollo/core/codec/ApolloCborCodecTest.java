@@ -0,0 +1,129 @@
+package com.ctrip.framework.apollo.core.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.ctrip.framework.apollo.core.dto.ApolloConfig;
+import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.gson.reflect.TypeToken;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class ApolloCborCodecTest {
+  private static final Type NOTIFICATIONS_TYPE = new TypeToken<List<ApolloConfigNotification>>() {
+  }.getType();
+
+  @Test
+  public void testSupports() throws Exception {
+    assertTrue(ApolloCborCodec.supports(ApolloConfig.class));
+    assertTrue(ApolloCborCodec.supports(NOTIFICATIONS_TYPE));
+    assertFalse(ApolloCborCodec.supports(List.class));
+    assertFalse(ApolloCborCodec.supports(new TypeToken<List<String>>() {
+    }.getType()));
+  }
+
+  @Test
+  public void testEncodeAndDecodeConfig() throws Exception {
+    ApolloConfig someConfig = assembleConfig(ImmutableMap.of("someKey", "someValue", "中文", "😀 emoji"));
+
+    ApolloConfig result = ApolloCborCodec.decode(new ByteArrayInputStream(encode(someConfig)), ApolloConfig.class);
+
+    assertConfigEquals(someConfig, result);
+  }
+
+  @Test
+  public void testEncodeAndDecodeLargeConfig() throws Exception {
+    Map<String, String> configurations = Maps.newHashMap();
+    StringBuilder someLongValue = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      someLongValue.append(i);
+    }
+    for (int i = 0; i < 1000; i++) {
+      configurations.put("someKey" + i, someLongValue.toString() + i);
+    }
+    ApolloConfig someConfig = assembleConfig(configurations);
+
+    //encode twice to make sure the reused buffers are reset
+    encode(assembleConfig(ImmutableMap.of("anotherKey", "anotherValue")));
+    ApolloConfig result = ApolloCborCodec.decode(new ByteArrayInputStream(encode(someConfig)), ApolloConfig.class);
+
+    assertConfigEquals(someConfig, result);
+  }
+
+  @Test
+  public void testEncodeAndDecodeConfigWithNullFields() throws Exception {
+    ApolloConfig someConfig = new ApolloConfig();
+
+    ApolloConfig result = ApolloCborCodec.decode(new ByteArrayInputStream(encode(someConfig)), ApolloConfig.class);
+
+    assertNull(result.getAppId());
+    assertNull(result.getReleaseKey());
+    assertNull(result.getConfigurations());
+  }
+
+  @Test
+  public void testEncodeAndDecodeNotifications() throws Exception {
+    String someKey = "someAppId+default+application";
+    ApolloConfigNotification someNotification = new ApolloConfigNotification("application", 1);
+    someNotification.addMessage(someKey, 1);
+    ApolloConfigNotification anotherNotification = new ApolloConfigNotification("anotherNamespace", Long.MAX_VALUE);
+    anotherNotification.setConfig(assembleConfig(ImmutableMap.of("someKey", "someValue")));
+    ApolloConfigNotification yetAnotherNotification = new ApolloConfigNotification("yetAnotherNamespace", -1);
+
+    List<ApolloConfigNotification> result = ApolloCborCodec.decode(new ByteArrayInputStream(
+        encode(Lists.newArrayList(someNotification, anotherNotification, yetAnotherNotification))), NOTIFICATIONS_TYPE);
+
+    assertEquals(3, result.size());
+    assertEquals("application", result.get(0).getNamespaceName());
+    assertEquals(1, result.get(0).getNotificationId());
+    assertEquals(1, result.get(0).getMessages().get(someKey).longValue());
+    assertNull(result.get(0).getConfig());
+    assertEquals(Long.MAX_VALUE, result.get(1).getNotificationId());
+    assertNull(result.get(1).getMessages());
+    assertConfigEquals(anotherNotification.getConfig(), result.get(1).getConfig());
+    assertEquals(-1, result.get(2).getNotificationId());
+  }
+
+  @Test
+  public void testEncodeIsCompact() throws Exception {
+    //{"a": 1} in RFC 7049 appendix A
+    CborWriter writer = new CborWriter(1);
+    writer.writeMapHeader(1);
+    writer.writeString("a");
+    writer.writeLong(1);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writer.writeTo(out);
+
+    assertArrayEquals(new byte[]{(byte) 0xa1, 0x61, 0x61, 0x01}, out.toByteArray());
+  }
+
+  private byte[] encode(Object value) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ApolloCborCodec.encode(value, out);
+    return out.toByteArray();
+  }
+
+  private ApolloConfig assembleConfig(Map<String, String> configurations) {
+    ApolloConfig config = new ApolloConfig("someAppId", "someCluster", "someNamespace", "someReleaseKey");
+    config.setConfigurations(configurations);
+    return config;
+  }
+
+  private void assertConfigEquals(ApolloConfig expected, ApolloConfig actual) {
+    assertEquals(expected.getAppId(), actual.getAppId());
+    assertEquals(expected.getCluster(), actual.getCluster());
+    assertEquals(expected.getNamespaceName(), actual.getNamespaceName());
+    assertEquals(expected.getReleaseKey(), actual.getReleaseKey());
+    assertEquals(expected.getConfigurations(), actual.getConfigurations());
+  }
+}
@@ -0,0 +1,90 @@
+package com.ctrip.framework.apollo.tracer.internals;
+
+import com.ctrip.framework.apollo.tracer.spi.MessageProducer;
+import com.ctrip.framework.apollo.tracer.spi.Transaction;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+public class AsyncMessageProducerTest {
+  private AsyncMessageProducer asyncMessageProducer;
+  private MessageProducer someDelegate;
+
+  @Before
+  public void setUp() throws Exception {
+    asyncMessageProducer = new AsyncMessageProducer(4);
+    someDelegate = mock(MessageProducer.class);
+  }
+
+  @Test
+  public void testMessagesBufferedUntilDrained() throws Exception {
+    String someType = "someType";
+    String someName = "someName";
+    Throwable someCause = new RuntimeException();
+
+    asyncMessageProducer.logEvent(someType, someName);
+    asyncMessageProducer.logError(someCause);
+
+    verifyZeroInteractions(someDelegate);
+
+    assertEquals(2, asyncMessageProducer.drainTo(someDelegate, 10));
+
+    InOrder inOrder = inOrder(someDelegate);
+    inOrder.verify(someDelegate, times(1)).logEvent(someType, someName);
+    inOrder.verify(someDelegate, times(1)).logError(someCause);
+    assertEquals(0, asyncMessageProducer.drainTo(someDelegate, 10));
+  }
+
+  @Test
+  public void testTransactionReplayedWhenCompleted() throws Exception {
+    String someType = "someType";
+    String someName = "someName";
+    String someKey = "someKey";
+    Object someValue = new Object();
+    Transaction someTransaction = mock(Transaction.class);
+    when(someDelegate.newTransaction(someType, someName)).thenReturn(someTransaction);
+
+    Transaction transaction = asyncMessageProducer.newTransaction(someType, someName);
+    transaction.addData(someKey, someValue);
+    transaction.setStatus(Transaction.SUCCESS);
+
+    assertEquals(0, asyncMessageProducer.drainTo(someDelegate, 10));
+
+    transaction.complete();
+    transaction.complete();
+
+    assertEquals(1, asyncMessageProducer.drainTo(someDelegate, 10));
+    verify(someTransaction, times(1)).addData(someKey, someValue);
+    verify(someTransaction, times(1)).addData(eq(AsyncMessageProducer.DURATION_KEY), anyLong());
+    verify(someTransaction, times(1)).setStatus(Transaction.SUCCESS);
+    verify(someTransaction, times(1)).complete();
+  }
+
+  @Test
+  public void testDropWhenFull() throws Exception {
+    for (int i = 0; i < 6; i++) {
+      asyncMessageProducer.logEvent("someType", String.valueOf(i));
+    }
+
+    assertEquals(2, asyncMessageProducer.getDroppedCount());
+    assertEquals(2, asyncMessageProducer.drainTo(someDelegate, 2));
+    assertEquals(2, asyncMessageProducer.drainTo(someDelegate, 10));
+
+    asyncMessageProducer.logEvent("someType", "anotherName");
+
+    assertEquals(1, asyncMessageProducer.drainTo(someDelegate, 10));
+    verify(someDelegate, times(1)).logEvent("someType", "3");
+    verify(someDelegate, times(1)).logEvent("someType", "anotherName");
+  }
+}
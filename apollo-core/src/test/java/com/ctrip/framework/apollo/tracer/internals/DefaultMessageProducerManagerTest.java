@@ -1,11 +1,14 @@
 package com.ctrip.framework.apollo.tracer.internals;
 
+import com.ctrip.framework.apollo.tracer.spi.MessageProducer;
 import com.ctrip.framework.apollo.tracer.spi.MessageProducerManager;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
 
 /**
  * @author Jason Song(song_s@ctrip.com)
@@ -18,9 +21,41 @@ public class DefaultMessageProducerManagerTest {
     messageProducerManager = new DefaultMessageProducerManager();
   }
 
+  @After
+  public void tearDown() throws Exception {
+    System.clearProperty(DefaultMessageProducerManager.TRACER_ENABLED);
+    System.clearProperty(DefaultMessageProducerManager.TRACER_SAMPLING_RATES);
+    System.clearProperty(DefaultMessageProducerManager.TRACER_ASYNC);
+  }
+
   @Test
   public void testGetProducer() throws Exception {
     assertTrue(messageProducerManager.getProducer() instanceof NullMessageProducer);
   }
 
-}
\ No newline at end of file
+  @Test
+  public void testGetProducerWhenDisabled() throws Exception {
+    System.setProperty(DefaultMessageProducerManager.TRACER_ENABLED, "false");
+
+    messageProducerManager = new DefaultMessageProducerManager(mock(MessageProducer.class));
+
+    assertTrue(messageProducerManager.getProducer() instanceof NullMessageProducer);
+  }
+
+  @Test
+  public void testGetProducerWithSamplingAndAsync() throws Exception {
+    MessageProducer someProducer = mock(MessageProducer.class);
+
+    messageProducerManager = new DefaultMessageProducerManager(someProducer);
+    assertSame(someProducer, messageProducerManager.getProducer());
+
+    System.setProperty(DefaultMessageProducerManager.TRACER_SAMPLING_RATES, "*=0.5");
+    messageProducerManager = new DefaultMessageProducerManager(someProducer);
+    assertTrue(messageProducerManager.getProducer() instanceof SamplingMessageProducer);
+
+    System.clearProperty(DefaultMessageProducerManager.TRACER_SAMPLING_RATES);
+    System.setProperty(DefaultMessageProducerManager.TRACER_ASYNC, "true");
+    messageProducerManager = new DefaultMessageProducerManager(someProducer);
+    assertTrue(messageProducerManager.getProducer() instanceof AsyncMessageProducer);
+  }
+}
@@ -0,0 +1,73 @@
+package com.ctrip.framework.apollo.tracer.internals;
+
+import com.ctrip.framework.apollo.tracer.spi.MessageProducer;
+import com.ctrip.framework.apollo.tracer.spi.Transaction;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SamplingMessageProducerTest {
+  private MessageProducer someDelegate;
+  private String sampledType;
+  private String droppedType;
+
+  @Before
+  public void setUp() throws Exception {
+    someDelegate = mock(MessageProducer.class);
+    sampledType = "sampledType";
+    droppedType = "droppedType";
+  }
+
+  @Test
+  public void testSampleByType() throws Exception {
+    SamplingMessageProducer producer = new SamplingMessageProducer(someDelegate,
+        String.format("%s=1, %s=0", sampledType, droppedType));
+    Transaction someTransaction = mock(Transaction.class);
+    when(someDelegate.newTransaction(sampledType, "someName")).thenReturn(someTransaction);
+
+    producer.logEvent(sampledType, "someName");
+    producer.logEvent(droppedType, "someName");
+
+    assertSame(someTransaction, producer.newTransaction(sampledType, "someName"));
+    assertTrue(producer.newTransaction(droppedType, "someName") instanceof NullTransaction);
+    verify(someDelegate, times(1)).logEvent(sampledType, "someName");
+    verify(someDelegate, never()).logEvent(droppedType, "someName");
+    verify(someDelegate, never()).newTransaction(droppedType, "someName");
+  }
+
+  @Test
+  public void testDefaultRate() throws Exception {
+    assertTrue(new SamplingMessageProducer(someDelegate, sampledType + "=0").isSampled("anotherType"));
+    assertFalse(new SamplingMessageProducer(someDelegate, sampledType + "=1,*=0").isSampled("anotherType"));
+    assertTrue(new SamplingMessageProducer(someDelegate, sampledType + "=1,*=0").isSampled(sampledType));
+  }
+
+  @Test
+  public void testInvalidRateIgnored() throws Exception {
+    SamplingMessageProducer producer = new SamplingMessageProducer(someDelegate,
+        String.format("%s=abc,%s,*=0", sampledType, droppedType));
+
+    assertFalse(producer.isSampled(sampledType));
+  }
+
+  @Test
+  public void testErrorsNotSampled() throws Exception {
+    SamplingMessageProducer producer = new SamplingMessageProducer(someDelegate, "*=0");
+    Throwable someCause = new RuntimeException();
+
+    producer.logError(someCause);
+    producer.logError("someMessage", someCause);
+
+    verify(someDelegate, times(1)).logError(someCause);
+    verify(someDelegate, times(1)).logError("someMessage", someCause);
+  }
+}
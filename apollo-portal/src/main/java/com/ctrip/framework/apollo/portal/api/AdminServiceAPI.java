@@ -241,10 +241,19 @@ public class AdminServiceAPI {
     public List<ReleaseDTO> findActiveReleases(String appId, Env env, String clusterName, String namespaceName,
         int page,
         int size) {
+      return findActiveReleases(appId, env, clusterName, namespaceName, page, size, true);
+    }
+
+    /**
+     * @param withConfigurations false to load the metadata of the releases only
+     */
+    public List<ReleaseDTO> findActiveReleases(String appId, Env env, String clusterName, String namespaceName,
+        int page, int size, boolean withConfigurations) {
       ReleaseDTO[] releaseDTOs = restTemplate.get(
-          env, "apps/{appId}/clusters/{clusterName}/namespaces/{namespaceName}/releases/active?page={page}&size={size}",
+          env, "apps/{appId}/clusters/{clusterName}/namespaces/{namespaceName}/releases/active?page={page}&size={size}"
+              + "&withConfigurations={withConfigurations}",
           ReleaseDTO[].class,
-          appId, clusterName, namespaceName, page, size);
+          appId, clusterName, namespaceName, page, size, withConfigurations);
       return Arrays.asList(releaseDTOs);
     }
 
@@ -327,6 +336,17 @@ public class AdminServiceAPI {
 
       return Arrays.asList(commitDTOs);
     }
+
+    public List<CommitDTO> findBefore(String appId, Env env, String clusterName, String namespaceName, long beforeId,
+                                      int size) {
+
+      CommitDTO[] commitDTOs = restTemplate.get(env,
+          "apps/{appId}/clusters/{clusterName}/namespaces/{namespaceName}/commit?beforeId={beforeId}&size={size}",
+          CommitDTO[].class,
+          appId, clusterName, namespaceName, beforeId, size);
+
+      return Arrays.asList(commitDTOs);
+    }
   }
 
   @Service
@@ -359,6 +379,15 @@ public class AdminServiceAPI {
 
     }
 
+    public PageDTO<InstanceDTO> getByReleaseAfter(Env env, long releaseId, long afterInstanceId, int size) {
+      ResponseEntity<PageDTO<InstanceDTO>>
+          entity =
+          restTemplate
+              .get(env, "/instances/by-release?releaseId={releaseId}&afterInstanceId={afterInstanceId}&size={size}",
+                  pageInstanceDtoType, releaseId, afterInstanceId, size);
+      return entity.getBody();
+    }
+
     public List<InstanceDTO> getByReleasesNotIn(String appId, Env env, String clusterName, String namespaceName,
         Set<Long> releaseIds) {
 
@@ -384,6 +413,18 @@ public class AdminServiceAPI {
       return entity.getBody();
     }
 
+    public PageDTO<InstanceDTO> getByNamespaceAfter(String appId, Env env, String clusterName, String namespaceName,
+        String instanceAppId, long afterInstanceId, int size) {
+      ResponseEntity<PageDTO<InstanceDTO>>
+          entity =
+          restTemplate.get(env,
+              "/instances/by-namespace?appId={appId}"
+                  + "&clusterName={clusterName}&namespaceName={namespaceName}&instanceAppId={instanceAppId}"
+                  + "&afterInstanceId={afterInstanceId}&size={size}",
+              pageInstanceDtoType, appId, clusterName, namespaceName, instanceAppId, afterInstanceId, size);
+      return entity.getBody();
+    }
+
     public int getInstanceCountByNamespace(String appId, Env env, String clusterName, String namespaceName) {
       Integer
           count =
@@ -452,6 +493,13 @@ public class AdminServiceAPI {
           type, appId, clusterName, namespaceName, page, size).getBody();
     }
 
+    public PageDTO<ReleaseHistoryDTO> findReleaseHistoriesByNamespaceBefore(String appId, Env env,
+        String clusterName, String namespaceName, long beforeId, int size) {
+      return restTemplate.get(env,
+          "/apps/{appId}/clusters/{clusterName}/namespaces/{namespaceName}/releases/histories?beforeId={beforeId}&size={size}",
+          type, appId, clusterName, namespaceName, beforeId, size).getBody();
+    }
+
     public PageDTO<ReleaseHistoryDTO> findByReleaseIdAndOperation(Env env, long releaseId, int operation, int page,
         int size) {
       return restTemplate.get(env,
@@ -29,7 +29,8 @@ public class CommitController {
   @RequestMapping(value = "/apps/{appId}/envs/{env}/clusters/{clusterName}/namespaces/{namespaceName}/commits", method = RequestMethod.GET)
   public List<CommitDTO> find(@PathVariable String appId, @PathVariable String env,
                               @PathVariable String clusterName, @PathVariable String namespaceName,
-                              @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "10") int size) {
+                              @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "10") int size,
+                              @RequestParam(required = false) Long beforeId) {
     if (permissionValidator.shouldHideConfigToCurrentUser(appId, env, namespaceName)) {
       return Collections.emptyList();
     }
@@ -37,6 +38,10 @@ public class CommitController {
     RequestPrecondition.checkNumberPositive(size);
     RequestPrecondition.checkNumberNotNegative(page);
 
+    if (beforeId != null) {
+      return commitService.findBefore(appId, Env.valueOf(env), clusterName, namespaceName, beforeId, size);
+    }
+
     return commitService.find(appId, Env.valueOf(env), clusterName, namespaceName, page, size);
 
   }
@@ -34,7 +34,12 @@ public class InstanceController {
     @RequestMapping(value = "/envs/{env}/instances/by-release", method = RequestMethod.GET)
     public PageDTO<InstanceDTO> getByRelease(@PathVariable String env, @RequestParam long releaseId,
                                              @RequestParam(defaultValue = "0") int page,
-                                             @RequestParam(defaultValue = "20") int size) {
+                                             @RequestParam(defaultValue = "20") int size,
+                                             @RequestParam(required = false) Long afterInstanceId) {
+
+        if (afterInstanceId != null) {
+            return instanceService.getByReleaseAfter(Env.valueOf(env), releaseId, afterInstanceId, size);
+        }
 
         return instanceService.getByRelease(Env.valueOf(env), releaseId, page, size);
     }
@@ -44,7 +49,13 @@ public class InstanceController {
                                                @RequestParam String clusterName, @RequestParam String namespaceName,
                                                @RequestParam(required = false) String instanceAppId,
                                                @RequestParam(defaultValue = "0") int page,
-                                               @RequestParam(defaultValue = "20") int size) {
+                                               @RequestParam(defaultValue = "20") int size,
+                                               @RequestParam(required = false) Long afterInstanceId) {
+
+        if (afterInstanceId != null) {
+            return instanceService.getByNamespaceAfter(Env.valueOf(env), appId, clusterName, namespaceName,
+                instanceAppId, afterInstanceId, size);
+        }
 
         return instanceService.getByNamespace(Env.valueOf(env), appId, clusterName, namespaceName, instanceAppId, page, size);
     }
@@ -27,6 +27,16 @@ public class InstanceService {
     return instanceAPI.getByNamespace(appId, env, clusterName, namespaceName, instanceAppId, page, size);
   }
 
+  public PageDTO<InstanceDTO> getByReleaseAfter(Env env, long releaseId, long afterInstanceId, int size){
+    return instanceAPI.getByReleaseAfter(env, releaseId, afterInstanceId, size);
+  }
+
+  public PageDTO<InstanceDTO> getByNamespaceAfter(Env env, String appId, String clusterName, String namespaceName,
+                                                  String instanceAppId, long afterInstanceId, int size){
+    return instanceAPI.getByNamespaceAfter(appId, env, clusterName, namespaceName, instanceAppId, afterInstanceId,
+        size);
+  }
+
   public int getInstanceCountByNamepsace(String appId, Env env, String clusterName, String namespaceName){
     return instanceAPI.getInstanceCountByNamespace(appId, env, clusterName, namespaceName);
   }
@@ -62,6 +62,20 @@ public class ReleaseHistoryService {
                                                             String namespaceName, int page, int size) {
     PageDTO<ReleaseHistoryDTO> result = releaseHistoryAPI.findReleaseHistoriesByNamespace(appId, env, clusterName,
                                                                                           namespaceName, page, size);
+    return transformReleaseHistoryPage2BO(env, result);
+  }
+
+  /**
+   * @param beforeId the id of the last release history in the previous page, 0 for the first page
+   */
+  public List<ReleaseHistoryBO> findNamespaceReleaseHistoryBefore(String appId, Env env, String clusterName,
+                                                                  String namespaceName, long beforeId, int size) {
+    PageDTO<ReleaseHistoryDTO> result = releaseHistoryAPI.findReleaseHistoriesByNamespaceBefore(appId, env,
+        clusterName, namespaceName, beforeId, size);
+    return transformReleaseHistoryPage2BO(env, result);
+  }
+
+  private List<ReleaseHistoryBO> transformReleaseHistoryPage2BO(Env env, PageDTO<ReleaseHistoryDTO> result) {
     if (result == null || !result.hasContent()) {
       return Collections.emptyList();
     }
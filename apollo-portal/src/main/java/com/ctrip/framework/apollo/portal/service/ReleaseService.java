@@ -119,7 +119,8 @@ public class ReleaseService {
 
   public List<ReleaseDTO> findActiveReleases(String appId, Env env, String clusterName, String namespaceName, int page,
                                              int size) {
-    return releaseAPI.findActiveReleases(appId, env, clusterName, namespaceName, page, size);
+    //the active releases are listed for the rollback, which only needs their metadata
+    return releaseAPI.findActiveReleases(appId, env, clusterName, namespaceName, page, size, false);
   }
 
   public ReleaseDTO findReleaseById(Env env, long releaseId) {
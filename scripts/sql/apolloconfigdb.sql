@@ -63,6 +63,29 @@ CREATE TABLE `AppNamespace` (
 
 
 
+# Dump of table archive
+# ------------------------------------------------------------
+
+DROP TABLE IF EXISTS `Archive`;
+
+CREATE TABLE `Archive` (
+  `Id` int(10) unsigned NOT NULL AUTO_INCREMENT COMMENT '自增主键',
+  `EntityName` varchar(50) NOT NULL DEFAULT 'default' COMMENT '表名',
+  `EntityId` int(10) unsigned NOT NULL COMMENT '原记录ID',
+  `AppId` varchar(64) DEFAULT NULL COMMENT 'AppID',
+  `ClusterName` varchar(64) DEFAULT NULL COMMENT 'ClusterName',
+  `NamespaceName` varchar(64) DEFAULT NULL COMMENT 'namespaceName',
+  `Content` longtext NOT NULL COMMENT '原记录内容',
+  `DataChange_CreatedBy` varchar(32) DEFAULT NULL COMMENT '原记录创建人邮箱前缀',
+  `DataChange_CreatedTime` timestamp NULL DEFAULT NULL COMMENT '原记录创建时间',
+  `DataChange_ArchivedTime` timestamp NULL DEFAULT CURRENT_TIMESTAMP COMMENT '归档时间',
+  PRIMARY KEY (`Id`),
+  UNIQUE KEY `UK_EntityName_EntityId` (`EntityName`,`EntityId`),
+  KEY `IX_Namespace` (`EntityName`,`AppId`,`ClusterName`,`NamespaceName`,`EntityId`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='归档表';
+
+
+
 # Dump of table audit
 # ------------------------------------------------------------
 
@@ -195,9 +218,10 @@ CREATE TABLE `InstanceConfig` (
   `DataChange_LastTime` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '最后修改时间',
   PRIMARY KEY (`Id`),
   UNIQUE KEY `IX_UNIQUE_KEY` (`InstanceId`,`ConfigAppId`,`ConfigNamespaceName`),
-  KEY `IX_ReleaseKey` (`ReleaseKey`),
+  KEY `IX_ReleaseKey_InstanceId` (`ReleaseKey`,`InstanceId`),
   KEY `IX_DataChange_LastTime` (`DataChange_LastTime`),
-  KEY `IX_Valid_Namespace` (`ConfigAppId`,`ConfigClusterName`,`ConfigNamespaceName`,`DataChange_LastTime`)
+  KEY `IX_Valid_Namespace` (`ConfigAppId`,`ConfigClusterName`,`ConfigNamespaceName`,`DataChange_LastTime`),
+  KEY `IX_Namespace_InstanceId` (`ConfigAppId`,`ConfigClusterName`,`ConfigNamespaceName`,`InstanceId`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='应用实例的配置信息';
 
 
@@ -283,6 +307,7 @@ CREATE TABLE `Release` (
   `ClusterName` varchar(500) NOT NULL DEFAULT 'default' COMMENT 'ClusterName',
   `NamespaceName` varchar(500) NOT NULL DEFAULT 'default' COMMENT 'namespaceName',
   `Configurations` longtext NOT NULL COMMENT '发布配置',
+  `DeltaBaseReleaseId` int(10) unsigned NOT NULL DEFAULT '0' COMMENT '增量发布的基准发布Id，全量发布为0',
   `IsAbandoned` bit(1) NOT NULL DEFAULT b'0' COMMENT '是否废弃',
   `IsDeleted` bit(1) NOT NULL DEFAULT b'0' COMMENT '1: deleted, 0: normal',
   `DataChange_CreatedBy` varchar(32) NOT NULL DEFAULT 'default' COMMENT '创建人邮箱前缀',
@@ -292,7 +317,8 @@ CREATE TABLE `Release` (
   PRIMARY KEY (`Id`),
   KEY `AppId_ClusterName_GroupName` (`AppId`(191),`ClusterName`(191),`NamespaceName`(191)),
   KEY `DataChange_LastTime` (`DataChange_LastTime`),
-  KEY `IX_ReleaseKey` (`ReleaseKey`)
+  KEY `IX_ReleaseKey` (`ReleaseKey`),
+  KEY `IX_DeltaBaseReleaseId` (`DeltaBaseReleaseId`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='发布';
 
 
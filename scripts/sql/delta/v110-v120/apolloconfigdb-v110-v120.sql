@@ -0,0 +1,28 @@
+# delta schema to upgrade apollo config db from v1.1.0 to v1.2.0
+
+Use ApolloConfigDB;
+
+CREATE TABLE `Archive` (
+  `Id` int(10) unsigned NOT NULL AUTO_INCREMENT COMMENT '自增主键',
+  `EntityName` varchar(50) NOT NULL DEFAULT 'default' COMMENT '表名',
+  `EntityId` int(10) unsigned NOT NULL COMMENT '原记录ID',
+  `AppId` varchar(64) DEFAULT NULL COMMENT 'AppID',
+  `ClusterName` varchar(64) DEFAULT NULL COMMENT 'ClusterName',
+  `NamespaceName` varchar(64) DEFAULT NULL COMMENT 'namespaceName',
+  `Content` longtext NOT NULL COMMENT '原记录内容',
+  `DataChange_CreatedBy` varchar(32) DEFAULT NULL COMMENT '原记录创建人邮箱前缀',
+  `DataChange_CreatedTime` timestamp NULL DEFAULT NULL COMMENT '原记录创建时间',
+  `DataChange_ArchivedTime` timestamp NULL DEFAULT CURRENT_TIMESTAMP COMMENT '归档时间',
+  PRIMARY KEY (`Id`),
+  UNIQUE KEY `UK_EntityName_EntityId` (`EntityName`,`EntityId`),
+  KEY `IX_Namespace` (`EntityName`,`AppId`,`ClusterName`,`NamespaceName`,`EntityId`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='归档表';
+
+ALTER TABLE `InstanceConfig`
+  DROP INDEX `IX_ReleaseKey`,
+  ADD INDEX `IX_ReleaseKey_InstanceId` (`ReleaseKey`,`InstanceId`),
+  ADD INDEX `IX_Namespace_InstanceId` (`ConfigAppId`,`ConfigClusterName`,`ConfigNamespaceName`,`InstanceId`);
+
+ALTER TABLE `Release`
+  ADD COLUMN `DeltaBaseReleaseId` int(10) unsigned NOT NULL DEFAULT '0' COMMENT '增量发布的基准发布Id，全量发布为0' AFTER `Configurations`,
+  ADD INDEX `IX_DeltaBaseReleaseId` (`DeltaBaseReleaseId`);